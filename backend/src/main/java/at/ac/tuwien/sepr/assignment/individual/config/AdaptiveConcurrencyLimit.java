@@ -0,0 +1,92 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrency limit adapting to the observed latency in an additive-increase, multiplicative-decrease fashion.
+ * Every request finishing within the target latency while the limit is in use raises the limit by {@code 1 / limit},
+ * which adds about one slot per round of requests.
+ * Every request exceeding the target latency shrinks the limit by {@link #BACKOFF_RATIO},
+ * at most once per target latency so a single slow round does not collapse the limit.
+ */
+class AdaptiveConcurrencyLimit {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final long targetLatencyNanos;
+
+  private double limit;
+  private int inFlight;
+  private long lastBackoffNanos;
+
+  /**
+   * Creates a limit without requests in flight.
+   *
+   * @param name          the name of the limited pool, used for logging only
+   * @param initialLimit  the limit before any latency was observed
+   * @param minLimit      the limit is never lowered below this value
+   * @param maxLimit      the limit is never raised above this value
+   * @param targetLatency the latency requests of the pool should stay below
+   */
+  AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit, Duration targetLatency) {
+    this.name = name;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.targetLatencyNanos = targetLatency.toNanos();
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.lastBackoffNanos = System.nanoTime() - targetLatencyNanos;
+  }
+
+  /**
+   * Admits a request if the pool has a free slot.
+   *
+   * @return true if the request was admitted and has to call {@link #release(long)} once it is done
+   */
+  synchronized boolean tryAcquire() {
+    if (inFlight >= (int) limit) {
+      return false;
+    }
+    inFlight++;
+    return true;
+  }
+
+  /**
+   * Frees the slot of a finished request and adapts the limit to its latency.
+   *
+   * @param latencyNanos how long the request took
+   */
+  synchronized void release(long latencyNanos) {
+    boolean saturated = inFlight >= (int) limit / 2;
+    inFlight--;
+    long now = System.nanoTime();
+    if (latencyNanos > targetLatencyNanos) {
+      if (now - lastBackoffNanos >= targetLatencyNanos) {
+        lastBackoffNanos = now;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        LOG.debug("Lowered concurrency limit of {} to {}", name, (int) limit);
+      }
+    } else if (saturated) {
+      // only grow while the limit is actually used, otherwise it drifts up without evidence
+      limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+  }
+
+  synchronized int limit() {
+    return (int) limit;
+  }
+
+  synchronized int inFlight() {
+    return inFlight;
+  }
+
+  String name() {
+    return name;
+  }
+}
@@ -0,0 +1,78 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Configuration class for admission control.
+ * Registers a filter limiting the concurrent requests of every expensive endpoint class,
+ * configured by the {@code app.admission-control} properties.
+ * Admission control is off unless {@code app.admission-control.enabled} is set,
+ * its limits have to be tuned to the hardware and the expected load first.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.admission-control.enabled", havingValue = "true", matchIfMissing = false)
+@EnableConfigurationProperties(AdmissionControlConfiguration.Properties.class)
+public class AdmissionControlConfiguration {
+
+  /**
+   * Registers the {@link AdmissionControlFilter} right after the {@link LogFilter}, so rejected requests are logged.
+   *
+   * @param properties the configured pools
+   * @param classifier determines the endpoint class of a request
+   * @return a configured {@link FilterRegistrationBean} for admission control
+   */
+  @Bean
+  public FilterRegistrationBean<OncePerRequestFilter> admissionControlFilter(Properties properties,
+                                                                             EndpointClassifier classifier) {
+    Map<EndpointClass, AdaptiveConcurrencyLimit> limits = new EnumMap<>(EndpointClass.class);
+    properties.pools().forEach((endpointClass, pool) -> limits.put(endpointClass, new AdaptiveConcurrencyLimit(
+            endpointClass.name().toLowerCase(),
+            pool.initialLimit(),
+            pool.minLimit(),
+            pool.maxLimit(),
+            pool.targetLatency())));
+
+    var reg = new FilterRegistrationBean<OncePerRequestFilter>(
+            new AdmissionControlFilter(classifier, limits, properties.retryAfterSeconds()));
+    reg.addUrlPatterns("/*");
+    reg.setName("admissionControlFilter");
+    reg.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+    return reg;
+  }
+
+  /**
+   * Properties of the admission control.
+   *
+   * @param enabled           whether requests are limited at all
+   * @param retryAfterSeconds the value of the {@code Retry-After} header of rejected requests
+   * @param pools             the limit of every endpoint class, classes without a pool are not limited
+   */
+  @ConfigurationProperties("app.admission-control")
+  public record Properties(boolean enabled, int retryAfterSeconds, Map<EndpointClass, Pool> pools) {
+    public Properties {
+      pools = pools == null ? Map.of() : pools;
+    }
+  }
+
+  /**
+   * Limits of a single pool.
+   *
+   * @param initialLimit  the number of concurrent requests before any latency was observed
+   * @param minLimit      the lowest number of concurrent requests the limit may shrink to
+   * @param maxLimit      the highest number of concurrent requests the limit may grow to
+   * @param targetLatency the latency above which the limit shrinks
+   */
+  public record Pool(int initialLimit, int minLimit, int maxLimit, Duration targetLatency) {
+  }
+}
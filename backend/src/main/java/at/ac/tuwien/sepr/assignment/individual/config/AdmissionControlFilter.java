@@ -0,0 +1,202 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * ServletFilter admitting requests only while the pool of their endpoint class has capacity left.
+ * Image transfers, family trees, searches and writes each get their own {@link AdaptiveConcurrencyLimit},
+ * so expensive requests can not take every thread and connection away from cheap detail lookups,
+ * which are not limited at all.
+ * The endpoint class of a request is determined by the {@link EndpointClassifier}.
+ * A request exceeding the limit of its pool is answered immediately with 503 and a {@code Retry-After} header.
+ * The limits adapt to the time until the first byte of the response is sent, so clients reading slowly
+ * do not shrink the pool of the server that already did its part.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final EndpointClassifier classifier;
+  private final Map<EndpointClass, AdaptiveConcurrencyLimit> limits;
+  private final int retryAfterSeconds;
+
+  /**
+   * Creates the filter.
+   *
+   * @param classifier        determines the endpoint class of a request
+   * @param limits            the limit of every endpoint class, classes without a limit are always admitted
+   * @param retryAfterSeconds the value of the {@code Retry-After} header of rejected requests
+   */
+  AdmissionControlFilter(EndpointClassifier classifier,
+                         Map<EndpointClass, AdaptiveConcurrencyLimit> limits,
+                         int retryAfterSeconds) {
+    this.classifier = classifier;
+    this.limits = limits;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws IOException {
+    AdaptiveConcurrencyLimit limit = limits.get(classifier.classify(request));
+    if (limit == null) {
+      proceed(request, response, filterChain);
+      return;
+    }
+    if (!limit.tryAcquire()) {
+      LOG.warn("Rejecting {} {}, {} pool is at its limit of {}",
+              request.getMethod(), request.getRequestURI(), limit.name(), limit.limit());
+      response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+              "Too many concurrent %s requests, try again later".formatted(limit.name()));
+      return;
+    }
+    FirstByteTimingResponse timedResponse = new FirstByteTimingResponse(response);
+    try {
+      proceed(request, timedResponse, filterChain);
+    } finally {
+      limit.release(timedResponse.latencyNanos());
+    }
+  }
+
+  private void proceed(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws IOException {
+    try {
+      filterChain.doFilter(request, response);
+    } catch (ServletException e) {
+      throw new FatalException(e);
+    }
+  }
+
+  /**
+   * Classes of endpoints sharing a concurrency pool.
+   */
+  public enum EndpointClass {
+    IMAGE,
+    TREE,
+    SEARCH,
+    WRITE,
+    CHEAP
+  }
+
+  /**
+   * Response remembering when its first byte was written or its headers were sent.
+   */
+  private static final class FirstByteTimingResponse extends HttpServletResponseWrapper {
+    private final long startNanos = System.nanoTime();
+    private long firstByteNanos;
+    private boolean sent;
+    private ServletOutputStream outputStream;
+
+    FirstByteTimingResponse(HttpServletResponse response) {
+      super(response);
+    }
+
+    /**
+     * Returns the time from the creation of the response until its first byte, or until now if nothing was sent.
+     */
+    long latencyNanos() {
+      return (sent ? firstByteNanos : System.nanoTime()) - startNanos;
+    }
+
+    private void markSent() {
+      if (!sent) {
+        sent = true;
+        firstByteNanos = System.nanoTime();
+      }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      if (outputStream == null) {
+        outputStream = new FirstByteTimingOutputStream(super.getOutputStream());
+      }
+      return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+      // writers are only used for small bodies written at once
+      markSent();
+      return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+      markSent();
+      super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+      markSent();
+      super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+      markSent();
+      super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+      markSent();
+      super.sendRedirect(location);
+    }
+
+    private final class FirstByteTimingOutputStream extends ServletOutputStream {
+      private final ServletOutputStream target;
+
+      FirstByteTimingOutputStream(ServletOutputStream target) {
+        this.target = target;
+      }
+
+      @Override
+      public void write(int b) throws IOException {
+        markSent();
+        target.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        markSent();
+        target.write(b, off, len);
+      }
+
+      @Override
+      public void flush() throws IOException {
+        markSent();
+        target.flush();
+      }
+
+      @Override
+      public void close() throws IOException {
+        target.close();
+      }
+
+      @Override
+      public boolean isReady() {
+        return target.isReady();
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+        target.setWriteListener(writeListener);
+      }
+    }
+  }
+}
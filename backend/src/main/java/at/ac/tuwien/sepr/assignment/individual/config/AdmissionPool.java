@@ -0,0 +1,26 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns a handler method to the concurrency pool of an expensive endpoint class.
+ * The {@link EndpointClassifier} looks the handler of a request up in the handler mappings,
+ * handlers without this annotation count as writes unless they only read.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AdmissionPool {
+
+  /**
+   * The endpoint class whose pool limits the handler.
+   *
+   * @return the endpoint class
+   */
+  EndpointClass value();
+}
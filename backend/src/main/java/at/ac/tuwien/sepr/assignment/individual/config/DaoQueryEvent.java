@@ -0,0 +1,28 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a call of a DAO method, recorded by the proxies of {@link MetricsConfiguration}.
+ */
+@Name("at.ac.tuwien.sepr.DaoQuery")
+@Label("DAO Query")
+@Category({"Wendy's Family Tree", "Persistence"})
+@Description("A call of a method of a DAO")
+public class DaoQueryEvent extends Event {
+  @Label("DAO")
+  public String dao;
+
+  @Label("Method")
+  public String method;
+
+  @Label("Rows")
+  public long rows;
+
+  @Label("Failed")
+  public boolean failed;
+}
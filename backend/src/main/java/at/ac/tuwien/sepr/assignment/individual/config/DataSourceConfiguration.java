@@ -0,0 +1,40 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for data source interceptors.
+ * Wraps every {@link DataSource} once in an {@link InterceptingDataSource}
+ * with all {@link DataSourceInterceptor} beans, like the statement deadlines, the SQL profiler
+ * and the connection permits for virtual threads.
+ * Data sources are left alone while no interceptor is configured.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+  /**
+   * Wraps every {@link DataSource} in an intercepting data source.
+   *
+   * @param interceptors the configured interceptors, resolved when the first data source is created
+   * @return the post processor wrapping the data sources
+   */
+  @Bean
+  public static BeanPostProcessor interceptingDataSourcePostProcessor(
+          ObjectProvider<DataSourceInterceptor> interceptors) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource) || bean instanceof InterceptingDataSource) {
+          return bean;
+        }
+        List<DataSourceInterceptor> configured = interceptors.orderedStream().toList();
+        return configured.isEmpty() ? bean : new InterceptingDataSource(dataSource, configured);
+      }
+    };
+  }
+}
@@ -0,0 +1,54 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Hook of the {@link InterceptingDataSource} into the connections, statements and executions of the data source.
+ * Every method has an empty default, so an interceptor only implements the events it needs.
+ * Interceptors are Spring beans picked up by the {@link DataSourceConfiguration}, called in their order.
+ */
+interface DataSourceInterceptor {
+
+  /**
+   * Called before a connection is taken from the wrapped data source.
+   *
+   * @return called once the connection is closed, or taking it failed, null if there is nothing to undo
+   * @throws SQLException if the connection must not be taken
+   */
+  default Runnable beforeConnection() throws SQLException {
+    return null;
+  }
+
+  /**
+   * Called for every statement created by a connection, before it is handed out.
+   *
+   * @param statement the new statement
+   * @return called once the statement is closed, null if there is nothing to undo
+   * @throws SQLException if the statement must not be used, it is closed again
+   */
+  default Runnable statementCreated(Statement statement) throws SQLException {
+    return null;
+  }
+
+  /**
+   * Whether {@link #executed} is implemented.
+   * Executions are only timed and the rows of their result sets only counted while an interceptor needs them.
+   *
+   * @return true if the interceptor observes executions
+   */
+  default boolean observesExecutions() {
+    return false;
+  }
+
+  /**
+   * Called after every execution of a statement, for queries once their result set is exhausted or closed.
+   *
+   * @param sql    the statement as it was sent to the database
+   * @param nanos  how long the execution took, without reading the result set
+   * @param rows   the number of rows read or written
+   * @param failed whether the execution threw
+   */
+  default void executed(String sql, long nanos, long rows, boolean failed) {
+  }
+}
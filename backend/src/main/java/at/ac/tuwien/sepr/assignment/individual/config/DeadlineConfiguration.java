@@ -0,0 +1,84 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Configuration class for request deadlines.
+ * Registers the {@link DeadlineFilter} and binds every JDBC statement to the deadline of the request creating it,
+ * configured by the {@code app.deadlines} properties.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.deadlines.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(DeadlineConfiguration.Properties.class)
+public class DeadlineConfiguration {
+
+  /**
+   * Registers the {@link DeadlineFilter} after the admission control, so waiting for admission does not count.
+   *
+   * @param properties the configured timeouts
+   * @param classifier determines the endpoint class of a request
+   * @return a configured {@link FilterRegistrationBean} for request deadlines
+   */
+  @Bean
+  public FilterRegistrationBean<OncePerRequestFilter> deadlineFilter(Properties properties,
+                                                                     EndpointClassifier classifier) {
+    var reg = new FilterRegistrationBean<OncePerRequestFilter>(
+            new DeadlineFilter(classifier, properties.timeouts()));
+    reg.addUrlPatterns("/*");
+    reg.setName("deadlineFilter");
+    reg.setOrder(Ordered.LOWEST_PRECEDENCE);
+    return reg;
+  }
+
+  /**
+   * Creates the interceptor binding every statement to the current {@link RequestDeadline}.
+   *
+   * @return the deadline interceptor
+   */
+  @Bean
+  DeadlineInterceptor deadlineInterceptor() {
+    return new DeadlineInterceptor();
+  }
+
+  /**
+   * Properties of the request deadlines.
+   *
+   * @param enabled  whether requests get deadlines at all
+   * @param timeouts the timeout of every endpoint class, classes without a timeout get no deadline
+   */
+  @ConfigurationProperties("app.deadlines")
+  public record Properties(boolean enabled, Map<EndpointClass, Duration> timeouts) {
+    public Properties {
+      timeouts = timeouts == null ? Map.of() : timeouts;
+    }
+  }
+
+  /**
+   * Interceptor registering every statement with the deadline of the thread creating it.
+   * The statement gets the time left as query timeout and is cancelled when the deadline expires.
+   */
+  static class DeadlineInterceptor implements DataSourceInterceptor {
+
+    @Override
+    public Runnable statementCreated(Statement statement) throws SQLException {
+      RequestDeadline deadline = RequestDeadline.current();
+      if (deadline == null) {
+        return null;
+      }
+      deadline.register(statement);
+      return () -> deadline.unregister(statement);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * ServletFilter starting a {@link RequestDeadline} for every request of an endpoint class with a configured timeout.
+ * A watchdog expires the deadline on time, which cancels the statements the request is still running.
+ */
+public class DeadlineFilter extends OncePerRequestFilter {
+  private final EndpointClassifier classifier;
+  private final Map<EndpointClass, Duration> timeouts;
+  private final ScheduledThreadPoolExecutor watchdog;
+
+  /**
+   * Creates the filter.
+   *
+   * @param classifier determines the endpoint class of a request
+   * @param timeouts   the timeout of every endpoint class, requests of other classes get no deadline
+   */
+  DeadlineFilter(EndpointClassifier classifier, Map<EndpointClass, Duration> timeouts) {
+    this.classifier = classifier;
+    this.timeouts = timeouts;
+    this.watchdog = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform()
+            .name("request-deadline-watchdog")
+            .daemon(true)
+            .factory());
+    this.watchdog.setRemoveOnCancelPolicy(true);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws IOException {
+    Duration timeout = timeouts.get(classifier.classify(request));
+    if (timeout == null) {
+      proceed(request, response, filterChain);
+      return;
+    }
+    RequestDeadline deadline = new RequestDeadline(timeout);
+    ScheduledFuture<?> expiry = watchdog.schedule(deadline::expire, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    RequestDeadline previous = deadline.bind();
+    try {
+      proceed(request, response, filterChain);
+    } finally {
+      expiry.cancel(false);
+      RequestDeadline.restore(previous);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    watchdog.shutdownNow();
+  }
+
+  private void proceed(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+          throws IOException {
+    try {
+      filterChain.doFilter(request, response);
+    } catch (ServletException e) {
+      throw new FatalException(e);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import jakarta.servlet.http.HttpServletRequest;
+import java.lang.invoke.MethodHandles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerExecutionChain;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ServletRequestPathUtils;
+
+/**
+ * Determines the {@link EndpointClass} of a request for the admission control and the request deadlines.
+ * The request is looked up in the handler mappings, so the class follows the mapped handler method
+ * and its {@link AdmissionPool} instead of a copy of the URL patterns of the endpoints.
+ */
+@Component
+public class EndpointClassifier {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final HandlerMapping handlerMapping;
+
+  /**
+   * Creates the classifier.
+   *
+   * @param handlerMapping the mapping of requests to the handler methods of the endpoints,
+   *                       lazy because the filters using it are registered before the dispatcher servlet is set up
+   */
+  public EndpointClassifier(@Lazy @Qualifier("requestMappingHandlerMapping") HandlerMapping handlerMapping) {
+    this.handlerMapping = handlerMapping;
+  }
+
+  /**
+   * Determines the endpoint class of a request from the handler method it is mapped to.
+   *
+   * @param request the request
+   * @return the {@link AdmissionPool} of the handler method, otherwise {@link EndpointClass#CHEAP} for requests
+   *         that only read and {@link EndpointClass#WRITE} for all others
+   */
+  public EndpointClass classify(HttpServletRequest request) {
+    if (handlerOf(request) instanceof HandlerMethod handlerMethod) {
+      AdmissionPool pool = handlerMethod.getMethodAnnotation(AdmissionPool.class);
+      if (pool != null) {
+        return pool.value();
+      }
+    }
+    return switch (request.getMethod()) {
+      case "GET", "HEAD", "OPTIONS" -> EndpointClass.CHEAP;
+      default -> EndpointClass.WRITE;
+    };
+  }
+
+  private Object handlerOf(HttpServletRequest request) {
+    // the dispatcher servlet parses the path only after the filters, so it is parsed here and left to it again
+    boolean parsed = ServletRequestPathUtils.hasParsedRequestPath(request);
+    if (!parsed) {
+      ServletRequestPathUtils.parseAndCache(request);
+    }
+    try {
+      HandlerExecutionChain chain = handlerMapping.getHandler(request);
+      return chain == null ? null : chain.getHandler();
+    } catch (Exception e) {
+      // unsupported methods and media types are rejected by the dispatcher servlet anyway
+      LOG.debug("No handler for {} {}", request.getMethod(), request.getRequestURI(), e);
+      return null;
+    } finally {
+      if (!parsed) {
+        ServletRequestPathUtils.clearParsedRequestPath(request);
+      }
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of building the family tree of a horse.
+ */
+@Name("at.ac.tuwien.sepr.FamilyTreeBuild")
+@Label("Family Tree Build")
+@Category({"Wendy's Family Tree", "Service"})
+@Description("Building the family tree of a horse generation by generation")
+public class FamilyTreeBuildEvent extends Event {
+  @Label("Horse ID")
+  public long horseId;
+
+  @Label("Requested Generations")
+  public long generations;
+
+  @Label("Depth")
+  @Description("The number of generations that contained at least one horse")
+  public long depth;
+
+  @Label("Nodes")
+  @Description("The number of distinct horses in the tree")
+  public int nodes;
+}
@@ -0,0 +1,49 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Configuration class for a continuous flight recording.
+ * Starts a recording with the JDK's low-overhead {@code default} settings, including the application's own events,
+ * which keeps the data of the last {@code app.jfr.max-age} for the {@code GET /diagnostics/recording} endpoint.
+ * Not needed if the JVM is started with {@code -XX:StartFlightRecording}, the endpoint dumps that recording as well.
+ */
+@org.springframework.context.annotation.Configuration
+@ConditionalOnProperty(name = "app.jfr.continuous-recording", havingValue = "true")
+public class FlightRecordingConfiguration {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Starts the continuous recording.
+   *
+   * @param maxAge how long recorded data is kept
+   * @return the running recording, closed on shutdown
+   * @throws IOException    if the settings can not be read
+   * @throws ParseException if the settings can not be parsed
+   */
+  @Bean(destroyMethod = "close")
+  public Recording continuousRecording(@Value("${app.jfr.max-age:10m}") Duration maxAge)
+          throws IOException, ParseException {
+    Recording recording = new Recording(Configuration.getConfiguration("default"));
+    recording.setName("wendys-family-tree");
+    recording.setToDisk(true);
+    recording.setMaxAge(maxAge);
+    recording.enable(HorseSearchEvent.class);
+    recording.enable(DaoQueryEvent.class);
+    recording.enable(FamilyTreeBuildEvent.class);
+    recording.enable(ImageTransferEvent.class);
+    recording.start();
+    LOG.info("Started continuous flight recording keeping the last {}", maxAge);
+    return recording;
+  }
+}
@@ -0,0 +1,46 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a horse search, recording which search parameters were set instead of their values.
+ */
+@Name("at.ac.tuwien.sepr.HorseSearch")
+@Label("Horse Search")
+@Category({"Wendy's Family Tree", "Service"})
+@Description("A search for horses by the parameters of a HorseSearchDto")
+public class HorseSearchEvent extends Event {
+  @Label("Name")
+  public boolean name;
+
+  @Label("Description")
+  public boolean description;
+
+  @Label("Born Before")
+  public boolean bornBefore;
+
+  @Label("Date Of Birth")
+  public boolean dateOfBirth;
+
+  @Label("Sex")
+  public String sex;
+
+  @Label("Owner Name")
+  public boolean ownerName;
+
+  @Label("Descends From")
+  public boolean descendsFrom;
+
+  @Label("Fuzzy")
+  public boolean fuzzy;
+
+  @Label("Limit")
+  public int limit;
+
+  @Label("Results")
+  public int results;
+}
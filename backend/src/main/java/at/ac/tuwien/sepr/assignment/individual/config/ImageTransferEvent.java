@@ -0,0 +1,24 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of sending the image of a horse to a client.
+ */
+@Name("at.ac.tuwien.sepr.ImageTransfer")
+@Label("Image Transfer")
+@Category({"Wendy's Family Tree", "Web"})
+@Description("Sending the image of a horse to a client")
+public class ImageTransferEvent extends Event {
+  @Label("Horse ID")
+  public long horseId;
+
+  @Label("Bytes")
+  @DataAmount
+  public long bytes;
+}
@@ -0,0 +1,226 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Data source passing its connections, statements and executions through a list of {@link DataSourceInterceptor}s.
+ * However many interceptors are configured, every connection and statement is wrapped in a single proxy.
+ * Result sets are only wrapped while an interceptor observes executions.
+ */
+class InterceptingDataSource extends DelegatingDataSource {
+  private final DataSourceInterceptor[] interceptors;
+  private final boolean observesExecutions;
+
+  InterceptingDataSource(DataSource target, List<? extends DataSourceInterceptor> interceptors) {
+    super(target);
+    this.interceptors = interceptors.toArray(DataSourceInterceptor[]::new);
+    this.observesExecutions = interceptors.stream().anyMatch(DataSourceInterceptor::observesExecutions);
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    Runnable[] onClose = beforeConnection();
+    try {
+      return intercept(super.getConnection(), onClose);
+    } catch (SQLException | RuntimeException e) {
+      runAll(onClose);
+      throw e;
+    }
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    Runnable[] onClose = beforeConnection();
+    try {
+      return intercept(super.getConnection(username, password), onClose);
+    } catch (SQLException | RuntimeException e) {
+      runAll(onClose);
+      throw e;
+    }
+  }
+
+  /**
+   * Closes the pool behind this data source on shutdown.
+   * Spring only sees the wrapper, so without this method the connections of the pool would stay open.
+   *
+   * @throws Exception if closing the wrapped data source fails
+   */
+  public void close() throws Exception {
+    if (getTargetDataSource() instanceof AutoCloseable closeable) {
+      closeable.close();
+    }
+  }
+
+  private Runnable[] beforeConnection() throws SQLException {
+    Runnable[] onClose = new Runnable[interceptors.length];
+    try {
+      for (int i = 0; i < interceptors.length; i++) {
+        onClose[i] = interceptors[i].beforeConnection();
+      }
+    } catch (SQLException | RuntimeException e) {
+      runAll(onClose);
+      throw e;
+    }
+    return onClose;
+  }
+
+  private Connection intercept(Connection connection, Runnable[] onClose) {
+    AtomicBoolean closed = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+              if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                try {
+                  return invoke(connection, method, args);
+                } finally {
+                  runAll(onClose);
+                }
+              }
+              Object result = invoke(connection, method, args);
+              if (result instanceof Statement statement) {
+                // prepared statements carry their SQL from the start, plain statements get it on execution
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                return intercept(statement, method.getReturnType(), sql);
+              }
+              return result;
+            });
+  }
+
+  private Object intercept(Statement statement, Class<?> type, String preparedSql) throws SQLException {
+    Runnable[] onClose = new Runnable[interceptors.length];
+    try {
+      for (int i = 0; i < interceptors.length; i++) {
+        onClose[i] = interceptors[i].statementCreated(statement);
+      }
+    } catch (SQLException | RuntimeException e) {
+      runAll(onClose);
+      statement.close();
+      throw e;
+    }
+    return Proxy.newProxyInstance(
+            Statement.class.getClassLoader(),
+            new Class<?>[] {type},
+            (proxy, method, args) -> {
+              String name = method.getName();
+              if (observesExecutions && name.startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+                return execute(statement, method, args, sql);
+              }
+              if ("close".equals(name)) {
+                try {
+                  return invoke(statement, method, args);
+                } finally {
+                  runAll(onClose);
+                }
+              }
+              return invoke(statement, method, args);
+            });
+  }
+
+  private Object execute(Statement statement, Method method, Object[] args, String sql) throws Throwable {
+    long start = System.nanoTime();
+    Object result;
+    try {
+      result = invoke(statement, method, args);
+    } catch (Throwable e) {
+      executed(sql, System.nanoTime() - start, 0, true);
+      throw e;
+    }
+    long nanos = System.nanoTime() - start;
+    if (result instanceof ResultSet resultSet) {
+      return countRows(resultSet, sql, nanos);
+    }
+    executed(sql, nanos, rowsOf(result), false);
+    return result;
+  }
+
+  /**
+   * Counts the rows read from a result set by {@code next()}.
+   * The execution is reported once {@code next()} finds no further row, or the result set is closed before.
+   */
+  private ResultSet countRows(ResultSet resultSet, String sql, long executionNanos) {
+    long[] rows = new long[1];
+    boolean[] reported = new boolean[1];
+    return (ResultSet) Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            (proxy, method, args) -> {
+              Object result = invoke(resultSet, method, args);
+              String name = method.getName();
+              if ("next".equals(name)) {
+                if (Boolean.TRUE.equals(result)) {
+                  rows[0]++;
+                  return result;
+                }
+              } else if (!"close".equals(name)) {
+                return result;
+              }
+              // result sets are read by a single thread
+              if (!reported[0]) {
+                reported[0] = true;
+                executed(sql, executionNanos, rows[0], false);
+              }
+              return result;
+            });
+  }
+
+  private void executed(String sql, long nanos, long rows, boolean failed) {
+    if (sql == null) {
+      return;
+    }
+    for (DataSourceInterceptor interceptor : interceptors) {
+      if (interceptor.observesExecutions()) {
+        interceptor.executed(sql, nanos, rows, failed);
+      }
+    }
+  }
+
+  /**
+   * Runs the close callbacks in reverse order and clears them, so closing twice runs them once.
+   */
+  private static void runAll(Runnable[] callbacks) {
+    for (int i = callbacks.length - 1; i >= 0; i--) {
+      Runnable callback = callbacks[i];
+      callbacks[i] = null;
+      if (callback != null) {
+        callback.run();
+      }
+    }
+  }
+
+  private static long rowsOf(Object result) {
+    if (result instanceof Integer count) {
+      return Math.max(0, count);
+    }
+    if (result instanceof Long count) {
+      return Math.max(0, count);
+    }
+    if (result instanceof int[] counts) {
+      return Arrays.stream(counts).filter(count -> count > 0).sum();
+    }
+    if (result instanceof long[] counts) {
+      return Arrays.stream(counts).filter(count -> count > 0).sum();
+    }
+    return 0;
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
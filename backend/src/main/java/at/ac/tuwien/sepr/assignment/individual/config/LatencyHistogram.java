@@ -0,0 +1,106 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.LatencyDto;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ * Every power of two is split into {@value #SUB_BUCKETS} linear buckets, so a recorded latency is reported
+ * with a relative error of at most 12.5%, from one microsecond up to several centuries, in a fixed 4 KiB array.
+ * Recording only increments counters and never allocates.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+  private static final double MICROS_PER_MS = 1000.0;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumMicros = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder rows = new LongAdder();
+  private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a single call.
+   *
+   * @param nanos how long the call took
+   * @param rowCount how many rows the call returned, 0 if that does not apply
+   * @param error whether the call failed
+   */
+  public void record(long nanos, long rowCount, boolean error) {
+    long micros = Math.max(0, nanos / 1000);
+    counts.incrementAndGet(bucketOf(micros));
+    count.increment();
+    sumMicros.add(micros);
+    maxMicros.accumulate(micros);
+    if (rowCount > 0) {
+      rows.add(rowCount);
+    }
+    if (error) {
+      errors.increment();
+    }
+  }
+
+  /**
+   * Summarizes the calls recorded so far.
+   * Calls recorded while the summary is taken may be partially included.
+   *
+   * @return the summary
+   */
+  public LatencyDto snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    long calls = count.sum();
+    return new LatencyDto(
+            calls,
+            errors.sum(),
+            rows.sum(),
+            calls == 0 ? 0 : sumMicros.sum() / MICROS_PER_MS / calls,
+            percentile(snapshot, total, 0.5),
+            percentile(snapshot, total, 0.9),
+            percentile(snapshot, total, 0.99),
+            percentile(snapshot, total, 0.999),
+            maxMicros.get() / MICROS_PER_MS);
+  }
+
+  private static double percentile(long[] snapshot, long total, double quantile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(quantile * total);
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return highestValueOf(i) / MICROS_PER_MS;
+      }
+    }
+    return highestValueOf(snapshot.length - 1) / MICROS_PER_MS;
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (magnitude - SUB_BUCKET_BITS);
+    return lowest + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+  }
+}
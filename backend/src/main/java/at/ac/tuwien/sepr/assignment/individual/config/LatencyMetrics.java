@@ -0,0 +1,82 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.LatencyDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.MetricsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerLoaderStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.WriteQueueStatsDto;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the latency histograms of HTTP routes, DAO and service methods and SQL statements.
+ * Routes are recorded by the {@link LogFilter}, methods by the proxies of {@link MetricsConfiguration}
+ * and statements by the {@link StatementProfiler}.
+ */
+@Component
+public class LatencyMetrics {
+  private final ConcurrentMap<String, LatencyHistogram> routes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LatencyHistogram> methods = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LatencyHistogram> statements = new ConcurrentHashMap<>();
+  private final LongAdder imageBytesServed = new LongAdder();
+
+  /**
+   * Returns the histogram of an HTTP route, creating it on first use.
+   *
+   * @param route the HTTP method and path pattern of the route
+   * @return the histogram of the route
+   */
+  public LatencyHistogram route(String route) {
+    return routes.computeIfAbsent(route, r -> new LatencyHistogram());
+  }
+
+  /**
+   * Returns the histogram of a DAO or service method, creating it on first use.
+   *
+   * @param method the class, method name and parameter types
+   * @return the histogram of the method
+   */
+  public LatencyHistogram method(String method) {
+    return methods.computeIfAbsent(method, m -> new LatencyHistogram());
+  }
+
+  /**
+   * Returns the histogram of a normalized SQL statement, creating it on first use.
+   *
+   * @param statement the normalized statement
+   * @return the histogram of the statement
+   */
+  public LatencyHistogram statement(String statement) {
+    return statements.computeIfAbsent(statement, s -> new LatencyHistogram());
+  }
+
+  /**
+   * Counts bytes of horse images sent to a client.
+   *
+   * @param bytes the number of bytes sent
+   */
+  public void addImageBytesServed(long bytes) {
+    imageBytesServed.add(bytes);
+  }
+
+  /**
+   * Summarizes everything recorded since startup.
+   *
+   * @param ownerLoader the batching statistics of owner lookups, which are recorded by the loader itself
+   * @param writeQueue  the group commit statistics of the write queue, which are recorded by the queue itself
+   * @return the summary, ordered by name
+   */
+  public MetricsDto snapshot(OwnerLoaderStatsDto ownerLoader, WriteQueueStatsDto writeQueue) {
+    return new MetricsDto(snapshot(routes), snapshot(methods), snapshot(statements), imageBytesServed.sum(),
+            ownerLoader, writeQueue);
+  }
+
+  private static Map<String, LatencyDto> snapshot(Map<String, LatencyHistogram> histograms) {
+    Map<String, LatencyDto> snapshot = new TreeMap<>();
+    histograms.forEach((name, histogram) -> snapshot.put(name, histogram.snapshot()));
+    return snapshot;
+  }
+}
@@ -1,5 +1,6 @@
 package at.ac.tuwien.sepr.assignment.individual.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,14 +17,34 @@ public class LogConfiguration {
   /**
    * Registers the {@link LogFilter} to log HTTP requests.
    *
+   * @param metrics           the registry the latency of every route is recorded in
+   * @param writer            the writer appending the log lines
+   * @param profiler          the profiler counting the statements of every request
+   * @param successSampleRate the fraction of successful requests that are logged
    * @return a configured {@link FilterRegistrationBean} for logging
    */
   @Bean
-  public FilterRegistrationBean<OncePerRequestFilter> logFilter() {
-    var reg = new FilterRegistrationBean<OncePerRequestFilter>(new LogFilter());
+  public FilterRegistrationBean<OncePerRequestFilter> logFilter(
+      LatencyMetrics metrics,
+      RequestLogWriter writer,
+      StatementProfiler profiler,
+      @Value("${app.request-log.success-sample-rate:1.0}") double successSampleRate) {
+    var reg = new FilterRegistrationBean<OncePerRequestFilter>(new LogFilter(metrics, writer, profiler, successSampleRate));
     reg.addUrlPatterns("/*");
     reg.setName("logFilter");
-    reg.setOrder(Ordered.LOWEST_PRECEDENCE);
+    // run before the admission control and deadlines, so rejected and aborted requests are logged as well
+    reg.setOrder(Ordered.LOWEST_PRECEDENCE - 3);
     return reg;
   }
+
+  /**
+   * Creates the background writer of the request log.
+   *
+   * @param bufferSize the number of log lines that may wait for the writer before new ones are dropped
+   * @return the started writer, closed on shutdown
+   */
+  @Bean(destroyMethod = "close")
+  public RequestLogWriter requestLogWriter(@Value("${app.request-log.buffer-size:8192}") int bufferSize) {
+    return new RequestLogWriter(bufferSize);
+  }
 }
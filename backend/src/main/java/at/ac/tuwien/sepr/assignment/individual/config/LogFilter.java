@@ -7,30 +7,53 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 
 /**
  * ServletFilter to log every request.
+ * The log lines are written asynchronously by the {@link RequestLogWriter},
+ * successful requests are only logged with the configured sample rate, failed requests always.
+ * The line of an incoming request is logged on INFO level, like a successful request.
  */
 public class LogFilter extends OncePerRequestFilter {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-  private static final  DecimalFormat REQUEST_RUNTIME_FORMAT = new DecimalFormat("#.###", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
-  private static final Long NANOSECONDS_PER_MS = 1000_000L;
   private static final List<String> MUTED_PATHS = Arrays.asList(
       "/swagger-ui/",
-      "/swagger.yaml"
+      "/swagger.yaml",
+      "/metrics"
   );
+  // unique per process, so ids stay distinguishable across restarts writing to the same log
+  private static final String REQUEST_ID_PREFIX = Integer.toHexString(ThreadLocalRandom.current().nextInt(0x1000, 0x10000));
+  private static final AtomicLong REQUEST_COUNTER = new AtomicLong();
 
+  private final LatencyMetrics metrics;
+  private final RequestLogWriter writer;
+  private final StatementProfiler profiler;
+  private final double successSampleRate;
+
+  /**
+   * Creates the filter.
+   *
+   * @param metrics           the registry the latency of every route is recorded in
+   * @param writer            the writer appending the log lines
+   * @param profiler          the profiler counting the statements of every request
+   * @param successSampleRate the fraction of successful requests that are logged, between 0 and 1
+   */
+  public LogFilter(LatencyMetrics metrics, RequestLogWriter writer, StatementProfiler profiler, double successSampleRate) {
+    this.metrics = metrics;
+    this.writer = writer;
+    this.profiler = profiler;
+    this.successSampleRate = successSampleRate;
+  }
 
   @Override
   public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) {
@@ -38,7 +61,10 @@ public class LogFilter extends OncePerRequestFilter {
     var shouldLog = shouldLog(request);
     if (shouldLog) {
       populateMDC(request);
-      beforeRequest(request);
+      profiler.startRequest(MDC.get("r"));
+      if (LOG.isInfoEnabled()) {
+        offer(">>> ", request, -1, -1, -1);
+      }
     }
     try {
       //keep timestamp
@@ -50,36 +76,43 @@ public class LogFilter extends OncePerRequestFilter {
     } finally {
       //runtime = end - start
       runtime = System.nanoTime() - runtime;
+      recordRoute(request, response, runtime);
       if (shouldLog) {
-        afterRequest(request, response, runtime);
+        var statements = profiler.finishRequest(MDC.get("r"));
+        var status = response != null ? response.getStatus() : -1;
+        if (isSampled(status)) {
+          offer("<<< ", request, status, runtime, statements);
+        }
       }
       MDC.clear();
     }
   }
 
-  private void beforeRequest(HttpServletRequest request) {
-    var b = getUrlString(">>> ", request);
-    var agent = request.getHeader("User-Agent");
-    if (agent != null) {
-      b.append(" UA=").append(agent);
-    }
-    logWithRightCategory(200, b.toString());
+  private void offer(String prefix, HttpServletRequest request, int status, long runtime, int statements) {
+    writer.offer(prefix,
+        MDC.get("r"),
+        MDC.get("ip"),
+        request.getMethod(),
+        request.getRequestURI(),
+        request.getQueryString(),
+        request.getHeader("User-Agent"),
+        status,
+        runtime,
+        statements);
   }
 
-  private void afterRequest(HttpServletRequest request, HttpServletResponse response, Long runtime) {
-    var b = getUrlString("<<< ", request);
-    var logStatus = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
-    if (response != null) {
-      logStatus = response.getStatus();
-      MDC.put("status", "" + logStatus);
-      b.append(" status=").append(logStatus);
-    } else {
-      b.append(" NO RESPONSE");
-    }
-    var time = REQUEST_RUNTIME_FORMAT.format(runtime / NANOSECONDS_PER_MS);
-    MDC.put("duration", time);
-    b.append(" time=").append(time).append("ms");
-    logWithRightCategory(logStatus, b.toString());
+  private boolean isSampled(int status) {
+    var successful = status >= 200 && status < 400;
+    return !successful
+        || successSampleRate >= 1.0
+        || ThreadLocalRandom.current().nextDouble() < successSampleRate;
+  }
+
+  private void recordRoute(HttpServletRequest request, HttpServletResponse response, long runtime) {
+    var pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    var route = request.getMethod() + " " + (pattern != null ? pattern : "(unmatched)");
+    var failed = response == null || response.getStatus() >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+    metrics.route(route).record(runtime, 0, failed);
   }
 
   private void populateMDC(HttpServletRequest request) {
@@ -97,21 +130,7 @@ public class LogFilter extends OncePerRequestFilter {
   }
 
   private String generateRequestId() {
-    var uuid = UUID.randomUUID().toString();
-    uuid = uuid.substring(uuid.lastIndexOf("-") + 1);
-    return uuid;
-  }
-
-  private StringBuilder getUrlString(String prefix, HttpServletRequest request) {
-    var b = new StringBuilder(prefix)
-        .append(request.getMethod())
-        .append(" ")
-        .append(request.getRequestURI());
-    var qs = request.getQueryString();
-    if (qs != null) {
-      b.append("?").append(qs);
-    }
-    return b;
+    return REQUEST_ID_PREFIX + Long.toHexString(REQUEST_COUNTER.incrementAndGet());
   }
 
   private boolean shouldLog(HttpServletRequest request) {
@@ -125,13 +144,4 @@ public class LogFilter extends OncePerRequestFilter {
     return MUTED_PATHS.stream().noneMatch(url::startsWith);
   }
 
-  private void logWithRightCategory(int status, String logMsg) {
-    var x = status / 100;
-    switch (x) {
-      case 2, 3 -> LOG.info(logMsg);
-      case 1, 4 -> LOG.warn(logMsg);
-      default -> LOG.error(logMsg);
-    }
-  }
-
 }
@@ -0,0 +1,118 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
+import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Configuration class for method metrics.
+ * Wraps the DAOs and services in proxies recording the latency, returned rows and failures of every call
+ * in the {@link LatencyMetrics}.
+ * DAO calls are also emitted as {@link DaoQueryEvent}s to the flight recorder.
+ */
+@Configuration
+public class MetricsConfiguration {
+  private static final List<Class<?>> INSTRUMENTED_TYPES =
+          List.of(HorseDao.class, OwnerDao.class, HorseService.class, OwnerService.class);
+
+  /**
+   * Wraps every DAO and service in a proxy recording its calls.
+   *
+   * @param metrics the registry to record the calls in
+   * @return the post processor wrapping the DAOs and services
+   */
+  @Bean
+  public static BeanPostProcessor metricsPostProcessor(ObjectProvider<LatencyMetrics> metrics) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (INSTRUMENTED_TYPES.stream().noneMatch(type -> type.isInstance(bean))) {
+          return bean;
+        }
+        Class<?> targetClass = AopUtils.getTargetClass(bean);
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(bean);
+        proxyFactory.setInterfaces(ClassUtils.getAllInterfacesForClass(targetClass));
+        boolean dao = bean instanceof HorseDao || bean instanceof OwnerDao;
+        proxyFactory.addAdvice(recordingInterceptor(targetClass.getSimpleName(), dao, metrics));
+        return proxyFactory.getProxy();
+      }
+    };
+  }
+
+  private static MethodInterceptor recordingInterceptor(String className, boolean dao,
+                                                        ObjectProvider<LatencyMetrics> metrics) {
+    ConcurrentMap<Method, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    return invocation -> {
+      LatencyHistogram histogram = histograms.computeIfAbsent(invocation.getMethod(),
+              method -> metrics.getObject().method(signatureOf(className, method)));
+      DaoQueryEvent event = dao ? new DaoQueryEvent() : null;
+      if (event != null) {
+        event.begin();
+      }
+      long start = System.nanoTime();
+      boolean failed = true;
+      Object result = null;
+      try {
+        result = invocation.proceed();
+        failed = false;
+        return result;
+      } finally {
+        long rows = rowsOf(result);
+        histogram.record(System.nanoTime() - start, rows, failed);
+        if (event != null) {
+          event.end();
+          if (event.shouldCommit()) {
+            event.dao = className;
+            event.method = invocation.getMethod().getName();
+            event.rows = rows;
+            event.failed = failed;
+            event.commit();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Names a method by its class, name and parameter types, so overloads get histograms of their own.
+   *
+   * @param className the simple name of the class declaring the method
+   * @param method    the method
+   * @return the signature, for example {@code HorseJdbcDao.getById(long)}
+   */
+  static String signatureOf(String className, Method method) {
+    return Arrays.stream(method.getParameterTypes())
+            .map(Class::getSimpleName)
+            .collect(Collectors.joining(", ", className + "." + method.getName() + "(", ")"));
+  }
+
+  private static long rowsOf(Object result) {
+    if (result instanceof Collection<?> collection) {
+      return collection.size();
+    }
+    if (result instanceof Map<?, ?> map) {
+      return map.size();
+    }
+    // streams are consumed by the caller after the call returned, their rows can not be counted here
+    return result == null || result instanceof Stream<?> ? 0 : 1;
+  }
+}
@@ -0,0 +1,145 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import java.lang.invoke.MethodHandles;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Point in time by which the request handled by the current thread has to be done.
+ * The {@link DeadlineFilter} starts a deadline for every request, statements created while it is current
+ * get the remaining time as their query timeout and are cancelled as soon as the deadline expires.
+ * Work handed to other threads has to be wrapped with {@link #propagate(Supplier)} to stay bound by it.
+ */
+public final class RequestDeadline {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+  private final Duration timeout;
+  private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+  private volatile boolean expired;
+
+  RequestDeadline(Duration timeout) {
+    this.timeout = timeout;
+    this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+  }
+
+  /**
+   * Returns the deadline of the request handled by the current thread.
+   *
+   * @return the current deadline, or null if the thread is not bound by one
+   */
+  public static RequestDeadline current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Throws if the deadline of the current thread has passed, does nothing if there is no deadline.
+   *
+   * @throws DeadlineExceededException if the deadline has passed
+   */
+  public static void checkCurrent() {
+    RequestDeadline deadline = CURRENT.get();
+    if (deadline != null) {
+      deadline.check();
+    }
+  }
+
+  /**
+   * Binds a task to the deadline of the current thread, so it is respected by whichever thread runs the task.
+   *
+   * @param task the task to bind
+   * @param <T>  the type of the result of the task
+   * @return the bound task, or {@code task} itself if the current thread has no deadline
+   */
+  public static <T> Supplier<T> propagate(Supplier<T> task) {
+    RequestDeadline deadline = CURRENT.get();
+    if (deadline == null) {
+      return task;
+    }
+    return () -> {
+      RequestDeadline previous = deadline.bind();
+      try {
+        deadline.check();
+        return task.get();
+      } finally {
+        restore(previous);
+      }
+    };
+  }
+
+  /**
+   * Throws if this deadline has passed.
+   *
+   * @throws DeadlineExceededException if the deadline has passed
+   */
+  public void check() {
+    if (expired || System.nanoTime() - deadlineNanos >= 0) {
+      throw new DeadlineExceededException("Request did not finish within %d ms".formatted(timeout.toMillis()));
+    }
+  }
+
+  /**
+   * Returns the time left until this deadline passes.
+   *
+   * @return the remaining time in nanoseconds, zero or negative once the deadline has passed
+   */
+  public long remainingNanos() {
+    return expired ? 0 : deadlineNanos - System.nanoTime();
+  }
+
+  /**
+   * Applies the remaining time as query timeout of a statement and cancels it once the deadline expires.
+   *
+   * @param statement the statement about to be executed
+   * @throws SQLException              if the query timeout can not be set
+   * @throws DeadlineExceededException if the deadline has already passed
+   */
+  void register(Statement statement) throws SQLException {
+    check();
+    long remainingNanos = deadlineNanos - System.nanoTime();
+    // JDBC timeouts have a resolution of seconds, the watchdog cancels the statement on time anyway
+    statement.setQueryTimeout((int) Math.max(1, (remainingNanos + 999_999_999L) / 1_000_000_000L));
+    statements.add(statement);
+  }
+
+  void unregister(Statement statement) {
+    statements.remove(statement);
+  }
+
+  /**
+   * Marks the deadline as passed and cancels every statement still registered.
+   */
+  void expire() {
+    expired = true;
+    for (Statement statement : statements) {
+      try {
+        statement.cancel();
+        LOG.warn("Cancelled statement after the request deadline of {} ms passed", timeout.toMillis());
+      } catch (SQLException e) {
+        LOG.debug("Cancelling statement failed", e);
+      }
+    }
+  }
+
+  RequestDeadline bind() {
+    RequestDeadline previous = CURRENT.get();
+    CURRENT.set(this);
+    return previous;
+  }
+
+  static void restore(RequestDeadline previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+}
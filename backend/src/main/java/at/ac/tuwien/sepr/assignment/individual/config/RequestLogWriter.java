@@ -0,0 +1,253 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Writes request log lines on a background thread.
+ * Request threads only copy the references of a finished request into a preallocated slot of a bounded ring buffer,
+ * formatting and appending the line to the log happens on the writer thread.
+ * When the buffer is full, entries are dropped instead of blocking the request, the writer reports how many.
+ * An idle writer parks until the next offer wakes it up, so it costs nothing while no requests arrive.
+ * Lines are logged in the category of the {@link LogFilter}, with the same MDC entries it sets on the request thread.
+ */
+public class RequestLogWriter implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(LogFilter.class);
+  private static final long FLUSH_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Entry[] slots;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+  private final LongAdder dropped = new LongAdder();
+  private final StringBuilder line = new StringBuilder(256);
+  private final Thread writer;
+  private volatile boolean running = true;
+  private volatile boolean idle;
+
+  /**
+   * Creates the writer and starts its thread.
+   *
+   * @param capacity the number of entries the buffer holds, rounded up to a power of two
+   */
+  public RequestLogWriter(int capacity) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    this.slots = new Entry[size];
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      slots[i] = new Entry();
+    }
+    this.writer = Thread.ofPlatform()
+            .name("request-log-writer")
+            .daemon(true)
+            .start(this::drainLoop);
+  }
+
+  /**
+   * Hands the log line of a finished request to the writer thread.
+   *
+   * @param prefix       the direction marker, {@code >>> } for incoming or {@code <<< } for finished requests
+   * @param requestId    the correlation id of the request
+   * @param ip           the client address
+   * @param method       the HTTP method
+   * @param uri          the request URI
+   * @param query        the query string, may be null
+   * @param userAgent    the user agent, may be null
+   * @param status       the response status, or -1 if there is none yet
+   * @param runtimeNanos how long the request took, or -1 if it has not finished yet
+   * @param statements   the number of SQL statements the request executed, or -1 if it has not finished yet
+   * @return false if the buffer was full and the line was dropped
+   */
+  public boolean offer(String prefix, String requestId, String ip, String method, String uri, String query,
+                       String userAgent, int status, long runtimeNanos, int statements) {
+    long sequence;
+    do {
+      sequence = tail.get();
+      if (sequence - head >= slots.length) {
+        dropped.increment();
+        return false;
+      }
+    } while (!tail.compareAndSet(sequence, sequence + 1));
+
+    Entry entry = slots[(int) (sequence & mask)];
+    entry.prefix = prefix;
+    entry.requestId = requestId;
+    entry.ip = ip;
+    entry.method = method;
+    entry.uri = uri;
+    entry.query = query;
+    entry.userAgent = userAgent;
+    entry.status = status;
+    entry.runtimeNanos = runtimeNanos;
+    entry.statements = statements;
+    // publishing the sequence makes the fields above visible to the writer
+    entry.sequence = sequence;
+    if (idle) {
+      LockSupport.unpark(writer);
+    }
+    return true;
+  }
+
+  /**
+   * Waits until the lines offered so far are written, checking every {@link #FLUSH_POLL_NANOS} nanoseconds.
+   */
+  public void flush() {
+    long offered = tail.get();
+    while (head < offered && writer.isAlive()) {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(this, FLUSH_POLL_NANOS);
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(writer);
+    writer.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  private void drainLoop() {
+    while (running) {
+      if (drain()) {
+        continue;
+      }
+      idle = true;
+      // checked again after announcing the idle state, an offer either sees it and unparks or is seen here
+      if (!hasPending() && running) {
+        LockSupport.park(this);
+      }
+      idle = false;
+    }
+    drain();
+  }
+
+  private boolean hasPending() {
+    long next = head;
+    return slots[(int) (next & mask)].sequence == next;
+  }
+
+  private boolean drain() {
+    boolean wroteAny = false;
+    while (true) {
+      long next = head;
+      Entry entry = slots[(int) (next & mask)];
+      if (entry.sequence != next) {
+        break;
+      }
+      try {
+        write(entry);
+      } catch (RuntimeException e) {
+        // a failing line must not stop the writer, or every later request would fill the buffer and be dropped
+        LOG.error("Could not write request log line of request {}", entry.requestId, e);
+      } finally {
+        MDC.clear();
+      }
+      entry.clear();
+      head = next + 1;
+      wroteAny = true;
+    }
+    long droppedLines = dropped.sumThenReset();
+    if (droppedLines > 0) {
+      LOG.warn("Dropped {} request log lines, the request log buffer was full", droppedLines);
+    }
+    return wroteAny;
+  }
+
+  private void write(Entry entry) {
+    MDC.put("r", entry.requestId);
+    MDC.put("ip", entry.ip);
+    MDC.put("http_request_method", entry.method);
+    MDC.put("http_request_url", entry.uri);
+    MDC.put("http_request_query", entry.query);
+    MDC.put("http_request_ua", entry.userAgent);
+
+    line.setLength(0);
+    line.append(entry.prefix).append(entry.method).append(' ').append(entry.uri);
+    if (entry.query != null) {
+      line.append('?').append(entry.query);
+    }
+    if (entry.runtimeNanos < 0) {
+      if (entry.userAgent != null) {
+        line.append(" UA=").append(entry.userAgent);
+      }
+    } else {
+      if (entry.status < 0) {
+        line.append(" NO RESPONSE");
+      } else {
+        MDC.put("status", Integer.toString(entry.status));
+        line.append(" status=").append(entry.status);
+      }
+      int durationStart = line.length() + " time=".length();
+      line.append(" time=");
+      appendMillis(line, entry.runtimeNanos);
+      MDC.put("duration", line.substring(durationStart));
+      line.append("ms queries=").append(entry.statements);
+    }
+
+    int status = entry.status < 0 && entry.runtimeNanos >= 0 ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : entry.status;
+    String message = line.toString();
+    if (entry.runtimeNanos < 0) {
+      // incoming requests are only offered while info logging is enabled
+      LOG.info(message);
+      return;
+    }
+    switch (status / 100) {
+      case 2, 3 -> LOG.info(message);
+      case 1, 4 -> LOG.warn(message);
+      default -> LOG.error(message);
+    }
+  }
+
+  /**
+   * Appends a duration in milliseconds with up to three decimals and without trailing zeros,
+   * like {@code new DecimalFormat("#.###")} but without its synchronization and allocations.
+   */
+  static void appendMillis(StringBuilder target, long nanos) {
+    long micros = (nanos + 500) / 1000;
+    target.append(micros / 1000);
+    int fraction = (int) (micros % 1000);
+    if (fraction == 0) {
+      return;
+    }
+    target.append('.');
+    int divisor = 100;
+    while (fraction > 0) {
+      target.append((char) ('0' + fraction / divisor));
+      fraction %= divisor;
+      divisor /= 10;
+    }
+  }
+
+  /**
+   * Slot of the ring buffer, reused for every request log line passing through it.
+   */
+  private static final class Entry {
+    private volatile long sequence = -1;
+    private String prefix;
+    private String requestId;
+    private String ip;
+    private String method;
+    private String uri;
+    private String query;
+    private String userAgent;
+    private int status;
+    private long runtimeNanos;
+    private int statements;
+
+    private void clear() {
+      prefix = null;
+      requestId = null;
+      ip = null;
+      method = null;
+      uri = null;
+      query = null;
+      userAgent = null;
+    }
+  }
+}
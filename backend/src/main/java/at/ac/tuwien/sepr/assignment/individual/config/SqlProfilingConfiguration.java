@@ -0,0 +1,50 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration class for SQL profiling.
+ * Intercepts every {@link DataSource} so that each executed statement is timed and reported to the
+ * {@link StatementProfiler}, together with the number of rows its result set returned or its update changed.
+ * Activated by {@code app.sql-profiler.enabled=true}, which the tests set to enforce their request budgets.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sql-profiler.enabled", havingValue = "true")
+public class SqlProfilingConfiguration {
+
+  /**
+   * Creates the interceptor reporting every execution to the profiler.
+   *
+   * @param profiler the profiler the executions are reported to, resolved on the first execution
+   * @return the profiling interceptor
+   */
+  @Bean
+  ProfilingInterceptor profilingInterceptor(ObjectProvider<StatementProfiler> profiler) {
+    return new ProfilingInterceptor(profiler);
+  }
+
+  /**
+   * Interceptor reporting executed statements to the {@link StatementProfiler}.
+   */
+  static class ProfilingInterceptor implements DataSourceInterceptor {
+    private final ObjectProvider<StatementProfiler> profiler;
+
+    ProfilingInterceptor(ObjectProvider<StatementProfiler> profiler) {
+      this.profiler = profiler;
+    }
+
+    @Override
+    public boolean observesExecutions() {
+      return true;
+    }
+
+    @Override
+    public void executed(String sql, long nanos, long rows, boolean failed) {
+      profiler.getObject().record(sql, nanos, rows, failed);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records every JDBC statement executed through the {@link SqlProfilingConfiguration} data source.
+ * Statements are aggregated by their normalized text, with literals replaced by {@code ?},
+ * into the statement histograms of the {@link LatencyMetrics}.
+ * Statements slower than {@code app.sql-profiler.slow-query-threshold} are logged in the {@code slow-query} category.
+ * Statements of an HTTP request are counted under its MDC correlation id, a statement executed at least
+ * {@code app.sql-profiler.n-plus-one-threshold} times within one request is reported as a possible N+1 pattern.
+ */
+@Component
+public class StatementProfiler {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Logger SLOW_QUERY_LOG = LoggerFactory.getLogger("slow-query");
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+  private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+  private static final int MAX_CACHED_STATEMENTS = 1024;
+
+  private final LatencyMetrics metrics;
+  private final long slowQueryThresholdNanos;
+  private final int nPlusOneThreshold;
+  private final ConcurrentMap<String, String> normalizedBySql = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, RequestStatements> statementsByRequest = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor of the StatementProfiler.
+   *
+   * @param metrics            the registry the statement latencies are recorded in
+   * @param slowQueryThreshold statements taking longer are logged as slow queries
+   * @param nPlusOneThreshold  how often a statement may run within one request before it is reported
+   */
+  public StatementProfiler(LatencyMetrics metrics,
+                           @Value("${app.sql-profiler.slow-query-threshold:100ms}") Duration slowQueryThreshold,
+                           @Value("${app.sql-profiler.n-plus-one-threshold:10}") int nPlusOneThreshold) {
+    this.metrics = metrics;
+    this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    this.nPlusOneThreshold = nPlusOneThreshold;
+  }
+
+  /**
+   * Records a single execution of a statement.
+   *
+   * @param sql    the statement as it was sent to the database
+   * @param nanos  how long the execution took
+   * @param rows   the number of rows read or written
+   * @param failed whether the execution threw
+   */
+  public void record(String sql, long nanos, long rows, boolean failed) {
+    String normalized = normalize(sql);
+    metrics.statement(normalized).record(nanos, rows, failed);
+    if (nanos >= slowQueryThresholdNanos) {
+      SLOW_QUERY_LOG.warn("Slow query took {} ms and returned {} rows: {}", nanos / 1_000_000, rows, normalized);
+    }
+    String requestId = MDC.get("r");
+    RequestStatements statements = requestId == null ? null : statementsByRequest.get(requestId);
+    if (statements != null) {
+      statements.add(normalized);
+    }
+  }
+
+  /**
+   * Starts counting the statements executed under the MDC correlation id of a request.
+   * Statements of a request that was not started, or already finished, are not counted.
+   *
+   * @param requestId the MDC correlation id of the request
+   */
+  public void startRequest(String requestId) {
+    statementsByRequest.put(requestId, new RequestStatements());
+  }
+
+  /**
+   * Ends the statement counting of a request and reports its possible N+1 patterns.
+   *
+   * @param requestId the MDC correlation id of the request, may be null
+   * @return the number of statements the request executed
+   */
+  public int finishRequest(String requestId) {
+    if (requestId == null) {
+      return 0;
+    }
+    RequestStatements statements = statementsByRequest.remove(requestId);
+    if (statements == null) {
+      return 0;
+    }
+    statements.countByStatement.forEach((statement, count) -> {
+      if (count.get() >= nPlusOneThreshold) {
+        LOG.warn("Possible N+1 query, executed {} times in one request: {}", count.get(), statement);
+      }
+    });
+    return statements.total.intValue();
+  }
+
+  /**
+   * Normalizes a statement so that executions differing only in their literals are aggregated together.
+   *
+   * @param sql the statement
+   * @return the statement with literals replaced by {@code ?}, parameter lists and whitespace collapsed
+   */
+  String normalize(String sql) {
+    String normalized = normalizedBySql.get(sql);
+    if (normalized != null) {
+      return normalized;
+    }
+    normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+    normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+    normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    // IN lists of different lengths are the same statement
+    normalized = PARAMETER_LIST.matcher(normalized).replaceAll("?, ...");
+    if (normalizedBySql.size() < MAX_CACHED_STATEMENTS) {
+      normalizedBySql.put(sql, normalized);
+    }
+    return normalized;
+  }
+
+  /**
+   * Statements executed within one request.
+   */
+  private static final class RequestStatements {
+    private final LongAdder total = new LongAdder();
+    private final Map<String, AtomicInteger> countByStatement = new ConcurrentHashMap<>();
+
+    private void add(String statement) {
+      total.increment();
+      countByStatement.computeIfAbsent(statement, s -> new AtomicInteger()).incrementAndGet();
+    }
+  }
+}
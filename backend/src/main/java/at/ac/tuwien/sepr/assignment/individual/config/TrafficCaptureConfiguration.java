@@ -0,0 +1,56 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Configuration class for traffic capture.
+ * Registers a filter journaling every admitted request, to be replayed with the {@code TrafficReplay} tool.
+ * Activated by {@code app.traffic-capture.enabled=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.traffic-capture.enabled", havingValue = "true")
+public class TrafficCaptureConfiguration {
+
+  /**
+   * Registers the {@link TrafficCaptureFilter} after the admission control and before the deadlines.
+   *
+   * @param writer      the writer appending the captured requests to the journal
+   * @param maxBodySize bodies larger than this are not captured
+   * @return a configured {@link FilterRegistrationBean} for traffic capture
+   */
+  @Bean
+  public FilterRegistrationBean<OncePerRequestFilter> trafficCaptureFilter(
+      TrafficCaptureWriter writer,
+      @Value("${app.traffic-capture.max-body-size:1MB}") DataSize maxBodySize) {
+    var reg = new FilterRegistrationBean<OncePerRequestFilter>(
+        new TrafficCaptureFilter(writer, (int) maxBodySize.toBytes()));
+    reg.addUrlPatterns("/*");
+    reg.setName("trafficCaptureFilter");
+    // run after the admission control, so rejected requests are not buffered while the server is overloaded,
+    // and before the deadlines, so reading the captured body does not count against them
+    reg.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+    return reg;
+  }
+
+  /**
+   * Creates the background writer of the traffic journal.
+   *
+   * @param directory  the directory the journal is created in
+   * @param bufferSize the number of requests that may wait for the writer before new ones are dropped
+   * @return the started writer, closed on shutdown
+   */
+  @Bean(destroyMethod = "close")
+  public TrafficCaptureWriter trafficCaptureWriter(
+      @Value("${app.traffic-capture.directory:./log}") Path directory,
+      @Value("${app.traffic-capture.buffer-size:4096}") int bufferSize) {
+    return new TrafficCaptureWriter(directory, bufferSize);
+  }
+}
@@ -0,0 +1,205 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * ServletFilter capturing every request into the {@link TrafficJournal} of a {@link TrafficCaptureWriter},
+ * so the traffic can be replayed against another build.
+ * Bodies of writes are captured up to a maximum size.
+ * Plain bodies are read before the request is handled and handed on from memory.
+ * Multipart bodies are captured from their parsed parts and stored re-encoded with a fixed boundary,
+ * because the servlet container parses them from its own stream.
+ */
+public class TrafficCaptureFilter extends OncePerRequestFilter {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final List<String> MUTED_PATHS = List.of("/swagger-ui/", "/swagger.yaml", "/metrics", "/diagnostics");
+  private static final Set<String> METHODS_WITH_BODY = Set.of("POST", "PUT", "PATCH", "DELETE");
+  private static final String BOUNDARY = "----wendys-family-tree-capture";
+
+  private final TrafficCaptureWriter writer;
+  private final int maxBodySize;
+
+  /**
+   * Creates the filter.
+   *
+   * @param writer      the writer appending the captured requests to the journal
+   * @param maxBodySize bodies larger than this are not captured, the request is journaled without its body
+   */
+  public TrafficCaptureFilter(TrafficCaptureWriter writer, int maxBodySize) {
+    this.writer = writer;
+    this.maxBodySize = maxBodySize;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    var url = request.getRequestURI();
+    return MUTED_PATHS.stream().anyMatch(url::startsWith);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) {
+    long arrival = System.nanoTime();
+    byte[] body = new byte[0];
+    String contentType = request.getContentType();
+    HttpServletRequest handled = request;
+    try {
+      if (METHODS_WITH_BODY.contains(request.getMethod())) {
+        if (contentType != null && contentType.startsWith("multipart/")) {
+          body = captureParts(request);
+          contentType = "multipart/form-data; boundary=" + BOUNDARY;
+        } else {
+          CachedBodyRequest cached = new CachedBodyRequest(request, maxBodySize);
+          body = cached.capturedBody();
+          handled = cached;
+        }
+      }
+      filterChain.doFilter(handled, response);
+    } catch (ServletException | IOException e) {
+      throw new FatalException(e);
+    } finally {
+      writer.offer(new TrafficJournal.Entry(
+              writer.arrivalMicros(arrival),
+              request.getMethod(),
+              request.getRequestURI(),
+              request.getQueryString(),
+              contentType,
+              request.getHeader(HttpHeaders.ACCEPT),
+              request.getHeader(HttpHeaders.ACCEPT_ENCODING),
+              request.getHeader(HttpHeaders.IF_NONE_MATCH),
+              request.getHeader(HttpHeaders.IF_MATCH),
+              body,
+              response.getStatus(),
+              (System.nanoTime() - arrival) / 1000));
+    }
+  }
+
+  /**
+   * Parses the parts, which the container keeps for the handler, and encodes them again as multipart body.
+   *
+   * @return the encoded parts, or null if they are too large or can not be parsed
+   */
+  private byte[] captureParts(HttpServletRequest request) {
+    try {
+      var out = new ByteArrayOutputStream();
+      for (Part part : request.getParts()) {
+        if (out.size() + part.getSize() > maxBodySize) {
+          return null;
+        }
+        out.writeBytes(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + part.getName() + "\""
+                + (part.getSubmittedFileName() != null ? "; filename=\"" + part.getSubmittedFileName() + "\"" : "")
+                + "\r\n"
+                + (part.getContentType() != null ? "Content-Type: " + part.getContentType() + "\r\n" : "")
+                + "\r\n").getBytes(StandardCharsets.UTF_8));
+        try (InputStream content = part.getInputStream()) {
+          content.transferTo(out);
+        }
+        out.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+      }
+      out.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+      return out.toByteArray();
+    } catch (IOException | ServletException | IllegalStateException e) {
+      // the handler runs into the same problem and answers it, the request is journaled without its body
+      LOG.debug("Could not capture multipart body of {} {}: {}", request.getMethod(), request.getRequestURI(), e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Request whose body was read into memory up to the maximum capture size.
+   * A longer body is handed on from memory followed by the rest of the original stream.
+   */
+  private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+    private final byte[] head;
+    private final boolean complete;
+
+    private CachedBodyRequest(HttpServletRequest request, int maxBodySize) throws IOException {
+      super(request);
+      this.head = request.getInputStream().readNBytes(maxBodySize + 1);
+      this.complete = head.length <= maxBodySize;
+    }
+
+    private byte[] capturedBody() {
+      return complete ? head : null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+      ByteArrayInputStream captured = new ByteArrayInputStream(head);
+      InputStream body = complete ? captured : new SequenceInputStream(captured, super.getInputStream());
+      return new ServletInputStream() {
+        private boolean finished;
+
+        @Override
+        public int read() throws IOException {
+          int b = body.read();
+          finished = b < 0;
+          return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          int read = body.read(buffer, offset, length);
+          finished = read < 0;
+          return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+          return finished || complete && captured.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        /**
+         * Hands the body to the listener at once.
+         * It is in memory, or its rest is read blocking from the original stream, so it is always ready.
+         */
+        @Override
+        public void setReadListener(ReadListener readListener) {
+          try {
+            readListener.onDataAvailable();
+            if (isFinished()) {
+              readListener.onAllDataRead();
+            }
+          } catch (IOException | RuntimeException e) {
+            readListener.onError(e);
+          }
+        }
+      };
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      String encoding = getCharacterEncoding();
+      Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+      return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+  }
+}
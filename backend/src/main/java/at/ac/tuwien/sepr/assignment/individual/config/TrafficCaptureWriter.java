@@ -0,0 +1,106 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends captured requests to a {@link TrafficJournal} on a background thread.
+ * Requests wait in a bounded queue, when it is full they are dropped instead of blocking the request thread.
+ * Every start of the application writes a new journal file.
+ */
+public class TrafficCaptureWriter implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final BlockingQueue<TrafficJournal.Entry> queue;
+  private final TrafficJournal.Writer journal;
+  private final Path file;
+  private final long startNanos = System.nanoTime();
+  private final LongAdder dropped = new LongAdder();
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  /**
+   * Creates the journal file and starts the writer thread.
+   *
+   * @param directory the directory the journal is created in
+   * @param capacity  the number of requests that may wait for the writer
+   */
+  public TrafficCaptureWriter(Path directory, int capacity) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.file = directory.resolve("traffic-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".journal");
+    try {
+      Files.createDirectories(directory);
+      this.journal = new TrafficJournal.Writer(file, System.currentTimeMillis());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not create traffic journal " + file, e);
+    }
+    this.writer = Thread.ofPlatform()
+            .name("traffic-capture-writer")
+            .daemon(true)
+            .start(this::drainLoop);
+    LOG.info("Capturing traffic to {}", file);
+  }
+
+  /**
+   * Returns the arrival time of a request as stored in the journal.
+   *
+   * @param nanoTime the {@link System#nanoTime()} the request arrived at
+   * @return the microseconds since the capture started
+   */
+  public long arrivalMicros(long nanoTime) {
+    return (nanoTime - startNanos) / 1000;
+  }
+
+  /**
+   * Hands a finished request to the writer thread.
+   *
+   * @param entry the captured request
+   */
+  public void offer(TrafficJournal.Entry entry) {
+    if (!queue.offer(entry)) {
+      dropped.increment();
+    }
+  }
+
+  @Override
+  public void close() throws InterruptedException, IOException {
+    running = false;
+    writer.join(TimeUnit.SECONDS.toMillis(5));
+    journal.close();
+    LOG.info("Traffic journal {} closed", file);
+  }
+
+  private void drainLoop() {
+    try {
+      while (running || !queue.isEmpty()) {
+        TrafficJournal.Entry entry = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (entry != null) {
+          journal.append(entry);
+        }
+        if (queue.isEmpty()) {
+          journal.flush();
+        }
+        long droppedRequests = dropped.sumThenReset();
+        if (droppedRequests > 0) {
+          LOG.warn("Dropped {} captured requests, the traffic capture queue was full", droppedRequests);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      LOG.error("Writing the traffic journal {} failed, capturing stopped", file, e);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Binary journal of captured HTTP requests, written by the {@link TrafficCaptureFilter} and read by the replay tool.
+ *
+ * <p>The journal starts with the magic bytes {@code WFTJ}, a format version and the wall clock time the capture
+ * started at, in epoch milliseconds.
+ * Every request follows as one entry of variable length integers and length prefixed UTF-8 strings and bytes:
+ * its arrival in microseconds after the start, method, URI, query string, content type,
+ * the {@code Accept}, {@code Accept-Encoding}, {@code If-None-Match} and {@code If-Match} headers, body,
+ * response status and server side duration in microseconds.
+ * These headers decide the format of the answer and whether it is a full one, so a replay has to send them as well.
+ * Journals of version 1 have no headers, they are read with the headers empty.
+ * Entries are appended when a request finishes, so they are not necessarily ordered by arrival.
+ */
+public final class TrafficJournal {
+  private static final int MAGIC = 0x5746544A;
+  private static final int VERSION = 2;
+
+  private TrafficJournal() {
+  }
+
+  /**
+   * A captured request.
+   *
+   * @param arrivalMicros  when the request arrived, relative to the start of the capture
+   * @param method         the HTTP method
+   * @param uri            the request URI
+   * @param query          the query string, empty if there was none
+   * @param contentType    the content type of the body, empty if there was none
+   * @param accept         the {@code Accept} header, empty if there was none
+   * @param acceptEncoding the {@code Accept-Encoding} header, empty if there was none
+   * @param ifNoneMatch    the {@code If-None-Match} header, empty if there was none
+   * @param ifMatch        the {@code If-Match} header, empty if there was none
+   * @param body           the body, empty for requests without one, null if it was too large to capture
+   * @param status         the response status
+   * @param durationMicros how long the server took to answer
+   */
+  public record Entry(long arrivalMicros, String method, String uri, String query, String contentType,
+                      String accept, String acceptEncoding, String ifNoneMatch, String ifMatch, byte[] body,
+                      int status, long durationMicros) {
+  }
+
+  /**
+   * The content of a journal.
+   *
+   * @param startedAtEpochMillis the wall clock time the capture started at
+   * @param entries              the captured requests, ordered by arrival
+   */
+  public record Capture(long startedAtEpochMillis, List<Entry> entries) {
+  }
+
+  /**
+   * Appends entries to a new journal file.
+   * Not thread safe, the capture filter writes from a single thread.
+   */
+  public static final class Writer implements AutoCloseable {
+    private final DataOutputStream out;
+
+    /**
+     * Creates the journal file and writes its header.
+     *
+     * @param file                 the file to create
+     * @param startedAtEpochMillis the wall clock time the capture started at
+     * @throws IOException if the file can not be created
+     */
+    public Writer(Path file, long startedAtEpochMillis) throws IOException {
+      this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      out.writeLong(startedAtEpochMillis);
+    }
+
+    /**
+     * Appends an entry.
+     *
+     * @param entry the captured request
+     * @throws IOException if writing fails
+     */
+    public void append(Entry entry) throws IOException {
+      writeVarLong(out, entry.arrivalMicros());
+      writeString(out, entry.method());
+      writeString(out, entry.uri());
+      writeString(out, entry.query());
+      writeString(out, entry.contentType());
+      writeString(out, entry.accept());
+      writeString(out, entry.acceptEncoding());
+      writeString(out, entry.ifNoneMatch());
+      writeString(out, entry.ifMatch());
+      if (entry.body() == null) {
+        writeVarLong(out, 0);
+      } else {
+        // 0 marks a body too large to capture, so lengths are stored shifted by one
+        writeVarLong(out, entry.body().length + 1L);
+        out.write(entry.body());
+      }
+      writeVarLong(out, entry.status());
+      writeVarLong(out, entry.durationMicros());
+    }
+
+    /**
+     * Writes buffered entries to the file.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a complete journal.
+   * A journal cut off in the middle of an entry, because the application was killed while capturing,
+   * is read up to its last complete entry.
+   *
+   * @param file the journal file
+   * @return the captured requests, ordered by arrival
+   * @throws IOException if the file can not be read or is no journal
+   */
+  public static Capture read(Path file) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+      int version = in.readInt() == MAGIC ? in.readByte() : -1;
+      if (version < 1 || version > VERSION) {
+        throw new IOException(file + " is no traffic journal of a supported version");
+      }
+      long startedAt = in.readLong();
+      List<Entry> entries = new ArrayList<>();
+      while (true) {
+        try {
+          entries.add(readEntry(in, version));
+        } catch (EOFException e) {
+          break;
+        }
+      }
+      entries.sort(Comparator.comparingLong(Entry::arrivalMicros));
+      return new Capture(startedAt, entries);
+    }
+  }
+
+  private static Entry readEntry(DataInputStream in, int version) throws IOException {
+    long arrival = readVarLong(in);
+    String method = readString(in);
+    String uri = readString(in);
+    String query = readString(in);
+    String contentType = readString(in);
+    boolean withHeaders = version >= 2;
+    String accept = withHeaders ? readString(in) : "";
+    String acceptEncoding = withHeaders ? readString(in) : "";
+    String ifNoneMatch = withHeaders ? readString(in) : "";
+    String ifMatch = withHeaders ? readString(in) : "";
+    long bodyLength = readVarLong(in);
+    byte[] body = bodyLength == 0 ? null : in.readNBytes((int) (bodyLength - 1));
+    if (body != null && body.length != bodyLength - 1) {
+      throw new EOFException();
+    }
+    int status = (int) readVarLong(in);
+    long duration = readVarLong(in);
+    return new Entry(arrival, method, uri, query, contentType, accept, acceptEncoding, ifNoneMatch, ifMatch,
+            body, status, duration);
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = (int) readVarLong(in);
+    byte[] bytes = in.readNBytes(length);
+    if (bytes.length != length) {
+      throw new EOFException();
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long readVarLong(InputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+}
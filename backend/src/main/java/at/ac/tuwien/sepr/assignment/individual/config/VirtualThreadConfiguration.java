@@ -0,0 +1,63 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration for running request handling on virtual threads.
+ * Spring Boot dispatches every request on its own virtual thread once {@code spring.threads.virtual.enabled=true} is set,
+ * so blocking JDBC calls and image transfers no longer hold a platform thread.
+ * The H2 driver synchronizes on its session while executing a statement, which pins the virtual thread to its carrier.
+ * To keep pinned threads from occupying every carrier, the number of connections handed out at the same time
+ * is limited to {@code app.virtual-threads.jdbc-permits}, which defaults to the number of processors.
+ * Waiting for a permit does not pin, because {@link Semaphore} parks virtual threads without holding a monitor.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  /**
+   * Creates the interceptor limiting the connections every {@link DataSource} hands out at once.
+   *
+   * @param permits the number of connections that may be in use at the same time, 0 for the number of processors
+   * @return the permit interceptor
+   */
+  @Bean
+  PermitInterceptor permitInterceptor(@Value("${app.virtual-threads.jdbc-permits:0}") int permits) {
+    int effectivePermits = permits > 0 ? permits : Runtime.getRuntime().availableProcessors();
+    LOG.info("Limiting data sources to {} concurrent connections for virtual threads", effectivePermits);
+    return new PermitInterceptor(effectivePermits);
+  }
+
+  /**
+   * Interceptor handing out a connection only while holding one of a fixed number of permits.
+   * The permit is returned when the connection is closed.
+   */
+  static class PermitInterceptor implements DataSourceInterceptor {
+    private final Semaphore permits;
+
+    PermitInterceptor(int permits) {
+      this.permits = new Semaphore(permits, true);
+    }
+
+    @Override
+    public Runnable beforeConnection() throws SQLException {
+      try {
+        permits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while waiting for a database connection", e);
+      }
+      return permits::release;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package at.ac.tuwien.sepr.assignment.individual.config;
 
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -16,11 +17,13 @@ public class WebConfig implements WebMvcConfigurer {
 
   /**
    * Configures CORS to allow all origins and HTTP methods.
+   * The frontend reads the {@code ETag} of a horse to send it back in {@code If-Match} when updating it.
    *
    * @param registry the {@link CorsRegistry} to configure
    */
   @Override
   public void addCorsMappings(CorsRegistry registry) {
-    registry.addMapping("/**").allowedMethods("GET", "POST", "OPTIONS", "HEAD", "DELETE", "PUT", "PATCH");
+    registry.addMapping("/**").allowedMethods("GET", "POST", "OPTIONS", "HEAD", "DELETE", "PUT", "PATCH")
+            .exposedHeaders(HttpHeaders.ETAG);
   }
 }
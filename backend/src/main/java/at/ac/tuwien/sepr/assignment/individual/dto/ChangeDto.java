@@ -0,0 +1,19 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a committed change of a horse or owner, sent by the change feed.
+ *
+ * @param sequence        the position of the change in the mutation journal, sent as the event ID
+ * @param subject         {@code HORSE} or {@code OWNER}
+ * @param operation       {@code CREATE}, {@code UPDATE}, {@code DELETE} or {@code IMAGE}
+ * @param id              the ID of the changed horse or owner
+ * @param timestampMillis when the change was committed, in epoch milliseconds
+ */
+public record ChangeDto(
+    long sequence,
+    String subject,
+    String operation,
+    long id,
+    long timestampMillis
+) {
+}
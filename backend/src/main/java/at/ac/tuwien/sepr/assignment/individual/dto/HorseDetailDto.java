@@ -18,7 +18,7 @@ public record HorseDetailDto(
     boolean image,
     OwnerDto owner,
     Long parent1Id,
-    Long parent2Id
-
+    Long parent2Id,
+    long version
 ) {
 }
@@ -7,6 +7,8 @@ import org.springframework.format.annotation.DateTimeFormat;
 /**
  * DTO to bundle the query parameters used in searching horses.
  * Each field can be null, in which case this field is not filtered by.
+ * {@code descendsFrom} matches every horse that has the horse with this ID somewhere in its pedigree.
+ * If {@code fuzzy} is true, {@code name} matches typo-tolerant instead of as a substring, closest names first.
  */
 public record HorseSearchDto(
     String name,
@@ -18,6 +20,8 @@ public record HorseSearchDto(
     Sex sex,
     String ownerFirstName,
     String ownerLastName,
+    Long descendsFrom,
+    Boolean fuzzy,
     Integer limit
 ) {
 }
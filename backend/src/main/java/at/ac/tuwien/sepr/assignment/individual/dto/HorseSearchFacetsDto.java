@@ -0,0 +1,23 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the match counts of a horse search.
+ * This record contains the total number of matches and their breakdown by sex, year of birth and owner.
+ *
+ * @param total      the number of horses matching the search, regardless of its limit
+ * @param sex        the number of matches per sex
+ * @param birthYear  the number of matches per year of birth, ordered by year
+ * @param topOwners  the owners with the most matches, ordered by descending count
+ */
+public record HorseSearchFacetsDto(
+    long total,
+    Map<Sex, Long> sex,
+    Map<Integer, Long> birthYear,
+    List<OwnerFacetDto> topOwners
+) {
+}
@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.List;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a horse search answered together with its match counts.
+ *
+ * @param horses the matching horses, cut at the limit of the search
+ * @param facets the counts of all matches, regardless of the limit
+ */
+public record HorseSearchResultDto(
+    List<HorseListDto> horses,
+    HorseSearchFacetsDto facets
+) {
+}
@@ -0,0 +1,17 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+
+/**
+ * Represents a Data Transfer Object (DTO) for a horse suggested while typing its name.
+ * This record contains just enough to tell horses with similar names apart.
+ */
+public record HorseSuggestionDto(
+    Long id,
+    String name,
+    LocalDate dateOfBirth,
+    Sex sex
+) {
+}
@@ -14,7 +14,8 @@ public record HorseTreeNodeDto(
         LocalDate dateOfBirth,
         Sex sex,
         HorseTreeNodeDto parent1,
-        HorseTreeNodeDto parent2
+        HorseTreeNodeDto parent2,
+        long version
 ) {
 
 }
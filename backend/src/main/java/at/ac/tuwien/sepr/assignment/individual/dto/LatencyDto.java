@@ -0,0 +1,28 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the recorded latencies of a route or method.
+ * All durations are in milliseconds, percentiles are upper bounds accurate to 12.5%.
+ *
+ * @param count  the number of recorded calls
+ * @param errors the number of failed calls
+ * @param rows   the number of rows returned over all calls
+ * @param mean   the mean duration of a call
+ * @param p50    the median duration of a call
+ * @param p90    the 90th percentile of the durations
+ * @param p99    the 99th percentile of the durations
+ * @param p999   the 99.9th percentile of the durations
+ * @param max    the longest duration of a call
+ */
+public record LatencyDto(
+    long count,
+    long errors,
+    long rows,
+    double mean,
+    double p50,
+    double p90,
+    double p99,
+    double p999,
+    double max
+) {
+}
@@ -0,0 +1,23 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+import java.util.Map;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the metrics recorded since startup.
+ *
+ * @param routes           the latencies of every HTTP route, keyed by method and path pattern
+ * @param methods          the latencies of every DAO and service method, keyed by class, method name and parameter types
+ * @param statements       the latencies of every SQL statement, keyed by the statement with literals replaced by ?
+ * @param imageBytesServed the number of image bytes sent to clients
+ * @param ownerLoader      the batching statistics of owner lookups
+ * @param writeQueue       the group commit statistics of the write queue
+ */
+public record MetricsDto(
+    Map<String, LatencyDto> routes,
+    Map<String, LatencyDto> methods,
+    Map<String, LatencyDto> statements,
+    long imageBytesServed,
+    OwnerLoaderStatsDto ownerLoader,
+    WriteQueueStatsDto writeQueue
+) {
+}
@@ -0,0 +1,10 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the number of matching horses of a single owner.
+ */
+public record OwnerFacetDto(
+    OwnerDto owner,
+    long count
+) {
+}
@@ -0,0 +1,17 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the batching statistics of the owner loader since startup.
+ *
+ * @param loads        the number of requested lookups, including those sharing a pending lookup
+ * @param batches      the number of dispatched batches
+ * @param batchedIds   the number of distinct IDs over all dispatched batches
+ * @param largestBatch the number of IDs in the largest batch so far
+ */
+public record OwnerLoaderStatsDto(
+    long loads,
+    long batches,
+    long batchedIds,
+    long largestBatch
+) {
+}
@@ -6,9 +6,11 @@ package at.ac.tuwien.sepr.assignment.individual.dto;
  *
  * @param name substring of the owner's name
  * @param maxAmount the maximum number of owners to return, even if there are more matches
+ * @param fuzzy if true, {@code name} matches typo-tolerant instead of as a substring, closest names first
  */
 public record OwnerSearchDto(
     String name,
-    Integer maxAmount // needs to be present always
+    Integer maxAmount, // needs to be present always
+    Boolean fuzzy
 ) {
 }
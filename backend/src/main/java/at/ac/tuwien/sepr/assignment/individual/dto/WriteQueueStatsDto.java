@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepr.assignment.individual.dto;
+
+/**
+ * Represents a Data Transfer Object (DTO) for the group commit statistics of the write queue since startup.
+ *
+ * @param commands     the number of commands committed
+ * @param batches      the number of transactions they were committed in
+ * @param largestBatch the most commands committed in one transaction
+ */
+public record WriteQueueStatsDto(
+    long commands,
+    long batches,
+    long largestBatch
+) {
+}
@@ -18,6 +18,7 @@ public record Horse(
     InputStream image,
     Long ownerId,
     Long parentId1,
-    Long parentId2
+    Long parentId2,
+    long version
 ) {
 }
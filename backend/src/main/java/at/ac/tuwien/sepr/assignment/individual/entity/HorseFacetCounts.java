@@ -0,0 +1,19 @@
+package at.ac.tuwien.sepr.assignment.individual.entity;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.util.Map;
+
+/**
+ * Represents the number of stored horses per sex, per year of birth and per owner.
+ *
+ * @param sex       the number of horses per sex, sexes without horses are missing
+ * @param birthYear the number of horses per year of birth
+ * @param ownerId   the number of horses of the owners with the most horses, ordered by descending count
+ */
+public record HorseFacetCounts(
+    Map<Sex, Long> sex,
+    Map<Integer, Long> birthYear,
+    Map<Long, Long> ownerId
+) {
+}
@@ -0,0 +1,16 @@
+package at.ac.tuwien.sepr.assignment.individual.entity;
+
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+
+/**
+ * Represents the identifying attributes of a horse in the persistent data store.
+ */
+public record HorseSummary(
+    Long id,
+    String name,
+    LocalDate dateOfBirth,
+    Sex sex
+) {
+}
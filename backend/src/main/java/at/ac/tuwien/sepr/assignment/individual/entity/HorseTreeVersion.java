@@ -0,0 +1,36 @@
+package at.ac.tuwien.sepr.assignment.individual.entity;
+
+/**
+ * Identifies the state of the family tree of a horse.
+ * Every change of the ancestry of a horse changes the version of the horse itself,
+ * so the tree changed exactly when one of its horses got another version or the set of horses changed.
+ * The highest version alone does not show that, as versions are drawn before the change commits,
+ * a change committing after a later one would keep it, so the checksum covers the version of every horse.
+ *
+ * @param horses   the number of distinct horses in the tree
+ * @param checksum the sum of {@link #checksumOf} over the distinct horses in the tree
+ */
+public record HorseTreeVersion(
+    long horses,
+    long checksum
+) {
+  /**
+   * The prime the checksum of a horse is reduced by, below 2^31 so the products of the checksum never overflow.
+   */
+  public static final long MODULUS = 2_147_483_647L;
+  public static final long ID_FACTOR = 48_271L;
+  public static final long VERSION_FACTOR = 16_807L;
+
+  /**
+   * Computes the part of a horse in the checksum, with the same arithmetic as {@code MOD} in SQL,
+   * so a tree built in memory gets the checksum the database computes for it.
+   *
+   * @param id      the ID of the horse
+   * @param version the version of the horse
+   * @return the checksum of the horse, squared so changes of different horses do not cancel each other out
+   */
+  public static long checksumOf(long id, long version) {
+    long mixed = ((id % MODULUS) * ID_FACTOR + (version % MODULUS) * VERSION_FACTOR) % MODULUS;
+    return (mixed * mixed + mixed) % MODULUS;
+  }
+}
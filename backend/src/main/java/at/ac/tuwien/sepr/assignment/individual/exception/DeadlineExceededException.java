@@ -0,0 +1,15 @@
+package at.ac.tuwien.sepr.assignment.individual.exception;
+
+/**
+ * Exception that signals, that a request was aborted,
+ * because it did not finish before its deadline.
+ */
+public class DeadlineExceededException extends RuntimeException {
+  public DeadlineExceededException(String message) {
+    super(message);
+  }
+
+  public DeadlineExceededException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,11 @@
+package at.ac.tuwien.sepr.assignment.individual.exception;
+
+/**
+ * Exception that signals, that a change was based on a version of the data
+ * that is not the current one anymore, because it was changed in the meantime.
+ */
+public class StaleVersionException extends RuntimeException {
+  public StaleVersionException(String message) {
+    super(message);
+  }
+}
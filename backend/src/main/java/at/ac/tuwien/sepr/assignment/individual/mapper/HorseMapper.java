@@ -4,9 +4,11 @@ import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseSummary;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 
 import java.lang.invoke.MethodHandles;
@@ -75,7 +77,8 @@ public class HorseMapper {
             horse.image() != null,
             getOwner(horse, owners),
             horse.parentId1(),
-            horse.parentId2()
+            horse.parentId2(),
+            horse.version()
     );
   }
 
@@ -103,7 +106,27 @@ public class HorseMapper {
             horse.dateOfBirth(),
             horse.sex(),
             parent1,
-            parent2
+            parent2,
+            horse.version()
+    );
+  }
+
+  /**
+   * Converts a {@link HorseSummary} entity into a {@link HorseSuggestionDto}.
+   *
+   * @param horse the horse summary to convert
+   * @return the converted {@link HorseSuggestionDto}
+   */
+  public HorseSuggestionDto summaryToSuggestionDto(HorseSummary horse) {
+    LOG.trace("summaryToSuggestionDto({})", horse);
+    if (horse == null) {
+      return null;
+    }
+    return new HorseSuggestionDto(
+            horse.id(),
+            horse.name(),
+            horse.dateOfBirth(),
+            horse.sex()
     );
   }
 
@@ -0,0 +1,35 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import jakarta.annotation.PostConstruct;
+import java.lang.invoke.MethodHandles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adds the ancestor closure of horses stored before the closure table existed, once on startup.
+ * The schema script cannot do it, as it runs on every new connection of the pool.
+ */
+@Component
+public class AncestorClosureBackfill {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private final HorseDao horseDao;
+
+  /**
+   * Constructs the {@code AncestorClosureBackfill} with the required {@link HorseDao}.
+   *
+   * @param horseDao the DAO maintaining the closure
+   */
+  public AncestorClosureBackfill(HorseDao horseDao) {
+    this.horseDao = horseDao;
+  }
+
+  /**
+   * Adds the missing closure rows upon bean initialization.
+   */
+  @PostConstruct
+  public void backfill() {
+    LOGGER.trace("backfill()");
+    horseDao.backfillClosure();
+  }
+}
@@ -5,10 +5,16 @@ import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseFacetCounts;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseSummary;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseTreeVersion;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.StaleVersionException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -24,16 +30,31 @@ public interface HorseDao {
    */
   List<Horse> getByParams(HorseSearchDto params);
 
+  /**
+   * Count all horses matching the given parameters per sex, per year of birth and per owner.
+   * The limit of the parameters is ignored, the counts always cover every match.
+   *
+   * @param params    the search parameters
+   * @param topOwners the number of owners with the most matches to count
+   * @return the counts of every sex and year of birth with at least one match and of the top owners
+   */
+  HorseFacetCounts getFacetCountsByParams(HorseSearchDto params, int topOwners);
+
   /**
    * Update the horse with the ID given in {@code horse}
    * with the data given in {@code horse}
    * in the persistent data store.
+   * If the parents change, the pedigree is checked for cycles in the same transaction.
    *
-   * @param horse the horse to update
+   * @param horse           the horse to update
+   * @param image           the new image, null to keep the current one
+   * @param expectedVersion the version the horse must still have, null to update any version
    * @return the updated horse
-   * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   * @throws NotFoundException     if the Horse with the given ID does not exist in the persistent data store
+   * @throws StaleVersionException if the horse does not have the expected version anymore
+   * @throws ConflictException     if a new parent is the horse itself or one of its descendants
    */
-  Horse update(HorseUpdateDto horse, InputStream image) throws NotFoundException;
+  Horse update(HorseUpdateDto horse, InputStream image, Long expectedVersion) throws NotFoundException, ConflictException;
 
 
   /**
@@ -45,6 +66,33 @@ public interface HorseDao {
    */
   Horse getById(long id) throws NotFoundException;
 
+  /**
+   * Get the horses with the given IDs from the persistent data store, without their images.
+   *
+   * @param ids the IDs of the horses to get
+   * @return the horses found, in no particular order, IDs without a horse are left out
+   */
+  List<Horse> getAllByIdWithoutImage(Collection<Long> ids);
+
+  /**
+   * Get only the version of a horse, which changes with every change of the horse.
+   *
+   * @param id the ID of the horse
+   * @return the current version of the horse
+   * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   */
+  long getVersionById(long id) throws NotFoundException;
+
+  /**
+   * Get the version of the family tree of a horse, without fetching the horses in it.
+   *
+   * @param id          the ID of the horse at the root of the tree
+   * @param generations the number of generations in the tree, including the root
+   * @return the number of horses in the tree and the checksum of their versions
+   * @throws NotFoundException if the Horse with the given ID does not exist in the persistent data store
+   */
+  HorseTreeVersion getTreeVersion(long id, long generations) throws NotFoundException;
+
   /**
    * Creates a horse with the data given in
    * {@code horse} in the persistent data store.
@@ -73,5 +121,33 @@ public interface HorseDao {
    */
   Horse removeImageById(Long id) throws NotFoundException;
 
+  /**
+   * Checks whether the horse with ID {@code ancestorId} appears in the pedigree
+   * of the horse with ID {@code descendantId}.
+   * Every horse counts as its own ancestor.
+   *
+   * @param ancestorId   the ID of the potential ancestor
+   * @param descendantId the ID of the potential descendant
+   * @return true if {@code descendantId} descends from {@code ancestorId} or both IDs are equal
+   */
+  boolean isAncestor(long ancestorId, long descendantId);
+
+  /**
+   * Get the horses whose name, or one of its words, starts with {@code prefix}.
+   * The suggestions are served from memory, without accessing the persistent data store per call.
+   *
+   * @param prefix the beginning of the name
+   * @param limit  the maximum number of horses to return
+   * @return the matching horses in alphabetical order
+   */
+  List<HorseSummary> suggestByName(String prefix, int limit);
+
+  /**
+   * Adds the ancestor closure of the horses stored before it was maintained.
+   * Horses whose pedigree contains a cycle only become their own ancestor.
+   *
+   * @return the number of horses whose closure was added
+   */
+  int backfillClosure();
 
 }
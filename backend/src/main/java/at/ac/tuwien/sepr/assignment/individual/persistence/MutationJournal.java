@@ -0,0 +1,550 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Append-only journal of the committed mutations of horses and owners.
+ * Every mutation gets the next sequence number, so derived structures such as caches, search indexes or exports
+ * can catch up from the last sequence they have seen with {@link #readAfter} instead of rescanning the tables.
+ * Entries only name the changed horse or owner, readers fetch its current state themselves.
+ *
+ * <p>The journal is a directory of segment files, named after the first sequence they hold and memory-mapped.
+ * Compacted segments are named after their first and last sequence and never overwrite a segment,
+ * since mapped files can be neither replaced nor deleted on Windows; the merged segments are deleted right away
+ * where possible, otherwise on the next start.
+ * A segment starts with the magic bytes {@code WFTM}, a format version and its first sequence,
+ * followed by fixed size entries of length, CRC32C checksum, sequence, timestamp, subject, operation and ID.
+ * Appends go to the newest segment, a new one of {@code app.mutation-journal.segment-size} is started once it is full.
+ * When {@code app.mutation-journal.compact-segments} full segments exist, a background thread merges them
+ * into one that keeps only the last mutation of every horse and owner, which is all a reader catching up needs.
+ *
+ * <p>Mutations are appended once their transaction has committed, a crash in between loses the entry.
+ * So does a failing write to the segment files, which is logged while the listeners are still notified.
+ * Rows written by the data generators bypass the journal, so readers start from a full load
+ * and follow the journal from the {@link #lastSequence()} they saw before it.
+ */
+@Component
+public class MutationJournal {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int MAGIC = 0x5746544D;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int ENTRY_BODY_SIZE = 26;
+  private static final int ENTRY_SIZE = 8 + ENTRY_BODY_SIZE;
+  private static final String SUFFIX = ".journal";
+
+  /**
+   * The kind of record a mutation changed.
+   */
+  public enum Subject {
+    HORSE,
+    OWNER
+  }
+
+  /**
+   * What a mutation did to its record.
+   */
+  public enum Operation {
+    CREATE,
+    UPDATE,
+    DELETE,
+    IMAGE
+  }
+
+  /**
+   * A journaled mutation.
+   *
+   * @param sequence        the position of the mutation in the journal, increasing but not necessarily contiguous
+   * @param timestampMillis the wall clock time the mutation was journaled at, in epoch milliseconds
+   * @param subject         the kind of the changed record
+   * @param operation       what was done to the record
+   * @param id              the ID of the changed record
+   */
+  public record Mutation(long sequence, long timestampMillis, Subject subject, Operation operation, long id) {
+  }
+
+  private final boolean enabled;
+  private final Path directory;
+  private final int segmentSize;
+  private final int compactSegments;
+  private final boolean force;
+  private final Object appendLock = new Object();
+  private final ExecutorService compactor;
+  private final AtomicBoolean compacting = new AtomicBoolean();
+  private final List<Consumer<Mutation>> listeners = new CopyOnWriteArrayList<>();
+  private volatile List<Segment> segments = List.of();
+  private volatile long lastSequence;
+
+  /**
+   * Constructor of the MutationJournal, opens the segments in {@code directory} or starts the first one.
+   *
+   * @param enabled         whether mutations are journaled, otherwise they only get a sequence number
+   * @param directory       the directory of the segment files
+   * @param segmentSize     the size of a segment file
+   * @param compactSegments the number of full segments merged by a compaction
+   * @param force           whether every entry is forced to the storage device before the mutation returns
+   */
+  @Autowired
+  public MutationJournal(@Value("${app.mutation-journal.enabled:false}") boolean enabled,
+                         @Value("${app.mutation-journal.directory:./journal}") Path directory,
+                         @Value("${app.mutation-journal.segment-size:4MB}") DataSize segmentSize,
+                         @Value("${app.mutation-journal.compact-segments:4}") int compactSegments,
+                         @Value("${app.mutation-journal.force:false}") boolean force) {
+    this.enabled = enabled;
+    this.directory = directory;
+    this.segmentSize = (int) Math.max(HEADER_SIZE + ENTRY_SIZE, segmentSize.toBytes());
+    this.compactSegments = Math.max(2, compactSegments);
+    this.force = force;
+    this.compactor = Executors.newSingleThreadExecutor(Thread.ofPlatform()
+            .name("mutation-journal-compactor")
+            .daemon(true)
+            .factory());
+    if (enabled) {
+      try {
+        open();
+      } catch (IOException e) {
+        throw new FatalException("Could not open the mutation journal in " + directory, e);
+      }
+    }
+  }
+
+  /**
+   * Appends a mutation.
+   *
+   * @param subject   the kind of the changed record
+   * @param operation what was done to the record
+   * @param id        the ID of the changed record
+   * @return the sequence number of the mutation
+   */
+  public long append(Subject subject, Operation operation, long id) {
+    LOG.trace("append() with parameters: {} , {} , {}", subject, operation, id);
+    synchronized (appendLock) {
+      long sequence = lastSequence + 1;
+      Mutation mutation = new Mutation(sequence, System.currentTimeMillis(), subject, operation, id);
+      if (enabled) {
+        try {
+          Segment active = segments.getLast();
+          if (active.isFull()) {
+            active = roll(sequence);
+          }
+          active.append(mutation, force);
+        } catch (RuntimeException e) {
+          LOG.error("Could not journal mutation {}, readers catching up from the journal will miss it", mutation, e);
+        }
+      }
+      lastSequence = sequence;
+      for (Consumer<Mutation> listener : listeners) {
+        listener.accept(mutation);
+      }
+      return sequence;
+    }
+  }
+
+  /**
+   * Registers a listener called with every appended mutation, in the order of their sequence numbers.
+   * Listeners are called while further appends wait, so they must not block.
+   *
+   * @param listener the listener
+   */
+  public void addListener(Consumer<Mutation> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Returns whether mutations are journaled, otherwise {@link #readAfter} finds none
+   * and sequence numbers restart with every start of the server.
+   *
+   * @return true if mutations are written to the segment files
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the sequence number of the last appended mutation.
+   *
+   * @return the last sequence number, 0 if nothing was journaled yet
+   */
+  public long lastSequence() {
+    return lastSequence;
+  }
+
+  /**
+   * Reads the mutations appended after a sequence number.
+   * Of mutations in compacted segments, only the last one of every record is returned.
+   *
+   * @param sequence the last sequence number the reader has seen, 0 to read from the start
+   * @param limit    the maximum number of mutations to return
+   * @return the mutations, ordered by sequence
+   */
+  public List<Mutation> readAfter(long sequence, int limit) {
+    LOG.trace("readAfter() with parameters: {} , {}", sequence, limit);
+    List<Mutation> mutations = new ArrayList<>(Math.min(limit, 1024));
+    for (Segment segment : segments) {
+      if (mutations.size() >= limit) {
+        break;
+      }
+      int count = segment.count;
+      if (count == 0 || segment.sequenceAt(count - 1) <= sequence) {
+        continue;
+      }
+      for (int index = segment.firstIndexAfter(sequence, count); index < count && mutations.size() < limit; index++) {
+        mutations.add(segment.read(index));
+      }
+    }
+    return mutations;
+  }
+
+  /**
+   * Stops compacting and forces the newest segment to the storage device.
+   */
+  @PreDestroy
+  public void close() throws InterruptedException {
+    compactor.shutdown();
+    compactor.awaitTermination(10, TimeUnit.SECONDS);
+    synchronized (appendLock) {
+      if (!segments.isEmpty()) {
+        segments.getLast().buffer.force();
+      }
+    }
+  }
+
+  private void open() throws IOException {
+    Files.createDirectories(directory);
+    List<SegmentFile> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path file : stream) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(SUFFIX)) {
+          files.add(SegmentFile.of(file));
+        }
+      }
+    }
+    // a compacted segment comes before the segments it merged, the newest compaction first
+    files.sort(Comparator.comparingLong(SegmentFile::firstSequence)
+            .thenComparing(Comparator.comparingLong(SegmentFile::lastSequence).reversed()));
+
+    List<Segment> opened = new ArrayList<>();
+    long last = 0;
+    long compacted = 0;
+    for (SegmentFile file : files) {
+      boolean isCompacted = file.lastSequence() > file.firstSequence();
+      if (isCompacted && !Segment.isComplete(file.path())) {
+        LOG.warn("Deleting incomplete compacted mutation journal segment {}", file.path());
+        Files.delete(file.path());
+        continue;
+      }
+      if (file.firstSequence() <= compacted) {
+        // merged by a compaction, but not deleted while it was still mapped
+        LOG.info("Deleting mutation journal segment {} contained in a compacted segment", file.path());
+        Files.delete(file.path());
+        continue;
+      }
+      Segment segment = Segment.open(file.path());
+      long segmentLast = segment.count == 0 ? segment.firstSequence - 1 : segment.sequenceAt(segment.count - 1);
+      opened.add(segment);
+      last = Math.max(last, segmentLast);
+      if (isCompacted) {
+        compacted = file.lastSequence();
+      }
+    }
+    segments = List.copyOf(opened);
+    lastSequence = last;
+    if (segments.isEmpty() || segments.getLast().isFull()) {
+      roll(last + 1);
+    }
+    LOG.info("Opened mutation journal in {} with {} segments up to sequence {}", directory, segments.size(), last);
+    scheduleCompaction();
+  }
+
+  /**
+   * Starts a new segment, must be called holding the append lock or before the journal is in use.
+   */
+  private Segment roll(long firstSequence) {
+    Path file = directory.resolve("%020d%s".formatted(firstSequence, SUFFIX));
+    Segment segment;
+    try {
+      segment = Segment.create(file, firstSequence, segmentSize, true);
+    } catch (IOException e) {
+      throw new FatalException("Could not create mutation journal segment " + file, e);
+    }
+    List<Segment> next = new ArrayList<>(segments);
+    next.add(segment);
+    segments = List.copyOf(next);
+    scheduleCompaction();
+    return segment;
+  }
+
+  private void scheduleCompaction() {
+    if (segments.size() - 1 >= compactSegments && compacting.compareAndSet(false, true)) {
+      compactor.execute(() -> {
+        try {
+          compact();
+        } catch (IOException | RuntimeException e) {
+          LOG.warn("Compacting the mutation journal failed, its segments are kept as they are", e);
+        } finally {
+          compacting.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Merges all full segments into one holding the last mutation of every record.
+   * The merged segment only gets its magic bytes once all its entries are forced to the storage device,
+   * so a crash leaves either the old segments plus an incomplete merged one, or the merged one plus inputs,
+   * and the next start deletes whichever is superseded.
+   */
+  private void compact() throws IOException {
+    List<Segment> inputs = segments.subList(0, segments.size() - 1);
+    if (inputs.size() < compactSegments) {
+      return;
+    }
+    long started = System.nanoTime();
+    record Key(Subject subject, long id) {
+    }
+
+    Map<Key, Mutation> latest = new HashMap<>();
+    int read = 0;
+    for (Segment segment : inputs) {
+      for (int index = 0; index < segment.count; index++) {
+        Mutation mutation = segment.read(index);
+        latest.put(new Key(mutation.subject(), mutation.id()), mutation);
+        read++;
+      }
+    }
+    List<Mutation> kept = new ArrayList<>(latest.values());
+    kept.sort(Comparator.comparingLong(Mutation::sequence));
+
+    Segment first = inputs.getFirst();
+    Segment lastInput = inputs.getLast();
+    long inputsLast = lastInput.sequenceAt(lastInput.count - 1);
+    Path file = directory.resolve("%020d-%020d%s".formatted(first.firstSequence, inputsLast, SUFFIX));
+    // left over by a compaction that failed before it completed the merged segment
+    Files.deleteIfExists(file);
+    Segment merged = Segment.create(file, first.firstSequence, HEADER_SIZE + kept.size() * ENTRY_SIZE, false);
+    for (Mutation mutation : kept) {
+      merged.append(mutation, false);
+    }
+    merged.complete();
+
+    synchronized (appendLock) {
+      List<Segment> next = new ArrayList<>();
+      next.add(merged);
+      next.addAll(segments.subList(inputs.size(), segments.size()));
+      segments = List.copyOf(next);
+    }
+    // readers still holding the merged segments keep their mappings, which are released once they are collected
+    for (Segment segment : inputs) {
+      try {
+        Files.deleteIfExists(segment.file);
+      } catch (IOException e) {
+        LOG.debug("Mutation journal segment {} is still mapped, it is deleted on the next start", segment.file);
+      }
+    }
+    LOG.info("Compacted {} mutation journal segments with {} entries into {} entries in {} ms",
+            inputs.size(), read, kept.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+  }
+
+  /**
+   * The sequences a segment file holds according to its name, the last one is only known for compacted segments.
+   */
+  private record SegmentFile(Path path, long firstSequence, long lastSequence) {
+
+    private static SegmentFile of(Path path) throws IOException {
+      String name = path.getFileName().toString();
+      String[] sequences = name.substring(0, name.length() - SUFFIX.length()).split("-");
+      try {
+        long first = Long.parseLong(sequences[0]);
+        return new SegmentFile(path, first, sequences.length > 1 ? Long.parseLong(sequences[1]) : first);
+      } catch (NumberFormatException e) {
+        throw new IOException(path + " is not named after the sequences of a mutation journal segment", e);
+      }
+    }
+  }
+
+  /**
+   * A memory-mapped segment file.
+   * Entries are written before {@link #count} is raised, so readers only see complete entries.
+   */
+  private static final class Segment {
+    private final Path file;
+    private final long firstSequence;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final CRC32C checksum = new CRC32C();
+    private volatile int count;
+
+    private Segment(Path file, long firstSequence, MappedByteBuffer buffer, int count) {
+      this.file = file;
+      this.firstSequence = firstSequence;
+      this.buffer = buffer;
+      this.capacity = (buffer.capacity() - HEADER_SIZE) / ENTRY_SIZE;
+      this.count = count;
+    }
+
+    /**
+     * Creates a segment file, without its magic bytes until {@link #complete} if it is not {@code complete} yet.
+     */
+    private static Segment create(Path file, long firstSequence, int size, boolean complete) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.put(4, (byte) VERSION);
+        buffer.putLong(8, firstSequence);
+        Segment segment = new Segment(file, firstSequence, buffer, 0);
+        if (complete) {
+          buffer.putInt(0, MAGIC);
+        }
+        return segment;
+      }
+    }
+
+    /**
+     * Forces the entries to the storage device, then marks the segment as complete by writing its magic bytes.
+     */
+    private void complete() {
+      buffer.force();
+      buffer.putInt(0, MAGIC);
+      buffer.force(0, 4);
+    }
+
+    /**
+     * Reads whether a segment file was completed, without mapping it, so it can still be deleted on Windows.
+     */
+    private static boolean isComplete(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        return channel.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+      }
+    }
+
+    /**
+     * Maps an existing segment and finds its last complete entry.
+     * Entries after the first one that is torn or out of sequence are discarded.
+     */
+    private static Segment open(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION) {
+          throw new IOException(file + " is no mutation journal segment of a supported version");
+        }
+        Segment segment = new Segment(file, buffer.getLong(8), buffer, 0);
+        int valid = 0;
+        long previous = segment.firstSequence - 1;
+        while (valid < segment.capacity && segment.isValid(valid, previous)) {
+          previous = segment.sequenceAt(valid);
+          valid++;
+        }
+        if (valid < segment.capacity && buffer.getInt(offset(valid)) != 0) {
+          LOG.warn("Discarding torn entries after sequence {} of mutation journal segment {}", previous, file);
+          for (int position = offset(valid); position < buffer.capacity(); position++) {
+            buffer.put(position, (byte) 0);
+          }
+        }
+        segment.count = valid;
+        return segment;
+      }
+    }
+
+    private static int offset(int index) {
+      return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    private boolean isFull() {
+      return count >= capacity;
+    }
+
+    private boolean isValid(int index, long previous) {
+      int offset = offset(index);
+      return buffer.getInt(offset) == ENTRY_BODY_SIZE
+              && buffer.getInt(offset + 4) == checksum(offset + 8)
+              && buffer.getLong(offset + 8) > previous;
+    }
+
+    private int checksum(int bodyOffset) {
+      checksum.reset();
+      checksum.update(buffer.slice(bodyOffset, ENTRY_BODY_SIZE));
+      return (int) checksum.getValue();
+    }
+
+    /**
+     * Writes an entry behind the last one, only called by a single thread at a time.
+     */
+    private void append(Mutation mutation, boolean force) {
+      int offset = offset(count);
+      buffer.putLong(offset + 8, mutation.sequence());
+      buffer.putLong(offset + 16, mutation.timestampMillis());
+      buffer.put(offset + 24, (byte) mutation.subject().ordinal());
+      buffer.put(offset + 25, (byte) mutation.operation().ordinal());
+      buffer.putLong(offset + 26, mutation.id());
+      buffer.putInt(offset + 4, checksum(offset + 8));
+      buffer.putInt(offset, ENTRY_BODY_SIZE);
+      if (force) {
+        buffer.force(offset, ENTRY_SIZE);
+      }
+      count++;
+    }
+
+    private long sequenceAt(int index) {
+      return buffer.getLong(offset(index) + 8);
+    }
+
+    private Mutation read(int index) {
+      int offset = offset(index);
+      return new Mutation(
+              buffer.getLong(offset + 8),
+              buffer.getLong(offset + 16),
+              Subject.values()[buffer.get(offset + 24)],
+              Operation.values()[buffer.get(offset + 25)],
+              buffer.getLong(offset + 26));
+    }
+
+    /**
+     * Finds the first entry with a sequence above {@code sequence} by binary search, entries are ordered by sequence.
+     */
+    private int firstIndexAfter(long sequence, int count) {
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sequenceAt(middle) <= sequence) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+}
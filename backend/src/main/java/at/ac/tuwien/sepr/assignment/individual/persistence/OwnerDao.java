@@ -8,6 +8,7 @@ import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Data Access Object for owners.
@@ -74,4 +75,13 @@ public interface OwnerDao {
    */
   void delete(Long id) throws NotFoundException;
 
+  /**
+   * Get the owners whose name, or one of its words, starts with {@code prefix}.
+   * The suggestions are served from memory, without accessing the persistent data store per call.
+   *
+   * @param prefix the beginning of the name
+   * @param limit  the maximum number of owners to return
+   * @return the matching owners in alphabetical order
+   */
+  List<Owner> suggestByName(String prefix, int limit);
 }
@@ -0,0 +1,455 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import jakarta.annotation.PostConstruct;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * This component is only instantiated when the {@code datagen-pedigree} profile is active.
+ * It populates the database with a synthetic population of owners and horses for load tests,
+ * sized by the {@code app.pedigree-generator} properties.
+ * Activate this profile by adding {@code -Dspring.profiles.active=datagen-pedigree} to your runtime arguments.
+ *
+ * <p>Horses are bred in families of {@code family-size} horses spread over {@code generations} generations.
+ * Every horse after the founders has a sire and a dam from the previous generation of its family.
+ * Sires follow a Zipf distribution, so a few popular sires father most foals,
+ * and a share of the dams are half-sisters of their sire, which makes the grandsire appear twice in the pedigree.
+ * Families are independent of each other and are written in parallel, each on its own connection with batched inserts,
+ * together with their rows of the ancestor closure.
+ * The closure grows with the number of ancestors per horse, so deep pedigrees need more generations per family,
+ * not more horses per generation.
+ *
+ * <p>Generated rows have IDs from {@code -1000} downwards and are removed with the rest of the test data.
+ * If generated horses already exist, nothing is generated, generated owners left without horses are overwritten.
+ */
+@Component
+@Profile("datagen-pedigree")
+@EnableConfigurationProperties(PedigreeGeneratorBean.Properties.class)
+public class PedigreeGeneratorBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final long FIRST_ID = 1000;
+  private static final int LAST_BIRTH_YEAR = 2023;
+  private static final int GENERATION_INTERVAL_YEARS = 8;
+  private static final int IMAGE_VARIANTS = 8;
+  private static final String[] NAME_PREFIXES = {
+      "Silver", "Midnight", "Golden", "Storm", "Wild", "Royal", "Desert", "Northern", "Shadow", "Lucky",
+      "Crimson", "Misty", "Thunder", "Velvet", "Copper", "Autumn", "Winter", "Dancing", "Brave", "Quiet"
+  };
+  private static final String[] NAME_SUFFIXES = {
+      "Star", "Wind", "Spirit", "Dancer", "Arrow", "Dream", "Comet", "Flame", "Melody", "Legend",
+      "Whisper", "Thunder", "Queen", "King", "Runner", "Heart", "Storm", "Rose", "Jewel", "Blaze"
+  };
+  private static final String[] DESCRIPTIONS = {
+      "Calm and reliable, good with children.",
+      "Fast on the flat, a little nervous in the stable.",
+      "Strong jumper with a lot of stamina.",
+      "Gentle mare, easy to handle.",
+      "Spirited, needs an experienced rider.",
+      "Retired from racing, now used for breeding."
+  };
+  private static final String[] FIRST_NAMES = {
+      "Anna", "Lukas", "Sophie", "Maximilian", "Lena", "Felix", "Marie", "Paul", "Laura", "Jakob"
+  };
+  private static final String[] LAST_NAMES = {
+      "Gruber", "Huber", "Bauer", "Wagner", "Müller", "Pichler", "Steiner", "Moser", "Mayer", "Hofer"
+  };
+
+  private static final String SQL_COUNT_GENERATED =
+          "SELECT COUNT(*) FROM horse WHERE id <= " + -FIRST_ID;
+  // generated owners are kept when a run fails or the generated horses are deleted without them
+  private static final String SQL_INSERT_OWNER =
+          "MERGE INTO owner (id, first_name, last_name, description) KEY (id) VALUES (?, ?, ?, ?)";
+  private static final String SQL_INSERT_HORSE =
+          "INSERT INTO horse (id, name, description, date_of_birth, sex, image, owner_id, parent1_id, parent2_id) "
+                  + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String SQL_INSERT_CLOSURE =
+          "INSERT INTO ancestor_closure (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)";
+
+  private final DataSource dataSource;
+  private final ObjectProvider<DataGeneratorBean> testData;
+  private final Properties properties;
+  private final AtomicLong generatedHorses = new AtomicLong();
+
+  /**
+   * Constructs the {@code PedigreeGeneratorBean}.
+   *
+   * @param dataSource the database connection source
+   * @param testData   the generator of the regular test data, run first if its profile is active as well
+   * @param properties the size and shape of the generated population
+   */
+  public PedigreeGeneratorBean(DataSource dataSource, ObjectProvider<DataGeneratorBean> testData, Properties properties) {
+    this.dataSource = dataSource;
+    this.testData = testData;
+    this.properties = properties;
+  }
+
+  /**
+   * Generates the owners and horses upon bean initialization.
+   *
+   * @throws SQLException if an error occurs while writing the data
+   */
+  @PostConstruct
+  public void generateData() throws SQLException {
+    // the regular test data deletes all horses with negative IDs, so it has to be inserted before
+    testData.getIfAvailable();
+    try (Connection connection = dataSource.getConnection();
+         var statement = connection.createStatement();
+         ResultSet result = statement.executeQuery(SQL_COUNT_GENERATED)) {
+      result.next();
+      if (result.getLong(1) > 0) {
+        LOGGER.info("Not generating pedigrees, {} generated horses already exist", result.getLong(1));
+        return;
+      }
+    }
+
+    LOGGER.info("Generating {} owners and {} horses in families of {} over {} generations...",
+            properties.owners(), properties.horses(), properties.familySize(), properties.generations());
+    long start = System.nanoTime();
+    insertOwners();
+    byte[][] images = properties.imageRate() > 0 ? createImages() : new byte[0][];
+
+    int families = (properties.horses() + properties.familySize() - 1) / properties.familySize();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, properties.parallelism()));
+    try {
+      List<Future<?>> tasks = new ArrayList<>(families);
+      for (int family = 0; family < families; family++) {
+        int firstHorse = family * properties.familySize();
+        int size = Math.min(properties.familySize(), properties.horses() - firstHorse);
+        int familyNumber = family;
+        tasks.add(executor.submit(() -> {
+          insertFamily(familyNumber, firstHorse, size, images);
+          return null;
+        }));
+      }
+      for (Future<?> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FatalException("Interrupted while generating pedigrees", e);
+    } catch (ExecutionException e) {
+      throw new FatalException("Generating pedigrees failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    LOGGER.info("Finished generating {} horses in {} s.",
+            generatedHorses.get(), (System.nanoTime() - start) / 1_000_000_000);
+  }
+
+  private void insertOwners() throws SQLException {
+    SplittableRandom random = new SplittableRandom(properties.seed());
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement insert = connection.prepareStatement(SQL_INSERT_OWNER)) {
+        for (int i = 0; i < properties.owners(); i++) {
+          insert.setLong(1, -(FIRST_ID + i));
+          insert.setString(2, FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+          insert.setString(3, LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+          insert.setString(4, "Generated owner " + i);
+          insert.addBatch();
+          if ((i + 1) % properties.batchSize() == 0) {
+            insert.executeBatch();
+          }
+        }
+        insert.executeBatch();
+      }
+      connection.commit();
+    }
+  }
+
+  /**
+   * Breeds a single family and writes its horses and closure rows in one transaction.
+   *
+   * @param family     the number of the family, seeding its random numbers
+   * @param firstHorse the index of the first horse of the family among all generated horses
+   * @param size       the number of horses in the family
+   * @param images     the synthetic images to choose from
+   */
+  private void insertFamily(int family, int firstHorse, int size, byte[][] images) throws SQLException {
+    SplittableRandom random = new SplittableRandom(properties.seed() * 31 + family);
+    int generations = Math.max(1, Math.min(properties.generations(), size));
+    boolean[] male = new boolean[size];
+    int[] sire = new int[size];
+    int[] dam = new int[size];
+    int[][] ancestors = new int[size][];
+    int[][] depths = new int[size][];
+    Closure closure = new Closure(size);
+
+    try (Connection connection = dataSource.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement insertHorse = connection.prepareStatement(SQL_INSERT_HORSE);
+           PreparedStatement insertClosure = connection.prepareStatement(SQL_INSERT_CLOSURE)) {
+        int pendingHorses = 0;
+        int pendingClosure = 0;
+        int previousStart = 0;
+        int previousEnd = 0;
+        for (int generation = 0; generation < generations; generation++) {
+          int start = (int) ((long) size * generation / generations);
+          int end = (int) ((long) size * (generation + 1) / generations);
+          Parents parents = generation == 0 ? null : new Parents(male, sire, previousStart, previousEnd);
+
+          for (int horse = start; horse < end; horse++) {
+            male[horse] = random.nextBoolean();
+            sire[horse] = parents == null ? -1 : parents.chooseSire(random);
+            dam[horse] = parents == null ? -1 : parents.chooseDam(random, sire[horse]);
+            closure.compute(horse, sire[horse], dam[horse], ancestors, depths);
+
+            bindHorse(insertHorse, random, firstHorse, horse, generation, generations, male, sire, dam, images);
+            insertHorse.addBatch();
+            if (++pendingHorses == properties.batchSize()) {
+              insertHorse.executeBatch();
+              pendingHorses = 0;
+            }
+            for (int k = 0; k < ancestors[horse].length; k++) {
+              insertClosure.setLong(1, horseId(firstHorse, ancestors[horse][k]));
+              insertClosure.setLong(2, horseId(firstHorse, horse));
+              insertClosure.setInt(3, depths[horse][k]);
+              insertClosure.addBatch();
+              if (++pendingClosure == properties.batchSize()) {
+                // closure rows reference horses that may still wait in the horse batch
+                insertHorse.executeBatch();
+                pendingHorses = 0;
+                insertClosure.executeBatch();
+                pendingClosure = 0;
+              }
+            }
+          }
+          previousStart = start;
+          previousEnd = end;
+        }
+        insertHorse.executeBatch();
+        insertClosure.executeBatch();
+      }
+      connection.commit();
+    }
+
+    long total = generatedHorses.addAndGet(size);
+    if (total / 100_000 != (total - size) / 100_000) {
+      LOGGER.info("Generated {} of {} horses", total, properties.horses());
+    }
+  }
+
+  private void bindHorse(PreparedStatement insert, SplittableRandom random, int firstHorse, int horse,
+                         int generation, int generations, boolean[] male, int[] sire, int[] dam, byte[][] images)
+          throws SQLException {
+    int year = LAST_BIRTH_YEAR - (generations - 1 - generation) * GENERATION_INTERVAL_YEARS + random.nextInt(4);
+    insert.setLong(1, horseId(firstHorse, horse));
+    insert.setString(2, NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)] + " "
+            + NAME_SUFFIXES[random.nextInt(NAME_SUFFIXES.length)]);
+    insert.setString(3, random.nextInt(4) == 0 ? null : DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+    insert.setDate(4, Date.valueOf(LocalDate.ofYearDay(year, 1 + random.nextInt(365))));
+    insert.setString(5, (male[horse] ? Sex.MALE : Sex.FEMALE).name());
+    if (images.length > 0 && random.nextDouble() < properties.imageRate()) {
+      insert.setBytes(6, images[random.nextInt(images.length)]);
+    } else {
+      insert.setNull(6, Types.BLOB);
+    }
+    if (properties.owners() > 0 && random.nextInt(5) != 0) {
+      insert.setLong(7, -(FIRST_ID + random.nextInt(properties.owners())));
+    } else {
+      insert.setNull(7, Types.BIGINT);
+    }
+    setParent(insert, 8, firstHorse, sire[horse]);
+    setParent(insert, 9, firstHorse, dam[horse]);
+  }
+
+  private static void setParent(PreparedStatement insert, int index, int firstHorse, int parent) throws SQLException {
+    if (parent < 0) {
+      insert.setNull(index, Types.BIGINT);
+    } else {
+      insert.setLong(index, horseId(firstHorse, parent));
+    }
+  }
+
+  private static long horseId(int firstHorse, int horse) {
+    return -(FIRST_ID + firstHorse + horse);
+  }
+
+  private static byte[][] createImages() {
+    byte[][] images = new byte[IMAGE_VARIANTS][];
+    for (int i = 0; i < IMAGE_VARIANTS; i++) {
+      BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+      Graphics2D graphics = image.createGraphics();
+      graphics.setColor(Color.getHSBColor((float) i / IMAGE_VARIANTS, 0.5f, 0.8f));
+      graphics.fillRect(0, 0, 64, 64);
+      graphics.setColor(Color.DARK_GRAY);
+      graphics.fillOval(16, 16, 32, 32);
+      graphics.dispose();
+      var bytes = new ByteArrayOutputStream();
+      try {
+        ImageIO.write(image, "jpg", bytes);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      images[i] = bytes.toByteArray();
+    }
+    return images;
+  }
+
+  /**
+   * The possible parents of the foals of one generation, which are the horses of the previous generation.
+   */
+  private final class Parents {
+    private final int[] males;
+    private final double[] cumulativeSireWeights;
+    private final int[] females;
+    private final int[] sire;
+    private final Map<Integer, List<Integer>> daughtersBySire = new HashMap<>();
+
+    private Parents(boolean[] male, int[] sire, int start, int end) {
+      this.sire = sire;
+      List<Integer> maleList = new ArrayList<>();
+      List<Integer> femaleList = new ArrayList<>();
+      for (int horse = start; horse < end; horse++) {
+        if (male[horse]) {
+          maleList.add(horse);
+        } else {
+          femaleList.add(horse);
+          if (sire[horse] >= 0) {
+            daughtersBySire.computeIfAbsent(sire[horse], s -> new ArrayList<>()).add(horse);
+          }
+        }
+      }
+      this.males = maleList.stream().mapToInt(Integer::intValue).toArray();
+      this.females = femaleList.stream().mapToInt(Integer::intValue).toArray();
+      // the n-th male is chosen with a weight of 1 / n^skew
+      this.cumulativeSireWeights = new double[males.length];
+      double total = 0;
+      for (int rank = 0; rank < males.length; rank++) {
+        total += 1 / Math.pow(rank + 1, properties.popularSireSkew());
+        cumulativeSireWeights[rank] = total;
+      }
+    }
+
+    private int chooseSire(SplittableRandom random) {
+      if (males.length == 0) {
+        return -1;
+      }
+      double target = random.nextDouble() * cumulativeSireWeights[males.length - 1];
+      int low = 0;
+      int high = males.length - 1;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (cumulativeSireWeights[middle] < target) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return males[low];
+    }
+
+    private int chooseDam(SplittableRandom random, int chosenSire) {
+      if (chosenSire >= 0 && sire[chosenSire] >= 0 && random.nextDouble() < properties.lineBreedingRate()) {
+        List<Integer> halfSisters = daughtersBySire.get(sire[chosenSire]);
+        if (halfSisters != null) {
+          return halfSisters.get(random.nextInt(halfSisters.size()));
+        }
+      }
+      return females.length == 0 ? -1 : females[random.nextInt(females.length)];
+    }
+  }
+
+  /**
+   * Computes the ancestors of a horse from the ancestors of its parents, with the shortest depth of each.
+   */
+  private static final class Closure {
+    private final int[] seen;
+    private final int[] depth;
+    private final int[] found;
+    private int stamp;
+
+    private Closure(int size) {
+      this.seen = new int[size];
+      this.depth = new int[size];
+      this.found = new int[size];
+    }
+
+    private void compute(int horse, int sire, int dam, int[][] ancestors, int[][] depths) {
+      stamp++;
+      int count = 0;
+      seen[horse] = stamp;
+      depth[horse] = 0;
+      found[count++] = horse;
+      for (int parent : new int[] {sire, dam}) {
+        if (parent < 0) {
+          continue;
+        }
+        for (int k = 0; k < ancestors[parent].length; k++) {
+          int ancestor = ancestors[parent][k];
+          int ancestorDepth = depths[parent][k] + 1;
+          if (seen[ancestor] != stamp) {
+            seen[ancestor] = stamp;
+            depth[ancestor] = ancestorDepth;
+            found[count++] = ancestor;
+          } else if (ancestorDepth < depth[ancestor]) {
+            depth[ancestor] = ancestorDepth;
+          }
+        }
+      }
+      ancestors[horse] = new int[count];
+      depths[horse] = new int[count];
+      for (int k = 0; k < count; k++) {
+        ancestors[horse][k] = found[k];
+        depths[horse][k] = depth[found[k]];
+      }
+    }
+  }
+
+  /**
+   * Size and shape of the generated population.
+   *
+   * @param owners           the number of owners, four of five horses get a random one
+   * @param horses           the number of horses
+   * @param familySize       the number of horses bred among each other
+   * @param generations      the number of generations of every family
+   * @param popularSireSkew  the exponent of the Zipf distribution of sires, 0 chooses every stallion equally often
+   * @param lineBreedingRate the share of dams that are half-sisters of their sire
+   * @param imageRate        the share of horses with a synthetic image
+   * @param batchSize        the number of rows inserted per JDBC batch
+   * @param parallelism      the number of families written at the same time
+   * @param seed             the seed of the random numbers, the same seed generates the same data
+   */
+  @ConfigurationProperties("app.pedigree-generator")
+  public record Properties(int owners, int horses, int familySize, int generations, double popularSireSkew,
+                           double lineBreedingRate, double imageRate, int batchSize, int parallelism, long seed) {
+    public Properties {
+      if (familySize <= 0 || generations <= 0 || batchSize <= 0) {
+        throw new IllegalArgumentException("family-size, generations and batch-size must be positive");
+      }
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory trigram index over names, answering typo-tolerant lookups.
+ * Names are compared without case and accents, every word of a name is indexed as its own term as well.
+ * Only terms sharing enough trigrams with the query are compared by their edit distance,
+ * and only the rarest trigrams of the query are used to find them, so a lookup never touches the whole dictionary.
+ * The index is loaded lazily on the first lookup, changes before that are picked up by the load.
+ */
+class FuzzyNameIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final char START = '\u0002';
+  private static final char END = '\u0003';
+  private static final int MIN_SHARED_TRIGRAMS = 2;
+
+  private final String name;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile boolean loaded;
+
+  private final Map<String, Set<Long>> idsByTerm = new HashMap<>();
+  private final Map<Long, List<String>> termsById = new HashMap<>();
+  private final Map<String, Set<String>> termsByTrigram = new HashMap<>();
+
+  /**
+   * Creates an empty index.
+   *
+   * @param name what is indexed, used for logging only
+   */
+  FuzzyNameIndex(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Finds the IDs of all names within a small edit distance of {@code query}.
+   * The allowed distance grows with the length of the query.
+   *
+   * @param query  the name to look up
+   * @param limit  the maximum number of IDs to return, {@link Integer#MAX_VALUE} to return all matches
+   * @param loader supplies all names by their ID, only called if the index is not loaded yet
+   * @return the matching IDs, ordered by ascending edit distance
+   */
+  List<Long> search(String query, int limit, Supplier<Map<Long, String>> loader) {
+    LOG.trace("search() with parameters: {} , {}", query, limit);
+    ensureLoaded(loader);
+    String normalized = normalize(query);
+    if (normalized.isEmpty()) {
+      return List.of();
+    }
+    int maxDistance = normalized.length() <= 2 ? 0 : normalized.length() <= 5 ? 1 : 2;
+    Set<String> queryTrigrams = trigrams(normalized);
+    // every edit destroys at most three trigrams, but a single shared trigram such as the first letter
+    // matches a large part of the dictionary, so some short names with an edit near their start are missed
+    int minSharedTrigrams = Math.max(MIN_SHARED_TRIGRAMS, queryTrigrams.size() - 3 * maxDistance);
+
+    lock.readLock().lock();
+    try {
+      List<Set<String>> postings = new ArrayList<>(queryTrigrams.size());
+      for (String trigram : queryTrigrams) {
+        postings.add(termsByTrigram.getOrDefault(trigram, Set.of()));
+      }
+      postings.sort(Comparator.comparingInt(Set::size));
+      // a term missing all of the rarest trigrams can not reach the minimum with the remaining ones,
+      // so only these are scanned for candidates and the frequent ones are just probed
+      int scanned = Math.max(0, postings.size() - minSharedTrigrams + 1);
+      Map<String, Integer> sharedTrigrams = new HashMap<>();
+      for (Set<String> terms : postings.subList(0, scanned)) {
+        for (String term : terms) {
+          sharedTrigrams.merge(term, 1, Integer::sum);
+        }
+      }
+      for (Set<String> terms : postings.subList(scanned, postings.size())) {
+        for (Map.Entry<String, Integer> candidate : sharedTrigrams.entrySet()) {
+          if (terms.contains(candidate.getKey())) {
+            candidate.setValue(candidate.getValue() + 1);
+          }
+        }
+      }
+
+      Map<Long, Integer> distanceById = new HashMap<>();
+      for (Map.Entry<String, Integer> candidate : sharedTrigrams.entrySet()) {
+        String term = candidate.getKey();
+        if (candidate.getValue() < minSharedTrigrams
+                || Math.abs(term.length() - normalized.length()) > maxDistance) {
+          continue;
+        }
+        int distance = boundedLevenshtein(normalized, term, maxDistance);
+        if (distance <= maxDistance) {
+          for (Long id : idsByTerm.get(term)) {
+            distanceById.merge(id, distance, Math::min);
+          }
+        }
+      }
+
+      return distanceById.entrySet().stream()
+              .sorted(Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+              .limit(limit)
+              .map(Map.Entry::getKey)
+              .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores or replaces the name of an ID, ignored until the index is loaded.
+   *
+   * @param id       the ID the name belongs to
+   * @param fullName the name to index
+   */
+  void put(long id, String fullName) {
+    // checked under the lock, so a write racing with the initial load waits for it instead of getting lost
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        return;
+      }
+      removeTerms(id);
+      addTerms(id, fullName);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the name of an ID, ignored until the index is loaded.
+   *
+   * @param id the ID to remove
+   */
+  void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        return;
+      }
+      removeTerms(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureLoaded(Supplier<Map<Long, String>> loader) {
+    if (loaded) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        loader.get().forEach(this::addTerms);
+        loaded = true;
+        LOG.info("Loaded fuzzy {} index with {} terms", name, idsByTerm.size());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void addTerms(long id, String fullName) {
+    String normalized = normalize(fullName);
+    List<String> terms = new ArrayList<>();
+    terms.add(normalized);
+    String[] words = WHITESPACE.split(normalized);
+    if (words.length > 1) {
+      terms.addAll(List.of(words));
+    }
+    termsById.put(id, terms);
+    for (String term : terms) {
+      Set<Long> ids = idsByTerm.computeIfAbsent(term, t -> new HashSet<>());
+      if (ids.isEmpty()) {
+        for (String trigram : trigrams(term)) {
+          termsByTrigram.computeIfAbsent(trigram, t -> new HashSet<>()).add(term);
+        }
+      }
+      ids.add(id);
+    }
+  }
+
+  private void removeTerms(long id) {
+    List<String> terms = termsById.remove(id);
+    if (terms == null) {
+      return;
+    }
+    for (String term : terms) {
+      Set<Long> ids = idsByTerm.get(term);
+      if (ids == null || !ids.remove(id) || !ids.isEmpty()) {
+        continue;
+      }
+      idsByTerm.remove(term);
+      for (String trigram : trigrams(term)) {
+        Set<String> trigramTerms = termsByTrigram.get(trigram);
+        trigramTerms.remove(term);
+        if (trigramTerms.isEmpty()) {
+          termsByTrigram.remove(trigram);
+        }
+      }
+    }
+  }
+
+  /**
+   * Normalizes a name for comparison, ignoring case, accents and repeated whitespace.
+   *
+   * @param value the name to normalize
+   * @return the normalized name
+   */
+  static String normalize(String value) {
+    String withoutAccents = COMBINING_MARKS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+    return WHITESPACE.matcher(withoutAccents.trim()).replaceAll(" ").toUpperCase(Locale.ROOT);
+  }
+
+  private static Set<String> trigrams(String term) {
+    String padded = "" + START + START + term + END;
+    Set<String> trigrams = new HashSet<>();
+    for (int i = 0; i + 3 <= padded.length(); i++) {
+      trigrams.add(padded.substring(i, i + 3));
+    }
+    return trigrams;
+  }
+
+  /**
+   * Computes the edit distance of two strings, giving up as soon as it exceeds {@code max}.
+   *
+   * @return the edit distance, or {@code max + 1} if it is larger than {@code max}
+   */
+  private static int boundedLevenshtein(String a, String b, int max) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMin = current[0];
+      for (int j = 1; j <= b.length(); j++) {
+        int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > max) {
+        return max + 1;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return Math.min(previous[b.length()], max + 1);
+  }
+}
@@ -0,0 +1,333 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * Columnar in-memory copy of the filterable horse columns.
+ * {@link HorseJdbcDao} uses it to find the IDs of matching horses with primitive loops
+ * instead of scanning the horse table through JDBC, the matching rows are fetched by ID afterwards.
+ * The snapshot is loaded lazily on the first search and kept in sync by the DAO after every committed write.
+ * Searches match like the SQL search: names with the LIKE wildcards of H2, results ordered by ID.
+ * Activate it by setting {@code app.search.columnar-snapshot.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.columnar-snapshot.enabled", havingValue = "true")
+public class HorseColumnarSnapshot {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final String SQL_SELECT_COLUMNS =
+          "SELECT id, name, date_of_birth, sex, owner_id FROM horse ORDER BY id";
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int PARALLEL_THRESHOLD = 1 << 16;
+  private static final int CHUNK_SIZE = 1 << 14;
+  private static final long NO_OWNER = Long.MIN_VALUE;
+  private static final int NO_DATE = Integer.MIN_VALUE;
+  private static final char LIKE_ESCAPE = '\\';
+
+  private final JdbcClient jdbcClient;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private volatile boolean loaded;
+
+  // one slot per stored horse, deleted slots are marked in the tombstone set until the next compaction
+  private int size;
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private int[] epochDays = new int[INITIAL_CAPACITY];
+  private long[] ownerIds = new long[INITIAL_CAPACITY];
+  private int[] nameCodes = new int[INITIAL_CAPACITY];
+  private BitSet[] sexBits = newSexBits();
+  private BitSet deleted = new BitSet();
+  // as long as the slots are ordered by ID, a limited scan can stop at the first matches
+  private boolean sortedById = true;
+  private final Map<Long, Integer> positionById = new HashMap<>();
+
+  // upper-cased names, each distinct name is stored and matched only once
+  private final List<String> nameDictionary = new ArrayList<>();
+  private final Map<String, Integer> nameCodeByName = new HashMap<>();
+
+  @Autowired
+  public HorseColumnarSnapshot(JdbcClient jdbcClient) {
+    this.jdbcClient = jdbcClient;
+  }
+
+  /**
+   * Checks whether the snapshot holds every column needed for the given search.
+   *
+   * @param params the search parameters
+   * @return true if {@link #search(HorseSearchDto, long[])} can answer the search
+   */
+  public boolean supports(HorseSearchDto params) {
+    return params.description() == null && params.descendsFrom() == null && !Boolean.TRUE.equals(params.fuzzy());
+  }
+
+  /**
+   * Finds the IDs of all horses matching the given search parameters.
+   * Owner name filters have to be resolved by the caller into {@code ownerIdFilter}.
+   *
+   * @param params        the search parameters, must be {@link #supports(HorseSearchDto) supported}
+   * @param ownerIdFilter sorted IDs of the owners a matching horse must belong to, or null to not filter by owner
+   * @return the IDs of the matching horses in ascending order, never more than {@code params.limit()}
+   */
+  public List<Long> search(HorseSearchDto params, long[] ownerIdFilter) {
+    LOG.trace("search() with parameters: {}", params);
+    ensureLoaded();
+    lock.readLock().lock();
+    try {
+      Filter filter = new Filter(
+              params.sex() == null ? null : sexBits[params.sex().ordinal()],
+              params.bornBefore() == null ? Integer.MAX_VALUE : (int) params.bornBefore().toEpochDay(),
+              params.dateOfBirth() == null ? NO_DATE : (int) params.dateOfBirth().toEpochDay(),
+              params.name() == null ? null : matchNames(params.name()),
+              ownerIdFilter);
+      int limit = params.limit() == null ? Integer.MAX_VALUE : params.limit();
+      int scanLimit = sortedById ? limit : Integer.MAX_VALUE;
+
+      int[] positions;
+      if (size < PARALLEL_THRESHOLD) {
+        positions = scan(0, size, filter, scanLimit);
+      } else {
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        positions = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> scan(chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE), filter, scanLimit))
+                .flatMapToInt(Arrays::stream)
+                .limit(scanLimit)
+                .toArray();
+      }
+
+      long[] matchingIds = new long[positions.length];
+      for (int i = 0; i < positions.length; i++) {
+        matchingIds[i] = ids[positions[i]];
+      }
+      if (!sortedById) {
+        Arrays.sort(matchingIds);
+      }
+      return Arrays.stream(matchingIds)
+              .limit(limit)
+              .boxed()
+              .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores the searchable columns of a created or updated horse.
+   *
+   * @param horse the horse as it was written to the data store
+   */
+  public void upsert(Horse horse) {
+    LOG.trace("upsert() with parameters: {}", horse);
+    // a write committing while the snapshot loads blocks here until the load is done
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        // the horse is picked up by the initial load
+        return;
+      }
+      put(horse.id(), horse.name(), horse.dateOfBirth(), horse.sex(), horse.ownerId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes a deleted horse from the snapshot.
+   *
+   * @param id the ID of the deleted horse
+   */
+  public void remove(long id) {
+    LOG.trace("remove() with parameters: {}", id);
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        return;
+      }
+      Integer position = positionById.remove(id);
+      if (position != null) {
+        deleted.set(position);
+        for (BitSet bits : sexBits) {
+          bits.clear(position);
+        }
+        if (deleted.cardinality() > size / 2) {
+          compact();
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (!loaded) {
+        LOG.debug("SQL: {}", SQL_SELECT_COLUMNS);
+        jdbcClient.sql(SQL_SELECT_COLUMNS)
+                .query(result -> {
+                  put(result.getLong("id"),
+                          result.getString("name"),
+                          result.getDate("date_of_birth").toLocalDate(),
+                          Sex.valueOf(result.getString("sex")),
+                          result.getObject("owner_id", Long.class));
+                });
+        loaded = true;
+        LOG.info("Loaded columnar snapshot of {} horses", positionById.size());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private int[] scan(int from, int to, Filter filter, int limit) {
+    int[] matches = new int[Math.min(to - from, limit)];
+    int count = 0;
+    for (int i = from; i < to && count < limit; i++) {
+      if (deleted.get(i)
+              || (filter.sex() != null && !filter.sex().get(i))
+              || epochDays[i] >= filter.bornBefore()
+              || (filter.dateOfBirth() != NO_DATE && epochDays[i] != filter.dateOfBirth())
+              || (filter.nameMatches() != null && !filter.nameMatches().get(nameCodes[i]))
+              || (filter.ownerIds() != null
+                  && (ownerIds[i] == NO_OWNER || Arrays.binarySearch(filter.ownerIds(), ownerIds[i]) < 0))) {
+        continue;
+      }
+      matches[count++] = i;
+    }
+    return count == matches.length ? matches : Arrays.copyOf(matches, count);
+  }
+
+  private BitSet matchNames(String name) {
+    // the SQL search matches UPPER(name) LIKE UPPER('%' || :name || '%')
+    Pattern pattern = likePattern("%" + name.toUpperCase() + "%");
+    BitSet matches = new BitSet(nameDictionary.size());
+    for (int code = 0; code < nameDictionary.size(); code++) {
+      if (pattern.matcher(nameDictionary.get(code)).matches()) {
+        matches.set(code);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Translates a LIKE pattern to a regular expression.
+   * {@code %} matches any number of characters, {@code _} exactly one
+   * and a backslash escapes the following character, like the default escape character of H2.
+   *
+   * @param like the LIKE pattern
+   * @return the equivalent regular expression, matching the whole string
+   */
+  static Pattern likePattern(String like) {
+    StringBuilder regex = new StringBuilder(like.length() + 8);
+    for (int i = 0; i < like.length(); i++) {
+      char c = like.charAt(i);
+      if (c == LIKE_ESCAPE && i + 1 < like.length()) {
+        regex.append(Pattern.quote(String.valueOf(like.charAt(++i))));
+      } else if (c == '%') {
+        regex.append(".*");
+      } else if (c == '_') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+
+  private void put(long id, String name, LocalDate dateOfBirth, Sex sex, Long ownerId) {
+    Integer position = positionById.get(id);
+    if (position == null) {
+      if (size == ids.length) {
+        grow(size * 2);
+      }
+      if (size > 0 && id < ids[size - 1]) {
+        sortedById = false;
+      }
+      position = size++;
+      positionById.put(id, position);
+    }
+    ids[position] = id;
+    epochDays[position] = (int) dateOfBirth.toEpochDay();
+    ownerIds[position] = ownerId == null ? NO_OWNER : ownerId;
+    nameCodes[position] = nameCodeByName.computeIfAbsent(name.toUpperCase(), upperName -> {
+      nameDictionary.add(upperName);
+      return nameDictionary.size() - 1;
+    });
+    for (Sex value : Sex.values()) {
+      sexBits[value.ordinal()].set(position, value == sex);
+    }
+  }
+
+  private void grow(int capacity) {
+    ids = Arrays.copyOf(ids, capacity);
+    epochDays = Arrays.copyOf(epochDays, capacity);
+    ownerIds = Arrays.copyOf(ownerIds, capacity);
+    nameCodes = Arrays.copyOf(nameCodes, capacity);
+  }
+
+  /**
+   * Moves all live slots to the front, so deleted horses stop costing scan time.
+   * Names that are no longer referenced stay in the dictionary.
+   */
+  private void compact() {
+    LOG.debug("Compacting columnar snapshot, {} of {} slots are deleted", deleted.cardinality(), size);
+    BitSet[] compactedSexBits = newSexBits();
+    int target = 0;
+    for (int i = 0; i < size; i++) {
+      if (deleted.get(i)) {
+        continue;
+      }
+      ids[target] = ids[i];
+      epochDays[target] = epochDays[i];
+      ownerIds[target] = ownerIds[i];
+      nameCodes[target] = nameCodes[i];
+      for (int s = 0; s < sexBits.length; s++) {
+        compactedSexBits[s].set(target, sexBits[s].get(i));
+      }
+      positionById.put(ids[target], target);
+      target++;
+    }
+    size = target;
+    sexBits = compactedSexBits;
+    deleted = new BitSet();
+  }
+
+  private static BitSet[] newSexBits() {
+    BitSet[] bits = new BitSet[Sex.values().length];
+    for (int i = 0; i < bits.length; i++) {
+      bits[i] = new BitSet();
+    }
+    return bits;
+  }
+
+  private record Filter(
+          BitSet sex,
+          int bornBefore,
+          int dateOfBirth,
+          BitSet nameMatches,
+          long[] ownerIds
+  ) {
+  }
+}
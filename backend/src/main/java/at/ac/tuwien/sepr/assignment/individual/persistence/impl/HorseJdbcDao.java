@@ -4,9 +4,15 @@ import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseFacetCounts;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseSummary;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseTreeVersion;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.StaleVersionException;
 import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 
 import java.io.IOException;
@@ -14,15 +20,30 @@ import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * JDBC implementation of {@link HorseDao} for interacting with the database.
@@ -32,8 +53,10 @@ public class HorseJdbcDao implements HorseDao {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
   private static final String TABLE_NAME = "horse";
   private static final String OWNER_TABLE = "owner";
-  private static final String SQL_SELECT_ALL_BY_PARAMS =
-          "SELECT * FROM " + TABLE_NAME + " h "
+  private static final String CLOSURE_TABLE = "ancestor_closure";
+  private static final String VERSION_SEQUENCE = "horse_version";
+  private static final String SQL_FROM_WHERE_BY_PARAMS =
+          "FROM " + TABLE_NAME + " h "
                   + "LEFT JOIN " + OWNER_TABLE + " o ON h.OWNER_ID = o.ID "
                   + "WHERE (:name IS NULL OR UPPER(h.name) LIKE UPPER('%%' || COALESCE(:name, '') || '%%')) "
                   + "AND (:description IS NULL OR UPPER(h.description) LIKE UPPER('%%' || COALESCE(:description, '') || '%%')) "
@@ -42,12 +65,42 @@ public class HorseJdbcDao implements HorseDao {
                   + "AND (:sex IS NULL OR h.sex = :sex) "
                   + "AND (:owner_first_name IS NULL OR UPPER(o.first_name) LIKE UPPER('%%' || COALESCE(:owner_first_name, '') || '%%')) "
                   + "AND (:owner_last_name IS NULL OR UPPER(o.last_name) LIKE UPPER('%%' || COALESCE(:owner_last_name, '') || '%%')) "
+                  + "AND (:descends_from IS NULL OR h.id IN ("
+                  + "SELECT c.descendant_id FROM " + CLOSURE_TABLE + " c WHERE c.ancestor_id = :descends_from AND c.depth > 0)) ";
+
+  private static final String SQL_SELECT_ALL_BY_PARAMS =
+          "SELECT * " + SQL_FROM_WHERE_BY_PARAMS
+                  + "ORDER BY h.id "
                   + "LIMIT :limit";
 
+  private static final String SQL_SELECT_ALL_BY_PARAMS_AND_IDS =
+          "SELECT * " + SQL_FROM_WHERE_BY_PARAMS
+                  + "AND h.id IN (:ids)";
+
+  // one row per combination of the facet columns, so all facets are rolled up from a single scan
+  private static final String SQL_SELECT_FACETS_BY_PARAMS =
+          "SELECT h.sex, EXTRACT(YEAR FROM h.date_of_birth) AS birth_year, h.owner_id, COUNT(*) AS amount "
+                  + SQL_FROM_WHERE_BY_PARAMS;
+
+  private static final String SQL_GROUP_BY_FACETS =
+          "GROUP BY h.sex, EXTRACT(YEAR FROM h.date_of_birth), h.owner_id";
+
+  private static final String SQL_FILTER_BY_IDS = "AND h.id IN (:ids) ";
+
+  private static final String SQL_SELECT_ALL_NAMES =
+          "SELECT id, name FROM " + TABLE_NAME;
+
+  private static final String SQL_SELECT_ALL_SUMMARIES =
+          "SELECT id, name, date_of_birth, sex FROM " + TABLE_NAME;
+
   private static final String SQL_SELECT_BY_ID =
           "SELECT * FROM " + TABLE_NAME
                   + " WHERE ID = :id";
 
+  private static final String SQL_SELECT_BY_IDS_WITHOUT_IMAGE =
+          "SELECT id, name, description, date_of_birth, sex, owner_id, parent1_id, parent2_id, version FROM "
+                  + TABLE_NAME + " WHERE id IN (:ids)";
+
   private static final String SQL_SELECT_IMAGE_BY_ID =
           "SELECT IMAGE FROM " + TABLE_NAME
           + " WHERE ID = :id";
@@ -67,43 +120,259 @@ public class HorseJdbcDao implements HorseDao {
                           image = :image,
                           owner_id = :owner_id,
                           parent1_id = :parent1_id,
-                          parent2_id = :parent2_id
+                          parent2_id = :parent2_id,
+                          version = :version
                       WHERE id = :id
+                      AND (:expected_version IS NULL OR version = :expected_version)
                   """;
 
   private static final String SQL_DELETE_IMAGE_BY_ID =
           "UPDATE " + TABLE_NAME
-                  + " SET image = NULL "
+                  + " SET image = NULL, version = NEXT VALUE FOR " + VERSION_SEQUENCE
                   + " WHERE id = :id";
 
   private static final String SQL_INSERT =
           "INSERT INTO "
                   + TABLE_NAME
-                  + " (name, description, date_of_birth, sex, image, owner_id, parent1_id, parent2_id) "
-                  + "VALUES (:name, :description, :date_of_birth, :sex, :image, :ownerId, :parent1_id, :parent2_id)";
+                  + " (name, description, date_of_birth, sex, image, owner_id, parent1_id, parent2_id, version) "
+                  + "VALUES (:name, :description, :date_of_birth, :sex, :image, :ownerId, :parent1_id, :parent2_id, :version)";
+
+  private static final String SQL_NEXT_VERSION =
+          "SELECT NEXT VALUE FOR " + VERSION_SEQUENCE;
+
+  private static final String SQL_SELECT_VERSION_BY_ID =
+          "SELECT version FROM " + TABLE_NAME
+                  + " WHERE id = :id";
+
+  // the children of a deleted horse lose it as parent through the foreign key, which does not change their version
+  private static final String SQL_TOUCH_CHILDREN =
+          "UPDATE " + TABLE_NAME
+                  + " SET version = NEXT VALUE FOR " + VERSION_SEQUENCE
+                  + " WHERE parent1_id = :id OR parent2_id = :id";
+
+  // the closure holds every ancestor once per descendant, so each horse of the tree is summed once,
+  // the residues are cast as MOD takes the type of the INTEGER modulus and their products would overflow it
+  private static final String SQL_SELECT_TREE_VERSION =
+          "SELECT COUNT(*) AS horses, SUM(CAST(MOD(mixed * mixed + mixed, " + HorseTreeVersion.MODULUS + ") AS BIGINT))"
+                  + " AS checksum FROM (SELECT CAST(MOD("
+                  + "CAST(MOD(h.id, " + HorseTreeVersion.MODULUS + ") AS BIGINT) * " + HorseTreeVersion.ID_FACTOR
+                  + " + CAST(MOD(h.version, " + HorseTreeVersion.MODULUS + ") AS BIGINT) * "
+                  + HorseTreeVersion.VERSION_FACTOR
+                  + ", " + HorseTreeVersion.MODULUS + ") AS BIGINT) AS mixed FROM " + CLOSURE_TABLE + " c"
+                  + " JOIN " + TABLE_NAME + " h ON h.id = c.ancestor_id"
+                  + " WHERE c.descendant_id = :id AND c.depth < :generations) tree";
+
+  private static final String SQL_SELECT_PARENTS_BY_ID_FOR_UPDATE =
+          "SELECT parent1_id, parent2_id FROM " + TABLE_NAME
+                  + " WHERE id = :id FOR UPDATE";
+
+  // every change of the ancestry of a horse rebuilds its closure rows, deleting its own row at depth 0,
+  // so locking that row serializes the cycle check with concurrent changes of the ancestry
+  private static final String SQL_LOCK_CLOSURE_SELF =
+          "SELECT descendant_id FROM " + CLOSURE_TABLE
+                  + " WHERE ancestor_id = descendant_id AND descendant_id IN (:ids) FOR UPDATE";
+
+  private static final String SQL_SELECT_DESCENDANTS_AMONG =
+          "SELECT descendant_id FROM " + CLOSURE_TABLE
+                  + " WHERE ancestor_id = :id AND descendant_id IN (:ids)";
+
+  private static final String SQL_INSERT_CLOSURE_SELF =
+          "INSERT INTO " + CLOSURE_TABLE
+                  + " (ancestor_id, descendant_id, depth) VALUES (:id, :id, 0)";
+
+  private static final String SQL_INSERT_CLOSURE_FROM_PARENTS =
+          "INSERT INTO " + CLOSURE_TABLE
+                  + " (ancestor_id, descendant_id, depth) "
+                  + "SELECT ancestor_id, :id, MIN(depth) + 1 FROM " + CLOSURE_TABLE
+                  + " WHERE descendant_id IN (:parent1_id, :parent2_id) GROUP BY ancestor_id";
+
+  private static final String SQL_SELECT_DESCENDANT_IDS =
+          "SELECT descendant_id FROM " + CLOSURE_TABLE
+                  + " WHERE ancestor_id = :id";
+
+  private static final String SQL_COUNT_CLOSURE_PATH =
+          "SELECT COUNT(*) FROM " + CLOSURE_TABLE
+                  + " WHERE ancestor_id = :ancestor_id AND descendant_id = :descendant_id";
+
+  private static final String SQL_DELETE_CLOSURE_BY_DESCENDANTS =
+          "DELETE FROM " + CLOSURE_TABLE
+                  + " WHERE descendant_id IN (:ids)";
+
+  private static final String SQL_SELECT_PARENTS_BY_IDS =
+          "SELECT id, parent1_id, parent2_id FROM " + TABLE_NAME
+                  + " WHERE id IN (:ids)";
+
+  // like SQL_INSERT_CLOSURE_SELF and SQL_INSERT_CLOSURE_FROM_PARENTS for a whole generation of horses at once
+  private static final String SQL_INSERT_CLOSURE_FOR_GENERATION =
+          "INSERT INTO " + CLOSURE_TABLE
+                  + " (ancestor_id, descendant_id, depth) "
+                  + "SELECT id, id, 0 FROM " + TABLE_NAME + " WHERE id IN (:ids) "
+                  + "UNION ALL "
+                  + "SELECT c.ancestor_id, h.id, MIN(c.depth) + 1 FROM " + TABLE_NAME + " h"
+                  + " JOIN " + CLOSURE_TABLE + " c ON c.descendant_id = h.parent1_id OR c.descendant_id = h.parent2_id"
+                  + " WHERE h.id IN (:ids) GROUP BY c.ancestor_id, h.id";
+
+  private static final String SQL_SELECT_IDS_WITHOUT_CLOSURE =
+          "SELECT h.id FROM " + TABLE_NAME + " h WHERE NOT EXISTS ("
+                  + "SELECT 1 FROM " + CLOSURE_TABLE + " c WHERE c.ancestor_id = h.id AND c.descendant_id = h.id)";
+
+  private static final String SQL_INSERT_CLOSURE_SELF_BY_IDS =
+          "INSERT INTO " + CLOSURE_TABLE
+                  + " (ancestor_id, descendant_id, depth) "
+                  + "SELECT id, id, 0 FROM " + TABLE_NAME + " WHERE id IN (:ids)";
+
+  private static final String SQL_SELECT_BY_IDS =
+          "SELECT * FROM " + TABLE_NAME
+                  + " WHERE id IN (:ids)";
+
+  private static final String SQL_SELECT_OWNER_IDS_BY_NAME =
+          "SELECT id FROM " + OWNER_TABLE
+                  + " WHERE (:owner_first_name IS NULL OR UPPER(first_name) LIKE UPPER('%%' || COALESCE(:owner_first_name, '') || '%%')) "
+                  + "AND (:owner_last_name IS NULL OR UPPER(last_name) LIKE UPPER('%%' || COALESCE(:owner_last_name, '') || '%%'))";
+
+  private static final int SELECT_BY_IDS_BATCH_SIZE = 1000;
 
   private final JdbcClient jdbcClient;
+  private final HorseColumnarSnapshot snapshot;
+  private final MutationJournal journal;
+  private final FuzzyNameIndex nameIndex = new FuzzyNameIndex("horse name");
+  private final PrefixNameIndex<HorseSummary> prefixIndex =
+          new PrefixNameIndex<>("horse name", HorseSummary::id, HorseSummary::name);
 
   @Autowired
-  public HorseJdbcDao(JdbcClient jdbcClient) {
+  public HorseJdbcDao(JdbcClient jdbcClient, ObjectProvider<HorseColumnarSnapshot> snapshot,
+                      MutationJournal journal) {
     this.jdbcClient = jdbcClient;
+    this.snapshot = snapshot.getIfAvailable();
+    this.journal = journal;
   }
 
   @Override
   public List<Horse> getByParams(HorseSearchDto params) {
     LOG.trace("getByParams()");
+    if (isFuzzy(params)) {
+      return getByParamsWithFuzzyName(params);
+    }
+    if (snapshot != null && snapshot.supports(params)) {
+      return getByParamsFromSnapshot(params);
+    }
     LOG.debug("SQL: {}", SQL_SELECT_ALL_BY_PARAMS);
-    return jdbcClient
-            .sql(SQL_SELECT_ALL_BY_PARAMS).param("name", params.name())
+    return bindSearchParams(jdbcClient.sql(SQL_SELECT_ALL_BY_PARAMS), params)
+            .param("limit", params.limit() == null ? Integer.MAX_VALUE : params.limit())
+            .query(this::mapRow)
+            .list();
+  }
+
+  @Override
+  public List<HorseSummary> suggestByName(String prefix, int limit) {
+    LOG.trace("suggestByName() with parameters: {} , {}", prefix, limit);
+    return prefixIndex.suggest(prefix, limit, () -> {
+      LOG.debug("SQL: {}", SQL_SELECT_ALL_SUMMARIES);
+      return jdbcClient.sql(SQL_SELECT_ALL_SUMMARIES)
+              .query((result, rownum) -> new HorseSummary(
+                      result.getLong("id"),
+                      result.getString("name"),
+                      result.getDate("date_of_birth").toLocalDate(),
+                      Sex.valueOf(result.getString("sex"))))
+              .list();
+    });
+  }
+
+  @Override
+  public HorseFacetCounts getFacetCountsByParams(HorseSearchDto params, int topOwners) {
+    LOG.trace("getFacetCountsByParams() with parameters: {} , {}", params, topOwners);
+    Map<Sex, Long> sexCounts = new EnumMap<>(Sex.class);
+    Map<Integer, Long> birthYearCounts = new TreeMap<>();
+    Map<Long, Long> ownerCounts = new HashMap<>();
+    RowCallbackHandler rollUp = result -> {
+      long amount = result.getLong("amount");
+      sexCounts.merge(Sex.valueOf(result.getString("sex")), amount, Long::sum);
+      birthYearCounts.merge(result.getInt("birth_year"), amount, Long::sum);
+      Long ownerId = result.getObject("owner_id", Long.class);
+      if (ownerId != null) {
+        ownerCounts.merge(ownerId, amount, Long::sum);
+      }
+    };
+    if (isFuzzy(params)) {
+      String sql = SQL_SELECT_FACETS_BY_PARAMS + SQL_FILTER_BY_IDS + SQL_GROUP_BY_FACETS;
+      List<Long> candidates = nameIndex.search(params.name(), Integer.MAX_VALUE, this::getAllNames);
+      LOG.debug("SQL: {}", sql);
+      // the candidates are disjoint, so the groups of every batch add up
+      for (int from = 0; from < candidates.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+        bindSearchParams(jdbcClient.sql(sql), params)
+                .param("ids", candidates.subList(from, Math.min(candidates.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+                .query(rollUp);
+      }
+    } else {
+      String sql = SQL_SELECT_FACETS_BY_PARAMS + SQL_GROUP_BY_FACETS;
+      LOG.debug("SQL: {}", sql);
+      bindSearchParams(jdbcClient.sql(sql), params).query(rollUp);
+    }
+    Map<Long, Long> topOwnerCounts = new LinkedHashMap<>();
+    ownerCounts.entrySet().stream()
+            .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(topOwners)
+            .forEach(owner -> topOwnerCounts.put(owner.getKey(), owner.getValue()));
+    return new HorseFacetCounts(sexCounts, birthYearCounts, topOwnerCounts);
+  }
+
+  /**
+   * Answers a search whose name is matched typo-tolerant.
+   * The candidates come from the fuzzy name index, the remaining filters are applied by the database.
+   * The candidates are filtered in batches, closest names first, until enough of them passed the filters,
+   * so the limit is applied to the filtered matches and not to the candidates.
+   *
+   * @param params the search parameters
+   * @return the matching horses, the closest names first
+   */
+  private List<Horse> getByParamsWithFuzzyName(HorseSearchDto params) {
+    LOG.trace("getByParamsWithFuzzyName() with parameters: {}", params);
+    List<Long> candidates = nameIndex.search(params.name(), Integer.MAX_VALUE, this::getAllNames);
+    int limit = params.limit() == null ? Integer.MAX_VALUE : params.limit();
+    Map<Long, Integer> rankById = new HashMap<>();
+    for (int rank = 0; rank < candidates.size(); rank++) {
+      rankById.put(candidates.get(rank), rank);
+    }
+    LOG.debug("SQL: {}", SQL_SELECT_ALL_BY_PARAMS_AND_IDS);
+    List<Horse> horses = new ArrayList<>();
+    for (int from = 0; from < candidates.size() && horses.size() < limit; from += SELECT_BY_IDS_BATCH_SIZE) {
+      horses.addAll(bindSearchParams(jdbcClient.sql(SQL_SELECT_ALL_BY_PARAMS_AND_IDS), params)
+              .param("ids", candidates.subList(from, Math.min(candidates.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+              .query(this::mapRow)
+              .list());
+    }
+    return horses.stream()
+            .sorted(Comparator.comparing(horse -> rankById.get(horse.id())))
+            .limit(limit)
+            .toList();
+  }
+
+  private Map<Long, String> getAllNames() {
+    LOG.trace("getAllNames()");
+    LOG.debug("SQL: {}", SQL_SELECT_ALL_NAMES);
+    Map<Long, String> names = new HashMap<>();
+    jdbcClient.sql(SQL_SELECT_ALL_NAMES)
+            .query(result -> {
+              names.put(result.getLong("id"), result.getString("name"));
+            });
+    return names;
+  }
+
+  private static boolean isFuzzy(HorseSearchDto params) {
+    return Boolean.TRUE.equals(params.fuzzy()) && params.name() != null;
+  }
+
+  private JdbcClient.StatementSpec bindSearchParams(JdbcClient.StatementSpec statement, HorseSearchDto params) {
+    return statement
+            // a fuzzy name is matched by the name index instead
+            .param("name", isFuzzy(params) ? null : params.name())
             .param("sex", params.sex() == null ? null : params.sex().toString())
             .param("born_before", params.bornBefore())
             .param("date_of_birth", params.dateOfBirth())
             .param("description", params.description())
             .param("owner_first_name", params.ownerFirstName())
             .param("owner_last_name", params.ownerLastName())
-            .param("limit", params.limit() == null ? Integer.MAX_VALUE : params.limit())
-            .query(this::mapRow)
-            .list();
+            .param("descends_from", params.descendsFrom());
   }
 
   @Override
@@ -129,10 +398,57 @@ public class HorseJdbcDao implements HorseDao {
   }
 
   @Override
+  public List<Horse> getAllByIdWithoutImage(Collection<Long> ids) {
+    LOG.trace("getAllByIdWithoutImage() with parameters: {}", ids);
+    List<Long> idList = List.copyOf(ids);
+    List<Horse> horses = new ArrayList<>(idList.size());
+    LOG.debug("SQL: {}", SQL_SELECT_BY_IDS_WITHOUT_IMAGE);
+    for (int from = 0; from < idList.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+      horses.addAll(jdbcClient
+              .sql(SQL_SELECT_BY_IDS_WITHOUT_IMAGE)
+              .param("ids", idList.subList(from, Math.min(idList.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+              .query(this::mapRowWithoutImage)
+              .list());
+    }
+    return horses;
+  }
+
+  @Override
+  public long getVersionById(long id) throws NotFoundException {
+    LOG.trace("getVersionById() with parameters: {}", id);
+    LOG.debug("SQL: {} with parameters: {}", SQL_SELECT_VERSION_BY_ID, id);
+    return jdbcClient
+            .sql(SQL_SELECT_VERSION_BY_ID)
+            .param("id", id)
+            .query(Long.class)
+            .optional()
+            .orElseThrow(() -> new NotFoundException("No horse with ID %d found".formatted(id)));
+  }
+
+  @Override
+  public HorseTreeVersion getTreeVersion(long id, long generations) throws NotFoundException {
+    LOG.trace("getTreeVersion() with parameters: {} , {}", id, generations);
+    LOG.debug("SQL: {} with parameters: {} , {}", SQL_SELECT_TREE_VERSION, id, generations);
+    HorseTreeVersion version = jdbcClient
+            .sql(SQL_SELECT_TREE_VERSION)
+            .param("id", id)
+            // a tree always holds its root, like the trees of the family tree builder
+            .param("generations", Math.max(1, generations))
+            .query((result, rownum) -> new HorseTreeVersion(result.getLong("horses"), result.getLong("checksum")))
+            .single();
+    if (version.horses() == 0) {
+      throw new NotFoundException("No horse with ID %d found".formatted(id));
+    }
+    return version;
+  }
+
+  @Override
+  @Transactional
   public Horse create(HorseCreateDto horse, InputStream image) throws IOException {
     LOG.trace("create() with parameters: {}", horse);
     LOG.debug("SQL: {} with parameters: {}", SQL_INSERT, horse);
     KeyHolder keyHolder = new GeneratedKeyHolder();
+    long version = nextVersion();
     int created = jdbcClient.sql(SQL_INSERT).param("name", horse.name())
             .param("description", horse.description())
             .param("date_of_birth", horse.dateOfBirth())
@@ -141,14 +457,17 @@ public class HorseJdbcDao implements HorseDao {
             .param("ownerId", horse.ownerId())
             .param("parent1_id", horse.parentId1())
             .param("parent2_id", horse.parentId2())
+            .param("version", version)
             .update(keyHolder);
     if (created == 0) {
       LOG.error("Error: Horse data is null.");
       throw new IOException("Could not create horse: " + horse);
     }
+    long id = keyHolder.getKey().longValue();
+    insertClosure(id, horse.parentId1(), horse.parentId2());
     LOG.info("Successfully inserted horse with name: {}", horse.name());
 
-    return new Horse(keyHolder.getKey().longValue(),
+    Horse createdHorse = new Horse(id,
             horse.name(),
             horse.description(),
             horse.dateOfBirth(),
@@ -156,15 +475,46 @@ public class HorseJdbcDao implements HorseDao {
             image,
             horse.ownerId(),
             horse.parentId1(),
-            horse.parentId2());
+            horse.parentId2(),
+            version);
+    afterCommitOfWrite(createdHorse, MutationJournal.Operation.CREATE);
+    return createdHorse;
   }
 
   @Override
+  @Transactional
   public void delete(Long id) throws NotFoundException {
     LOG.trace("delete()  with parameters: {}", id);
+    List<Long> descendants = getDescendantIds(id);
+    LOG.debug("SQL: {} with id: {}", SQL_TOUCH_CHILDREN, id);
+    jdbcClient.sql(SQL_TOUCH_CHILDREN)
+            .param("id", id).update();
     LOG.debug("SQL: {} with id: {}", SQL_DELETE_BY_ID, id);
     jdbcClient.sql(SQL_DELETE_BY_ID)
             .param("id", id).update();
+    // the closure rows of the horse itself are removed by the cascade, its descendants lost every path through it
+    descendants.remove(id);
+    rebuildClosure(descendants);
+    TransactionHooks.afterCommit(() -> {
+      if (snapshot != null) {
+        snapshot.remove(id);
+      }
+      nameIndex.remove(id);
+      prefixIndex.remove(id);
+      journal.append(MutationJournal.Subject.HORSE, MutationJournal.Operation.DELETE, id);
+    });
+  }
+
+  @Override
+  public boolean isAncestor(long ancestorId, long descendantId) {
+    LOG.trace("isAncestor() with parameters: {} , {}", ancestorId, descendantId);
+    LOG.debug("SQL: {} with parameters: {} , {}", SQL_COUNT_CLOSURE_PATH, ancestorId, descendantId);
+    return jdbcClient
+            .sql(SQL_COUNT_CLOSURE_PATH)
+            .param("ancestor_id", ancestorId)
+            .param("descendant_id", descendantId)
+            .query(Long.class)
+            .single() > 0;
   }
 
   @Override
@@ -185,6 +535,8 @@ public class HorseJdbcDao implements HorseDao {
       );
     }
     LOG.info("Successfully updated horse with name: {}", updatedHorse.name());
+    TransactionHooks.afterCommit(
+            () -> journal.append(MutationJournal.Subject.HORSE, MutationJournal.Operation.IMAGE, id));
     return new Horse(
             updatedHorse.id(),
             updatedHorse.name(),
@@ -194,7 +546,8 @@ public class HorseJdbcDao implements HorseDao {
             null,
             updatedHorse.ownerId(),
             updatedHorse.parentId1(),
-            updatedHorse.parentId2());
+            updatedHorse.parentId2(),
+            updatedHorse.version());
   }
 
   private InputStream getImageById(long id) throws NotFoundException {
@@ -204,9 +557,26 @@ public class HorseJdbcDao implements HorseDao {
   }
 
   @Override
-  public Horse update(HorseUpdateDto horse, InputStream image) throws NotFoundException {
-    LOG.trace("update() with parameters: {} , {}", horse, image);
-    LOG.debug("SQL: {} with parameters: {}", SQL_INSERT, horse);
+  @Transactional
+  public Horse update(HorseUpdateDto horse, InputStream image, Long expectedVersion)
+          throws NotFoundException, ConflictException {
+    LOG.trace("update() with parameters: {} , {} , {}", horse, image, expectedVersion);
+    LOG.debug("SQL: {} with parameters: {}", SQL_SELECT_PARENTS_BY_ID_FOR_UPDATE, horse.id());
+    List<Long> previousParents = jdbcClient
+            .sql(SQL_SELECT_PARENTS_BY_ID_FOR_UPDATE)
+            .param("id", horse.id())
+            .query((result, rownum) -> Arrays.asList(
+                    result.getObject("parent1_id", Long.class),
+                    result.getObject("parent2_id", Long.class)))
+            .optional()
+            .orElse(null);
+    boolean parentsChanged = previousParents != null
+            && !Objects.equals(previousParents, Arrays.asList(horse.parentId1(), horse.parentId2()));
+    if (parentsChanged) {
+      checkPedigreeForCycles(horse);
+    }
+    LOG.debug("SQL: {} with parameters: {}", SQL_UPDATE, horse);
+    long version = nextVersion();
     int updated = jdbcClient
             .sql(SQL_UPDATE)
             .param("id", horse.id())
@@ -218,15 +588,26 @@ public class HorseJdbcDao implements HorseDao {
             .param("owner_id", horse.ownerId())
             .param("parent1_id", horse.parentId1())
             .param("parent2_id", horse.parentId2())
+            .param("version", version)
+            .param("expected_version", expectedVersion)
             .update();
 
+    if (updated == 0 && previousParents != null) {
+      // the horse exists, so only the expected version could have prevented the update
+      throw new StaleVersionException(
+              "Horse with ID %d was changed since version %d".formatted(horse.id(), expectedVersion));
+    }
     if (updated == 0) {
       throw new NotFoundException(
               "Could not update horse with ID " + horse.id() + ", because it does not exist"
       );
     }
+    if (parentsChanged) {
+      // every descendant inherits the changed ancestry, so the whole subtree has to be recomputed
+      rebuildClosure(getDescendantIds(horse.id()));
+    }
     LOG.info("Successfully updated horse with name: {}", horse.name());
-    return new Horse(
+    Horse updatedHorse = new Horse(
             horse.id(),
             horse.name(),
             horse.description(),
@@ -235,9 +616,227 @@ public class HorseJdbcDao implements HorseDao {
             image,
             horse.ownerId(),
             horse.parentId1(),
-            horse.parentId2());
+            horse.parentId2(),
+            version);
+    afterCommitOfWrite(updatedHorse, MutationJournal.Operation.UPDATE);
+    return updatedHorse;
   }
 
+  /**
+   * Answers a search from the columnar snapshot and fetches only the matching rows by their IDs.
+   *
+   * @param params the search parameters, supported by the snapshot
+   * @return the matching horses, ordered by ID like the SQL search
+   */
+  private List<Horse> getByParamsFromSnapshot(HorseSearchDto params) {
+    LOG.trace("getByParamsFromSnapshot() with parameters: {}", params);
+    long[] ownerIds = null;
+    if (params.ownerFirstName() != null || params.ownerLastName() != null) {
+      LOG.debug("SQL: {}", SQL_SELECT_OWNER_IDS_BY_NAME);
+      ownerIds = jdbcClient.sql(SQL_SELECT_OWNER_IDS_BY_NAME)
+              .param("owner_first_name", params.ownerFirstName())
+              .param("owner_last_name", params.ownerLastName())
+              .query(Long.class)
+              .list()
+              .stream()
+              .mapToLong(Long::longValue)
+              .sorted()
+              .toArray();
+    }
+    List<Long> ids = snapshot.search(params, ownerIds);
+
+    LOG.debug("SQL: {}", SQL_SELECT_BY_IDS);
+    List<Horse> horses = new ArrayList<>(ids.size());
+    for (int from = 0; from < ids.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+      horses.addAll(jdbcClient
+              .sql(SQL_SELECT_BY_IDS)
+              .param("ids", ids.subList(from, Math.min(ids.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+              .query(this::mapRow)
+              .list());
+    }
+    // the rows of an IN list come back in the order of the index, not of the list
+    horses.sort(Comparator.comparing(Horse::id));
+    return horses;
+  }
+
+  /**
+   * Applies a committed create or update to the in-memory search structures and journals it.
+   *
+   * @param horse     the horse as it was written
+   * @param operation whether the horse was created or updated
+   */
+  private void afterCommitOfWrite(Horse horse, MutationJournal.Operation operation) {
+    TransactionHooks.afterCommit(() -> {
+      if (snapshot != null) {
+        snapshot.upsert(horse);
+      }
+      nameIndex.put(horse.id(), horse.name());
+      prefixIndex.put(new HorseSummary(horse.id(), horse.name(), horse.dateOfBirth(), horse.sex()));
+      journal.append(MutationJournal.Subject.HORSE, operation, horse.id());
+    });
+  }
+
+  /**
+   * Rejects parent assignments that would make a horse its own ancestor.
+   * Runs in the transaction of the update and locks the closure of the new parents until it commits,
+   * so concurrent updates can not close a cycle together.
+   *
+   * @param horse the update data of the horse
+   * @throws ConflictException if a new parent is the horse itself or one of its descendants
+   */
+  private void checkPedigreeForCycles(HorseUpdateDto horse) throws ConflictException {
+    LOG.trace("checkPedigreeForCycles() with parameters: {}", horse);
+    List<Long> parentIds = Stream.of(horse.parentId1(), horse.parentId2())
+            .filter(Objects::nonNull)
+            .toList();
+    if (parentIds.isEmpty()) {
+      return;
+    }
+    LOG.debug("SQL: {} with parameters: {}", SQL_LOCK_CLOSURE_SELF, parentIds);
+    jdbcClient.sql(SQL_LOCK_CLOSURE_SELF)
+            .param("ids", parentIds)
+            .query(Long.class)
+            .list();
+    LOG.debug("SQL: {} with parameters: {} , {}", SQL_SELECT_DESCENDANTS_AMONG, horse.id(), parentIds);
+    List<String> conflictErrors = jdbcClient.sql(SQL_SELECT_DESCENDANTS_AMONG)
+            .param("id", horse.id())
+            .param("ids", parentIds)
+            .query(Long.class)
+            .list()
+            .stream()
+            .map(parentId -> "Horse %d can not be a parent, because it descends from horse %d".formatted(parentId, horse.id()))
+            .toList();
+    if (!conflictErrors.isEmpty()) {
+      throw new ConflictException("Pedigree of horse would contain a cycle", conflictErrors);
+    }
+  }
+
+  /**
+   * Adds the closure rows of a freshly inserted horse,
+   * derived from the already complete closure rows of its parents.
+   *
+   * @param id        the ID of the new horse
+   * @param parentId1 the ID of the first parent, may be null
+   * @param parentId2 the ID of the second parent, may be null
+   */
+  private void insertClosure(long id, Long parentId1, Long parentId2) {
+    LOG.trace("insertClosure() with parameters: {} , {} , {}", id, parentId1, parentId2);
+    LOG.debug("SQL: {} with parameters: {}", SQL_INSERT_CLOSURE_FROM_PARENTS, id);
+    jdbcClient.sql(SQL_INSERT_CLOSURE_SELF)
+            .param("id", id)
+            .update();
+    if (parentId1 != null || parentId2 != null) {
+      jdbcClient.sql(SQL_INSERT_CLOSURE_FROM_PARENTS)
+              .param("id", id)
+              .param("parent1_id", parentId1)
+              .param("parent2_id", parentId2)
+              .update();
+    }
+  }
+
+  private List<Long> getDescendantIds(long id) {
+    LOG.trace("getDescendantIds() with parameters: {}", id);
+    LOG.debug("SQL: {} with parameters: {}", SQL_SELECT_DESCENDANT_IDS, id);
+    return new ArrayList<>(jdbcClient
+            .sql(SQL_SELECT_DESCENDANT_IDS)
+            .param("id", id)
+            .query(Long.class)
+            .list());
+  }
+
+  @Override
+  @Transactional
+  public int backfillClosure() {
+    LOG.trace("backfillClosure()");
+    LOG.debug("SQL: {}", SQL_SELECT_IDS_WITHOUT_CLOSURE);
+    List<Long> missing = jdbcClient.sql(SQL_SELECT_IDS_WITHOUT_CLOSURE)
+            .query(Long.class)
+            .list();
+    if (missing.isEmpty()) {
+      return 0;
+    }
+    Set<Long> cyclic = insertClosureByGeneration(getParentsByIds(missing));
+    if (!cyclic.isEmpty()) {
+      // data stored before the cycle check existed, the horses stay searchable without their ancestry
+      LOG.error("Pedigree of horses {} contains a cycle, only their own closure rows are added", cyclic);
+      List<Long> cyclicList = List.copyOf(cyclic);
+      LOG.debug("SQL: {} with parameters: {}", SQL_INSERT_CLOSURE_SELF_BY_IDS, cyclicList);
+      for (int from = 0; from < cyclicList.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+        jdbcClient.sql(SQL_INSERT_CLOSURE_SELF_BY_IDS)
+                .param("ids", cyclicList.subList(from, Math.min(cyclicList.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+                .update();
+      }
+    }
+    LOG.info("Added the missing closure rows of {} horses", missing.size());
+    return missing.size();
+  }
+
+  /**
+   * Recomputes all closure rows of the given horses from the parent columns.
+   *
+   * @param ids the IDs of the horses whose ancestry changed, closed under the descendant relation
+   */
+  private void rebuildClosure(Collection<Long> ids) {
+    LOG.trace("rebuildClosure() with parameters: {}", ids);
+    if (ids.isEmpty()) {
+      return;
+    }
+    List<Long> idList = List.copyOf(ids);
+    LOG.debug("SQL: {} with parameters: {}", SQL_DELETE_CLOSURE_BY_DESCENDANTS, idList);
+    for (int from = 0; from < idList.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+      jdbcClient.sql(SQL_DELETE_CLOSURE_BY_DESCENDANTS)
+              .param("ids", idList.subList(from, Math.min(idList.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+              .update();
+    }
+    Set<Long> cyclic = insertClosureByGeneration(getParentsByIds(idList));
+    if (!cyclic.isEmpty()) {
+      throw new FatalException("Pedigree of horses %s contains a cycle".formatted(cyclic));
+    }
+  }
+
+  private Map<Long, List<Long>> getParentsByIds(List<Long> ids) {
+    LOG.trace("getParentsByIds() with parameters: {}", ids);
+    LOG.debug("SQL: {} with parameters: {}", SQL_SELECT_PARENTS_BY_IDS, ids);
+    Map<Long, List<Long>> parents = new HashMap<>();
+    for (int from = 0; from < ids.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+      jdbcClient.sql(SQL_SELECT_PARENTS_BY_IDS)
+              .param("ids", ids.subList(from, Math.min(ids.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+              .query((RowCallbackHandler) result -> parents.put(result.getLong("id"), Arrays.asList(
+                      result.getObject("parent1_id", Long.class),
+                      result.getObject("parent2_id", Long.class))));
+    }
+    return parents;
+  }
+
+  /**
+   * Inserts the closure rows of horses without any, generation by generation, parents before their foals,
+   * so the rows of every horse are derived from the already complete rows of its parents.
+   * Unlike a recursive query, this never follows each of the many paths through a line-bred pedigree.
+   * Every round completes at least one horse, or stops, so a cycle cannot keep it running.
+   *
+   * @param pending the parent IDs of the horses, by their IDs, parents not among them must have complete rows
+   * @return the IDs of the horses left without rows, as they are part of a cycle or descend from one
+   */
+  private Set<Long> insertClosureByGeneration(Map<Long, List<Long>> pending) {
+    LOG.trace("insertClosureByGeneration() with parameters: {}", pending.keySet());
+    while (!pending.isEmpty()) {
+      List<Long> generation = pending.entrySet().stream()
+              .filter(horse -> horse.getValue().stream().noneMatch(pending::containsKey))
+              .map(Map.Entry::getKey)
+              .toList();
+      if (generation.isEmpty()) {
+        break;
+      }
+      LOG.debug("SQL: {} with parameters: {}", SQL_INSERT_CLOSURE_FOR_GENERATION, generation);
+      for (int from = 0; from < generation.size(); from += SELECT_BY_IDS_BATCH_SIZE) {
+        jdbcClient.sql(SQL_INSERT_CLOSURE_FOR_GENERATION)
+                .param("ids", generation.subList(from, Math.min(generation.size(), from + SELECT_BY_IDS_BATCH_SIZE)))
+                .update();
+      }
+      generation.forEach(pending::remove);
+    }
+    return pending.keySet();
+  }
 
   private Horse mapRow(ResultSet result, int rownum) throws SQLException {
     LOG.trace("maptRow() with parameters: {} , {}", result, rownum);
@@ -250,6 +849,31 @@ public class HorseJdbcDao implements HorseDao {
             result.getBinaryStream("image"),
             result.getObject("owner_id", Long.class),
             result.getObject("parent1_id", Long.class),
-            result.getObject("parent2_id", Long.class));
+            result.getObject("parent2_id", Long.class),
+            result.getLong("version"));
+  }
+
+  private Horse mapRowWithoutImage(ResultSet result, int rownum) throws SQLException {
+    return new Horse(
+            result.getLong("id"),
+            result.getString("name"),
+            result.getString("description"),
+            result.getDate("date_of_birth").toLocalDate(),
+            Sex.valueOf(result.getString("sex")),
+            null,
+            result.getObject("owner_id", Long.class),
+            result.getObject("parent1_id", Long.class),
+            result.getObject("parent2_id", Long.class),
+            result.getLong("version"));
+  }
+
+  /**
+   * Draws the version of a created or updated horse, higher than the version of any horse before.
+   *
+   * @return the next version
+   */
+  private long nextVersion() {
+    LOG.debug("SQL: {}", SQL_NEXT_VERSION);
+    return jdbcClient.sql(SQL_NEXT_VERSION).query(Long.class).single();
   }
 }
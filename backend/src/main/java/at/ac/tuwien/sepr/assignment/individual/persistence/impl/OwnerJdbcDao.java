@@ -5,22 +5,28 @@ import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal;
 import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * JDBC implementation of {@link OwnerDao} for interacting with the database.
@@ -41,6 +47,10 @@ public class OwnerJdbcDao implements OwnerDao {
           "DELETE FROM " + TABLE_NAME
                   + " WHERE ID = :id";
 
+  // the horses of a deleted owner lose it through the foreign key, which does not change their version
+  private static final String SQL_TOUCH_HORSES_OF_OWNER =
+          "UPDATE horse SET version = NEXT VALUE FOR horse_version WHERE owner_id = :id";
+
   private static final String SQL_GET_ALL =
           "SELECT * FROM " + TABLE_NAME;
 
@@ -56,11 +66,19 @@ public class OwnerJdbcDao implements OwnerDao {
 
   private static final String SQL_SELECT_SEARCH_LIMIT_CLAUSE = " LIMIT :limit";
 
+  private static final String SQL_SELECT_ALL_NAMES =
+          "SELECT id, first_name, last_name FROM " + TABLE_NAME;
+
   private final JdbcClient jdbcClient;
+  private final MutationJournal journal;
+  private final FuzzyNameIndex nameIndex = new FuzzyNameIndex("owner name");
+  private final PrefixNameIndex<Owner> prefixIndex =
+          new PrefixNameIndex<>("owner name", Owner::id, owner -> fullName(owner.firstName(), owner.lastName()));
 
   @Autowired
-  public OwnerJdbcDao(JdbcClient jdbcClient) {
+  public OwnerJdbcDao(JdbcClient jdbcClient, MutationJournal journal) {
     this.jdbcClient = jdbcClient;
+    this.journal = journal;
   }
 
   @Override
@@ -68,10 +86,17 @@ public class OwnerJdbcDao implements OwnerDao {
     LOG.trace("create() with parameters: {}", owner);
     LOG.debug("SQL: {} with parameters: {}", SQL_INSERT, owner);
     if (owner != null) {
+      KeyHolder keyHolder = new GeneratedKeyHolder();
       jdbcClient.sql(SQL_INSERT).param("first_name", owner.firstName())
               .param("last_name", owner.lastName())
               .param("description", owner.description())
-              .update();
+              .update(keyHolder);
+      long id = keyHolder.getKey().longValue();
+      TransactionHooks.afterCommit(() -> {
+        nameIndex.put(id, fullName(owner.firstName(), owner.lastName()));
+        prefixIndex.put(new Owner(id, owner.firstName(), owner.lastName(), owner.description()));
+        journal.append(MutationJournal.Subject.OWNER, MutationJournal.Operation.CREATE, id);
+      });
     } else {
       LOG.error("Error: Owner is null");
       throw new IOException("Owner is null");
@@ -114,6 +139,9 @@ public class OwnerJdbcDao implements OwnerDao {
   @Override
   public Collection<Owner> search(OwnerSearchDto searchParameters) throws NotFoundException {
     LOG.trace("search() with parameters: {}", searchParameters);
+    if (Boolean.TRUE.equals(searchParameters.fuzzy()) && searchParameters.name() != null) {
+      return searchFuzzy(searchParameters);
+    }
     LOG.debug("SQL: {} with parameters: {}", SQL_SELECT_SEARCH, searchParameters);
     var query = SQL_SELECT_SEARCH;
 
@@ -150,12 +178,66 @@ public class OwnerJdbcDao implements OwnerDao {
   }
 
   @Override
+  @Transactional
   public void delete(Long id) throws NotFoundException {
     LOG.trace("delete()  with parameters: {}", id);
+    LOG.debug("SQL: {} with parameters: {}", SQL_TOUCH_HORSES_OF_OWNER, id);
+    jdbcClient.sql(SQL_TOUCH_HORSES_OF_OWNER)
+            .param("id", id).update();
     LOG.debug("SQL: {} with parameters: {}", SQL_DELETE_BY_ID, id);
     jdbcClient.sql(SQL_DELETE_BY_ID)
             .param("id", id).update();
+    TransactionHooks.afterCommit(() -> {
+      nameIndex.remove(id);
+      prefixIndex.remove(id);
+      journal.append(MutationJournal.Subject.OWNER, MutationJournal.Operation.DELETE, id);
+    });
+  }
+
+  @Override
+  public List<Owner> suggestByName(String prefix, int limit) {
+    LOG.trace("suggestByName() with parameters: {} , {}", prefix, limit);
+    return prefixIndex.suggest(prefix, limit, () -> new ArrayList<>(getAll()));
+  }
+
+  /**
+   * Searches owners whose name is within a small edit distance of the searched name.
+   *
+   * @param searchParameters the search parameters, with a name
+   * @return the matching owners, the closest names first
+   * @throws NotFoundException if no owner matches
+   */
+  private Collection<Owner> searchFuzzy(OwnerSearchDto searchParameters) throws NotFoundException {
+    LOG.trace("searchFuzzy() with parameters: {}", searchParameters);
+    int limit = searchParameters.maxAmount() == null ? Integer.MAX_VALUE : searchParameters.maxAmount();
+    List<Long> ids = nameIndex.search(searchParameters.name(), limit, this::getAllNames);
+    if (ids.isEmpty()) {
+      throw new NotFoundException("No owner with a name similar to %s found".formatted(searchParameters.name()));
+    }
+    Map<Long, Owner> ownersById = new HashMap<>();
+    for (Owner owner : getAllById(ids)) {
+      ownersById.put(owner.id(), owner);
+    }
+    LOG.info("Successfully fetched Owners");
+    return ids.stream()
+            .map(ownersById::get)
+            .filter(Objects::nonNull)
+            .toList();
+  }
+
+  private Map<Long, String> getAllNames() {
+    LOG.trace("getAllNames()");
+    LOG.debug("SQL: {}", SQL_SELECT_ALL_NAMES);
+    Map<Long, String> names = new HashMap<>();
+    jdbcClient.sql(SQL_SELECT_ALL_NAMES)
+            .query(result -> {
+              names.put(result.getLong("id"), fullName(result.getString("first_name"), result.getString("last_name")));
+            });
+    return names;
+  }
 
+  private static String fullName(String firstName, String lastName) {
+    return firstName + " " + lastName;
   }
 
   private Owner mapRow(ResultSet resultSet, int i) throws SQLException {
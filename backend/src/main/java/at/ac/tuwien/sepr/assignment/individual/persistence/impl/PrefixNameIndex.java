@@ -0,0 +1,132 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index answering name prefix lookups for autocompletion.
+ * The normalized names are kept in a sorted skip list, so a lookup is a range scan over the matching keys only.
+ * Besides the full name, every later word of a name is indexed, so "smi" also suggests "Wendy Smith".
+ * The index is loaded lazily on the first lookup, changes before that are picked up by the load.
+ *
+ * @param <T> the type of the suggested values
+ */
+class PrefixNameIndex<T> {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final char ID_SEPARATOR = '\u0000';
+
+  private final String name;
+  private final ToLongFunction<T> idOf;
+  private final Function<T, String> nameOf;
+  private final ConcurrentSkipListMap<String, T> valuesByKey = new ConcurrentSkipListMap<>();
+  private final Map<Long, List<String>> keysById = new HashMap<>();
+  private volatile boolean loaded;
+
+  /**
+   * Creates an empty index.
+   *
+   * @param name   what is indexed, used for logging only
+   * @param idOf   extracts the unique ID of a value
+   * @param nameOf extracts the name of a value, that is matched against the prefixes
+   */
+  PrefixNameIndex(String name, ToLongFunction<T> idOf, Function<T, String> nameOf) {
+    this.name = name;
+    this.idOf = idOf;
+    this.nameOf = nameOf;
+  }
+
+  /**
+   * Finds the values whose name, or one of its words, starts with {@code prefix}.
+   *
+   * @param prefix the typed prefix
+   * @param limit  the maximum number of values to return
+   * @param loader supplies all values, only called if the index is not loaded yet
+   * @return the matching values in alphabetical order of the matched name
+   */
+  List<T> suggest(String prefix, int limit, Supplier<List<T>> loader) {
+    LOG.trace("suggest() with parameters: {} , {}", prefix, limit);
+    if (!loaded) {
+      load(loader);
+    }
+    String normalized = FuzzyNameIndex.normalize(prefix);
+    Map<Long, T> suggestions = new LinkedHashMap<>();
+    for (T value : valuesByKey.subMap(normalized, true, normalized + Character.MAX_VALUE, false).values()) {
+      if (suggestions.size() >= limit) {
+        break;
+      }
+      suggestions.putIfAbsent(idOf.applyAsLong(value), value);
+    }
+    return new ArrayList<>(suggestions.values());
+  }
+
+  /**
+   * Stores or replaces a value, ignored until the index is loaded.
+   *
+   * @param value the value to index
+   */
+  synchronized void put(T value) {
+    if (!loaded) {
+      return;
+    }
+    long id = idOf.applyAsLong(value);
+    removeKeys(id);
+    addKeys(id, value);
+  }
+
+  /**
+   * Removes the value with the given ID, ignored until the index is loaded.
+   *
+   * @param id the ID of the value to remove
+   */
+  synchronized void remove(long id) {
+    if (!loaded) {
+      return;
+    }
+    removeKeys(id);
+  }
+
+  private synchronized void load(Supplier<List<T>> loader) {
+    if (loaded) {
+      return;
+    }
+    for (T value : loader.get()) {
+      addKeys(idOf.applyAsLong(value), value);
+    }
+    loaded = true;
+    LOG.info("Loaded {} prefix index with {} keys", name, valuesByKey.size());
+  }
+
+  private void addKeys(long id, T value) {
+    String normalized = FuzzyNameIndex.normalize(nameOf.apply(value));
+    List<String> keys = new ArrayList<>();
+    int wordStart = 0;
+    while (wordStart >= 0) {
+      // the ID keeps the keys of equal names apart
+      keys.add(normalized.substring(wordStart) + ID_SEPARATOR + id);
+      int space = normalized.indexOf(' ', wordStart);
+      wordStart = space < 0 ? -1 : space + 1;
+    }
+    for (String key : keys) {
+      valuesByKey.put(key, value);
+    }
+    keysById.put(id, keys);
+  }
+
+  private void removeKeys(long id) {
+    List<String> keys = keysById.remove(id);
+    if (keys != null) {
+      keys.forEach(valuesByKey::remove);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence.impl;
+
+import java.lang.invoke.MethodHandles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Helpers for keeping in-memory structures in sync with the transactions of the DAOs.
+ */
+final class TransactionHooks {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private TransactionHooks() {
+  }
+
+  /**
+   * Runs an action once the surrounding transaction has committed,
+   * so in-memory structures never see rolled back writes.
+   * Without a surrounding transaction the action runs immediately.
+   * A failing action is logged, as the write it follows has already committed and must not be reported as failed.
+   *
+   * @param action the action to run
+   */
+  static void afterCommit(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          runLogged(action);
+        }
+      });
+    } else {
+      runLogged(action);
+    }
+  }
+
+  private static void runLogged(Runnable action) {
+    try {
+      action.run();
+    } catch (RuntimeException e) {
+      LOG.error("Updating in-memory structures after a committed write failed, they may be stale", e);
+    }
+  }
+}
@@ -1,11 +1,15 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
 
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import at.ac.tuwien.sepr.assignment.individual.exception.StaleVersionException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import java.lang.invoke.MethodHandles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -32,5 +36,35 @@ public class ApplicationExceptionHandler {
     return new ValidationErrorRestDto(e.summary(), e.errors());
   }
 
+  /**
+   * Handles requests that ran past their deadline by returning a 504 Gateway Timeout response.
+   * This covers deadlines checked by the application as well as statements cancelled by their query timeout.
+   *
+   * @param e the exception aborting the request
+   * @return a {@link ProblemDetail} describing the timeout
+   */
+  @ExceptionHandler({DeadlineExceededException.class, QueryTimeoutException.class})
+  @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+  @ResponseBody
+  public ProblemDetail handleDeadlineExceeded(RuntimeException e) {
+    LOG.warn("Terminating request processing with status 504 due to {}: {}", e.getClass().getSimpleName(), e.getMessage());
+    return ProblemDetail.forStatusAndDetail(HttpStatus.GATEWAY_TIMEOUT, "Request did not finish in time");
+  }
+
+  /**
+   * Handles {@link StaleVersionException} by returning a 412 Precondition Failed response,
+   * as the change was based on a version given in {@code If-Match} that is not the current one anymore.
+   *
+   * @param e the exception rejecting the change
+   * @return a {@link ProblemDetail} describing the conflicting change
+   */
+  @ExceptionHandler
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  @ResponseBody
+  public ProblemDetail handleStaleVersion(StaleVersionException e) {
+    LOG.warn("Terminating request processing with status 412 due to {}: {}", e.getClass().getSimpleName(), e.getMessage());
+    return ProblemDetail.forStatusAndDetail(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+  }
+
 
 }
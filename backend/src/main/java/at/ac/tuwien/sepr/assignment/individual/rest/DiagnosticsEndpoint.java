@@ -0,0 +1,98 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * REST controller for diagnosing the running application.
+ * A flight recording exposes thread dumps, system properties and the recorded queries,
+ * so the controller only exists with {@code app.diagnostics.enabled=true}
+ * and answers requests from other hosts than the server itself only with {@code app.diagnostics.allow-remote=true}.
+ */
+@RestController
+@RequestMapping(DiagnosticsEndpoint.BASE_PATH)
+@ConditionalOnProperty(name = "app.diagnostics.enabled", havingValue = "true")
+public class DiagnosticsEndpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final String BASE_PATH = "/diagnostics";
+  private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final boolean allowRemote;
+
+  @Autowired
+  public DiagnosticsEndpoint(@Value("${app.diagnostics.allow-remote:false}") boolean allowRemote) {
+    this.allowRemote = allowRemote;
+  }
+
+  /**
+   * Dumps the data of all running flight recordings into a single JFR file.
+   *
+   * @param request the request, to check where it comes from
+   * @return the JFR file, to be opened with JDK Mission Control or the {@code jfr} tool
+   * @throws IOException if the recording can not be written
+   */
+  @GetMapping(value = "recording", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+  public ResponseEntity<InputStreamResource> dumpRecording(HttpServletRequest request) throws IOException {
+    LOG.info("GET {}/recording", BASE_PATH);
+    if (!allowRemote && !isLoopback(request.getRemoteAddr())) {
+      LOG.warn("Refused flight recording to remote address {}", request.getRemoteAddr());
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Flight recordings are only served to local requests");
+    }
+    if (!FlightRecorder.isAvailable() || FlightRecorder.getFlightRecorder().getRecordings().isEmpty()) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No flight recording is running");
+    }
+    Path file = Files.createTempFile("recording-", ".jfr");
+    try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+      snapshot.dump(file);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+    headers.setContentLength(Files.size(file));
+    headers.setContentDisposition(ContentDisposition.attachment()
+            .filename("wendys-family-tree-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr")
+            .build());
+    // the file is deleted as soon as it has been sent
+    return new ResponseEntity<>(
+            new InputStreamResource(Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE)),
+            headers,
+            HttpStatus.OK);
+  }
+
+  private static boolean isLoopback(String address) {
+    try {
+      // the remote address is a literal IP, so this does not resolve anything
+      return InetAddress.getByName(address).isLoopbackAddress();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+}
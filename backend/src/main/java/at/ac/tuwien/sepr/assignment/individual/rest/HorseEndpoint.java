@@ -1,20 +1,34 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionPool;
+import at.ac.tuwien.sepr.assignment.individual.config.ImageTransferEvent;
+import at.ac.tuwien.sepr.assignment.individual.config.LatencyMetrics;
+import at.ac.tuwien.sepr.assignment.individual.dto.ChangeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchResultDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateRestDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseTreeVersion;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.service.ChangeFeedService;
 import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
 import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
@@ -24,12 +38,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -38,6 +54,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.server.ResponseStatusException;
 
 
@@ -53,18 +70,24 @@ public class HorseEndpoint {
   static final String BASE_PATH = "/horses";
 
   private final HorseService service;
+  private final ChangeFeedService changeFeed;
+  private final LatencyMetrics metrics;
 
   @Autowired
-  public HorseEndpoint(HorseService service) {
+  public HorseEndpoint(HorseService service, ChangeFeedService changeFeed, LatencyMetrics metrics) {
     this.service = service;
+    this.changeFeed = changeFeed;
+    this.metrics = metrics;
   }
 
   /**
    * Searches for horses based on the given search parameters.
+   * The counts of all matches are only computed on request, see {@link #searchHorsesWithFacets}.
    *
    * @param searchParameters the parameters to filter the horse search
    * @return a stream of {@link HorseListDto} matching the search criteria
    */
+  @AdmissionPool(EndpointClass.SEARCH)
   @GetMapping
   public Stream<HorseListDto> searchHorses(HorseSearchDto searchParameters) {
     LOG.info("GET " + BASE_PATH + "/{}", searchParameters);
@@ -73,17 +96,114 @@ public class HorseEndpoint {
   }
 
   /**
-   * Retrieves the details of a horse by its ID.
+   * Searches for horses like {@link #searchHorses}, if the request opts in with {@code facets=true}.
+   * The matches are answered together with the counts of all matches, regardless of the limit,
+   * broken down by sex, year of birth and the owners with the most matches.
+   * The counts are rolled up from one grouped query over the search predicate, without loading the matches.
    *
-   * @param id the unique identifier of the horse
+   * @param searchParameters the parameters to filter the horse search
+   * @return the matching horses, and the total number of matches and their facet counts
+   */
+  @AdmissionPool(EndpointClass.SEARCH)
+  @GetMapping(params = "facets=true")
+  public HorseSearchResultDto searchHorsesWithFacets(HorseSearchDto searchParameters) {
+    LOG.info("GET " + BASE_PATH + "?facets=true {}", searchParameters);
+    LOG.debug("request parameters: {}", searchParameters);
+    return service.horsesWithFacetsByParameters(searchParameters);
+  }
+
+  /**
+   * Suggests horses whose name, or one of its words, starts with the given prefix.
+   * Meant to be called on every keystroke, the suggestions are answered from memory.
+   *
+   * @param prefix the typed beginning of the name
+   * @param limit  the maximum number of suggestions
+   * @return a stream of {@link HorseSuggestionDto} in alphabetical order
+   */
+  @AdmissionPool(EndpointClass.SEARCH)
+  @GetMapping("suggest")
+  public Stream<HorseSuggestionDto> suggest(
+          @RequestParam("prefix") String prefix,
+          @RequestParam(value = "limit", defaultValue = "10") int limit) {
+    LOG.info("GET " + BASE_PATH + "/suggest?prefix={}&limit={}", prefix, limit);
+    return service.suggest(prefix, limit);
+  }
+
+  /**
+   * Streams the committed creates, updates and deletes of horses and owners as Server-Sent Events,
+   * named {@code horse} or {@code owner}, with the journal sequence as event ID.
+   * A client reconnecting with the {@code Last-Event-ID} header first receives the changes it missed,
+   * or a {@code reset} event if they are unknown, as the server restarted without its mutation journal.
+   * A client falling too far behind receives a {@code dropped} event and is disconnected.
+   *
+   * @param lastEventId the ID of the last event the client received, if it reconnects
+   * @return the event stream
+   */
+  @GetMapping(path = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter changes(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+    LOG.info("GET " + BASE_PATH + "/changes, last event ID {}", lastEventId);
+    SseEmitter emitter = new SseEmitter(0L);
+    ChangeFeedService.Subscription subscription = changeFeed.subscribe(lastEventId,
+            new ChangeFeedService.ChangeListener() {
+              @Override
+              public void onChange(ChangeDto change) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(change.sequence()))
+                        .name(change.subject().toLowerCase())
+                        .data(change, MediaType.APPLICATION_JSON));
+              }
+
+              @Override
+              public void onReset() throws IOException {
+                emitter.send(SseEmitter.event().name("reset").data("the changes since your last event ID are unknown"));
+              }
+
+              @Override
+              public void onIdle() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+              }
+
+              @Override
+              public void onDropped() {
+                try {
+                  emitter.send(SseEmitter.event().name("dropped").data("reconnect with your last event ID"));
+                  emitter.complete();
+                } catch (IOException e) {
+                  emitter.completeWithError(e);
+                }
+              }
+            });
+    emitter.onCompletion(subscription::cancel);
+    emitter.onTimeout(subscription::cancel);
+    emitter.onError(e -> subscription.cancel());
+    return emitter;
+  }
+
+  /**
+   * Retrieves the details of a horse by its ID, tagged with the version of the horse.
+   * A client sending the tag it has in {@code If-None-Match} gets 304 Not Modified if the horse did not change,
+   * which costs a lookup of the version only.
+   *
+   * @param id          the unique identifier of the horse
+   * @param ifNoneMatch the entity tags the client already has, if any
    * @return the detailed information of the requested horse
    * @throws NotFoundException if the horse is not found
    */
   @GetMapping("{id}")
-  public HorseDetailDto getById(@PathVariable("id") long id) throws NotFoundException {
+  public ResponseEntity<HorseDetailDto> getById(
+          @PathVariable("id") long id,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+          throws NotFoundException {
     LOG.info("GET " + BASE_PATH + "/{}", id);
     try {
-      return service.getById(id);
+      if (ifNoneMatch != null) {
+        String current = versionTag(service.getVersionById(id));
+        if (matches(ifNoneMatch, current)) {
+          return tagged(ResponseEntity.status(HttpStatus.NOT_MODIFIED), current).build();
+        }
+      }
+      HorseDetailDto horse = service.getById(id);
+      return tagged(ResponseEntity.ok(), versionTag(horse.version())).body(horse);
     } catch (NotFoundException e) {
       HttpStatus status = HttpStatus.NOT_FOUND;
       LOG.warn("Error getting horse with ID {}: {}", id, e.getMessage(), e);
@@ -99,12 +219,13 @@ public class HorseEndpoint {
    * @param id the unique identifier of the horse
    * @return the Image of the horse as a Inputstream as JPEG
    */
+  @AdmissionPool(EndpointClass.IMAGE)
   @GetMapping(value = "{id}/image", produces = MediaType.IMAGE_JPEG_VALUE)
   public ResponseEntity<InputStreamResource> getHorseImage(@PathVariable("id") long id) {
     LOG.info("GET " + BASE_PATH + "/{}/image", id);
     try {
       InputStream imageStream = service.getHorseImage(id);
-      InputStreamResource resource = new InputStreamResource(imageStream);
+      InputStreamResource resource = new InputStreamResource(new CountingInputStream(id, imageStream));
 
       HttpHeaders headers = new HttpHeaders();
       headers.setContentType(MediaType.IMAGE_JPEG);
@@ -118,20 +239,33 @@ public class HorseEndpoint {
 
   /**
    * Retrieves the details of a horse with it's parents
-   * by its ID and depth.
+   * by its ID and depth, tagged with the version of the whole tree.
+   * A client sending the tag it has in {@code If-None-Match} gets 304 Not Modified if no horse of the tree changed,
+   * which costs a single aggregate over the ancestors instead of building the tree.
    *
    * @param id          the unique identifier of the horse
    * @param generations how many generations of parents should be fetched
+   * @param ifNoneMatch the entity tags the client already has, if any
    * @return A Horse that will act as a tree node
    * @throws NotFoundException if the horse is not found
    */
+  @AdmissionPool(EndpointClass.TREE)
   @GetMapping("{id}/familytree")
-  public HorseTreeNodeDto getByIdForTree(
+  public ResponseEntity<HorseTreeNodeDto> getByIdForTree(
           @PathVariable("id") long id,
-          @RequestParam(value = "generations", defaultValue = "0") int generations) throws NotFoundException {
+          @RequestParam(value = "generations", defaultValue = "0") int generations,
+          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch)
+          throws NotFoundException {
     LOG.info("GET " + BASE_PATH + "/{}/familytree?generations={}", id, generations);
     try {
-      return service.getByIdForTree(id, generations);
+      if (ifNoneMatch != null) {
+        String current = treeTag(service.getTreeVersion(id, generations));
+        if (matches(ifNoneMatch, current)) {
+          return tagged(ResponseEntity.status(HttpStatus.NOT_MODIFIED), current).build();
+        }
+      }
+      HorseTreeNodeDto tree = service.getByIdForTree(id, generations);
+      return tagged(ResponseEntity.ok(), treeTag(tree)).body(tree);
     } catch (NotFoundException e) {
       HttpStatus status = HttpStatus.NOT_FOUND;
       LOG.warn("Error getting horse with ID {}: {}", id, e.getMessage(), e);
@@ -143,21 +277,26 @@ public class HorseEndpoint {
 
   /**
    * Updates the details of an existing horse, including an optional image file.
+   * With an {@code If-Match} tag of the details, the update is only applied if the horse is still at that version,
+   * otherwise the request fails with 412 Precondition Failed.
    *
-   * @param id    the ID of the horse to update
-   * @param horse the updated horse data
-   * @param image the updated horse image
+   * @param id      the ID of the horse to update
+   * @param horse   the updated horse data
+   * @param image   the updated horse image
+   * @param ifMatch the entity tag of the details the update is based on, if any
    * @return the updated horse details
    * @throws ConflictException   if the Owner or Parent does not exist
    * @throws ValidationException if the horse has invalid Data
    */
   @PutMapping(path = "{id}", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
-  public HorseDetailDto update(
+  public ResponseEntity<HorseDetailDto> update(
           @PathVariable("id") long id,
           @RequestPart("horse") String horse,
-          @RequestPart(value = "image", required = false) MultipartFile image)
+          @RequestPart(value = "image", required = false) MultipartFile image,
+          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
           throws ConflictException, ValidationException {
     LOG.info("PUT " + BASE_PATH + "/{}, {}, {}", id, horse, image);
+    Long expectedVersion = expectedVersion(ifMatch);
     LOG.debug("Received JSON horse: {}", horse);
     try {
       JsonObject horseJson = (JsonObject) JsonParser.parseString(horse);
@@ -171,7 +310,8 @@ public class HorseEndpoint {
               horseJson.has("parent2Id") ? horseJson.get("parent2Id").getAsLong() : null);
       LOG.info("PUT " + BASE_PATH);
       LOG.debug("Body of request:\n{}", toUpdate);
-      return service.update(toUpdate.toUpdateDtoWithId(id), image);
+      HorseDetailDto updated = service.update(toUpdate.toUpdateDtoWithId(id), image, expectedVersion);
+      return ResponseEntity.ok().eTag(versionTag(updated.version())).body(updated);
 
     } catch (NotFoundException | ValidationException | ConflictException | IOException e) {
       HttpStatus status = HttpStatus.NOT_FOUND;
@@ -245,6 +385,7 @@ public class HorseEndpoint {
 
   /**
    * Removes the image of a horse
+   * The response is tagged with the new version of the horse, for a following update to send in {@code If-Match}.
    *
    * @param id the ID of the horse whos image we want to delete
    * @return ResponseStatus if the deletion was succesfull or not
@@ -253,8 +394,8 @@ public class HorseEndpoint {
   public ResponseEntity<Void> removeImageById(@PathVariable("id") long id) {
     LOG.info("Remove " + BASE_PATH + "/{}/image", id);
     try {
-      service.removeImageById(id);
-      return ResponseEntity.noContent().build();
+      HorseDetailDto removed = service.removeImageById(id);
+      return ResponseEntity.noContent().eTag(versionTag(removed.version())).build();
     } catch (NotFoundException e) {
       HttpStatus status = HttpStatus.NOT_FOUND;
       LOG.warn("Error removing horse image with ID {}: {}", id, e.getMessage(), e);
@@ -275,4 +416,128 @@ public class HorseEndpoint {
     LOG.warn("{} {}: {}: {}", status.value(), message, e.getClass().getSimpleName(), e.getMessage());
   }
 
+  /**
+   * Tags a horse strongly with its version, which {@code If-Match} of an update refers to.
+   */
+  private static String versionTag(long version) {
+    return "\"" + version + "\"";
+  }
+
+  /**
+   * Tags a family tree weakly, it is only compared for revalidation,
+   * and Tomcat does not compress responses with strong tags as compression changes their bytes.
+   */
+  private static String treeTag(HorseTreeVersion version) {
+    return "W/\"" + Long.toHexString(version.checksum()) + "." + version.horses() + "\"";
+  }
+
+  /**
+   * Tags a built family tree the way {@link HorseService#getTreeVersion} identifies it.
+   */
+  private static String treeTag(HorseTreeNodeDto tree) {
+    Set<Long> horses = new HashSet<>();
+    long checksum = 0;
+    Deque<HorseTreeNodeDto> pending = new ArrayDeque<>();
+    pending.push(tree);
+    while (!pending.isEmpty()) {
+      HorseTreeNodeDto node = pending.pop();
+      // a line-bred horse appears several times in the tree, but only once in the closure
+      if (horses.add(node.id())) {
+        checksum += HorseTreeVersion.checksumOf(node.id(), node.version());
+      }
+      if (node.parent1() != null) {
+        pending.push(node.parent1());
+      }
+      if (node.parent2() != null) {
+        pending.push(node.parent2());
+      }
+    }
+    return treeTag(new HorseTreeVersion(horses.size(), checksum));
+  }
+
+  /**
+   * Adds the tag of a revalidatable response.
+   * Clients have to revalidate before reusing it, and caches have to keep the JSON, CBOR and Smile encodings apart.
+   */
+  private static ResponseEntity.BodyBuilder tagged(ResponseEntity.BodyBuilder response, String tag) {
+    return response.eTag(tag).cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT);
+  }
+
+  /**
+   * Checks whether a tag is listed in an {@code If-None-Match} header, comparing weakly.
+   */
+  private static boolean matches(String header, String tag) {
+    String opaqueTag = tag.startsWith("W/") ? tag.substring(2) : tag;
+    for (String candidate : header.split(",")) {
+      String trimmed = candidate.trim();
+      if (trimmed.equals("*") || trimmed.equals(opaqueTag) || trimmed.equals("W/" + opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the version an update is based on from its {@code If-Match} header.
+   *
+   * @return the version, or null if any version may be updated
+   */
+  private static Long expectedVersion(String ifMatch) {
+    if (ifMatch == null || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String tag = ifMatch.trim();
+    try {
+      return Long.parseLong(tag.substring(1, tag.length() - 1));
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match is no version of a horse: " + ifMatch);
+    }
+  }
+
+  /**
+   * Stream counting the image bytes read from it as served.
+   * Closing it emits an {@link ImageTransferEvent} with the bytes sent.
+   */
+  private class CountingInputStream extends FilterInputStream {
+    private final ImageTransferEvent event = new ImageTransferEvent();
+    private final long horseId;
+    private long bytes;
+
+    CountingInputStream(long horseId, InputStream in) {
+      super(in);
+      this.horseId = horseId;
+      event.begin();
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        bytes++;
+        metrics.addImageBytesServed(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        bytes += read;
+        metrics.addImageBytesServed(read);
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      event.end();
+      if (event.shouldCommit()) {
+        event.horseId = horseId;
+        event.bytes = bytes;
+        event.commit();
+      }
+    }
+  }
 }
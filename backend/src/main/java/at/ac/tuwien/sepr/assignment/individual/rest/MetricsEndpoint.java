@@ -0,0 +1,46 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import at.ac.tuwien.sepr.assignment.individual.config.LatencyMetrics;
+import at.ac.tuwien.sepr.assignment.individual.dto.MetricsDto;
+import at.ac.tuwien.sepr.assignment.individual.service.impl.OwnerBatchLoader;
+import at.ac.tuwien.sepr.assignment.individual.service.impl.WriteQueue;
+
+import java.lang.invoke.MethodHandles;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller exposing the latency metrics recorded since startup.
+ */
+@RestController
+@RequestMapping(MetricsEndpoint.BASE_PATH)
+public class MetricsEndpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  static final String BASE_PATH = "/metrics";
+  private final LatencyMetrics metrics;
+  private final OwnerBatchLoader ownerLoader;
+  private final WriteQueue writeQueue;
+
+  public MetricsEndpoint(LatencyMetrics metrics, OwnerBatchLoader ownerLoader, WriteQueue writeQueue) {
+    this.metrics = metrics;
+    this.ownerLoader = ownerLoader;
+    this.writeQueue = writeQueue;
+  }
+
+  /**
+   * Retrieves the latency percentiles, call counts, returned rows and errors
+   * of every route and every DAO and service method, as well as the number of image bytes served
+   * and how owner lookups and writes were batched.
+   *
+   * @return the recorded metrics
+   */
+  @GetMapping
+  public MetricsDto getMetrics() {
+    LOG.info("GET {}", BASE_PATH);
+    return metrics.snapshot(ownerLoader.stats(), writeQueue.stats());
+  }
+}
@@ -1,5 +1,7 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionPool;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
@@ -43,18 +45,21 @@ public class OwnerEndpoint {
    *
    * @param name      the name of the owner
    * @param maxAmount the Amount of owners fetched
+   * @param fuzzy     whether the name should be matched typo-tolerant
    * @return a stream of {@link OwnerDto} matching the search criteria
    * @throws NotFoundException if the owner doesn't exist
    */
+  @AdmissionPool(EndpointClass.SEARCH)
   @GetMapping
   public Stream<OwnerDto> search(@RequestParam(value = "name", required = false) String name,
-                                 @RequestParam(value = "maxAmount", required = false) Integer maxAmount) throws NotFoundException {
-    LOG.info("GET {} query parameters: {}, {}", BASE_PATH, name, maxAmount);
+                                 @RequestParam(value = "maxAmount", required = false) Integer maxAmount,
+                                 @RequestParam(value = "fuzzy", required = false) Boolean fuzzy) throws NotFoundException {
+    LOG.info("GET {} query parameters: {}, {}, {}", BASE_PATH, name, maxAmount, fuzzy);
     try {
       if (name == null && maxAmount == null) {
         return service.getAll();
       }
-      OwnerSearchDto searchParameters = new OwnerSearchDto(name, maxAmount);
+      OwnerSearchDto searchParameters = new OwnerSearchDto(name, maxAmount, fuzzy);
       return service.search(searchParameters);
     } catch (NotFoundException e) {
       LOG.warn("GET {} - No owners found with parameters: {} , {}", BASE_PATH, name, maxAmount);
@@ -63,6 +68,22 @@ public class OwnerEndpoint {
 
   }
 
+  /**
+   * Suggests owners whose name, or one of its words, starts with the given prefix.
+   * Meant to be called on every keystroke, the suggestions are answered from memory.
+   *
+   * @param prefix the typed beginning of the name
+   * @param limit  the maximum number of suggestions
+   * @return a stream of {@link OwnerDto} in alphabetical order
+   */
+  @AdmissionPool(EndpointClass.SEARCH)
+  @GetMapping("suggest")
+  public Stream<OwnerDto> suggest(@RequestParam("prefix") String prefix,
+                                  @RequestParam(value = "limit", defaultValue = "10") int limit) {
+    LOG.info("GET {}/suggest query parameters: {}, {}", BASE_PATH, prefix, limit);
+    return service.suggest(prefix, limit);
+  }
+
   /**
    * Creates a new Owner with the provided data
    *
@@ -0,0 +1,69 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.ChangeDto;
+import java.io.IOException;
+
+/**
+ * Service for following the committed changes of horses and owners.
+ */
+public interface ChangeFeedService {
+
+  /**
+   * Subscribes to the changes of horses and owners.
+   * Every subscriber has a bounded buffer of changes not yet sent, a subscriber that falls behind by more
+   * than it holds is dropped and may subscribe again with the last change it received.
+   *
+   * @param lastEventId the sequence of the last change the subscriber has seen, the changes after it are sent first,
+   *                    or null for only changes committed from now on.
+   *                    If the changes after it are unknown, the subscriber is reset instead
+   * @param listener    receives the changes, on a thread of its own
+   * @return the subscription, to be cancelled once the subscriber is gone
+   */
+  Subscription subscribe(Long lastEventId, ChangeListener listener);
+
+  /**
+   * Receives the changes of a subscription.
+   */
+  interface ChangeListener {
+
+    /**
+     * Sends a change to the subscriber.
+     *
+     * @param change the change
+     * @throws IOException if the subscriber can not be reached anymore, which ends the subscription
+     */
+    void onChange(ChangeDto change) throws IOException;
+
+    /**
+     * Called instead of sending the missed changes when they are unknown, as the mutation journal is disabled
+     * or the subscriber has seen a sequence the journal never reached, like one from before a restart.
+     * The subscriber must reload everything it derived from the changes, later changes are sent as usual.
+     *
+     * @throws IOException if the subscriber can not be reached anymore, which ends the subscription
+     */
+    void onReset() throws IOException;
+
+    /**
+     * Called when no change arrived for a while, to keep the connection open and notice a gone subscriber.
+     *
+     * @throws IOException if the subscriber can not be reached anymore, which ends the subscription
+     */
+    void onIdle() throws IOException;
+
+    /**
+     * Called once the subscriber fell too far behind and was dropped.
+     */
+    void onDropped();
+  }
+
+  /**
+   * A running subscription.
+   */
+  interface Subscription {
+
+    /**
+     * Stops sending changes.
+     */
+    void cancel();
+  }
+}
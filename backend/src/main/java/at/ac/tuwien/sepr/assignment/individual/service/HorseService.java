@@ -3,13 +3,17 @@ package at.ac.tuwien.sepr.assignment.individual.service;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchResultDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSuggestionDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseTreeVersion;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.exception.StaleVersionException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -30,18 +34,41 @@ public interface HorseService {
    */
   Stream<HorseListDto> horsesByParameters(HorseSearchDto params);
 
+  /**
+   * Lists all horses stored in the system, that fit the parameters,
+   * together with the counts of all of them broken down by sex, year of birth and owner.
+   *
+   * @param params the parameters which will be used to search the horses, the limit only applies to the list
+   * @return the matching horses and the total number of matches and their facet counts
+   */
+  HorseSearchResultDto horsesWithFacetsByParameters(HorseSearchDto params);
+
+  /**
+   * Suggests horses while their name is typed.
+   * A horse is suggested, if its name or one of the words of its name starts with {@code prefix}.
+   *
+   * @param prefix the typed beginning of the name
+   * @param limit  the maximum number of suggestions
+   * @return the suggested horses in alphabetical order
+   */
+  Stream<HorseSuggestionDto> suggest(String prefix, int limit);
+
   /**
    * Updates the horse with the ID given in {@code horse}
    * with the data given in {@code horse}
    * in the persistent data store.
    *
    * @param horse the horse to update
+   * @param image the new image of the horse, null to keep the current one
+   * @param expectedVersion the version the horse must still have, null to update any version
    * @return he updated horse
    * @throws NotFoundException if the horse with given ID does not exist in the persistent data store
    * @throws ValidationException if the update data given for the horse is in itself incorrect (description too long, no name, …)
    * @throws ConflictException if the update data given for the horse is in conflict the data currently in the system (owner does not exist, …)
+   * @throws StaleVersionException if the horse was changed since the expected version
    */
-  HorseDetailDto update(HorseUpdateDto horse, MultipartFile image) throws NotFoundException, ValidationException, ConflictException, IOException;
+  HorseDetailDto update(HorseUpdateDto horse, MultipartFile image, Long expectedVersion)
+      throws NotFoundException, ValidationException, ConflictException, IOException;
 
   /**
    * Get the horse with given ID, with more detail information.
@@ -54,6 +81,15 @@ public interface HorseService {
    */
   HorseDetailDto getById(long id) throws NotFoundException;
 
+  /**
+   * Get only the version of the horse with given ID, which is also the {@code version} of its details.
+   *
+   * @param id the ID of the horse
+   * @return the current version of the horse
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   */
+  long getVersionById(long id) throws NotFoundException;
+
   InputStream getHorseImage(long id) throws NotFoundException;
 
   /**
@@ -69,6 +105,17 @@ public interface HorseService {
 
   HorseTreeNodeDto getByIdForTree(long id, long generations) throws NotFoundException;
 
+  /**
+   * Get the version of the family tree of the horse with given ID, without building the tree.
+   * It equals the version of the tree returned by {@link #getByIdForTree} as long as none of its horses changed.
+   *
+   * @param id the ID of the horse at the root of the tree
+   * @param generations the depth of horse generations
+   * @return the number of horses in the tree and the checksum of their versions
+   * @throws NotFoundException if the horse with the given ID does not exist in the persistent data store
+   */
+  HorseTreeVersion getTreeVersion(long id, long generations) throws NotFoundException;
+
   /**
    * Creates a horse with the given Information
    * in {@code horse} with the data given in
@@ -88,6 +135,14 @@ public interface HorseService {
    * @throws NotFoundException if the horse with the ID does not exist in the persistent data store
    */
   void deleteById(long id) throws NotFoundException;
+
+  /**
+   * Removes the image of the horse with given ID, which gives the horse a new version.
+   *
+   * @param id the ID of the horse whose image to remove
+   * @return the horse without its image
+   * @throws NotFoundException if the horse with the ID does not exist in the persistent data store
+   */
   HorseDetailDto removeImageById(long id) throws NotFoundException;
 
 
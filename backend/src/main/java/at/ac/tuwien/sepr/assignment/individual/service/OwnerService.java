@@ -71,5 +71,15 @@ public interface OwnerService {
    */
   Stream<OwnerDto> search(OwnerSearchDto searchParameters) throws NotFoundException;
 
+  /**
+   * Suggests owners while their name is typed.
+   * An owner is suggested, if their full name or one of its words starts with {@code prefix}.
+   *
+   * @param prefix the typed beginning of the name
+   * @param limit  the maximum number of suggestions
+   * @return the suggested owners in alphabetical order
+   */
+  Stream<OwnerDto> suggest(String prefix, int limit);
+
 
 }
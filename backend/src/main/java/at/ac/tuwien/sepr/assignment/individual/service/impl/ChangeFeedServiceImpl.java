@@ -0,0 +1,161 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.ChangeDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal;
+import at.ac.tuwien.sepr.assignment.individual.service.ChangeFeedService;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service implementation publishing the mutations appended to the {@link MutationJournal} to subscribers.
+ * The DAOs journal mutations once their transaction committed, so subscribers never see rolled back changes,
+ * and the journal sequence serves as event ID to resume from.
+ * Without the journal, or with an ID beyond its last sequence, there is nothing to resume from
+ * and the subscriber is reset.
+ * Every subscriber is served by a virtual thread of its own, taking from a buffer of
+ * {@code app.change-feed.buffer-size} changes; publishing never waits for a slow subscriber but drops it
+ * once its buffer is full.
+ */
+@Service
+public class ChangeFeedServiceImpl implements ChangeFeedService {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int REPLAY_BATCH_SIZE = 1000;
+
+  private final MutationJournal journal;
+  private final int bufferSize;
+  private final long heartbeatNanos;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructor of the ChangeFeedServiceImpl.
+   *
+   * @param journal    the journal of committed mutations
+   * @param bufferSize the number of changes buffered for a subscriber before it is dropped
+   * @param heartbeat  how long a subscriber may go without a change before it is sent a heartbeat
+   */
+  @Autowired
+  public ChangeFeedServiceImpl(MutationJournal journal,
+                               @Value("${app.change-feed.buffer-size:256}") int bufferSize,
+                               @Value("${app.change-feed.heartbeat:15s}") Duration heartbeat) {
+    this.journal = journal;
+    this.bufferSize = bufferSize;
+    this.heartbeatNanos = heartbeat.toNanos();
+    journal.addListener(this::publish);
+  }
+
+  @Override
+  public Subscription subscribe(Long lastEventId, ChangeListener listener) {
+    LOG.trace("subscribe() with parameters: {}", lastEventId);
+    Subscriber subscriber = new Subscriber(listener);
+    // registered before replaying, so no change committed in between is missed
+    subscribers.add(subscriber);
+    subscriber.thread = Thread.ofVirtual()
+            .name("change-feed-subscriber")
+            .unstarted(() -> subscriber.run(lastEventId));
+    subscriber.thread.start();
+    LOG.debug("Change feed has {} subscribers", subscribers.size());
+    return subscriber;
+  }
+
+  private void publish(MutationJournal.Mutation mutation) {
+    for (Subscriber subscriber : subscribers) {
+      if (!subscriber.buffer.offer(mutation)) {
+        LOG.warn("Dropping change feed subscriber {} changes behind", bufferSize);
+        subscriber.dropped = true;
+        subscriber.cancel();
+      }
+    }
+  }
+
+  private static ChangeDto toDto(MutationJournal.Mutation mutation) {
+    return new ChangeDto(mutation.sequence(), mutation.subject().name(), mutation.operation().name(),
+            mutation.id(), mutation.timestampMillis());
+  }
+
+  /**
+   * A subscriber and the changes not yet sent to it.
+   */
+  private final class Subscriber implements Subscription {
+    private final ChangeListener listener;
+    private final BlockingQueue<MutationJournal.Mutation> buffer = new ArrayBlockingQueue<>(bufferSize);
+    private volatile Thread thread;
+    private volatile boolean dropped;
+    private long sent = -1;
+
+    private Subscriber(ChangeListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void cancel() {
+      subscribers.remove(this);
+      Thread running = thread;
+      if (running != null) {
+        running.interrupt();
+      }
+    }
+
+    private void run(Long lastEventId) {
+      try {
+        if (lastEventId != null) {
+          if (journal.isEnabled() && lastEventId <= journal.lastSequence()) {
+            replay(lastEventId);
+          } else {
+            LOG.debug("Resetting change feed subscriber, changes after {} are unknown", lastEventId);
+            listener.onReset();
+          }
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+          MutationJournal.Mutation mutation = buffer.poll(heartbeatNanos, TimeUnit.NANOSECONDS);
+          if (mutation == null) {
+            listener.onIdle();
+          } else if (mutation.sequence() > sent) {
+            send(mutation);
+          }
+        }
+      } catch (InterruptedException e) {
+        LOG.debug("Change feed subscription ended");
+      } catch (IOException | RuntimeException e) {
+        LOG.debug("Change feed subscriber is gone: {}", e.getMessage());
+      } finally {
+        subscribers.remove(this);
+        if (dropped) {
+          listener.onDropped();
+        }
+      }
+    }
+
+    /**
+     * Sends the journaled changes after {@code lastEventId}, the buffer collects the ones committed meanwhile.
+     */
+    private void replay(long lastEventId) throws IOException {
+      sent = lastEventId;
+      List<MutationJournal.Mutation> batch;
+      do {
+        batch = journal.readAfter(sent, REPLAY_BATCH_SIZE);
+        for (MutationJournal.Mutation mutation : batch) {
+          send(mutation);
+        }
+      } while (batch.size() == REPLAY_BATCH_SIZE && !Thread.currentThread().isInterrupted());
+    }
+
+    private void send(MutationJournal.Mutation mutation) throws IOException {
+      listener.onChange(toDto(mutation));
+      sent = mutation.sequence();
+    }
+  }
+}
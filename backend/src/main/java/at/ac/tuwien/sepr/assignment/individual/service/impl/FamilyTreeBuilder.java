@@ -0,0 +1,123 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepr.assignment.individual.config.FamilyTreeBuildEvent;
+import at.ac.tuwien.sepr.assignment.individual.config.RequestDeadline;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds family trees generation by generation.
+ * All parents of one generation that have not been fetched yet are fetched with a single query,
+ * so the number of statements of a tree grows with its depth instead of its number of nodes.
+ * Images are not part of a tree and are not read.
+ * Horses that appear on several paths of the pedigree are fetched only once.
+ * The deadline of the request is checked before every generation.
+ */
+@Component
+public class FamilyTreeBuilder {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private final HorseDao dao;
+  private final HorseMapper mapper;
+
+  /**
+   * Constructor of the FamilyTreeBuilder.
+   *
+   * @param dao    Persistence Layer of the horse
+   * @param mapper mapper used to map horses to tree nodes
+   */
+  @Autowired
+  public FamilyTreeBuilder(HorseDao dao, HorseMapper mapper) {
+    this.dao = dao;
+    this.mapper = mapper;
+  }
+
+  /**
+   * Builds the family tree of a horse.
+   *
+   * @param id          the ID of the horse at the root of the tree
+   * @param generations the number of generations in the tree, including the root
+   * @return the root node of the tree
+   * @throws NotFoundException if the horse or one of its ancestors does not exist
+   */
+  public HorseTreeNodeDto build(long id, long generations) throws NotFoundException {
+    LOG.trace("build() with parameters: {} , {}", id, generations);
+    FamilyTreeBuildEvent event = new FamilyTreeBuildEvent();
+    event.begin();
+    Map<Long, Horse> horses = new HashMap<>();
+    Set<Long> generation = Set.of(id);
+    fetchAll(generation, horses);
+
+    long depth = 1;
+    for (; depth < generations && !generation.isEmpty(); depth++) {
+      RequestDeadline.checkCurrent();
+      Set<Long> missingParents = new LinkedHashSet<>();
+      for (Long horseId : generation) {
+        Horse horse = horses.get(horseId);
+        addIfMissing(missingParents, horses, horse.parentId1());
+        addIfMissing(missingParents, horses, horse.parentId2());
+      }
+      if (!missingParents.isEmpty()) {
+        fetchAll(missingParents, horses);
+      }
+      generation = missingParents;
+    }
+    HorseTreeNodeDto tree = toNode(id, generations, horses);
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.horseId = id;
+      event.generations = generations;
+      event.depth = generation.isEmpty() ? depth - 1 : depth;
+      event.nodes = horses.size();
+      event.commit();
+    }
+    return tree;
+  }
+
+  private static void addIfMissing(Set<Long> missing, Map<Long, Horse> horses, Long parentId) {
+    if (parentId != null && !horses.containsKey(parentId)) {
+      missing.add(parentId);
+    }
+  }
+
+  private void fetchAll(Set<Long> ids, Map<Long, Horse> horses) throws NotFoundException {
+    LOG.trace("fetchAll() with parameters: {}", ids);
+    for (Horse horse : dao.getAllByIdWithoutImage(ids)) {
+      horses.put(horse.id(), horse);
+    }
+    for (Long id : ids) {
+      if (!horses.containsKey(id)) {
+        throw new NotFoundException("No horse with ID %d found".formatted(id));
+      }
+    }
+  }
+
+  private HorseTreeNodeDto toNode(Long id, long generations, Map<Long, Horse> horses) {
+    Horse horse = horses.get(id);
+    HorseTreeNodeDto parent1 = null;
+    HorseTreeNodeDto parent2 = null;
+    if (generations > 1) {
+      if (horse.parentId1() != null) {
+        parent1 = toNode(horse.parentId1(), generations - 1, horses);
+      }
+      if (horse.parentId2() != null) {
+        parent2 = toNode(horse.parentId2(), generations - 1, horses);
+      }
+    }
+    return mapper.entityToTreeNodeDto(horse, parent1, parent2);
+  }
+}
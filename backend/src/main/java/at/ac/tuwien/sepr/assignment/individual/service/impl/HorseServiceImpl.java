@@ -1,8 +1,13 @@
 package at.ac.tuwien.sepr.assignment.individual.service.impl;
 
 
+import at.ac.tuwien.sepr.assignment.individual.config.HorseSearchEvent;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchFacetsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchResultDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSuggestionDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerFacetDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
@@ -11,21 +16,35 @@ import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 
 
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseFacetCounts;
+import at.ac.tuwien.sepr.assignment.individual.entity.HorseTreeVersion;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepr.assignment.individual.exception.ErrorListException;
 import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.mapper.OwnerMapper;
 import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
 import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
 import at.ac.tuwien.sepr.assignment.individual.service.OwnerService;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -41,11 +60,18 @@ import org.springframework.web.multipart.MultipartFile;
 @Service
 public class HorseServiceImpl implements HorseService {
   private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int TOP_OWNER_FACETS = 10;
+  private static final Duration MAX_COALESCED_WAIT = Duration.ofSeconds(5);
   private final HorseDao dao;
   private final HorseMapper mapper;
   private final HorseValidator validator;
   private final OwnerService ownerService;
-
+  private final OwnerDao ownerDao;
+  private final OwnerMapper ownerMapper;
+  private final FamilyTreeBuilder familyTreeBuilder;
+  private final WriteQueue writes;
+  private final SingleFlight<Long, HorseDetailDto> detailFlights = new SingleFlight<>(MAX_COALESCED_WAIT);
+  private final SingleFlight<TreeKey, HorseTreeNodeDto> treeFlights = new SingleFlight<>(MAX_COALESCED_WAIT);
 
   /**
    * Constructor of the HorseServiceImpl.
@@ -54,55 +80,118 @@ public class HorseServiceImpl implements HorseService {
    * @param mapper       mapper used to map entities to horses and vice versa
    * @param validator    validator used to validate horses
    * @param ownerService used to access services for owners
+   * @param ownerDao     used to look up owners inside the transaction of a write
+   * @param ownerMapper  used to map the owners looked up inside a write
+   * @param familyTreeBuilder used to build the family trees of horses
+   * @param writes       runs the mutations of horses
+   * @param journal      the journal of committed mutations, which end the sharing of lookups they change
    */
   @Autowired
   public HorseServiceImpl(HorseDao dao,
                           HorseMapper mapper,
                           HorseValidator validator,
-                          OwnerService ownerService) {
+                          OwnerService ownerService,
+                          OwnerDao ownerDao,
+                          OwnerMapper ownerMapper,
+                          FamilyTreeBuilder familyTreeBuilder,
+                          WriteQueue writes,
+                          MutationJournal journal) {
     this.dao = dao;
     this.mapper = mapper;
     this.validator = validator;
     this.ownerService = ownerService;
+    this.ownerDao = ownerDao;
+    this.ownerMapper = ownerMapper;
+    this.familyTreeBuilder = familyTreeBuilder;
+    this.writes = writes;
+    journal.addListener(this::invalidateFlights);
   }
 
   @Override
   public Stream<HorseListDto> horsesByParameters(HorseSearchDto params) throws FatalException {
     LOG.trace("horsesByParameters() with the parameters: {}", params);
     LOG.debug("Fetching all horses from the database with search parameters");
+    var event = new HorseSearchEvent();
+    event.begin();
+    var horses = dao.getByParams(params);
+    Map<Long, OwnerDto> ownerMap = ownersById(horses.stream()
+            .map(Horse::ownerId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toUnmodifiableSet()));
+    commitSearchEvent(event, params, horses.size());
+    return horses.stream()
+            .map(horse -> mapper.entityToListDto(horse, ownerMap));
+  }
+
+  @Override
+  public HorseSearchResultDto horsesWithFacetsByParameters(HorseSearchDto params) throws FatalException {
+    LOG.trace("horsesWithFacetsByParameters() with the parameters: {}", params);
+    LOG.debug("Fetching all horses and their facet counts from the database with search parameters");
+    var event = new HorseSearchEvent();
+    event.begin();
     var horses = dao.getByParams(params);
-    var ownerIds = horses.stream()
+    HorseFacetCounts counts = dao.getFacetCountsByParams(params, TOP_OWNER_FACETS);
+    // the owners of the listed horses and the top owners are loaded together
+    Set<Long> ownerIds = new HashSet<>(counts.ownerId().keySet());
+    horses.stream()
             .map(Horse::ownerId)
             .filter(Objects::nonNull)
-            .collect(Collectors.toUnmodifiableSet());
-    Map<Long, OwnerDto> ownerMap;
+            .forEach(ownerIds::add);
+    Map<Long, OwnerDto> ownerMap = ownersById(ownerIds);
+    commitSearchEvent(event, params, horses.size());
+
+    // every horse has a sex, so the sex counts add up to the total
+    long total = 0;
+    Map<Sex, Long> sexCounts = new EnumMap<>(Sex.class);
+    for (Sex sex : Sex.values()) {
+      long count = counts.sex().getOrDefault(sex, 0L);
+      sexCounts.put(sex, count);
+      total += count;
+    }
+    List<OwnerFacetDto> topOwners = counts.ownerId().entrySet().stream()
+            .map(entry -> new OwnerFacetDto(ownerMap.get(entry.getKey()), entry.getValue()))
+            .toList();
+    return new HorseSearchResultDto(
+            horses.stream()
+                    .map(horse -> mapper.entityToListDto(horse, ownerMap))
+                    .toList(),
+            new HorseSearchFacetsDto(total, sexCounts, counts.birthYear(), topOwners));
+  }
+
+  private Map<Long, OwnerDto> ownersById(Set<Long> ownerIds) {
     try {
-      ownerMap = ownerService.getAllById(ownerIds);
+      return ownerService.getAllById(ownerIds);
     } catch (NotFoundException | FatalException e) {
       throw new FatalException("Horse, that is already persisted, refers to non-existing owner", e);
     }
-    return horses.stream()
-            .map(horse -> mapper.entityToListDto(horse, ownerMap));
   }
 
   @Override
-  public HorseDetailDto update(HorseUpdateDto horse, MultipartFile image) throws NotFoundException, ValidationException, ConflictException, IOException {
-    LOG.trace("update() with parameters: {}", horse);
-    try (InputStream imageStream = (image != null) ? image.getInputStream() : null) {
-      validator.validateForUpdate(horse);
-      if (horse.parentId1() != null) {
-        HorseDetailDto parent1 = getById(horse.parentId1());
-        validator.validateHorseParents(parent1);
+  public Stream<HorseSuggestionDto> suggest(String prefix, int limit) {
+    LOG.trace("suggest() with parameters: {} , {}", prefix, limit);
+    return dao.suggestByName(prefix, limit).stream()
+            .map(mapper::summaryToSuggestionDto);
+  }
 
-      }
-      if (horse.parentId2() != null) {
-        HorseDetailDto parent2 = getById(horse.parentId2());
-        validator.validateHorseParents(parent2);
-      }
-      var updatedHorse = dao.update(horse, imageStream);
+  @Override
+  public HorseDetailDto update(HorseUpdateDto horse, MultipartFile image, Long expectedVersion)
+          throws NotFoundException, ValidationException, ConflictException, IOException {
+    LOG.trace("update() with parameters: {} , {}", horse, expectedVersion);
+    try {
+      validator.validateForUpdate(horse);
+      // the DAO rejects cycles in the pedigree within the same transaction as the references are checked in
+      var updatedHorse = writes.execute(() -> {
+        validateReferences(horse.ownerId(), horse.parentId1(), horse.parentId2());
+        // opened by the command, so a retried command reads the image again
+        try (InputStream imageStream = (image != null) ? image.getInputStream() : null) {
+          return dao.update(horse, imageStream, expectedVersion);
+        }
+      });
       return mapper.entityToDetailDto(
               updatedHorse,
               ownerMapForSingleId(updatedHorse.ownerId()));
+    } catch (ErrorListException e) {
+      throw rejection(e);
     } catch (IOException e) {
       LOG.error("Error while creating horse: {}", horse, e);
       throw new IOException(e.getMessage(), null);
@@ -114,10 +203,12 @@ public class HorseServiceImpl implements HorseService {
   public HorseDetailDto getById(long id) throws NotFoundException {
     LOG.trace("getById() with parameters: {}", id);
     try {
-      Horse horse = dao.getById(id);
-      return mapper.entityToDetailDto(
-              horse,
-              ownerMapForSingleId(horse.ownerId()));
+      return detailFlights.execute(id, () -> {
+        Horse horse = dao.getById(id);
+        return mapper.entityToDetailDto(
+                horse,
+                ownerMapForSingleId(horse.ownerId()));
+      });
     } catch (NotFoundException e) {
       LOG.warn("Horse with ID {} not found, throwing exception", id);
       throw new NotFoundException("Horse couldn't be found");
@@ -141,23 +232,23 @@ public class HorseServiceImpl implements HorseService {
   }
 
 
+  @Override
+  public long getVersionById(long id) throws NotFoundException {
+    LOG.trace("getVersionById() with parameters: {}", id);
+    return dao.getVersionById(id);
+  }
+
+  @Override
+  public HorseTreeVersion getTreeVersion(long id, long generations) throws NotFoundException {
+    LOG.trace("getTreeVersion() with parameters: {} , {}", id, generations);
+    return dao.getTreeVersion(id, generations);
+  }
+
   @Override
   public HorseTreeNodeDto getByIdForTree(long id, long generations) throws NotFoundException {
     LOG.trace("getByIdForTree() with parameters: {} , {}", id, generations);
     try {
-      HorseTreeNodeDto parent1 = null;
-      HorseTreeNodeDto parent2 = null;
-      Horse horse = dao.getById(id);
-      if (generations > 1) {
-        if (horse.parentId1() != null) {
-          parent1 = getByIdForTree(horse.parentId1(), generations - 1);
-        }
-        if (horse.parentId2() != null) {
-          parent2 = getByIdForTree(horse.parentId2(), generations - 1);
-        }
-      }
-      return mapper.entityToTreeNodeDto(
-              horse, parent1, parent2);
+      return treeFlights.execute(new TreeKey(id, generations), () -> familyTreeBuilder.build(id, generations));
     } catch (NotFoundException e) {
       LOG.warn("Horse with ID {} not found, throwing exception", id);
       throw new NotFoundException("Horse couldn't be found");
@@ -166,18 +257,19 @@ public class HorseServiceImpl implements HorseService {
 
 
   @Override
-  public Horse create(HorseCreateDto horse, MultipartFile image) throws ValidationException, NotFoundException, IOException {
+  public Horse create(HorseCreateDto horse, MultipartFile image)
+          throws ValidationException, ConflictException, NotFoundException, IOException {
     LOG.trace("create() with parameters: {} , {}", horse, image);
-    try (InputStream imageStream = (image != null) ? image.getInputStream() : null) {
+    try {
       validator.validateForCreate(horse);
-
-      if (horse.parentId1() != null) {
-        validator.validateHorseParents(getById(horse.parentId1()));
-      }
-      if (horse.parentId2() != null) {
-        validator.validateHorseParents(getById(horse.parentId2()));
-      }
-      return dao.create(horse, imageStream);
+      return writes.execute(() -> {
+        validateReferences(horse.ownerId(), horse.parentId1(), horse.parentId2());
+        try (InputStream imageStream = (image != null) ? image.getInputStream() : null) {
+          return dao.create(horse, imageStream);
+        }
+      });
+    } catch (ErrorListException e) {
+      throw rejection(e);
     } catch (IOException e) {
       LOG.error("Error while creating horse: {}", horse, e);
       throw new IOException(e.getMessage(), null);
@@ -190,10 +282,15 @@ public class HorseServiceImpl implements HorseService {
     LOG.trace("deleteById() with parameters: {}", id);
 
     try {
-      dao.delete(id);
+      writes.execute(() -> {
+        dao.delete(id);
+        return null;
+      });
     } catch (NotFoundException e) {
       LOG.warn("deleteById(): - Horse not found");
       throw new NotFoundException(e);
+    } catch (IOException e) {
+      throw new FatalException(e);
     }
 
 
@@ -203,17 +300,98 @@ public class HorseServiceImpl implements HorseService {
   public HorseDetailDto removeImageById(long id) throws NotFoundException {
     LOG.trace("removeImageById() with parameters: {}", id);
     try {
-      var updatedHorse = dao.removeImageById(id);
+      var updatedHorse = writes.execute(() -> dao.removeImageById(id));
       return mapper.entityToDetailDto(
               updatedHorse,
               ownerMapForSingleId(updatedHorse.ownerId()));
-    } catch (NotFoundException e) {
-      LOG.error("Error while updating horse with id: {}", id, e);
+    } catch (IOException e) {
+      throw new FatalException(e);
+    }
+  }
+
 
+  /**
+   * Checks that the owner and the parents a horse refers to exist and that the parents are valid horses.
+   * Called by the queued command, so with the write queue enabled they are checked in the transaction of the write
+   * and can not be deleted or changed between the check and the write by a command committed before it.
+   * Owners are looked up with the DAO, as the batch loader of the owner service may run the lookup
+   * on the connection of another request, outside this transaction.
+   *
+   * @throws ConflictException   if the owner or a parent does not exist
+   * @throws ValidationException if a parent is no valid horse
+   */
+  private void validateReferences(Long ownerId, Long parentId1, Long parentId2)
+          throws ConflictException, ValidationException {
+    List<String> conflicts = new ArrayList<>();
+    if (ownerId != null) {
+      try {
+        ownerDao.getById(ownerId);
+      } catch (NotFoundException e) {
+        conflicts.add("Owner %d does not exist".formatted(ownerId));
+      }
+    }
+    for (Long parentId : Arrays.asList(parentId1, parentId2)) {
+      if (parentId == null) {
+        continue;
+      }
+      try {
+        Horse parent = dao.getById(parentId);
+        validator.validateHorseParents(mapper.entityToDetailDto(parent, ownerMapInTransaction(parent.ownerId())));
+      } catch (NotFoundException e) {
+        conflicts.add("Parent %d does not exist".formatted(parentId));
+      }
+    }
+    if (!conflicts.isEmpty()) {
+      throw new ConflictException("Horse refers to data that does not exist", conflicts);
     }
-    return null;
   }
 
+  /**
+   * Rethrows the rejection of a queued command with the type it was thrown with.
+   * A command throwing both is inferred to throw their common superclass.
+   */
+  private static FatalException rejection(ErrorListException e) throws ValidationException, ConflictException {
+    if (e instanceof ValidationException validation) {
+      throw validation;
+    }
+    if (e instanceof ConflictException conflict) {
+      throw conflict;
+    }
+    return new FatalException(e);
+  }
+
+  /**
+   * Keeps lookups started before a committed mutation from being shared with requests arriving after it.
+   * A horse appears in the trees of all its descendants and an owner in the details of all its horses,
+   * so those are invalidated as a whole.
+   *
+   * @param mutation the committed mutation
+   */
+  private void invalidateFlights(MutationJournal.Mutation mutation) {
+    if (mutation.subject() == MutationJournal.Subject.HORSE) {
+      detailFlights.invalidate(mutation.id());
+      treeFlights.invalidateAll();
+    } else {
+      detailFlights.invalidateAll();
+    }
+  }
+
+  private static void commitSearchEvent(HorseSearchEvent event, HorseSearchDto params, int results) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.name = params.name() != null;
+      event.description = params.description() != null;
+      event.bornBefore = params.bornBefore() != null;
+      event.dateOfBirth = params.dateOfBirth() != null;
+      event.sex = params.sex() == null ? null : params.sex().name();
+      event.ownerName = params.ownerFirstName() != null || params.ownerLastName() != null;
+      event.descendsFrom = params.descendsFrom() != null;
+      event.fuzzy = Boolean.TRUE.equals(params.fuzzy());
+      event.limit = params.limit() == null ? -1 : params.limit();
+      event.results = results;
+      event.commit();
+    }
+  }
 
   private Map<Long, OwnerDto> ownerMapForSingleId(Long ownerId) {
     LOG.trace("ownerMapForSingleId() with parameters: {}", ownerId);
@@ -226,4 +404,21 @@ public class HorseServiceImpl implements HorseService {
     }
   }
 
+  /**
+   * Like {@link #ownerMapForSingleId}, but looks the owner up in the transaction of the calling write.
+   */
+  private Map<Long, OwnerDto> ownerMapInTransaction(Long ownerId) {
+    LOG.trace("ownerMapInTransaction() with parameters: {}", ownerId);
+    try {
+      return ownerId == null
+              ? null
+              : Collections.singletonMap(ownerId, ownerMapper.entityToDto(ownerDao.getById(ownerId)));
+    } catch (NotFoundException e) {
+      throw new FatalException("Owner %d referenced by horse not found".formatted(ownerId));
+    }
+  }
+
+  private record TreeKey(long id, long generations) {
+  }
+
 }
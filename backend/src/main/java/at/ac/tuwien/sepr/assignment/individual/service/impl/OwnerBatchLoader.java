@@ -0,0 +1,225 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepr.assignment.individual.config.RequestDeadline;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerLoaderStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Collects owner lookups of concurrent requests into batches answered by a single {@link OwnerDao#getAllById} query.
+ * As long as fewer than {@code app.owner-loader.max-concurrent-batches} batches are running,
+ * a lookup is dispatched right away, so a lookup without company never waits.
+ * Lookups arriving while all batches are running collect in the next batch, which is dispatched
+ * as soon as a running batch finishes or the next batch holds {@code app.owner-loader.max-batch-size} distinct IDs.
+ * Callers asking for an ID that is already part of the next batch share its lookup.
+ * A batch runs on the thread of its first caller, so its query is bound by the deadline
+ * and logged with the correlation id of that request. Every other caller waits no longer than its own deadline
+ * and fetches its owner again if the batch failed only because the request running it ran out of time.
+ */
+@Component
+public class OwnerBatchLoader {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Duration MAX_WAIT = Duration.ofSeconds(10);
+
+  private final OwnerDao dao;
+  private final int maxBatchSize;
+  private final int maxConcurrentBatches;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition batchFinished = lock.newCondition();
+  private int running;
+  private Map<Long, CompletableFuture<Owner>> next;
+
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong batchedIds = new AtomicLong();
+  private final LongAccumulator largestBatch = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Constructor of the OwnerBatchLoader.
+   *
+   * @param dao                  Persistence Layer of the owner
+   * @param maxBatchSize         the number of distinct IDs after which a waiting batch is dispatched anyway
+   * @param maxConcurrentBatches the number of batches running at once before lookups wait for the next batch
+   */
+  @Autowired
+  public OwnerBatchLoader(OwnerDao dao,
+                          @Value("${app.owner-loader.max-batch-size:100}") int maxBatchSize,
+                          @Value("${app.owner-loader.max-concurrent-batches:4}") int maxConcurrentBatches) {
+    this.dao = dao;
+    this.maxBatchSize = maxBatchSize;
+    this.maxConcurrentBatches = maxConcurrentBatches;
+  }
+
+  /**
+   * Fetches an owner by its ID, together with the lookups of other requests waiting at the same time.
+   *
+   * @param id the ID of the owner
+   * @return the owner with the ID {@code id}
+   * @throws NotFoundException if no owner with the given ID exists
+   */
+  public Owner load(long id) throws NotFoundException {
+    LOG.trace("load() with parameters: {}", id);
+    loads.incrementAndGet();
+    while (true) {
+      CompletableFuture<Owner> future = join(id);
+      try {
+        return future.get(waitNanos(), TimeUnit.NANOSECONDS);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof NotFoundException notFound) {
+          throw new NotFoundException(notFound.getMessage(), notFound);
+        }
+        if (!(e.getCause() instanceof AbandonedBatchException)) {
+          throw new FatalException("Fetching owner with ID %d failed".formatted(id), e.getCause());
+        }
+        RequestDeadline.checkCurrent();
+        if (Thread.currentThread().isInterrupted()) {
+          throw new FatalException("Interrupted while fetching owner with ID %d".formatted(id), e.getCause());
+        }
+        LOG.debug("Owner batch was abandoned by the request running it, fetching owner {} again", id);
+      } catch (TimeoutException e) {
+        RequestDeadline.checkCurrent();
+        throw new FatalException("Fetching owner with ID %d timed out".formatted(id), e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new FatalException("Interrupted while fetching owner with ID %d".formatted(id), e);
+      }
+    }
+  }
+
+  /**
+   * Returns the batching statistics since startup.
+   *
+   * @return the current statistics
+   */
+  public OwnerLoaderStatsDto stats() {
+    return new OwnerLoaderStatsDto(loads.get(), batches.get(), batchedIds.get(), largestBatch.get());
+  }
+
+  /**
+   * Adds a lookup to the next batch, or dispatches a new batch with it on the current thread.
+   *
+   * @param id the ID of the owner
+   * @return the lookup, completed already if the current thread dispatched its batch
+   */
+  private CompletableFuture<Owner> join(long id) {
+    Map<Long, CompletableFuture<Owner>> batch;
+    CompletableFuture<Owner> future;
+    lock.lock();
+    try {
+      if (next != null) {
+        future = next.computeIfAbsent(id, key -> new CompletableFuture<>());
+        if (next.size() >= maxBatchSize) {
+          batchFinished.signalAll();
+        }
+        return future;
+      }
+      future = new CompletableFuture<>();
+      batch = new HashMap<>();
+      batch.put(id, future);
+      if (running >= maxConcurrentBatches) {
+        next = batch;
+        try {
+          awaitTurn(batch);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          abandon(batch, e);
+          return future;
+        } finally {
+          next = null;
+        }
+      }
+      running++;
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      dispatch(batch);
+    } finally {
+      lock.lock();
+      try {
+        running--;
+        batchFinished.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return future;
+  }
+
+  private void awaitTurn(Map<Long, CompletableFuture<Owner>> batch) throws InterruptedException {
+    long waitNanos = waitNanos();
+    while (running >= maxConcurrentBatches && batch.size() < maxBatchSize && waitNanos > 0) {
+      waitNanos = batchFinished.awaitNanos(waitNanos);
+    }
+  }
+
+  private static long waitNanos() {
+    RequestDeadline deadline = RequestDeadline.current();
+    if (deadline == null) {
+      return MAX_WAIT.toNanos();
+    }
+    return Math.max(0, Math.min(MAX_WAIT.toNanos(), deadline.remainingNanos()));
+  }
+
+  private void dispatch(Map<Long, CompletableFuture<Owner>> batch) {
+    LOG.debug("Dispatching owner batch of {} IDs", batch.size());
+    batches.incrementAndGet();
+    batchedIds.addAndGet(batch.size());
+    largestBatch.accumulate(batch.size());
+    try {
+      for (Owner owner : dao.getAllById(batch.keySet())) {
+        CompletableFuture<Owner> future = batch.get(owner.id());
+        if (future != null) {
+          future.complete(owner);
+        }
+      }
+      batch.forEach((id, future) ->
+              future.completeExceptionally(new NotFoundException("Owner with ID %d not found".formatted(id))));
+    } catch (NotFoundException | RuntimeException e) {
+      RequestDeadline deadline = RequestDeadline.current();
+      if (e instanceof DeadlineExceededException || deadline != null && deadline.remainingNanos() <= 0) {
+        abandon(batch, e);
+      } else {
+        LOG.warn("Owner batch of {} IDs failed", batch.size(), e);
+        batch.values().forEach(future -> future.completeExceptionally(e));
+      }
+    }
+  }
+
+  private static void abandon(Map<Long, CompletableFuture<Owner>> batch, Exception cause) {
+    LOG.debug("Owner batch of {} IDs abandoned by the request running it", batch.size(), cause);
+    batch.values().forEach(future -> future.completeExceptionally(new AbandonedBatchException(cause)));
+  }
+
+  /**
+   * Failure of a batch caused by the request running it rather than by the lookups in it.
+   */
+  private static final class AbandonedBatchException extends RuntimeException {
+    AbandonedBatchException(Throwable cause) {
+      super(cause);
+    }
+  }
+}
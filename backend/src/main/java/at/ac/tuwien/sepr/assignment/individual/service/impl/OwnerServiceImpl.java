@@ -3,6 +3,7 @@ package at.ac.tuwien.sepr.assignment.individual.service.impl;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
 import at.ac.tuwien.sepr.assignment.individual.mapper.OwnerMapper;
@@ -31,6 +32,8 @@ public class OwnerServiceImpl implements OwnerService {
   private final OwnerDao dao;
   private final OwnerMapper mapper;
   private final OwnerValidator validator;
+  private final OwnerBatchLoader loader;
+  private final WriteQueue writes;
 
   /**
    * Constructor for the OwnerServiceImpl
@@ -38,13 +41,19 @@ public class OwnerServiceImpl implements OwnerService {
    * @param dao       the Persistence layer
    * @param mapper    mapper which will be used to map entities to owners and vice versa
    * @param validator check if the owner is valid
+   * @param loader    batches owner lookups of concurrent requests
+   * @param writes    runs the mutations of owners
    */
   public OwnerServiceImpl(
           OwnerDao dao,
-          OwnerMapper mapper, OwnerValidator validator) {
+          OwnerMapper mapper, OwnerValidator validator,
+          OwnerBatchLoader loader,
+          WriteQueue writes) {
     this.dao = dao;
     this.mapper = mapper;
     this.validator = validator;
+    this.loader = loader;
+    this.writes = writes;
   }
 
   @Override
@@ -52,8 +61,11 @@ public class OwnerServiceImpl implements OwnerService {
     LOG.trace("create() mit parameter: {}", owner);
     validator.validateForCreate(owner);
     try {
-      dao.create(owner);
-    } catch (IOException e) {
+      writes.execute(() -> {
+        dao.create(owner);
+        return null;
+      });
+    } catch (NotFoundException | IOException e) {
       LOG.error("Error while creating owner: {}", owner, e);
       throw new RuntimeException(e);
     }
@@ -76,10 +88,15 @@ public class OwnerServiceImpl implements OwnerService {
     LOG.trace("delete() mit parameter: {}", id);
 
     try {
-      dao.delete(id);
+      writes.execute(() -> {
+        dao.delete(id);
+        return null;
+      });
     } catch (NotFoundException e) {
       LOG.warn("deleteById(): - Owner not found");
       throw new NotFoundException(e);
+    } catch (IOException e) {
+      throw new FatalException(e);
     }
 
   }
@@ -94,7 +111,7 @@ public class OwnerServiceImpl implements OwnerService {
   @Override
   public OwnerDto getById(long id) throws NotFoundException {
     LOG.trace("getById(): mit parameter: {}", id);
-    return mapper.entityToDto(dao.getById(id));
+    return mapper.entityToDto(loader.load(id));
   }
 
   /**
@@ -132,4 +149,11 @@ public class OwnerServiceImpl implements OwnerService {
             .map(mapper::entityToDto);
   }
 
+  @Override
+  public Stream<OwnerDto> suggest(String prefix, int limit) {
+    LOG.trace("suggest() mit parameter: {} , {}", prefix, limit);
+    return dao.suggestByName(prefix, limit).stream()
+            .map(mapper::entityToDto);
+  }
+
 }
@@ -0,0 +1,130 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepr.assignment.individual.config.RequestDeadline;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces concurrent computations of the same key.
+ * The first caller of a key computes the result, every caller arriving while it is still running
+ * waits for and shares that result instead of repeating the work.
+ * Nothing is cached, a caller arriving after the computation finished starts a new one,
+ * and writes {@link #invalidate} the keys they change, so callers arriving after a write never share
+ * a computation that started before it.
+ * A caller waits no longer than its own request deadline and the configured maximum.
+ * It computes the result itself if the computation it waited for took longer than the maximum or failed,
+ * since the failure may have been caused by the deadline of the computing request;
+ * only a horse found missing is shared.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results, which must be safe to share between callers
+ */
+class SingleFlight<K, V> {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final Duration maxWait;
+
+  /**
+   * Creates a coalescer without computations in flight.
+   *
+   * @param maxWait how long a caller waits for the computation of another caller
+   */
+  SingleFlight(Duration maxWait) {
+    this.maxWait = maxWait;
+  }
+
+  /**
+   * Computes the result of a key, or joins the computation already running for it.
+   *
+   * @param key         the key identifying the computation
+   * @param computation computes the result, only called if no computation for the key is running
+   *                    or the running one can not be shared
+   * @return the result of the computation
+   * @throws NotFoundException if the computation could not find what it was looking for
+   */
+  V execute(K key, Computation<V> computation) throws NotFoundException {
+    CompletableFuture<V> own = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+    if (running == null) {
+      return compute(key, own, computation);
+    }
+
+    LOG.debug("Joining computation in flight for {}", key);
+    try {
+      return running.get(waitNanos(), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof NotFoundException notFound) {
+        throw new NotFoundException(notFound.getMessage(), notFound);
+      }
+      LOG.debug("Computation in flight for {} failed, computing it again", key, e.getCause());
+      RequestDeadline.checkCurrent();
+      return computation.compute();
+    } catch (TimeoutException e) {
+      RequestDeadline.checkCurrent();
+      LOG.warn("Computation in flight for {} took longer than {}, computing it again", key, maxWait);
+      return computation.compute();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FatalException("Interrupted while waiting for the computation of %s".formatted(key), e);
+    }
+  }
+
+  /**
+   * Stops sharing the computation running for a key, callers arriving afterwards start a new one.
+   * Callers already waiting for it still get its result.
+   *
+   * @param key the key changed by a write
+   */
+  void invalidate(K key) {
+    inFlight.remove(key);
+  }
+
+  /**
+   * Stops sharing every computation running, callers arriving afterwards start new ones.
+   */
+  void invalidateAll() {
+    inFlight.clear();
+  }
+
+  private long waitNanos() {
+    RequestDeadline deadline = RequestDeadline.current();
+    long waitNanos = maxWait.toNanos();
+    return deadline == null ? waitNanos : Math.max(0, Math.min(waitNanos, deadline.remainingNanos()));
+  }
+
+  private V compute(K key, CompletableFuture<V> own, Computation<V> computation) throws NotFoundException {
+    try {
+      V result = computation.compute();
+      own.complete(result);
+      return result;
+    } catch (NotFoundException | RuntimeException | Error e) {
+      own.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  /**
+   * A computation coalesced by {@link SingleFlight}.
+   *
+   * @param <V> the type of the result
+   */
+  @FunctionalInterface
+  interface Computation<V> {
+    V compute() throws NotFoundException;
+  }
+}
@@ -0,0 +1,300 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import at.ac.tuwien.sepr.assignment.individual.config.RequestDeadline;
+import at.ac.tuwien.sepr.assignment.individual.dto.WriteQueueStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the mutations of horses and owners.
+ * If {@code app.write-queue.enabled} is set, mutations are not run by the request threads, which would contend
+ * for the locks of the database, but queued for a single writer thread.
+ * The writer takes every command waiting in the queue, up to {@code app.write-queue.max-batch-size},
+ * and runs them in one shared transaction, so a single commit serves the whole batch.
+ * If the batch fails, it is rolled back and its commands are run again one transaction each,
+ * so only the failing command reports the failure.
+ * Commands whose request deadline passed while they were queued are not run at all,
+ * and callers stop waiting for their command once their deadline passes.
+ * A command the writer already started may still be committed then, like a statement cancelled too late.
+ * Otherwise, mutations run directly on the calling thread.
+ */
+@Component
+public class WriteQueue {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final long MAX_ENQUEUE_WAIT_SECONDS = 10;
+
+  private final boolean enabled;
+  private final int maxBatchSize;
+  private final TransactionTemplate transactionTemplate;
+  private final BlockingQueue<Pending<?>> queue;
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  private final AtomicLong commands = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private final LongAccumulator largestBatch = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Constructor of the WriteQueue.
+   *
+   * @param transactionManager manages the transactions of the batches
+   * @param enabled            whether mutations are queued for the writer thread
+   * @param capacity           the number of commands that may wait in the queue, callers block while it is full
+   * @param maxBatchSize       the maximum number of commands sharing one transaction
+   */
+  @Autowired
+  public WriteQueue(PlatformTransactionManager transactionManager,
+                    @Value("${app.write-queue.enabled:false}") boolean enabled,
+                    @Value("${app.write-queue.capacity:1024}") int capacity,
+                    @Value("${app.write-queue.max-batch-size:64}") int maxBatchSize) {
+    this.enabled = enabled;
+    this.maxBatchSize = maxBatchSize;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.writer = enabled
+            ? Thread.ofPlatform().name("write-queue").daemon(true).start(this::writeLoop)
+            : null;
+  }
+
+  /**
+   * Runs a mutation, on the writer thread if the queue is enabled, and waits until it is committed.
+   *
+   * @param command the mutation
+   * @param <T>     the type of the result of the mutation
+   * @param <E>     the type of the further checked exception the mutation rejects its data with
+   * @return the result of the mutation
+   * @throws E                 if the mutation rejected its data
+   * @throws NotFoundException if the mutation did not find what it should change
+   * @throws IOException       if the mutation could not be stored
+   */
+  public <T, E extends Exception> T execute(Command<T, E> command) throws E, NotFoundException, IOException {
+    if (!enabled) {
+      return command.run();
+    }
+    RequestDeadline deadline = RequestDeadline.current();
+    Pending<T> pending = new Pending<>(command, deadline, MDC.getCopyOfContextMap());
+    try {
+      long enqueueWaitNanos = TimeUnit.SECONDS.toNanos(MAX_ENQUEUE_WAIT_SECONDS);
+      if (deadline != null) {
+        enqueueWaitNanos = Math.min(enqueueWaitNanos, deadline.remainingNanos());
+      }
+      if (!queue.offer(pending, enqueueWaitNanos, TimeUnit.NANOSECONDS)) {
+        if (deadline != null) {
+          deadline.check();
+        }
+        throw new FatalException("Write queue stayed full for %d s".formatted(MAX_ENQUEUE_WAIT_SECONDS));
+      }
+      return deadline == null
+              ? pending.result.get()
+              : pending.result.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      throw new DeadlineExceededException("Write was not committed before its request deadline", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new FatalException("Interrupted while waiting for a write", e);
+    } catch (ExecutionException e) {
+      // rethrown per caller, so every caller gets its own stack trace
+      if (e.getCause() instanceof NotFoundException notFound) {
+        throw new NotFoundException(notFound.getMessage(), notFound);
+      }
+      if (e.getCause() instanceof IOException ioException) {
+        throw new IOException(ioException.getMessage(), ioException);
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (e.getCause() instanceof Exception rejection) {
+        // the only further checked exception a command can throw is its own
+        throw WriteQueue.<E>rejection(rejection);
+      }
+      throw new FatalException(e.getCause());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E extends Exception> E rejection(Exception exception) {
+    return (E) exception;
+  }
+
+  /**
+   * Returns how many commands were written in how many batches since startup.
+   *
+   * @return the current counters
+   */
+  public WriteQueueStatsDto stats() {
+    return new WriteQueueStatsDto(commands.get(), batches.get(), largestBatch.get());
+  }
+
+  /**
+   * Runs the commands still queued and stops the writer thread.
+   */
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    if (writer != null) {
+      writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+  }
+
+  private void writeLoop() {
+    List<Pending<?>> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        Pending<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, maxBatchSize - 1);
+        write(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (RuntimeException | Error e) {
+        LOG.error("Write queue failed to complete a batch of {} commands", batch.size(), e);
+        batch.forEach(pending -> pending.result.completeExceptionally(e));
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void write(List<Pending<?>> batch) {
+    List<Pending<?>> runnable = new ArrayList<>(batch.size());
+    for (Pending<?> pending : batch) {
+      if (pending.isExpired()) {
+        pending.result.completeExceptionally(
+                new DeadlineExceededException("Write was not started before its request deadline"));
+      } else {
+        runnable.add(pending);
+      }
+    }
+    if (runnable.isEmpty()) {
+      return;
+    }
+
+    List<Object> results;
+    try {
+      results = transactionTemplate.execute(status -> {
+        List<Object> batchResults = new ArrayList<>(runnable.size());
+        for (Pending<?> pending : runnable) {
+          batchResults.add(pending.runOrThrow());
+        }
+        return batchResults;
+      });
+    } catch (RuntimeException e) {
+      if (runnable.size() == 1) {
+        runnable.getFirst().result.completeExceptionally(e instanceof CommandFailure ? e.getCause() : e);
+      } else {
+        LOG.debug("Batch of {} writes failed, writing them one by one", runnable.size(), e);
+        runnable.forEach(pending -> write(List.of(pending)));
+      }
+      return;
+    }
+
+    commands.addAndGet(runnable.size());
+    batches.incrementAndGet();
+    largestBatch.accumulate(runnable.size());
+    LOG.debug("Committed batch of {} writes", runnable.size());
+    for (int i = 0; i < runnable.size(); i++) {
+      runnable.get(i).complete(results.get(i));
+    }
+  }
+
+  /**
+   * A mutation run by the {@link WriteQueue}.
+   *
+   * @param <T> the type of the result
+   * @param <E> the type of the further checked exception the mutation rejects its data with,
+   *            inferred as {@link RuntimeException} if it throws none
+   */
+  @FunctionalInterface
+  public interface Command<T, E extends Exception> {
+    T run() throws E, NotFoundException, IOException;
+  }
+
+  /**
+   * A queued command and the future its caller waits on.
+   */
+  private static final class Pending<T> {
+    private final Command<T, ?> command;
+    private final RequestDeadline deadline;
+    private final Map<String, String> mdc;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    private Pending(Command<T, ?> command, RequestDeadline deadline, Map<String, String> mdc) {
+      this.command = command;
+      this.deadline = deadline;
+      this.mdc = mdc;
+    }
+
+    private boolean isExpired() {
+      if (deadline == null) {
+        return false;
+      }
+      try {
+        deadline.check();
+        return false;
+      } catch (RuntimeException e) {
+        return true;
+      }
+    }
+
+    /**
+     * Runs the command with the MDC of its caller, so its statements are counted for the caller's request.
+     */
+    private T runOrThrow() {
+      if (mdc != null) {
+        MDC.setContextMap(mdc);
+      }
+      try {
+        return command.run();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new CommandFailure(e);
+      } finally {
+        MDC.clear();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete(Object value) {
+      result.complete((T) value);
+    }
+  }
+
+  /**
+   * Carries a checked exception of a command out of the transaction, rolling it back.
+   */
+  private static final class CommandFailure extends RuntimeException {
+    private CommandFailure(Exception cause) {
+      super(cause);
+    }
+  }
+}
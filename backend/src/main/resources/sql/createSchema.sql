@@ -17,10 +17,30 @@ CREATE TABLE IF NOT EXISTS horse
   owner_id BIGINT,
   parent1_id BIGINT NULL,
   parent2_id BIGINT NULL,
+  version BIGINT NOT NULL DEFAULT 0,
   CONSTRAINT horse_owner_fk FOREIGN KEY (owner_id) REFERENCES owner(id) ON DELETE SET NULL,
   CONSTRAINT horse_parent1_fk FOREIGN KEY (parent1_id) REFERENCES horse(id) ON DELETE SET NULL,
   CONSTRAINT horse_parent2_fk FOREIGN KEY (parent2_id) REFERENCES horse(id) ON DELETE SET NULL
 );
 
+-- every change of a horse sets its version to the next value of this sequence,
+-- so the versions of the horses of a pedigree also identify the state of the whole pedigree
+CREATE SEQUENCE IF NOT EXISTS horse_version;
 
+-- add the version to horses stored before the column existed
+ALTER TABLE horse ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
 
+-- transitive closure of the parent relation, every horse is its own ancestor at depth 0
+CREATE TABLE IF NOT EXISTS ancestor_closure
+(
+  ancestor_id BIGINT NOT NULL,
+  descendant_id BIGINT NOT NULL,
+  depth INT NOT NULL,
+  PRIMARY KEY (ancestor_id, descendant_id),
+  CONSTRAINT ancestor_closure_ancestor_fk FOREIGN KEY (ancestor_id) REFERENCES horse(id) ON DELETE CASCADE,
+  CONSTRAINT ancestor_closure_descendant_fk FOREIGN KEY (descendant_id) REFERENCES horse(id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS ancestor_closure_descendant_idx ON ancestor_closure (descendant_id);
+
+-- the closure of horses stored before the table existed is added once on startup, see AncestorClosureBackfill
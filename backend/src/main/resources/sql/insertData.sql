@@ -3,6 +3,10 @@
 -- negative IDs are used to not interfere with user-entered data and allow clean deletion of test data
 
 DELETE FROM horse where id < 0;
+DELETE FROM owner where id < 0;
 
 INSERT INTO horse (id, name, description, date_of_birth, sex)
-VALUES (-1, 'Wendy', 'The famous one!', '2012-12-12', 'FEMALE')
\ No newline at end of file
+VALUES (-1, 'Wendy', 'The famous one!', '2012-12-12', 'FEMALE');
+
+MERGE INTO ancestor_closure (ancestor_id, descendant_id, depth) KEY (ancestor_id, descendant_id)
+VALUES (-1, -1, 0)
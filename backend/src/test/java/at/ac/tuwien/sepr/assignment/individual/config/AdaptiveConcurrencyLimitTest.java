@@ -0,0 +1,90 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link AdaptiveConcurrencyLimit}.
+ */
+public class AdaptiveConcurrencyLimitTest {
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+  private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * Tests that requests beyond the limit are rejected until a slot is released.
+   */
+  @Test
+  public void rejectsBeyondLimit() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 2, 1, 10, Duration.ofMillis(100));
+
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isFalse();
+
+    limit.release(FAST);
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.inFlight()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that fast requests raise the limit by about one slot per round while it is in use, up to the maximum.
+   */
+  @Test
+  public void fastRequestsRaiseLimitWhileSaturated() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 4, 1, 6, Duration.ofMillis(100));
+
+    for (int round = 0; round < 20; round++) {
+      int admitted = 0;
+      while (limit.tryAcquire()) {
+        admitted++;
+      }
+      for (int i = 0; i < admitted; i++) {
+        limit.release(FAST);
+      }
+    }
+
+    assertThat(limit.limit()).isEqualTo(6);
+  }
+
+  /**
+   * Tests that fast requests do not raise a limit that is hardly used.
+   */
+  @Test
+  public void idleLimitDoesNotGrow() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 8, 1, 64, Duration.ofMillis(100));
+
+    for (int i = 0; i < 100; i++) {
+      limit.tryAcquire();
+      limit.release(FAST);
+    }
+
+    assertThat(limit.limit()).isEqualTo(8);
+  }
+
+  /**
+   * Tests that a slow request shrinks the limit once per target latency, but never below the minimum.
+   */
+  @Test
+  public void slowRequestsShrinkLimitOncePerTargetLatency() throws InterruptedException {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit("test", 20, 15, 64, Duration.ofMillis(50));
+
+    for (int i = 0; i < 5; i++) {
+      limit.tryAcquire();
+      limit.release(SLOW);
+    }
+    assertThat(limit.limit()).isEqualTo(18);
+
+    Thread.sleep(60);
+    limit.tryAcquire();
+    limit.release(SLOW);
+    assertThat(limit.limit()).isEqualTo(16);
+
+    Thread.sleep(60);
+    limit.tryAcquire();
+    limit.release(SLOW);
+    assertThat(limit.limit()).isEqualTo(15);
+  }
+}
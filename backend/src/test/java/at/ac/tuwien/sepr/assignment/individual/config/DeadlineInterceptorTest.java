@@ -0,0 +1,147 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import at.ac.tuwien.sepr.assignment.individual.config.DeadlineConfiguration.DeadlineInterceptor;
+import at.ac.tuwien.sepr.assignment.individual.exception.DeadlineExceededException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link DeadlineInterceptor} and the propagation of {@link RequestDeadline}s.
+ */
+public class DeadlineInterceptorTest {
+
+  private PreparedStatement preparedStatement;
+  private Statement statement;
+  private InterceptingDataSource dataSource;
+  private RequestDeadline previous;
+
+  /**
+   * Creates a data source with the deadline interceptor in front of a mocked connection.
+   */
+  @BeforeEach
+  public void setUp() throws SQLException {
+    preparedStatement = mock(PreparedStatement.class);
+    statement = mock(Statement.class);
+    Connection connection = mock(Connection.class);
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(connection.createStatement()).thenReturn(statement);
+    DataSource target = mock(DataSource.class);
+    when(target.getConnection()).thenReturn(connection);
+    dataSource = new InterceptingDataSource(target, List.of(new DeadlineInterceptor()));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    RequestDeadline.restore(previous);
+  }
+
+  /**
+   * Tests that a statement created without a deadline is left alone.
+   */
+  @Test
+  public void statementWithoutDeadlineHasNoTimeout() throws SQLException {
+    dataSource.getConnection().prepareStatement("SELECT 1");
+
+    verify(preparedStatement, never()).setQueryTimeout(anyInt());
+  }
+
+  /**
+   * Tests that a statement gets the time left until the deadline as its query timeout, rounded up to seconds.
+   */
+  @Test
+  public void statementGetsRemainingTimeAsQueryTimeout() throws SQLException {
+    bind(Duration.ofMillis(2500));
+
+    PreparedStatement prepared = dataSource.getConnection().prepareStatement("SELECT 1");
+
+    assertThat(prepared).isInstanceOf(PreparedStatement.class);
+    verify(preparedStatement).setQueryTimeout(3);
+  }
+
+  /**
+   * Tests that a statement can not be created once the deadline has passed, and is closed again.
+   */
+  @Test
+  public void statementAfterDeadlineFails() throws SQLException {
+    bind(Duration.ZERO);
+
+    Connection connection = dataSource.getConnection();
+
+    assertThrows(DeadlineExceededException.class, connection::createStatement);
+    verify(statement).close();
+  }
+
+  /**
+   * Tests that expiring a deadline cancels its running statements, but not those already closed.
+   */
+  @Test
+  public void expiryCancelsOpenStatements() throws SQLException {
+    RequestDeadline deadline = bind(Duration.ofSeconds(10));
+    Connection connection = dataSource.getConnection();
+    connection.prepareStatement("SELECT 1");
+    Statement closed = connection.createStatement();
+    closed.close();
+
+    deadline.expire();
+
+    verify(preparedStatement).cancel();
+    verify(statement, never()).cancel();
+  }
+
+  /**
+   * Tests that a task propagated to another thread creates its statements under the deadline of the caller.
+   */
+  @Test
+  public void propagatedTaskKeepsDeadline() throws Exception {
+    RequestDeadline deadline = bind(Duration.ofSeconds(5));
+
+    CompletableFuture<RequestDeadline> seen = CompletableFuture.supplyAsync(RequestDeadline.propagate(() -> {
+      try {
+        dataSource.getConnection().prepareStatement("SELECT 1");
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+      return RequestDeadline.current();
+    }));
+
+    assertThat(seen.get(5, TimeUnit.SECONDS)).isSameAs(deadline);
+    verify(preparedStatement).setQueryTimeout(5);
+  }
+
+  /**
+   * Tests that a propagated task does not run once the deadline of its caller has passed.
+   */
+  @Test
+  public void propagatedTaskFailsAfterDeadline() {
+    RequestDeadline deadline = bind(Duration.ofSeconds(5));
+    var task = RequestDeadline.propagate(() -> "ran");
+    deadline.expire();
+
+    assertThrows(DeadlineExceededException.class, task::get);
+  }
+
+  private RequestDeadline bind(Duration timeout) {
+    RequestDeadline deadline = new RequestDeadline(timeout);
+    previous = deadline.bind();
+    return deadline;
+  }
+}
@@ -0,0 +1,55 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepr.assignment.individual.config.AdmissionControlFilter.EndpointClass;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for the {@link EndpointClassifier}, against the handler mappings of the real endpoints.
+ */
+@ActiveProfiles("test")
+@SpringBootTest
+public class EndpointClassifierTest {
+
+  @Autowired
+  EndpointClassifier classifier;
+
+  /**
+   * Tests that requests are classified by the pool of the handler method they are mapped to.
+   */
+  @Test
+  public void classifiesByHandlerMethod() {
+    assertThat(classify("GET", "/horses")).isEqualTo(EndpointClass.SEARCH);
+    MockHttpServletRequest withFacets = new MockHttpServletRequest("GET", "/horses");
+    withFacets.setParameter("facets", "true");
+    assertThat(classifier.classify(withFacets)).isEqualTo(EndpointClass.SEARCH);
+    assertThat(classify("GET", "/horses/suggest")).isEqualTo(EndpointClass.SEARCH);
+    assertThat(classify("GET", "/owners")).isEqualTo(EndpointClass.SEARCH);
+    assertThat(classify("GET", "/horses/-1/image")).isEqualTo(EndpointClass.IMAGE);
+    assertThat(classify("GET", "/horses/-1/familytree")).isEqualTo(EndpointClass.TREE);
+    assertThat(classify("GET", "/horses/-1")).isEqualTo(EndpointClass.CHEAP);
+    assertThat(classify("GET", "/horses/changes")).isEqualTo(EndpointClass.CHEAP);
+  }
+
+  /**
+   * Tests that requests without a pool of their own count as writes unless they only read,
+   * including requests no handler is mapped to.
+   */
+  @Test
+  public void classifiesUnannotatedByMethod() {
+    assertThat(classify("POST", "/horses")).isEqualTo(EndpointClass.WRITE);
+    assertThat(classify("PUT", "/horses/-1/image")).isEqualTo(EndpointClass.WRITE);
+    assertThat(classify("DELETE", "/owners/-1")).isEqualTo(EndpointClass.WRITE);
+    assertThat(classify("GET", "/unknown/path")).isEqualTo(EndpointClass.CHEAP);
+    assertThat(classify("PATCH", "/unknown/path")).isEqualTo(EndpointClass.WRITE);
+  }
+
+  private EndpointClass classify(String method, String path) {
+    return classifier.classify(new MockHttpServletRequest(method, path));
+  }
+}
@@ -0,0 +1,180 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link InterceptingDataSource}.
+ */
+public class InterceptingDataSourceTest {
+
+  private final List<String> events = new CopyOnWriteArrayList<>();
+  private DataSource target;
+  private PreparedStatement preparedStatement;
+  private Statement statement;
+  private ResultSet resultSet;
+
+  /**
+   * Creates a mocked connection whose queries return a result set with two rows.
+   */
+  @BeforeEach
+  public void setUp() throws SQLException {
+    resultSet = mock(ResultSet.class);
+    when(resultSet.next()).thenReturn(true, true, false);
+    preparedStatement = mock(PreparedStatement.class);
+    when(preparedStatement.executeQuery()).thenReturn(resultSet);
+    when(preparedStatement.executeUpdate()).thenReturn(3);
+    statement = mock(Statement.class);
+    when(statement.executeUpdate(anyString())).thenThrow(new SQLException("syntax error"));
+    Connection connection = mock(Connection.class);
+    when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+    when(connection.createStatement()).thenReturn(statement);
+    target = mock(DataSource.class);
+    when(target.getConnection()).thenReturn(connection);
+  }
+
+  /**
+   * Tests that the interceptors see connections and statements in their order and their closing in reverse.
+   */
+  @Test
+  public void interceptorsAreCalledInOrderAndUndoneInReverse() throws SQLException {
+    InterceptingDataSource dataSource = new InterceptingDataSource(target, List.of(recording("a"), recording("b")));
+
+    Connection connection = dataSource.getConnection();
+    Statement created = connection.createStatement();
+    created.close();
+    created.close();
+    connection.close();
+    connection.close();
+
+    assertThat(events).containsExactly(
+            "a connection", "b connection",
+            "a statement", "b statement", "b statement closed", "a statement closed",
+            "b connection closed", "a connection closed");
+  }
+
+  /**
+   * Tests that a failing interceptor undoes the interceptors before it and closes the statement.
+   */
+  @Test
+  public void failingInterceptorUndoesTheOthers() throws SQLException {
+    DataSourceInterceptor failing = new DataSourceInterceptor() {
+      @Override
+      public Runnable statementCreated(Statement statement) throws SQLException {
+        throw new SQLException("rejected");
+      }
+    };
+    InterceptingDataSource dataSource = new InterceptingDataSource(target, List.of(recording("a"), failing));
+
+    Connection connection = dataSource.getConnection();
+
+    assertThrows(SQLException.class, connection::createStatement);
+    verify(statement).close();
+    assertThat(events).containsExactly("a connection", "a statement", "a statement closed");
+  }
+
+  /**
+   * Tests that a query is reported once its result set is exhausted, with the rows read by {@code next()}.
+   */
+  @Test
+  public void queryIsReportedWithRowsReadByNext() throws SQLException {
+    InterceptingDataSource dataSource = new InterceptingDataSource(target, List.of(observing()));
+
+    ResultSet rows = dataSource.getConnection().prepareStatement("SELECT * FROM horse").executeQuery();
+    rows.getLong(1);
+    while (rows.next()) {
+      rows.getLong(1);
+    }
+    assertThat(events).containsExactly("SELECT * FROM horse rows=2 failed=false");
+    rows.close();
+
+    assertThat(events).hasSize(1);
+  }
+
+  /**
+   * Tests that a query whose result set is closed before it is exhausted is reported on close.
+   */
+  @Test
+  public void queryClosedEarlyIsReportedOnClose() throws SQLException {
+    InterceptingDataSource dataSource = new InterceptingDataSource(target, List.of(observing()));
+
+    ResultSet rows = dataSource.getConnection().prepareStatement("SELECT * FROM horse").executeQuery();
+    rows.next();
+    assertThat(events).isEmpty();
+    rows.close();
+
+    assertThat(events).containsExactly("SELECT * FROM horse rows=1 failed=false");
+  }
+
+  /**
+   * Tests that updates are reported with their update count and failed executions as failed.
+   */
+  @Test
+  public void updatesAndFailuresAreReported() throws SQLException {
+    InterceptingDataSource dataSource = new InterceptingDataSource(target, List.of(observing()));
+    Connection connection = dataSource.getConnection();
+
+    connection.prepareStatement("UPDATE horse SET name = ?").executeUpdate();
+    Statement plain = connection.createStatement();
+    assertThrows(SQLException.class, () -> plain.executeUpdate("DELETE FROM hors"));
+
+    assertThat(events).containsExactly(
+            "UPDATE horse SET name = ? rows=3 failed=false",
+            "DELETE FROM hors rows=0 failed=true");
+  }
+
+  /**
+   * Tests that result sets are handed out as they are while no interceptor observes executions.
+   */
+  @Test
+  public void resultSetIsNotWrappedWithoutObserver() throws SQLException {
+    InterceptingDataSource dataSource = new InterceptingDataSource(target, List.of(recording("a")));
+
+    assertThat(dataSource.getConnection().prepareStatement("SELECT 1").executeQuery()).isSameAs(resultSet);
+  }
+
+  private DataSourceInterceptor recording(String name) {
+    return new DataSourceInterceptor() {
+      @Override
+      public Runnable beforeConnection() {
+        events.add(name + " connection");
+        return () -> events.add(name + " connection closed");
+      }
+
+      @Override
+      public Runnable statementCreated(Statement statement) {
+        events.add(name + " statement");
+        return () -> events.add(name + " statement closed");
+      }
+    };
+  }
+
+  private DataSourceInterceptor observing() {
+    return new DataSourceInterceptor() {
+      @Override
+      public boolean observesExecutions() {
+        return true;
+      }
+
+      @Override
+      public void executed(String sql, long nanos, long rows, boolean failed) {
+        events.add(sql + " rows=" + rows + " failed=" + failed);
+      }
+    };
+  }
+}
@@ -0,0 +1,65 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.LatencyDto;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+  /**
+   * Tests that every latency falls into a bucket whose upper bound is at most 12.5% above it,
+   * and that the buckets are ordered.
+   */
+  @Test
+  public void bucketsBoundRelativeError() {
+    int previousBucket = -1;
+    for (long micros = 0; micros < 5_000_000; micros += 1 + micros / 97) {
+      int bucket = LatencyHistogram.bucketOf(micros);
+      long highest = LatencyHistogram.highestValueOf(bucket);
+      assertThat(bucket).isGreaterThanOrEqualTo(previousBucket);
+      assertThat(highest).isGreaterThanOrEqualTo(micros);
+      assertThat(highest - micros).isLessThanOrEqualTo(Math.max(0, micros / 8));
+      previousBucket = bucket;
+    }
+    assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE / 1000)))
+            .isGreaterThanOrEqualTo(Long.MAX_VALUE / 1000);
+  }
+
+  /**
+   * Tests the percentiles, mean, maximum, rows and errors of a known set of calls.
+   */
+  @Test
+  public void snapshotSummarizesCalls() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int ms = 1; ms <= 1000; ms++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(ms), ms % 2, ms > 990);
+    }
+
+    LatencyDto snapshot = histogram.snapshot();
+
+    assertThat(snapshot.count()).isEqualTo(1000);
+    assertThat(snapshot.errors()).isEqualTo(10);
+    assertThat(snapshot.rows()).isEqualTo(500);
+    assertThat(snapshot.mean()).isCloseTo(500.5, within(0.01));
+    assertThat(snapshot.max()).isEqualTo(1000.0);
+    assertThat(snapshot.p50()).isBetween(500.0, 500 * 1.125);
+    assertThat(snapshot.p90()).isBetween(900.0, 900 * 1.125);
+    assertThat(snapshot.p99()).isBetween(990.0, 990 * 1.125);
+    assertThat(snapshot.p999()).isBetween(999.0, 999 * 1.125);
+  }
+
+  /**
+   * Tests that an empty histogram reports zeros instead of failing.
+   */
+  @Test
+  public void emptySnapshotIsZero() {
+    assertThat(new LatencyHistogram().snapshot())
+            .isEqualTo(new LatencyDto(0, 0, 0, 0, 0, 0, 0, 0, 0));
+  }
+}
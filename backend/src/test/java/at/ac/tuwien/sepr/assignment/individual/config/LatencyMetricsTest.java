@@ -0,0 +1,44 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.MetricsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerLoaderStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.WriteQueueStatsDto;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link LatencyMetrics}.
+ */
+public class LatencyMetricsTest {
+
+  /**
+   * Tests that every name gets one histogram per kind and that the snapshot lists them by name.
+   */
+  @Test
+  public void snapshotListsHistogramsByName() {
+    LatencyMetrics metrics = new LatencyMetrics();
+    assertThat(metrics.method("HorseJdbcDao.getById(long)")).isSameAs(metrics.method("HorseJdbcDao.getById(long)"));
+    assertThat(metrics.route("GET /horses")).isNotSameAs(metrics.method("GET /horses"));
+
+    metrics.route("GET /owners").record(1_000_000, 3, false);
+    metrics.route("GET /horses").record(1_000_000, 0, true);
+    metrics.statement("SELECT * FROM horse WHERE id = ?").record(500_000, 1, false);
+    metrics.addImageBytesServed(100);
+    metrics.addImageBytesServed(20);
+    OwnerLoaderStatsDto ownerLoader = new OwnerLoaderStatsDto(4, 2, 3, 2);
+    WriteQueueStatsDto writeQueue = new WriteQueueStatsDto(5, 2, 3);
+
+    MetricsDto snapshot = metrics.snapshot(ownerLoader, writeQueue);
+
+    assertThat(snapshot.routes()).containsOnlyKeys("GET /horses", "GET /owners");
+    assertThat(snapshot.routes().keySet()).containsExactly("GET /horses", "GET /owners");
+    assertThat(snapshot.routes().get("GET /horses").errors()).isEqualTo(1);
+    assertThat(snapshot.routes().get("GET /owners").rows()).isEqualTo(3);
+    assertThat(snapshot.methods()).containsOnlyKeys("HorseJdbcDao.getById(long)", "GET /horses");
+    assertThat(snapshot.statements().get("SELECT * FROM horse WHERE id = ?").count()).isEqualTo(1);
+    assertThat(snapshot.imageBytesServed()).isEqualTo(120);
+    assertThat(snapshot.ownerLoader()).isEqualTo(ownerLoader);
+    assertThat(snapshot.writeQueue()).isEqualTo(writeQueue);
+  }
+}
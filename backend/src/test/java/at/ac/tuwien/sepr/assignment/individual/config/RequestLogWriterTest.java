@@ -0,0 +1,152 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit tests for the {@link RequestLogWriter}.
+ */
+public class RequestLogWriterTest {
+
+  private final Logger logger = (Logger) LoggerFactory.getLogger(LogFilter.class);
+  private final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private volatile boolean blocking;
+  private AppenderBase<ILoggingEvent> appender;
+  private Level previousLevel;
+
+  /**
+   * Captures the lines of the request log, blocking the writer on its first line while {@link #blocking} is set.
+   */
+  @BeforeEach
+  public void setUp() {
+    appender = new AppenderBase<>() {
+      @Override
+      protected void append(ILoggingEvent event) {
+        events.add(event);
+        if (blocking && events.size() == 1) {
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+    appender.start();
+    logger.addAppender(appender);
+    previousLevel = logger.getLevel();
+    logger.setLevel(Level.DEBUG);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    logger.detachAppender(appender);
+    logger.setLevel(previousLevel);
+  }
+
+  /**
+   * Tests the formatting of durations with up to three decimals and without trailing zeros.
+   */
+  @Test
+  public void appendMillisFormatsLikeDecimalFormat() {
+    assertThat(millis(0)).isEqualTo("0");
+    assertThat(millis(499)).isEqualTo("0");
+    assertThat(millis(500)).isEqualTo("0.001");
+    assertThat(millis(1_000_000)).isEqualTo("1");
+    assertThat(millis(1_500_000)).isEqualTo("1.5");
+    assertThat(millis(1_050_000)).isEqualTo("1.05");
+    assertThat(millis(12_345_678)).isEqualTo("12.346");
+    assertThat(millis(1_999_999_999)).isEqualTo("2000");
+    assertThat(millis(7_000_001_000L)).isEqualTo("7000.001");
+  }
+
+  /**
+   * Tests that lines are written in order across several wraps of the ring buffer,
+   * with incoming requests at info and finished ones by their status.
+   */
+  @Test
+  public void writesLinesInOrderAcrossWraps() throws InterruptedException {
+    try (RequestLogWriter writer = new RequestLogWriter(4)) {
+      for (int i = 0; i < 10; i++) {
+        assertThat(writer.offer("<<< ", "r" + i, "ip", "GET", "/horses/" + i, null, null, 200, 1_000_000, 1))
+                .isTrue();
+        writer.flush();
+      }
+      writer.offer(">>> ", "in", "ip", "GET", "/horses", "name=W", "curl", -1, -1, -1);
+      writer.offer("<<< ", "missing", "ip", "GET", "/horses/x", null, null, 404, 2_000_000, 0);
+      writer.offer("<<< ", "none", "ip", "GET", "/horses/y", null, null, -1, 2_000_000, 0);
+      writer.flush();
+    }
+
+    assertThat(events.subList(0, 10))
+            .extracting(ILoggingEvent::getFormattedMessage)
+            .containsExactly(IntStream.range(0, 10)
+                    .mapToObj(i -> "<<< GET /horses/" + i + " status=200 time=1ms queries=1")
+                    .toArray(String[]::new));
+    assertThat(events.subList(10, 13))
+            .extracting(ILoggingEvent::getLevel, ILoggingEvent::getFormattedMessage)
+            .containsExactly(
+                    tuple(Level.INFO, ">>> GET /horses?name=W UA=curl"),
+                    tuple(Level.WARN, "<<< GET /horses/x status=404 time=2ms queries=0"),
+                    tuple(Level.ERROR, "<<< GET /horses/y NO RESPONSE time=2ms queries=0"));
+    assertThat(events.get(0).getMDCPropertyMap()).containsEntry("r", "r0").containsEntry("status", "200");
+  }
+
+  /**
+   * Tests that a full buffer drops lines instead of blocking, and that the drops are reported.
+   */
+  @Test
+  public void fullBufferDropsLines() throws InterruptedException {
+    blocking = true;
+    try (RequestLogWriter writer = new RequestLogWriter(4)) {
+      writer.offer("<<< ", "r0", "ip", "GET", "/horses/0", null, null, 200, 0, 0);
+      waitForFirstLine();
+      // the first line is still being written and keeps its slot until it is done
+      for (int i = 1; i < 4; i++) {
+        assertThat(writer.offer("<<< ", "r" + i, "ip", "GET", "/horses/" + i, null, null, 200, 0, 0)).isTrue();
+      }
+      assertThat(writer.offer("<<< ", "r4", "ip", "GET", "/horses/4", null, null, 200, 0, 0)).isFalse();
+
+      release.countDown();
+      writer.flush();
+      writer.offer("<<< ", "r5", "ip", "GET", "/horses/5", null, null, 200, 0, 0);
+      writer.flush();
+    }
+
+    assertThat(events)
+            .extracting(ILoggingEvent::getFormattedMessage)
+            .contains("Dropped 1 request log lines, the request log buffer was full")
+            .filteredOn(message -> message.startsWith("<<< "))
+            .hasSize(5)
+            .noneMatch(message -> message.contains("/horses/4"));
+  }
+
+  private void waitForFirstLine() throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (events.isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(events).hasSize(1);
+  }
+
+  private static String millis(long nanos) {
+    StringBuilder target = new StringBuilder();
+    RequestLogWriter.appendMillis(target, nanos);
+    return target.toString();
+  }
+}
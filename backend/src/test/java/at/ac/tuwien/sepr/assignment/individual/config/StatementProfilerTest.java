@@ -0,0 +1,121 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+/**
+ * Unit tests for the {@link StatementProfiler}.
+ */
+public class StatementProfilerTest {
+
+  private final LatencyMetrics metrics = new LatencyMetrics();
+  private final StatementProfiler profiler = new StatementProfiler(metrics, Duration.ofMillis(100), 3);
+  private final Logger logger = (Logger) LoggerFactory.getLogger(StatementProfiler.class);
+  private final Logger slowQueryLogger = (Logger) LoggerFactory.getLogger("slow-query");
+  private final ListAppender<ILoggingEvent> warnings = new ListAppender<>();
+  private final ListAppender<ILoggingEvent> slowQueries = new ListAppender<>();
+
+  /**
+   * Captures the N+1 warnings and the slow-query log.
+   */
+  @BeforeEach
+  public void setUp() {
+    warnings.start();
+    slowQueries.start();
+    logger.addAppender(warnings);
+    slowQueryLogger.addAppender(slowQueries);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    logger.detachAppender(warnings);
+    slowQueryLogger.detachAppender(slowQueries);
+    MDC.remove("r");
+  }
+
+  /**
+   * Tests that string and number literals become parameters, while identifiers containing digits stay.
+   */
+  @Test
+  public void normalizeReplacesLiterals() {
+    assertThat(profiler.normalize("SELECT * FROM horse WHERE id = -12 AND weight > 1.5"))
+            .isEqualTo("SELECT * FROM horse WHERE id = ? AND weight > ?");
+    assertThat(profiler.normalize("SELECT * FROM horse WHERE name = 'Wendy''s' OR name = ''"))
+            .isEqualTo("SELECT * FROM horse WHERE name = ? OR name = ?");
+    assertThat(profiler.normalize("SELECT h2.parent_id1 FROM horse h2 WHERE h2.id = ?"))
+            .isEqualTo("SELECT h2.parent_id1 FROM horse h2 WHERE h2.id = ?");
+  }
+
+  /**
+   * Tests that whitespace is collapsed and IN lists of any length are the same statement.
+   */
+  @Test
+  public void normalizeCollapsesWhitespaceAndParameterLists() {
+    assertThat(profiler.normalize("  SELECT *\n  FROM owner\tWHERE id IN (?, ?,?)  "))
+            .isEqualTo("SELECT * FROM owner WHERE id IN (?, ...)");
+    assertThat(profiler.normalize("SELECT * FROM owner WHERE id IN (1, 2)"))
+            .isEqualTo(profiler.normalize("SELECT * FROM owner WHERE id IN (?, ?, ?, ?)"));
+    assertThat(profiler.normalize("SELECT * FROM owner WHERE id IN (?)"))
+            .isEqualTo("SELECT * FROM owner WHERE id IN (?)");
+  }
+
+  /**
+   * Tests that a statement reaching the threshold within one request is reported as a possible N+1 query,
+   * and that the statements of the request are counted.
+   */
+  @Test
+  public void repeatedStatementIsReportedAsNPlusOne() {
+    profiler.startRequest("request-1");
+    MDC.put("r", "request-1");
+    for (long id = 1; id <= 3; id++) {
+      profiler.record("SELECT * FROM owner WHERE id = " + id, 1_000, 1, false);
+    }
+    profiler.record("SELECT * FROM horse WHERE id = 1", 1_000, 1, false);
+    profiler.record("SELECT * FROM horse WHERE id = 2", 1_000, 1, false);
+
+    assertThat(profiler.finishRequest("request-1")).isEqualTo(5);
+    assertThat(warnings.list)
+            .extracting(ILoggingEvent::getFormattedMessage)
+            .containsExactly("Possible N+1 query, executed 3 times in one request: SELECT * FROM owner WHERE id = ?");
+    assertThat(metrics.statement("SELECT * FROM owner WHERE id = ?").snapshot().count()).isEqualTo(3);
+  }
+
+  /**
+   * Tests that statements outside a started request are recorded, but neither counted nor reported.
+   */
+  @Test
+  public void statementsOutsideRequestAreNotCounted() {
+    for (int i = 0; i < 5; i++) {
+      profiler.record("SELECT 1", 1_000, 1, false);
+    }
+    MDC.put("r", "unknown");
+    profiler.record("SELECT 1", 1_000, 1, false);
+
+    assertThat(profiler.finishRequest("unknown")).isZero();
+    assertThat(profiler.finishRequest(null)).isZero();
+    assertThat(warnings.list).isEmpty();
+    assertThat(metrics.statement("SELECT ?").snapshot().count()).isEqualTo(6);
+  }
+
+  /**
+   * Tests that only statements reaching the threshold are logged as slow queries.
+   */
+  @Test
+  public void slowStatementIsLogged() {
+    profiler.record("SELECT * FROM horse WHERE name LIKE '%W%'", 99_000_000, 10, false);
+    profiler.record("SELECT * FROM horse WHERE name LIKE '%W%'", 150_000_000, 10, false);
+
+    assertThat(slowQueries.list)
+            .extracting(ILoggingEvent::getFormattedMessage)
+            .containsExactly("Slow query took 150 ms and returned 10 rows: SELECT * FROM horse WHERE name LIKE ?");
+  }
+}
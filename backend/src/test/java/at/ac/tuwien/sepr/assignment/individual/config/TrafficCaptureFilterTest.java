@@ -0,0 +1,95 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Unit tests for the {@link TrafficCaptureFilter}.
+ */
+public class TrafficCaptureFilterTest {
+
+  private final TrafficCaptureWriter writer = mock(TrafficCaptureWriter.class);
+  private final TrafficCaptureFilter filter = new TrafficCaptureFilter(writer, 1024);
+
+  /**
+   * Tests that the headers deciding the format and the freshness of the answer are journaled with the body.
+   */
+  @Test
+  public void capturesNegotiationAndConditionalHeaders() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/horses/-1");
+    request.setContentType("application/json");
+    request.setContent("{\"name\":\"Wendy\"}".getBytes(StandardCharsets.UTF_8));
+    request.addHeader("Accept", "application/cbor");
+    request.addHeader("Accept-Encoding", "gzip");
+    request.addHeader("If-None-Match", "\"h-1-2\"");
+    request.addHeader("If-Match", "\"h-1-3\"");
+
+    filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> req.getInputStream().readAllBytes());
+
+    TrafficJournal.Entry entry = offered();
+    assertThat(entry.accept()).isEqualTo("application/cbor");
+    assertThat(entry.acceptEncoding()).isEqualTo("gzip");
+    assertThat(entry.ifNoneMatch()).isEqualTo("\"h-1-2\"");
+    assertThat(entry.ifMatch()).isEqualTo("\"h-1-3\"");
+    assertThat(entry.body()).asString(StandardCharsets.UTF_8).isEqualTo("{\"name\":\"Wendy\"}");
+  }
+
+  /**
+   * Tests that a handler reading the captured body with a read listener receives all of it.
+   */
+  @Test
+  public void readListenerReceivesCapturedBody() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/owners");
+    request.setContentType("application/json");
+    request.setContent("{\"firstName\":\"Anna\"}".getBytes(StandardCharsets.UTF_8));
+    ByteArrayOutputStream received = new ByteArrayOutputStream();
+    AtomicBoolean allRead = new AtomicBoolean();
+
+    filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+      ServletInputStream in = req.getInputStream();
+      in.setReadListener(new ReadListener() {
+        @Override
+        public void onDataAvailable() throws IOException {
+          byte[] buffer = new byte[8];
+          while (in.isReady() && !in.isFinished()) {
+            int read = in.read(buffer);
+            if (read > 0) {
+              received.write(buffer, 0, read);
+            }
+          }
+        }
+
+        @Override
+        public void onAllDataRead() {
+          allRead.set(true);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+          throw new AssertionError(t);
+        }
+      });
+    });
+
+    assertThat(received.toString(StandardCharsets.UTF_8)).isEqualTo("{\"firstName\":\"Anna\"}");
+    assertThat(allRead).isTrue();
+  }
+
+  private TrafficJournal.Entry offered() {
+    ArgumentCaptor<TrafficJournal.Entry> entry = ArgumentCaptor.forClass(TrafficJournal.Entry.class);
+    verify(writer).offer(entry.capture());
+    return entry.getValue();
+  }
+}
@@ -0,0 +1,122 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests for the format of the {@link TrafficJournal}.
+ */
+public class TrafficJournalTest {
+
+  @TempDir
+  Path directory;
+
+  /**
+   * Tests that every field of an entry is read back as written and that entries are ordered by arrival.
+   */
+  @Test
+  public void entriesSurviveRoundTrip() throws IOException {
+    Path file = directory.resolve("capture.journal");
+    byte[] body = "{\"name\":\"Wendy Ärger\"}".getBytes(StandardCharsets.UTF_8);
+    try (TrafficJournal.Writer writer = new TrafficJournal.Writer(file, 1_700_000_000_000L)) {
+      writer.append(new TrafficJournal.Entry(5_000_000_000L, "PUT", "/horses/-1", null, "application/json",
+              "application/cbor", "gzip", null, "\"h-1-3\"", body, 200, 1234));
+      writer.append(new TrafficJournal.Entry(10, "GET", "/horses", "name=Wendy", null,
+              "application/json", "gzip, deflate", "\"s-42\"", null, new byte[0], 304, 56));
+      writer.append(new TrafficJournal.Entry(20, "POST", "/horses", null, "multipart/form-data; boundary=b",
+              null, null, null, null, null, 201, 789));
+    }
+
+    TrafficJournal.Capture capture = TrafficJournal.read(file);
+
+    assertThat(capture.startedAtEpochMillis()).isEqualTo(1_700_000_000_000L);
+    assertThat(capture.entries()).extracting(TrafficJournal.Entry::arrivalMicros)
+            .containsExactly(10L, 20L, 5_000_000_000L);
+    TrafficJournal.Entry get = capture.entries().get(0);
+    assertThat(get.query()).isEqualTo("name=Wendy");
+    assertThat(get.contentType()).isEmpty();
+    assertThat(get.accept()).isEqualTo("application/json");
+    assertThat(get.acceptEncoding()).isEqualTo("gzip, deflate");
+    assertThat(get.ifNoneMatch()).isEqualTo("\"s-42\"");
+    assertThat(get.ifMatch()).isEmpty();
+    assertThat(get.body()).isEmpty();
+    assertThat(get.status()).isEqualTo(304);
+    assertThat(capture.entries().get(1).body()).isNull();
+    TrafficJournal.Entry put = capture.entries().get(2);
+    assertThat(put.ifMatch()).isEqualTo("\"h-1-3\"");
+    assertThat(put.body()).isEqualTo(body);
+    assertThat(put.durationMicros()).isEqualTo(1234);
+  }
+
+  /**
+   * Tests that a journal cut off in the middle of an entry is read up to its last complete entry.
+   */
+  @Test
+  public void truncatedEntryIsIgnored() throws IOException {
+    Path file = directory.resolve("capture.journal");
+    try (TrafficJournal.Writer writer = new TrafficJournal.Writer(file, 0)) {
+      writer.append(new TrafficJournal.Entry(1, "GET", "/horses/-1", null, null, null, null, null, null,
+              new byte[0], 200, 10));
+      writer.append(new TrafficJournal.Entry(2, "POST", "/owners", null, "application/json", null, null, null, null,
+              "{\"firstName\":\"Anna\",\"lastName\":\"Huber\"}".getBytes(StandardCharsets.UTF_8), 201, 20));
+    }
+    byte[] written = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(written, written.length - 10));
+
+    assertThat(TrafficJournal.read(file).entries()).extracting(TrafficJournal.Entry::uri)
+            .containsExactly("/horses/-1");
+  }
+
+  /**
+   * Tests that a journal of version 1, written before the headers were captured, is read with empty headers.
+   */
+  @Test
+  public void versionOneIsReadWithoutHeaders() throws IOException {
+    Path file = directory.resolve("capture.journal");
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+      out.writeInt(0x5746544A);
+      out.writeByte(1);
+      out.writeLong(42);
+      // arrival, method, URI, query, content type, body length + 1, status (200 as variable length integer), duration
+      out.write(new byte[] {7, 3, 'G', 'E', 'T', 7, '/', 'o', 'w', 'n', 'e', 'r', 's', 0, 0, 1, (byte) 0xC8, 1, 9});
+    }
+
+    TrafficJournal.Capture capture = TrafficJournal.read(file);
+
+    assertThat(capture.startedAtEpochMillis()).isEqualTo(42);
+    assertThat(capture.entries()).singleElement().satisfies(entry -> {
+      assertThat(entry.uri()).isEqualTo("/owners");
+      assertThat(entry.accept()).isEmpty();
+      assertThat(entry.ifNoneMatch()).isEmpty();
+      assertThat(entry.status()).isEqualTo(200);
+      assertThat(entry.durationMicros()).isEqualTo(9);
+    });
+  }
+
+  /**
+   * Tests that a file of another format or a newer version is rejected.
+   */
+  @Test
+  public void unknownFormatIsRejected() throws IOException {
+    Path other = directory.resolve("other.journal");
+    Files.writeString(other, "GET /horses HTTP/1.1\r\n");
+    assertThrows(IOException.class, () -> TrafficJournal.read(other));
+
+    Path newer = directory.resolve("newer.journal");
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(newer))) {
+      out.writeInt(0x5746544A);
+      out.writeByte(99);
+      out.writeLong(0);
+    }
+    assertThrows(IOException.class, () -> TrafficJournal.read(newer));
+  }
+}
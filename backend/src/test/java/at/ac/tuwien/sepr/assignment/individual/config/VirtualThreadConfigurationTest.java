@@ -0,0 +1,129 @@
+package at.ac.tuwien.sepr.assignment.individual.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import at.ac.tuwien.sepr.assignment.individual.config.VirtualThreadConfiguration.PermitInterceptor;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the {@link PermitInterceptor} of the {@link VirtualThreadConfiguration}.
+ */
+public class VirtualThreadConfigurationTest {
+
+  private DataSource target;
+  private InterceptingDataSource dataSource;
+
+  /**
+   * Creates a data source with two permits in front of a mocked pool.
+   */
+  @BeforeEach
+  public void setUp() throws SQLException {
+    target = mock(DataSource.class, withSettings().extraInterfaces(AutoCloseable.class));
+    when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+    dataSource = new InterceptingDataSource(target, List.of(new PermitInterceptor(2)));
+  }
+
+  /**
+   * Tests that a connection beyond the permits waits until another connection is closed.
+   */
+  @Test
+  public void connectionWaitsForClosedConnection() throws Exception {
+    Connection first = dataSource.getConnection();
+    dataSource.getConnection();
+
+    CompletableFuture<Connection> third = CompletableFuture.supplyAsync(() -> {
+      try {
+        return dataSource.getConnection();
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    assertThrows(TimeoutException.class, () -> third.get(100, TimeUnit.MILLISECONDS));
+
+    first.close();
+    assertThat(third.get(5, TimeUnit.SECONDS)).isNotNull();
+  }
+
+  /**
+   * Tests that closing a connection twice returns its permit only once.
+   */
+  @Test
+  public void closingTwiceReleasesOnce() throws SQLException {
+    Connection connection = dataSource.getConnection();
+    connection.close();
+    connection.close();
+
+    dataSource.getConnection();
+    dataSource.getConnection();
+    CompletableFuture<Connection> third = new CompletableFuture<>();
+    Thread waiter = Thread.ofVirtual().start(() -> {
+      try {
+        third.complete(dataSource.getConnection());
+      } catch (SQLException e) {
+        third.completeExceptionally(e);
+      }
+    });
+    assertThrows(TimeoutException.class, () -> third.get(100, TimeUnit.MILLISECONDS));
+    waiter.interrupt();
+  }
+
+  /**
+   * Tests that a failing pool does not keep the permit of the failed connection.
+   */
+  @Test
+  public void failedConnectionReleasesPermit() throws SQLException {
+    when(target.getConnection())
+            .thenThrow(new SQLException("pool exhausted"))
+            .thenThrow(new SQLException("pool exhausted"))
+            .thenAnswer(invocation -> mock(Connection.class));
+
+    assertThrows(SQLException.class, dataSource::getConnection);
+    assertThrows(SQLException.class, dataSource::getConnection);
+    assertThat(dataSource.getConnection()).isNotNull();
+    assertThat(dataSource.getConnection()).isNotNull();
+  }
+
+  /**
+   * Tests that a thread interrupted while waiting for a permit fails and keeps its interrupt flag.
+   */
+  @Test
+  public void interruptedWaitFails() throws Exception {
+    dataSource.getConnection();
+    dataSource.getConnection();
+
+    CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+    Thread waiter = Thread.ofVirtual().start(() -> {
+      try {
+        dataSource.getConnection();
+        interrupted.complete(false);
+      } catch (SQLException e) {
+        interrupted.complete(Thread.currentThread().isInterrupted());
+      }
+    });
+    Thread.sleep(50);
+    waiter.interrupt();
+    assertThat(interrupted.get(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  /**
+   * Tests that closing the data source closes the pool behind it.
+   */
+  @Test
+  public void closeClosesTarget() throws Exception {
+    dataSource.close();
+    verify((AutoCloseable) target).close();
+  }
+}
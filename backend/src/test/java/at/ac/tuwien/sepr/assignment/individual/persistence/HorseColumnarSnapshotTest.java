@@ -0,0 +1,137 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.impl.HorseColumnarSnapshot;
+import at.ac.tuwien.sepr.assignment.individual.persistence.impl.HorseJdbcDao;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for {@link HorseColumnarSnapshot}, ensuring searches answered from the snapshot
+ * return the same horses in the same order as the SQL search.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest(properties = "app.search.columnar-snapshot.enabled=true")
+public class HorseColumnarSnapshotTest {
+
+  @Autowired
+  HorseDao horseDao;
+
+  @Autowired
+  OwnerDao ownerDao;
+
+  @Autowired
+  JdbcClient jdbcClient;
+
+  @Autowired
+  MutationJournal journal;
+
+  HorseDao sqlDao;
+
+  @BeforeEach
+  public void setUp() {
+    // the same DAO without a snapshot answers every search with SQL
+    sqlDao = new HorseJdbcDao(jdbcClient, new StaticListableBeanFactory().getBeanProvider(HorseColumnarSnapshot.class),
+            journal);
+  }
+
+  /**
+   * Tests that names are matched with the LIKE wildcards of the SQL search, not as plain substrings.
+   */
+  @Test
+  public void searchMatchesNamesLikeSql() throws IOException {
+    create("Snap_Wild 100%", LocalDate.of(2001, 1, 1), Sex.FEMALE, null);
+    create("SnapXWild 100 percent", LocalDate.of(2002, 2, 2), Sex.MALE, null);
+    create("snap wild", LocalDate.of(2003, 3, 3), Sex.FEMALE, null);
+
+    assertSameResult(byName("snap_wild"));
+    assertSameResult(byName("Snap\\_Wild"));
+    assertSameResult(byName("100%"));
+    assertSameResult(byName("100\\%"));
+    assertSameResult(byName("S%p%d"));
+    assertThat(ids(horseDao.getByParams(byName("snap_wild")))).hasSize(3);
+    assertThat(ids(horseDao.getByParams(byName("Snap\\_Wild")))).hasSize(1);
+  }
+
+  /**
+   * Tests that limited searches return the same horses in the same order as the SQL search.
+   */
+  @Test
+  public void searchOrdersAndLimitsLikeSql() throws IOException {
+    ownerDao.create(new OwnerCreateDto("Snapshot", "Keeper", null));
+    Long ownerId = ownerDao.getAll().stream()
+            .filter(owner -> owner.firstName().equals("Snapshot"))
+            .map(Owner::id)
+            .findFirst()
+            .orElseThrow();
+    for (int i = 0; i < 10; i++) {
+      create("Snap Order " + i, LocalDate.of(2000 + i, 1, 1), i % 2 == 0 ? Sex.FEMALE : Sex.MALE,
+              i % 3 == 0 ? ownerId : null);
+    }
+
+    assertSameResult(new HorseSearchDto(null, null, null, null, null, null, null, null, null, null));
+    assertSameResult(new HorseSearchDto("snap order", null, null, null, null, null, null, null, null, 4));
+    assertSameResult(new HorseSearchDto("snap order", null, LocalDate.of(2005, 1, 1), null, Sex.MALE, null, null,
+            null, null, null));
+    assertSameResult(new HorseSearchDto(null, null, null, LocalDate.of(2003, 1, 1), null, null, null,
+            null, null, null));
+    assertSameResult(new HorseSearchDto(null, null, null, null, null, "snapshot", "keep", null, null, 2));
+  }
+
+  /**
+   * Tests that the snapshot follows creates, updates and deletes committed after it was loaded.
+   */
+  @Test
+  public void searchFollowsWrites() throws IOException, NotFoundException, ConflictException {
+    HorseSearchDto search = byName("Snap Sync");
+    assertSameResult(search);
+
+    Horse created = create("Snap Sync Created", LocalDate.of(2010, 1, 1), Sex.FEMALE, null);
+    Horse renamed = create("Snap Other", LocalDate.of(2010, 1, 1), Sex.MALE, null);
+    Horse deleted = create("Snap Sync Deleted", LocalDate.of(2010, 1, 1), Sex.MALE, null);
+    horseDao.update(new HorseUpdateDto(renamed.id(), "Snap Sync Renamed", null, renamed.dateOfBirth(),
+            renamed.sex(), null, null, null), null, null);
+    horseDao.delete(deleted.id());
+
+    assertSameResult(search);
+    assertThat(ids(horseDao.getByParams(search))).containsExactly(created.id(), renamed.id());
+  }
+
+  private void assertSameResult(HorseSearchDto params) {
+    assertThat(ids(horseDao.getByParams(params)))
+            .as("snapshot search for %s", params)
+            .containsExactlyElementsOf(ids(sqlDao.getByParams(params)));
+  }
+
+  private Horse create(String name, LocalDate dateOfBirth, Sex sex, Long ownerId) throws IOException {
+    return horseDao.create(new HorseCreateDto(name, null, dateOfBirth, sex, ownerId, null, null), null);
+  }
+
+  private static HorseSearchDto byName(String name) {
+    return new HorseSearchDto(name, null, null, null, null, null, null, null, null, null);
+  }
+
+  private static List<Long> ids(List<Horse> horses) {
+    return horses.stream().map(Horse::id).toList();
+  }
+}
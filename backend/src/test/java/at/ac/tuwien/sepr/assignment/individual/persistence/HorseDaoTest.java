@@ -3,6 +3,7 @@ package at.ac.tuwien.sepr.assignment.individual.persistence;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
 
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
@@ -10,14 +11,17 @@ import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.test.context.ActiveProfiles;
 
 /**
@@ -30,6 +34,9 @@ public class HorseDaoTest {
   @Autowired
   HorseDao horseDao;
 
+  @Autowired
+  JdbcClient jdbcClient;
+
 
   /**
    * Tests that creating a horse and verifies that the
@@ -48,11 +55,11 @@ public class HorseDaoTest {
    * specific horse exists in the test dataset.
    */
   @Test
-  public void updateHorse() throws NotFoundException {
+  public void updateHorse() throws NotFoundException, ConflictException {
 
 
     HorseUpdateDto updateDto = new HorseUpdateDto(-1L, "Terry Test", "Same test horse", LocalDate.of(2000, 02, 20), Sex.FEMALE, null, null, null);
-    Horse horseUpdated = horseDao.update(updateDto, null);
+    Horse horseUpdated = horseDao.update(updateDto, null, null);
     assertThat(horseUpdated.id()).isEqualTo(-1L);
     assertThat(horseUpdated.name()).isEqualTo("Terry Test");
     assertThat(horseUpdated.description()).isEqualTo("Same test horse");
@@ -88,7 +95,7 @@ public class HorseDaoTest {
    */
   @Test
   public void getAllReturnsAllStoredHorses() {
-    HorseSearchDto searchParameters = new HorseSearchDto(null, null, null, null, null, null, null, null);
+    HorseSearchDto searchParameters = new HorseSearchDto(null, null, null, null, null, null, null, null, null, null);
 
     List<Horse> horses = horseDao.getByParams(searchParameters);
     System.out.println(horses);
@@ -97,4 +104,170 @@ public class HorseDaoTest {
             .extracting(Horse::id, Horse::name)
             .contains(tuple(-1L, "Wendy"));
   }
+
+  /**
+   * Tests that a newly created foal is found by the lineage filter of its parent
+   * and that the pedigree knows about the new relation.
+   */
+  @Test
+  public void searchByDescendsFromReturnsFoals() throws IOException {
+    HorseCreateDto foal = new HorseCreateDto("Foal Test", null, LocalDate.of(2020, 1, 1), Sex.MALE, null, -1L, null);
+    Horse createdFoal = horseDao.create(foal, null);
+
+    List<Horse> horses = horseDao.getByParams(new HorseSearchDto(null, null, null, null, null, null, null, -1L, null, null));
+    assertThat(horses)
+            .extracting(Horse::id)
+            .contains(createdFoal.id())
+            .doesNotContain(-1L);
+    assertThat(horseDao.isAncestor(-1L, createdFoal.id())).isTrue();
+    assertThat(horseDao.isAncestor(createdFoal.id(), -1L)).isFalse();
+  }
+
+  /**
+   * Tests that an update making a horse the parent of its own ancestor is rejected
+   * and leaves the pedigree unchanged.
+   */
+  @Test
+  public void updateRejectsCycleInPedigree() throws IOException {
+    Horse grandparent = create("Cycle Grandparent", null, null);
+    Horse parent = create("Cycle Parent", grandparent.id(), null);
+    Horse foal = create("Cycle Foal", parent.id(), null);
+
+    HorseUpdateDto cyclic = new HorseUpdateDto(grandparent.id(), grandparent.name(), null,
+            grandparent.dateOfBirth(), grandparent.sex(), null, foal.id(), null);
+    assertThrows(ConflictException.class, () -> horseDao.update(cyclic, null, null));
+    assertThat(horseDao.isAncestor(foal.id(), grandparent.id())).isFalse();
+    assertThat(horseDao.isAncestor(grandparent.id(), foal.id())).isTrue();
+  }
+
+  /**
+   * Tests that changing a parent moves the whole subtree of descendants to the new ancestry.
+   */
+  @Test
+  public void updateRebuildsPedigreeOfDescendants() throws IOException, NotFoundException, ConflictException {
+    Horse oldParent = create("Old Parent", null, null);
+    Horse newParent = create("New Parent", null, null);
+    Horse horse = create("Moved Horse", oldParent.id(), null);
+    Horse foal = create("Moved Foal", horse.id(), null);
+
+    horseDao.update(new HorseUpdateDto(horse.id(), horse.name(), null, horse.dateOfBirth(), horse.sex(), null,
+            newParent.id(), null), null, null);
+
+    assertThat(horseDao.isAncestor(newParent.id(), foal.id())).isTrue();
+    assertThat(horseDao.isAncestor(oldParent.id(), foal.id())).isFalse();
+    assertThat(horseDao.isAncestor(horse.id(), foal.id())).isTrue();
+  }
+
+  /**
+   * Tests that deleting a horse removes it and its ancestors from the pedigrees of its descendants.
+   */
+  @Test
+  public void deleteRebuildsPedigreeOfDescendants() throws IOException, NotFoundException {
+    Horse grandparent = create("Deleted Grandparent", null, null);
+    Horse parent = create("Deleted Parent", grandparent.id(), null);
+    Horse foal = create("Orphaned Foal", parent.id(), null);
+
+    horseDao.delete(parent.id());
+
+    assertThat(horseDao.isAncestor(grandparent.id(), foal.id())).isFalse();
+    assertThat(horseDao.isAncestor(foal.id(), foal.id())).isTrue();
+  }
+
+  /**
+   * Tests that the pedigree of a line-bred family, where every generation descends from both horses
+   * of the previous one, is rebuilt without following each of the exponentially many paths.
+   */
+  @Test
+  public void updateRebuildsLineBredPedigree() throws IOException {
+    Horse founder = create("Line Founder", null, null);
+    Horse first = create("Line 0 A", null, null);
+    Horse second = create("Line 0 B", null, null);
+    Horse root = first;
+    for (int generation = 1; generation <= 24; generation++) {
+      Horse nextFirst = create("Line %d A".formatted(generation), first.id(), second.id());
+      second = create("Line %d B".formatted(generation), first.id(), second.id());
+      first = nextFirst;
+    }
+
+    HorseUpdateDto update = new HorseUpdateDto(root.id(), root.name(), null, root.dateOfBirth(), root.sex(), null,
+            founder.id(), null);
+    // not preemptive, interrupting H2 would close the database for the following tests
+    assertTimeout(Duration.ofSeconds(5), () -> horseDao.update(update, null, null));
+
+    assertThat(horseDao.isAncestor(founder.id(), first.id())).isTrue();
+    assertThat(horseDao.isAncestor(founder.id(), second.id())).isTrue();
+  }
+
+  /**
+   * Tests that a fuzzy name search tolerates typos and accents.
+   */
+  @Test
+  public void fuzzySearchFindsSimilarNames() throws IOException {
+    Horse createdHorse = horseDao.create(
+            new HorseCreateDto("Brunhilde", null, LocalDate.of(2015, 5, 5), Sex.FEMALE, null, null, null), null);
+
+    List<Horse> horses = horseDao.getByParams(new HorseSearchDto("Brünhilda", null, null, null, null, null, null, null, true, null));
+    assertThat(horses)
+            .extracting(Horse::id)
+            .contains(createdHorse.id());
+  }
+
+  /**
+   * Tests that the filters of a fuzzy search are applied to all similar names
+   * and not only to the closest ones.
+   */
+  @Test
+  public void fuzzySearchFiltersBeforeLimiting() throws IOException {
+    for (int i = 0; i < 1000; i++) {
+      create("Fuzzfilter", null, null);
+    }
+    Horse stallion = horseDao.create(
+            new HorseCreateDto("Fuzzfilters", null, LocalDate.of(2015, 5, 5), Sex.MALE, null, null, null), null);
+
+    List<Horse> horses = horseDao.getByParams(
+            new HorseSearchDto("Fuzzfilter", null, null, null, Sex.MALE, null, null, null, true, 5));
+    assertThat(horses)
+            .extracting(Horse::id)
+            .containsExactly(stallion.id());
+  }
+
+  /**
+   * Tests that horses stored without closure rows get their pedigree on backfilling,
+   * and that a cycle in the stored pedigree does not keep the backfill from finishing.
+   */
+  @Test
+  public void backfillClosureAddsMissingPedigree() throws IOException, NotFoundException {
+    Horse grandparent = create("Legacy Grandparent", null, null);
+    Horse parent = create("Legacy Parent", grandparent.id(), null);
+    Horse foal = create("Legacy Foal", parent.id(), null);
+    Horse cycleStart = create("Legacy Cycle Start", null, null);
+    Horse cycleEnd = create("Legacy Cycle End", cycleStart.id(), null);
+    try {
+      jdbcClient.sql("UPDATE horse SET parent1_id = :parent WHERE id = :id")
+              .param("parent", cycleEnd.id())
+              .param("id", cycleStart.id())
+              .update();
+      jdbcClient.sql("DELETE FROM ancestor_closure WHERE descendant_id IN (:ids)")
+              .param("ids", List.of(parent.id(), foal.id(), cycleStart.id(), cycleEnd.id()))
+              .update();
+
+      assertThat(horseDao.backfillClosure()).isEqualTo(4);
+
+      assertThat(horseDao.isAncestor(grandparent.id(), foal.id())).isTrue();
+      assertThat(horseDao.isAncestor(parent.id(), foal.id())).isTrue();
+      assertThat(horseDao.isAncestor(cycleStart.id(), cycleEnd.id())).isFalse();
+      assertThat(horseDao.isAncestor(cycleEnd.id(), cycleEnd.id())).isTrue();
+      assertThat(horseDao.backfillClosure()).isZero();
+    } finally {
+      jdbcClient.sql("UPDATE horse SET parent1_id = NULL WHERE id = :id")
+              .param("id", cycleStart.id())
+              .update();
+      horseDao.delete(cycleEnd.id());
+      horseDao.delete(cycleStart.id());
+    }
+  }
+
+  private Horse create(String name, Long parentId1, Long parentId2) throws IOException {
+    return horseDao.create(new HorseCreateDto(name, null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null, parentId1, parentId2), null);
+  }
 }
@@ -0,0 +1,163 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal.Mutation;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal.Operation;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal.Subject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for the segment files of the {@link MutationJournal}.
+ */
+public class MutationJournalTest {
+
+  /**
+   * A segment of the header and four entries.
+   */
+  private static final DataSize FOUR_ENTRIES = DataSize.ofBytes(16 + 4 * 34);
+
+  @TempDir
+  Path directory;
+
+  private final List<MutationJournal> opened = new ArrayList<>();
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    for (MutationJournal journal : opened) {
+      journal.close();
+    }
+  }
+
+  /**
+   * Tests that mutations spread over several segments are read back after reopening the journal
+   * and that sequences continue where they stopped.
+   */
+  @Test
+  public void mutationsSurviveReopening() throws InterruptedException {
+    MutationJournal journal = open(FOUR_ENTRIES, 100);
+    for (int i = 1; i <= 6; i++) {
+      journal.append(Subject.HORSE, Operation.UPDATE, -i);
+    }
+    journal.append(Subject.OWNER, Operation.DELETE, -7);
+    List<Mutation> written = journal.readAfter(0, 100);
+    journal.close();
+
+    MutationJournal reopened = open(FOUR_ENTRIES, 100);
+
+    assertThat(reopened.lastSequence()).isEqualTo(7);
+    assertThat(reopened.readAfter(0, 100)).isEqualTo(written);
+    assertThat(reopened.readAfter(4, 2)).extracting(Mutation::sequence).containsExactly(5L, 6L);
+    assertThat(reopened.readAfter(6, 100)).singleElement()
+            .isEqualTo(new Mutation(7, written.getLast().timestampMillis(), Subject.OWNER, Operation.DELETE, -7));
+    assertThat(reopened.append(Subject.HORSE, Operation.CREATE, -8)).isEqualTo(8);
+  }
+
+  /**
+   * Tests that a corrupt entry and everything behind it are discarded on opening,
+   * and that the next mutation takes the place of the discarded ones.
+   */
+  @Test
+  public void corruptTailIsDiscarded() throws IOException, InterruptedException {
+    MutationJournal journal = open(DataSize.ofKilobytes(1), 100);
+    for (int i = 1; i <= 4; i++) {
+      journal.append(Subject.HORSE, Operation.CREATE, -i);
+    }
+    journal.close();
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.findFirst().orElseThrow();
+    }
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      // the ID of the third entry, which no longer matches its checksum
+      channel.write(ByteBuffer.wrap(new byte[] {0x7F}), 16 + 2 * 34 + 30);
+    }
+
+    MutationJournal reopened = open(DataSize.ofKilobytes(1), 100);
+
+    assertThat(reopened.lastSequence()).isEqualTo(2);
+    assertThat(reopened.readAfter(0, 100)).extracting(Mutation::id).containsExactly(-1L, -2L);
+    assertThat(reopened.append(Subject.HORSE, Operation.UPDATE, -3)).isEqualTo(3);
+    assertThat(reopened.readAfter(2, 100)).singleElement().extracting(Mutation::operation)
+            .isEqualTo(Operation.UPDATE);
+  }
+
+  /**
+   * Tests that full segments are merged into one keeping the last mutation of every record,
+   * and that the merged segment is read back after reopening.
+   */
+  @Test
+  public void compactionKeepsLastMutationOfEveryRecord() throws IOException, InterruptedException {
+    MutationJournal journal = open(FOUR_ENTRIES, 2);
+    for (int i = 1; i <= 8; i++) {
+      journal.append(Subject.HORSE, Operation.UPDATE, -(i % 2) - 1);
+    }
+    // starts the third segment, so the first two are compacted
+    journal.append(Subject.OWNER, Operation.CREATE, -1);
+
+    await().until(() -> segmentFiles() == 2);
+    assertThat(journal.readAfter(0, 100)).extracting(Mutation::sequence).containsExactly(7L, 8L, 9L);
+    assertThat(journal.readAfter(7, 100)).extracting(Mutation::subject)
+            .containsExactly(Subject.HORSE, Subject.OWNER);
+    journal.close();
+
+    MutationJournal reopened = open(FOUR_ENTRIES, 2);
+
+    assertThat(reopened.lastSequence()).isEqualTo(9);
+    assertThat(reopened.readAfter(0, 100)).extracting(Mutation::id).containsExactly(-2L, -1L, -1L);
+  }
+
+  /**
+   * Tests that segments already merged into a compacted one, which could not be deleted while mapped,
+   * and an incomplete compacted segment are deleted when the journal is opened.
+   */
+  @Test
+  public void leftoversOfCompactionAreDeletedOnOpening() throws IOException, InterruptedException {
+    MutationJournal journal = open(FOUR_ENTRIES, 2);
+    for (int i = 1; i <= 8; i++) {
+      journal.append(Subject.HORSE, Operation.UPDATE, -i);
+    }
+    Path merged = directory.resolve("%020d.journal".formatted(5));
+    byte[] mergedContent = Files.readAllBytes(merged);
+    journal.append(Subject.OWNER, Operation.CREATE, -1);
+    await().until(() -> segmentFiles() == 2);
+    journal.close();
+    Files.write(merged, mergedContent);
+    Path incomplete = directory.resolve("%020d-%020d.journal".formatted(1, 12));
+    Files.write(incomplete, new byte[16 + 34]);
+
+    MutationJournal reopened = open(FOUR_ENTRIES, 2);
+
+    assertThat(merged).doesNotExist();
+    assertThat(incomplete).doesNotExist();
+    assertThat(reopened.readAfter(0, 100)).extracting(Mutation::sequence).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L,
+            8L, 9L);
+  }
+
+  private MutationJournal open(DataSize segmentSize, int compactSegments) {
+    MutationJournal journal = new MutationJournal(true, directory, segmentSize, compactSegments, false);
+    opened.add(journal);
+    return journal;
+  }
+
+  private long segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(".journal")).count();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Integration test for {@link OwnerDao}.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest
+public class OwnerDaoTest {
+
+  @Autowired
+  OwnerDao ownerDao;
+
+  /**
+   * Tests that a fuzzy owner search tolerates typos and accents in the first and last name.
+   */
+  @Test
+  public void fuzzySearchFindsSimilarNames() throws IOException, NotFoundException {
+    Owner owner = create("Józefina", "Brzęczyszczykiewicz");
+
+    assertThat(ownerDao.search(new OwnerSearchDto("Jozefine", 10, true)))
+            .extracting(Owner::id)
+            .contains(owner.id());
+    assertThat(ownerDao.search(new OwnerSearchDto("Brzeczyszczykiewic", 10, true)))
+            .extracting(Owner::id)
+            .contains(owner.id());
+    assertThat(ownerDao.search(new OwnerSearchDto("jozefina brzeczyszczykiewicz", 10, true)))
+            .extracting(Owner::id)
+            .first()
+            .isEqualTo(owner.id());
+  }
+
+  /**
+   * Tests that short fuzzy queries still find names one edit away,
+   * and that the closest names come first.
+   */
+  @Test
+  public void fuzzySearchRanksShortQueriesByDistance() throws IOException, NotFoundException {
+    Owner exact = create("Ottilie", "Ody");
+    Owner oneEdit = create("Ottilie", "Odya");
+
+    assertThat(ownerDao.search(new OwnerSearchDto("Ody", 10, true)))
+            .extracting(Owner::id)
+            .containsSubsequence(exact.id(), oneEdit.id());
+  }
+
+  /**
+   * Tests that a fuzzy owner search without similar names reports that nothing was found.
+   */
+  @Test
+  public void fuzzySearchWithoutMatchThrowsNotFound() {
+    assertThrows(NotFoundException.class,
+            () -> ownerDao.search(new OwnerSearchDto("Xqzvwpt Kkjhgf", 10, true)));
+  }
+
+  /**
+   * Tests that suggestions match the start of the name or of one of its words,
+   * without case and accents, and list every owner once.
+   */
+  @Test
+  public void suggestMatchesWordPrefixes() throws IOException {
+    Owner owner = create("Émilie", "Émile-Suggest");
+    Owner other = create("Emil", "Suggestion");
+
+    assertThat(ownerDao.suggestByName("emil", 10))
+            .extracting(Owner::id)
+            .contains(owner.id(), other.id())
+            .doesNotHaveDuplicates();
+    assertThat(ownerDao.suggestByName("SUGGESTI", 10))
+            .extracting(Owner::id)
+            .contains(other.id())
+            .doesNotContain(owner.id());
+    assertThat(ownerDao.suggestByName("emil", 1)).hasSize(1);
+    // unlike the search, a suggestion does not match in the middle of a word
+    assertThat(ownerDao.suggestByName("uggest", 10))
+            .extracting(Owner::id)
+            .doesNotContain(owner.id(), other.id());
+  }
+
+  /**
+   * Tests that suggestions follow deleted owners.
+   */
+  @Test
+  public void suggestFollowsDeletes() throws IOException, NotFoundException {
+    Owner owner = create("Deleted", "Suggestee");
+    assertThat(ownerDao.suggestByName("suggestee", 10))
+            .extracting(Owner::id)
+            .containsExactly(owner.id());
+
+    ownerDao.delete(owner.id());
+
+    assertThat(ownerDao.suggestByName("suggestee", 10)).isEmpty();
+  }
+
+  private Owner create(String firstName, String lastName) throws IOException {
+    ownerDao.create(new OwnerCreateDto(firstName, lastName, null));
+    return ownerDao.getAll().stream()
+            .filter(owner -> owner.firstName().equals(firstName) && owner.lastName().equals(lastName))
+            .findFirst()
+            .orElseThrow();
+  }
+}
@@ -0,0 +1,154 @@
+package at.ac.tuwien.sepr.assignment.individual.persistence;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+
+/**
+ * Tests for the {@link PedigreeGeneratorBean}, each on its own in-memory database.
+ */
+public class PedigreeGeneratorBeanTest {
+
+  private static final PedigreeGeneratorBean.Properties PROPERTIES =
+          new PedigreeGeneratorBean.Properties(20, 300, 100, 4, 1.0, 0.5, 0.1, 64, 2, 42);
+
+  private JdbcDataSource dataSource;
+  private JdbcClient jdbcClient;
+
+  /**
+   * Creates an empty database named after the test.
+   */
+  @BeforeEach
+  public void setUp(TestInfo test) {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + test.getTestMethod().orElseThrow().getName()
+            + ";DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:sql/createSchema.sql'");
+    dataSource.setUser("sa");
+    jdbcClient = JdbcClient.create(dataSource);
+  }
+
+  /**
+   * Tests that the configured number of owners and horses is generated,
+   * with every horse after the founders bred from the previous generation of its family.
+   */
+  @Test
+  public void generatesFamiliesOfGenerations() throws SQLException {
+    generator(PROPERTIES).generateData();
+
+    assertThat(count("SELECT COUNT(*) FROM owner WHERE id <= -1000")).isEqualTo(20);
+    assertThat(count("SELECT COUNT(*) FROM horse WHERE id <= -1000")).isEqualTo(300);
+    assertThat(count("SELECT COUNT(*) FROM horse WHERE image IS NOT NULL")).isPositive();
+    // the first generation of each of the 3 families has 25 founders without parents
+    assertThat(count("SELECT COUNT(*) FROM horse WHERE parent1_id IS NULL AND parent2_id IS NULL")).isEqualTo(75);
+    // horses of a family have consecutive IDs, so parents are in the same block of 100 and born earlier
+    assertThat(count("""
+            SELECT COUNT(*) FROM horse h JOIN horse p ON p.id IN (h.parent1_id, h.parent2_id)
+            WHERE (-h.id - 1000) / 100 <> (-p.id - 1000) / 100 OR p.date_of_birth >= h.date_of_birth
+            """)).isZero();
+    assertThat(count("""
+            SELECT COUNT(*) FROM horse h JOIN horse p ON p.id = h.parent1_id WHERE p.sex <> 'MALE'
+            """)).isZero();
+  }
+
+  /**
+   * Tests that the closure contains every horse as its own ancestor
+   * and every ancestor reachable through the parents, at its shortest depth.
+   */
+  @Test
+  public void closureMatchesParents() throws SQLException {
+    generator(PROPERTIES).generateData();
+
+    assertThat(count("SELECT COUNT(*) FROM ancestor_closure WHERE depth = 0 AND ancestor_id = descendant_id"))
+            .isEqualTo(300);
+    List<Map<String, Object>> expected = jdbcClient.sql("""
+            WITH RECURSIVE lineage(ancestor_id, descendant_id, depth) AS (
+              SELECT id, id, 0 FROM horse
+              UNION ALL
+              SELECT p.id, l.descendant_id, l.depth + 1 FROM lineage l
+              JOIN horse h ON h.id = l.ancestor_id
+              JOIN horse p ON p.id = h.parent1_id OR p.id = h.parent2_id
+            )
+            SELECT ancestor_id, descendant_id, MIN(depth) AS depth FROM lineage
+            GROUP BY ancestor_id, descendant_id ORDER BY ancestor_id, descendant_id
+            """).query().listOfRows();
+    List<Map<String, Object>> stored = jdbcClient.sql("""
+            SELECT ancestor_id, descendant_id, depth FROM ancestor_closure ORDER BY ancestor_id, descendant_id
+            """).query().listOfRows();
+    assertThat(stored).isEqualTo(expected);
+  }
+
+  /**
+   * Tests that the same seed generates the same population.
+   */
+  @Test
+  public void sameSeedGeneratesSameData() throws SQLException {
+    generator(PROPERTIES).generateData();
+    List<Map<String, Object>> first = horses();
+
+    jdbcClient.sql("DELETE FROM horse").update();
+    jdbcClient.sql("DELETE FROM owner").update();
+    generator(PROPERTIES).generateData();
+
+    assertThat(horses()).isEqualTo(first);
+  }
+
+  /**
+   * Tests that starting again with the regular test data, which deletes the generated horses but used to keep
+   * the generated owners, generates the population again instead of failing on the existing owners.
+   */
+  @Test
+  public void regeneratesAfterTestDataWasReset() throws SQLException {
+    DataGeneratorBean testData = new DataGeneratorBean(dataSource);
+    testData.generateData();
+    generator(PROPERTIES).generateData();
+
+    testData.generateData();
+    assertThat(count("SELECT COUNT(*) FROM horse WHERE id <= -1000")).isZero();
+    generator(PROPERTIES).generateData();
+    // owners left behind by an interrupted run are overwritten as well
+    jdbcClient.sql("DELETE FROM horse WHERE id <= -1000").update();
+    generator(PROPERTIES).generateData();
+
+    assertThat(count("SELECT COUNT(*) FROM owner WHERE id <= -1000")).isEqualTo(20);
+    assertThat(count("SELECT COUNT(*) FROM horse WHERE id <= -1000")).isEqualTo(300);
+  }
+
+  /**
+   * Tests that nothing is generated while generated horses exist.
+   */
+  @Test
+  public void existingPopulationIsKept() throws SQLException {
+    generator(PROPERTIES).generateData();
+    jdbcClient.sql("UPDATE horse SET name = 'Kept' WHERE id = -1000").update();
+
+    generator(PROPERTIES).generateData();
+
+    assertThat(jdbcClient.sql("SELECT name FROM horse WHERE id = -1000").query(String.class).single())
+            .isEqualTo("Kept");
+    assertThat(count("SELECT COUNT(*) FROM horse WHERE id <= -1000")).isEqualTo(300);
+  }
+
+  private PedigreeGeneratorBean generator(PedigreeGeneratorBean.Properties properties) {
+    return new PedigreeGeneratorBean(dataSource,
+            new StaticListableBeanFactory().getBeanProvider(DataGeneratorBean.class), properties);
+  }
+
+  private List<Map<String, Object>> horses() {
+    return jdbcClient.sql("""
+            SELECT id, name, description, date_of_birth, sex, owner_id, parent1_id, parent2_id FROM horse ORDER BY id
+            """).query().listOfRows();
+  }
+
+  private long count(String sql) {
+    return jdbcClient.sql(sql).query(Long.class).single();
+  }
+}
@@ -0,0 +1,111 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.NestedTestConfiguration;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+/**
+ * Integration tests for the diagnostics REST API endpoint.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest(properties = {"app.diagnostics.enabled=true", "app.jfr.continuous-recording=true"})
+@EnableWebMvc
+@WebAppConfiguration
+public class DiagnosticsEndpointTest {
+
+  @Autowired
+  private WebApplicationContext webAppContext;
+  private MockMvc mockMvc;
+
+  /**
+   * Sets up the MockMvc instance before each test.
+   */
+  @BeforeEach
+  public void setup() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(webAppContext).build();
+  }
+
+  /**
+   * Tests that a local request gets the continuous recording as JFR file.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void localRequestGetsRecording() throws Exception {
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/diagnostics/recording")
+            .with(request -> {
+              request.setRemoteAddr("::1");
+              return request;
+            })
+        ).andExpect(status().isOk())
+        .andExpect(header().string("Content-Disposition", endsWith(".jfr\"")))
+        .andReturn().getResponse().getContentAsByteArray();
+
+    // every chunk of a JFR file starts with this magic
+    assertThat(new String(Arrays.copyOf(body, 3), StandardCharsets.US_ASCII)).isEqualTo("FLR");
+  }
+
+  /**
+   * Tests that a request from another host is refused.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void remoteRequestIsForbidden() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/diagnostics/recording")
+            .with(request -> {
+              request.setRemoteAddr("192.0.2.10");
+              return request;
+            })
+        ).andExpect(status().isForbidden());
+  }
+
+  /**
+   * Tests of the application with its default configuration.
+   */
+  @Nested
+  @NestedTestConfiguration(NestedTestConfiguration.EnclosingConfiguration.OVERRIDE)
+  @ActiveProfiles({"test", "datagen"})
+  @SpringBootTest
+  @EnableWebMvc
+  @WebAppConfiguration
+  class DefaultConfiguration {
+
+    @Autowired
+    private WebApplicationContext defaultContext;
+
+    /**
+     * Tests that the endpoint does not exist unless it is enabled.
+     *
+     * @throws Exception if the request fails
+     */
+    @Test
+    public void recordingIsNotServedByDefault() throws Exception {
+      MockMvcBuilders.webAppContextSetup(defaultContext).build()
+          .perform(MockMvcRequestBuilders.get("/diagnostics/recording"))
+          .andExpect(status().isNotFound());
+      assertThat(defaultContext.getBeansOfType(DiagnosticsEndpoint.class)).isEmpty();
+    }
+  }
+}
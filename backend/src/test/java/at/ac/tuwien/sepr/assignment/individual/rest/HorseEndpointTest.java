@@ -1,18 +1,39 @@
 package at.ac.tuwien.sepr.assignment.individual.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchResultDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSuggestionDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseUpdateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerFacetDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
@@ -28,7 +49,9 @@ import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 @SpringBootTest
 @EnableWebMvc
 @WebAppConfiguration
+@ExtendWith(RequestBudgetExtension.class)
 public class HorseEndpointTest {
+  private static final long SEEDED_OWNER_ID = -50;
 
   @Autowired
   private WebApplicationContext webAppContext;
@@ -37,6 +60,14 @@ public class HorseEndpointTest {
   @Autowired
   private ObjectMapper objectMapper;
 
+  @Autowired
+  private HorseDao horseDao;
+
+  @Autowired
+  private JdbcClient jdbcClient;
+
+  private final List<Long> seededHorses = new ArrayList<>();
+
   /**
    * Sets up the MockMvc instance before each test.
    */
@@ -45,6 +76,18 @@ public class HorseEndpointTest {
     this.mockMvc = MockMvcBuilders.webAppContextSetup(webAppContext).build();
   }
 
+  /**
+   * Removes the horses and the owner a test seeded, the youngest horses first.
+   */
+  @AfterEach
+  public void removeSeededData() throws Exception {
+    for (int i = seededHorses.size() - 1; i >= 0; i--) {
+      horseDao.delete(seededHorses.get(i));
+    }
+    seededHorses.clear();
+    jdbcClient.sql("DELETE FROM owner WHERE id = " + SEEDED_OWNER_ID).update();
+  }
+
   /**
    * Tests retrieving all horses from the endpoint.
    *
@@ -80,4 +123,322 @@ public class HorseEndpointTest {
             .get("/asdf123")
         ).andExpect(status().isNotFound());
   }
+
+  /**
+   * Tests that loading the details of a horse stays within its statement and allocation budget.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 2, allocatedKilobytes = 256)
+  public void gettingHorseDetailStaysWithinBudget(RequestMeter meter) throws Exception {
+    meter.measure("GET /horses/-1", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk()));
+  }
+
+  /**
+   * Tests that a client accepting CBOR gets the details of a horse encoded in CBOR, with the tag of the JSON ones.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void gettingHorseAsCbor() throws Exception {
+    String jsonTag = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    MockHttpServletResponse response = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1").accept("application/cbor"))
+        .andExpect(status().isOk())
+        .andReturn().getResponse();
+
+    assertThat(response.getContentType()).isEqualTo("application/cbor");
+    assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(jsonTag);
+    assertThat(response.getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT);
+    HorseDetailDto horse = CBORMapper.builder().findAndAddModules().build()
+        .readValue(response.getContentAsByteArray(), HorseDetailDto.class);
+    assertThat(horse.id()).isEqualTo(-1);
+    assertThat(horse.name()).isNotBlank();
+  }
+
+  /**
+   * Tests that revalidating the details of an unchanged horse answers 304 from a lookup of its version only.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 1, allocatedKilobytes = 256)
+  public void revalidatingUnchangedHorseReturns304(RequestMeter meter) throws Exception {
+    String etag = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(etag).isNotNull();
+
+    meter.measure("GET /horses/-1 If-None-Match", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1").header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified()));
+  }
+
+  /**
+   * Tests that revalidating a family tree answers 304 as long as none of its horses changed.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void revalidatingUnchangedFamilyTreeReturns304() throws Exception {
+    String etag = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1/familytree").param("generations", "5")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(etag).isNotNull();
+
+    mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/-1/familytree").param("generations", "5")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isNotModified());
+  }
+
+  /**
+   * Tests that changing an ancestor gives the family tree a new tag, so revalidating it returns the changed tree.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void changingAncestorInvalidatesFamilyTreeTag() throws Exception {
+    long root = seedPedigree(3);
+    String etag = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/" + root + "/familytree").param("generations", "3")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    // the oldest mare, grandmother of the root
+    Horse grandmother = horseDao.getById(seededHorses.getFirst());
+    horseDao.update(new HorseUpdateDto(grandmother.id(), "Renamed grandmother", null, grandmother.dateOfBirth(),
+        grandmother.sex(), null, null, null), null, null);
+
+    MockHttpServletResponse response = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/" + root + "/familytree").param("generations", "3")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse();
+
+    assertThat(response.getHeader(HttpHeaders.ETAG)).isNotNull().isNotEqualTo(etag);
+    HorseTreeNodeDto tree = objectMapper.readValue(response.getContentAsByteArray(), HorseTreeNodeDto.class);
+    assertThat(tree.parent1().parent1().name()).isEqualTo("Renamed grandmother");
+  }
+
+  /**
+   * Tests that a change committing after a later one gives the family tree a new tag,
+   * although its version is below the highest version of the tree.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void lateCommittedChangeInvalidatesFamilyTreeTag() throws Exception {
+    long root = seedPedigree(3);
+    Horse grandmother = horseDao.getById(seededHorses.getFirst());
+    String etag = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/" + root + "/familytree").param("generations", "3")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    // as if the grandmother had been changed by a transaction drawing its version before the root was created
+    jdbcClient.sql("UPDATE horse SET version = :version WHERE id = :id")
+        .param("version", grandmother.version() + 1)
+        .param("id", grandmother.id())
+        .update();
+
+    MockHttpServletResponse response = mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/" + root + "/familytree").param("generations", "3")
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse();
+
+    assertThat(response.getHeader(HttpHeaders.ETAG)).isNotNull().isNotEqualTo(etag);
+  }
+
+  /**
+   * Tests that removing the image of a horse that does not exist answers 404 Not Found.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void removingImageOfMissingHorseReturns404() throws Exception {
+    mockMvc
+        .perform(MockMvcRequestBuilders.put("/horses/-999999/image"))
+        .andExpect(status().isNotFound());
+  }
+
+  /**
+   * Tests that an update based on an outdated version of the horse is rejected.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void updatingWithStaleVersionReturns412() throws Exception {
+    MockMultipartFile horse = new MockMultipartFile("horse", "", MediaType.APPLICATION_JSON_VALUE,
+        "{\"name\": \"Wendy\", \"dateOfBirth\": \"2012-12-12\", \"sex\": \"FEMALE\"}".getBytes());
+
+    mockMvc
+        .perform(MockMvcRequestBuilders.multipart(HttpMethod.PUT, "/horses/-1").file(horse)
+            .header(HttpHeaders.IF_MATCH, "\"-1\""))
+        .andExpect(status().isPreconditionFailed());
+  }
+
+  /**
+   * Tests that searching horses stays within its statement and allocation budget.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 2, allocatedKilobytes = 512)
+  public void searchingHorsesStaysWithinBudget(RequestMeter meter) throws Exception {
+    meter.measure("GET /horses?name=Wen&limit=20", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses").param("name", "Wen").param("limit", "20")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk()));
+  }
+
+  /**
+   * Tests that a search opting in to facets answers the limited matches with the counts of all of them,
+   * counted by a single statement besides the search and the owner lookup.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 3, allocatedKilobytes = 1024)
+  public void searchingHorsesWithFacetsStaysWithinBudget(RequestMeter meter) throws Exception {
+    jdbcClient.sql("INSERT INTO owner (id, first_name, last_name) VALUES (" + SEEDED_OWNER_ID + ", 'Anna', 'Huber')")
+        .update();
+    for (int i = 0; i < 3; i++) {
+      seed(new HorseCreateDto("Faceted " + i, null, LocalDate.of(2015 + i % 2, 4, 1), Sex.MALE, SEEDED_OWNER_ID,
+          null, null));
+    }
+
+    MockHttpServletResponse response = meter.measure("GET /horses?name=Faceted&limit=2&facets=true", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses").param("name", "Faceted").param("limit", "2")
+            .param("facets", "true")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse());
+
+    HorseSearchResultDto result = objectMapper.readValue(response.getContentAsByteArray(), HorseSearchResultDto.class);
+    assertThat(result.horses()).hasSize(2);
+    assertThat(result.facets().total()).isEqualTo(3);
+    assertThat(result.facets().birthYear()).containsExactly(entry(2015, 2L), entry(2016, 1L));
+    assertThat(result.facets().topOwners()).singleElement()
+        .extracting(facet -> facet.owner().id(), OwnerFacetDto::count)
+        .containsExactly(SEEDED_OWNER_ID, 3L);
+  }
+
+  /**
+   * Tests that loading the details of a horse with an owner counts the owner lookup of the batch loader as well.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 2, allocatedKilobytes = 256)
+  public void gettingHorseWithOwnerCountsOwnerLookup(RequestMeter meter) throws Exception {
+    jdbcClient.sql("INSERT INTO owner (id, first_name, last_name) VALUES (" + SEEDED_OWNER_ID + ", 'Anna', 'Huber')")
+        .update();
+    long id = seed(new HorseCreateDto("Owned", null, LocalDate.of(2015, 4, 1), Sex.MALE, SEEDED_OWNER_ID, null, null));
+
+    meter.measure("GET /horses/{owned}", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/" + id).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk()));
+
+    assertThat(meter.usages()).singleElement().extracting(RequestMeter.Usage::statements).isEqualTo(2);
+  }
+
+  /**
+   * Tests that building a family tree stays within its budget of one statement per generation,
+   * for a pedigree deeper than the requested generations.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 5, allocatedKilobytes = 512)
+  public void gettingFamilyTreeStaysWithinBudget(RequestMeter meter) throws Exception {
+    long root = seedPedigree(7);
+
+    byte[] body = meter.measure("GET /horses/{pedigree}/familytree?generations=5", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/" + root + "/familytree").param("generations", "5")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray());
+
+    HorseTreeNodeDto ancestor = objectMapper.readValue(body, HorseTreeNodeDto.class);
+    for (int generation = 1; generation < 5; generation++) {
+      assertThat(ancestor.parent1()).as("ancestor of generation %d", generation + 1).isNotNull();
+      assertThat(ancestor.parent2()).as("ancestor of generation %d", generation + 1).isNotNull();
+      ancestor = ancestor.parent1();
+    }
+    assertThat(ancestor.parent1()).isNull();
+    assertThat(meter.usages()).singleElement().extracting(RequestMeter.Usage::statements).isEqualTo(5);
+  }
+
+  /**
+   * Tests that suggesting horse names is answered from memory, without any statement once the index is loaded.
+   *
+   * @param meter measures the request
+   * @throws Exception if the request fails
+   */
+  @Test
+  @RequestBudget(statements = 0, allocatedKilobytes = 256)
+  public void suggestingHorsesStaysWithinBudget(RequestMeter meter) throws Exception {
+    // the first suggestion loads the index
+    mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/suggest").param("prefix", "w"))
+        .andExpect(status().isOk());
+
+    byte[] body = meter.measure("GET /horses/suggest?prefix=wEN&limit=3", () -> mockMvc
+        .perform(MockMvcRequestBuilders.get("/horses/suggest").param("prefix", "wEN").param("limit", "3")
+            .accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray());
+
+    List<HorseSuggestionDto> suggestions = objectMapper.readerFor(HorseSuggestionDto.class)
+        .<HorseSuggestionDto>readValues(body).readAll();
+    assertThat(suggestions)
+        .hasSizeLessThanOrEqualTo(3)
+        .allSatisfy(suggestion -> assertThat(suggestion.name()).containsIgnoringCase("wen"));
+  }
+
+  /**
+   * Seeds a pedigree of a mare and a stallion per generation, each the children of the pair before them.
+   *
+   * @param generations the number of generations, including the youngest
+   * @return the ID of the youngest mare
+   */
+  private long seedPedigree(int generations) throws Exception {
+    Long mother = null;
+    Long father = null;
+    for (int generation = generations; generation > 0; generation--) {
+      LocalDate born = LocalDate.of(2020, 1, 1).minusYears(4L * generation);
+      long mare = seed(new HorseCreateDto("Pedigree mare " + generation, null, born, Sex.FEMALE, null, mother, father));
+      father = seed(new HorseCreateDto("Pedigree stallion " + generation, null, born, Sex.MALE, null, mother, father));
+      mother = mare;
+    }
+    return mother;
+  }
+
+  private long seed(HorseCreateDto horse) throws Exception {
+    long id = horseDao.create(horse, null).id();
+    seededHorses.add(id);
+    return id;
+  }
 }
@@ -0,0 +1,71 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.MetricsDto;
+import at.ac.tuwien.sepr.assignment.individual.service.HorseService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+/**
+ * Integration tests for the metrics REST API endpoint.
+ */
+@ActiveProfiles({"test", "datagen"})
+@SpringBootTest
+@EnableWebMvc
+@WebAppConfiguration
+public class MetricsEndpointTest {
+
+  @Autowired
+  private WebApplicationContext webAppContext;
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private HorseService horseService;
+
+  /**
+   * Sets up the MockMvc instance before each test.
+   */
+  @BeforeEach
+  public void setup() {
+    this.mockMvc = MockMvcBuilders.webAppContextSetup(webAppContext).build();
+  }
+
+  /**
+   * Tests that calls of services and DAOs show up under their full signatures, together with the owner loader.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void metricsContainCalledMethods() throws Exception {
+    horseService.getById(-1L);
+
+    byte[] body = mockMvc
+        .perform(MockMvcRequestBuilders
+            .get("/metrics")
+            .accept(MediaType.APPLICATION_JSON)
+        ).andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsByteArray();
+    MetricsDto metrics = objectMapper.readValue(body, MetricsDto.class);
+
+    assertThat(metrics.methods()).containsKeys("HorseServiceImpl.getById(long)", "HorseJdbcDao.getById(long)");
+    assertThat(metrics.methods().get("HorseServiceImpl.getById(long)").count()).isGreaterThanOrEqualTo(1);
+    assertThat(metrics.methods().keySet()).allMatch(method -> method.endsWith(")"));
+    assertThat(metrics.ownerLoader()).isNotNull();
+  }
+}
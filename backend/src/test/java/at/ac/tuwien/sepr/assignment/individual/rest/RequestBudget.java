@@ -0,0 +1,25 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how much a single request measured with a {@link RequestMeter} may cost.
+ * Checked by the {@link RequestBudgetExtension} after the test, every measured request has to stay within the budget.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequestBudget {
+
+  /**
+   * The maximum number of SQL statements the request may execute.
+   */
+  int statements();
+
+  /**
+   * The maximum number of kilobytes the request may allocate on the request thread.
+   */
+  long allocatedKilobytes();
+}
@@ -0,0 +1,67 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+import at.ac.tuwien.sepr.assignment.individual.config.StatementProfiler;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+/**
+ * JUnit extension enforcing the {@link RequestBudget} of a test.
+ * Provides a {@link RequestMeter} as test method parameter and fails the test if one of the requests measured with it
+ * executed more statements or allocated more memory than the budget allows.
+ * Must be registered after the {@link SpringExtension}, whose application context provides the statement profiler.
+ * Statements are only reported to the profiler with {@code app.sql-profiler.enabled=true}, which the test
+ * configuration sets; without it every request would seem to execute none, so the test fails instead.
+ */
+public class RequestBudgetExtension implements ParameterResolver, AfterTestExecutionCallback {
+  private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(RequestBudgetExtension.class);
+
+  @Override
+  public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+    return parameterContext.getParameter().getType() == RequestMeter.class;
+  }
+
+  @Override
+  public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+    ApplicationContext applicationContext = SpringExtension.getApplicationContext(extensionContext);
+    if (!applicationContext.containsBean("profilingInterceptor")) {
+      fail("Request budgets need the SQL profiler, enable it with app.sql-profiler.enabled=true");
+    }
+    StatementProfiler profiler = applicationContext.getBean(StatementProfiler.class);
+    return extensionContext.getStore(NAMESPACE)
+        .getOrComputeIfAbsent(RequestMeter.class, type -> new RequestMeter(profiler), RequestMeter.class);
+  }
+
+  @Override
+  public void afterTestExecution(ExtensionContext context) {
+    RequestBudget budget = context.getRequiredTestMethod().getAnnotation(RequestBudget.class);
+    RequestMeter meter = context.getStore(NAMESPACE).get(RequestMeter.class, RequestMeter.class);
+    if (budget == null || context.getExecutionException().isPresent()) {
+      return;
+    }
+    if (meter == null || meter.usages().isEmpty()) {
+      fail("Test has a request budget but measured no request");
+    }
+    List<String> violations = new ArrayList<>();
+    for (RequestMeter.Usage usage : meter.usages()) {
+      if (usage.statements() > budget.statements()) {
+        violations.add(String.format("%s executed %d SQL statements, the budget is %d",
+            usage.name(), usage.statements(), budget.statements()));
+      }
+      if (usage.allocatedBytes() > budget.allocatedKilobytes() * 1024) {
+        violations.add(String.format("%s allocated %d KB, the budget is %d KB",
+            usage.name(), usage.allocatedBytes() / 1024, budget.allocatedKilobytes()));
+      }
+    }
+    if (!violations.isEmpty()) {
+      fail(String.join("\n", violations));
+    }
+  }
+}
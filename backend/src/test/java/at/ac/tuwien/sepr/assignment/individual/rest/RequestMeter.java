@@ -0,0 +1,71 @@
+package at.ac.tuwien.sepr.assignment.individual.rest;
+
+import at.ac.tuwien.sepr.assignment.individual.config.StatementProfiler;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.slf4j.MDC;
+
+/**
+ * Measures the SQL statements and allocated bytes of single requests, for the {@link RequestBudgetExtension}.
+ * Statements are counted by the {@link StatementProfiler} under a correlation id, like the log filter does for real
+ * requests, so statements of other threads only count if they carry the MDC of the request.
+ * The owner batch loader runs its queries on the threads of the requests waiting for them, so the owner lookup of a
+ * single measured request is counted.
+ * Allocations are only counted on the request thread.
+ */
+public final class RequestMeter {
+  private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+  private static final int WARMUPS = 3;
+
+  private final StatementProfiler profiler;
+  private final List<Usage> usages = new ArrayList<>();
+
+  RequestMeter(StatementProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /**
+   * The cost of a measured request.
+   *
+   * @param name           the description of the request
+   * @param statements     the number of SQL statements it executed
+   * @param allocatedBytes the number of bytes it allocated, -1 if the JVM can not count allocations
+   */
+  public record Usage(String name, int statements, long allocatedBytes) {
+  }
+
+  /**
+   * Runs a request a few times to warm up caches and lazily initialized code, then measures one more run.
+   * Only use it for requests that may be repeated.
+   *
+   * @param name    the description of the request, used in budget violations
+   * @param request the request
+   * @param <T>     the result of the request
+   * @return the result of the measured run
+   * @throws Exception if the request fails
+   */
+  public <T> T measure(String name, Callable<T> request) throws Exception {
+    for (int i = 0; i < WARMUPS; i++) {
+      request.call();
+    }
+    String requestId = "budget-" + usages.size();
+    MDC.put("r", requestId);
+    profiler.startRequest(requestId);
+    boolean countAllocations = THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled();
+    long allocatedBefore = countAllocations ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    try {
+      return request.call();
+    } finally {
+      long allocated = countAllocations ? THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore : -1;
+      usages.add(new Usage(name, profiler.finishRequest(requestId), allocated));
+      MDC.remove("r");
+    }
+  }
+
+  List<Usage> usages() {
+    return usages;
+  }
+}
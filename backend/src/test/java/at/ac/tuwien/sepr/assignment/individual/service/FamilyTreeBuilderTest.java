@@ -0,0 +1,110 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.service.impl.FamilyTreeBuilder;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for the {@link FamilyTreeBuilder}.
+ */
+public class FamilyTreeBuilderTest {
+
+  private final Map<Long, Horse> stored = new HashMap<>();
+  private HorseDao dao;
+  private FamilyTreeBuilder builder;
+
+  /**
+   * Creates a builder in front of a mocked DAO that answers from {@link #stored}.
+   */
+  @BeforeEach
+  public void setUp() {
+    dao = mock(HorseDao.class);
+    when(dao.getAllByIdWithoutImage(anyCollection())).thenAnswer(invocation -> {
+      List<Horse> horses = new ArrayList<>();
+      for (Object id : invocation.<Collection<?>>getArgument(0)) {
+        if (stored.containsKey(id)) {
+          horses.add(stored.get(id));
+        }
+      }
+      return horses;
+    });
+    builder = new FamilyTreeBuilder(dao, new HorseMapper());
+  }
+
+  /**
+   * Tests that every generation is fetched with one query
+   * and that an ancestor appearing at several positions of the tree is fetched once.
+   */
+  @Test
+  public void sharedAncestorIsFetchedOnce() throws NotFoundException {
+    store(1, null, null);
+    store(2, 1L, null);
+    store(3, 1L, null);
+    store(4, 2L, 3L);
+    store(5, 4L, 1L);
+
+    HorseTreeNodeDto tree = builder.build(5, 4);
+
+    assertThat(tree.parent1().parent1().parent1().id()).isEqualTo(1L);
+    assertThat(tree.parent1().parent2().parent1().id()).isEqualTo(1L);
+    assertThat(tree.parent2().id()).isEqualTo(1L);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+    verify(dao, times(3)).getAllByIdWithoutImage(ids.capture());
+    assertThat(ids.getAllValues())
+            .flatExtracting(fetched -> fetched)
+            .containsExactlyInAnyOrder(5L, 4L, 1L, 2L, 3L);
+  }
+
+  /**
+   * Tests that the tree stops after the requested number of generations.
+   */
+  @Test
+  public void treeIsCutAtGenerations() throws NotFoundException {
+    store(1, null, null);
+    store(2, 1L, null);
+
+    assertThat(builder.build(2, 1).parent1()).isNull();
+    verify(dao, times(1)).getAllByIdWithoutImage(anyCollection());
+  }
+
+  /**
+   * Tests that a missing root or ancestor is reported as not found.
+   */
+  @Test
+  public void missingHorseThrowsNotFound() {
+    store(2, 1L, null);
+
+    assertThrows(NotFoundException.class, () -> builder.build(3, 2));
+    assertThrows(NotFoundException.class, () -> builder.build(2, 2));
+  }
+
+  private void store(long id, Long parentId1, Long parentId2) {
+    stored.put(id, new Horse(id, "Horse " + id, null, LocalDate.of(2000, 1, 1), Sex.FEMALE, null, null,
+            parentId1, parentId2, 1L));
+  }
+}
@@ -1,6 +1,7 @@
 package at.ac.tuwien.sepr.assignment.individual.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -8,10 +9,17 @@ import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseDetailDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
 import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchFacetsDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseSearchResultDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerFacetDto;
 import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
 import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
 import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
 import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
 import at.ac.tuwien.sepr.assignment.individual.type.Sex;
 
 import java.io.IOException;
@@ -33,12 +41,15 @@ public class HorseServiceTest {
   @Autowired
   HorseService horseService;
 
+  @Autowired
+  OwnerDao ownerDao;
+
   /**
    * Tests whether retrieving all stored horses returns the expected number and specific entries.
    */
   @Test
   public void getAllReturnsAllStoredHorses() {
-    HorseSearchDto searchParameters = new HorseSearchDto(null, null, null, null, null, null, null, null);
+    HorseSearchDto searchParameters = new HorseSearchDto(null, null, null, null, null, null, null, null, null, null);
     List<HorseListDto> horses = horseService.horsesByParameters(searchParameters)
             .toList();
     assertThat(horses.size()).isGreaterThanOrEqualTo(1);
@@ -48,6 +59,61 @@ public class HorseServiceTest {
             .contains(tuple(-1L, Sex.FEMALE));
   }
 
+  /**
+   * Tests whether the facet counts of a search count every matching horse exactly once per facet,
+   * while the listed horses are cut at the limit.
+   */
+  @Test
+  public void facetsCountAllMatchingHorses() throws ValidationException, ConflictException, NotFoundException, IOException {
+    ownerDao.create(new OwnerCreateDto("Facet", "Keeper", null));
+    Long ownerId = ownerDao.getAll().stream()
+            .filter(owner -> owner.firstName().equals("Facet"))
+            .map(Owner::id)
+            .findFirst()
+            .orElseThrow();
+    horseService.create(new HorseCreateDto("Facet Test A", null, LocalDate.of(1999, 9, 9), Sex.MALE, ownerId, null, null), null);
+    horseService.create(new HorseCreateDto("Facet Test B", null, LocalDate.of(1999, 1, 1), Sex.MALE, ownerId, null, null), null);
+    horseService.create(new HorseCreateDto("Facet Test C", null, LocalDate.of(2001, 1, 1), Sex.FEMALE, null, null, null), null);
+
+    // the limit must not cut the counts
+    HorseSearchDto searchParameters = new HorseSearchDto("Facet Test", null, null, null, null, null, null, null, null, 1);
+    HorseSearchResultDto result = horseService.horsesWithFacetsByParameters(searchParameters);
+    HorseSearchFacetsDto facets = result.facets();
+
+    assertThat(result.horses()).hasSize(1);
+    assertThat(facets.total()).isEqualTo(3);
+    assertThat(facets.sex()).containsExactly(entry(Sex.MALE, 2L), entry(Sex.FEMALE, 1L));
+    assertThat(facets.birthYear()).containsExactly(entry(1999, 2L), entry(2001, 1L));
+    assertThat(facets.topOwners())
+            .extracting(facet -> facet.owner().id(), OwnerFacetDto::count)
+            .containsExactly(tuple(ownerId, 2L));
+  }
+
+  /**
+   * Tests whether an ancestor shared by both parents appears on both paths of the family tree.
+   */
+  @Test
+  public void familyTreeContainsSharedAncestorOnEveryPath()
+          throws ValidationException, ConflictException, NotFoundException, IOException {
+    Horse grandsire = horseService.create(
+            new HorseCreateDto("Tree Grandsire", null, LocalDate.of(1990, 1, 1), Sex.MALE, null, null, null), null);
+    Horse sire = horseService.create(
+            new HorseCreateDto("Tree Sire", null, LocalDate.of(2000, 1, 1), Sex.MALE, null, grandsire.id(), null), null);
+    Horse dam = horseService.create(
+            new HorseCreateDto("Tree Dam", null, LocalDate.of(2001, 1, 1), Sex.FEMALE, null, grandsire.id(), null), null);
+    Horse foal = horseService.create(
+            new HorseCreateDto("Tree Foal", null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null, sire.id(), dam.id()), null);
+
+    HorseTreeNodeDto tree = horseService.getByIdForTree(foal.id(), 3);
+
+    assertThat(tree.parent1().id()).isEqualTo(sire.id());
+    assertThat(tree.parent2().id()).isEqualTo(dam.id());
+    assertThat(tree.parent1().parent1().id()).isEqualTo(grandsire.id());
+    assertThat(tree.parent2().parent1().id()).isEqualTo(grandsire.id());
+    assertThat(tree.parent1().parent1().parent1()).isNull();
+    assertThat(horseService.getByIdForTree(foal.id(), 1).parent1()).isNull();
+  }
+
   /**
    * Tests if a horse can be fetched by their id
    *
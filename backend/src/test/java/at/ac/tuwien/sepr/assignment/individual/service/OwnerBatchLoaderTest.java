@@ -0,0 +1,149 @@
+package at.ac.tuwien.sepr.assignment.individual.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Owner;
+import at.ac.tuwien.sepr.assignment.individual.exception.FatalException;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.OwnerDao;
+import at.ac.tuwien.sepr.assignment.individual.service.impl.OwnerBatchLoader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+/**
+ * Unit tests for the {@link OwnerBatchLoader}.
+ */
+public class OwnerBatchLoaderTest {
+
+  private final List<Set<Long>> queried = new CopyOnWriteArrayList<>();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private volatile boolean blockFirstQuery;
+  private OwnerDao dao;
+
+  /**
+   * Creates a mocked DAO that knows every owner with a positive ID and records the IDs of every query.
+   * While {@link #blockFirstQuery} is set, the first query waits for {@link #release}.
+   */
+  @BeforeEach
+  public void setUp() throws NotFoundException {
+    dao = mock(OwnerDao.class);
+    when(dao.getAllById(anyCollection())).thenAnswer(invocation -> {
+      Collection<Long> ids = invocation.getArgument(0);
+      queried.add(Set.copyOf(ids));
+      if (blockFirstQuery && queried.size() == 1) {
+        release.await(5, TimeUnit.SECONDS);
+      }
+      List<Owner> owners = new ArrayList<>();
+      for (Long id : ids) {
+        if (id > 0) {
+          owners.add(new Owner(id, "First " + id, "Last " + id, null));
+        }
+      }
+      return owners;
+    });
+  }
+
+  /**
+   * Tests that a single lookup is dispatched at once on the calling thread, so it keeps the context of its request.
+   */
+  @Test
+  public void singleLookupRunsOnCallingThread() throws NotFoundException {
+    List<String> correlationIds = new CopyOnWriteArrayList<>();
+    when(dao.getAllById(anyCollection())).thenAnswer(invocation -> {
+      correlationIds.add(MDC.get("r"));
+      return List.of(new Owner(1L, "First", "Last", null));
+    });
+    OwnerBatchLoader loader = new OwnerBatchLoader(dao, 100, 1);
+
+    MDC.put("r", "request-1");
+    try {
+      assertThat(loader.load(1).id()).isEqualTo(1L);
+    } finally {
+      MDC.remove("r");
+    }
+    assertThat(correlationIds).containsExactly("request-1");
+    assertThat(loader.stats().batches()).isEqualTo(1);
+  }
+
+  /**
+   * Tests that lookups arriving while all batches are running share the next query once one of them finishes.
+   */
+  @Test
+  public void lookupsWaitingForRunningBatchShareOneQuery() throws Exception {
+    blockFirstQuery = true;
+    OwnerBatchLoader loader = new OwnerBatchLoader(dao, 100, 1);
+
+    CompletableFuture<Owner> first = loadAsync(loader, 1);
+    await().until(() -> queried.size() == 1);
+    List<CompletableFuture<Owner>> waiting = List.of(loadAsync(loader, 2), loadAsync(loader, 3), loadAsync(loader, 3));
+    await().until(() -> loader.stats().loads() == 4);
+    release.countDown();
+
+    assertThat(first.get(5, TimeUnit.SECONDS).id()).isEqualTo(1L);
+    for (CompletableFuture<Owner> lookup : waiting) {
+      assertThat(lookup.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+    assertThat(queried).containsExactly(Set.of(1L), Set.of(2L, 3L));
+    assertThat(loader.stats().largestBatch()).isEqualTo(2);
+  }
+
+  /**
+   * Tests that a waiting batch is dispatched without waiting for the running ones once it is full.
+   */
+  @Test
+  public void fullBatchIsDispatchedAtOnce() throws Exception {
+    blockFirstQuery = true;
+    OwnerBatchLoader loader = new OwnerBatchLoader(dao, 2, 1);
+
+    CompletableFuture<Owner> first = loadAsync(loader, 1);
+    await().until(() -> queried.size() == 1);
+    CompletableFuture<Owner> second = loadAsync(loader, 2);
+    CompletableFuture<Owner> third = loadAsync(loader, 3);
+
+    assertThat(second.get(5, TimeUnit.SECONDS).id()).isEqualTo(2L);
+    assertThat(third.get(5, TimeUnit.SECONDS).id()).isEqualTo(3L);
+    assertThat(first).isNotDone();
+    release.countDown();
+    assertThat(first.get(5, TimeUnit.SECONDS).id()).isEqualTo(1L);
+  }
+
+  /**
+   * Tests that a missing owner fails only its own lookup and a failing query fails the whole batch.
+   */
+  @Test
+  public void failuresReachTheirCallers() throws NotFoundException {
+    OwnerBatchLoader loader = new OwnerBatchLoader(dao, 100, 1);
+    assertThrows(NotFoundException.class, () -> loader.load(-1));
+
+    when(dao.getAllById(anyCollection())).thenThrow(new IllegalStateException("database down"));
+    assertThrows(FatalException.class, () -> loader.load(1));
+  }
+
+  private static CompletableFuture<Owner> loadAsync(OwnerBatchLoader loader, long id) {
+    CompletableFuture<Owner> result = new CompletableFuture<>();
+    Thread.ofVirtual().start(() -> {
+      try {
+        result.complete(loader.load(id));
+      } catch (NotFoundException | RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+}
@@ -0,0 +1,180 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.ChangeDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal.Operation;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal.Subject;
+import at.ac.tuwien.sepr.assignment.individual.service.ChangeFeedService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Unit tests for the {@link ChangeFeedServiceImpl} on top of a real {@link MutationJournal}.
+ */
+public class ChangeFeedServiceImplTest {
+
+  @TempDir
+  Path directory;
+
+  private final List<ChangeFeedService.Subscription> subscriptions = new ArrayList<>();
+  private MutationJournal journal;
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    subscriptions.forEach(ChangeFeedService.Subscription::cancel);
+    journal.close();
+  }
+
+  /**
+   * Tests that a subscriber without a last event ID receives the changes committed after it subscribed.
+   */
+  @Test
+  public void subscriberReceivesNewChanges() {
+    ChangeFeedServiceImpl feed = feed(false, 16, Duration.ofMinutes(1));
+    journal.append(Subject.HORSE, Operation.CREATE, -1);
+    RecordingListener listener = subscribe(feed, null);
+
+    journal.append(Subject.OWNER, Operation.DELETE, -2);
+
+    await().until(() -> listener.changes.size() == 1);
+    assertThat(listener.changes.getFirst())
+            .extracting(ChangeDto::sequence, ChangeDto::subject, ChangeDto::operation, ChangeDto::id)
+            .containsExactly(2L, "OWNER", "DELETE", -2L);
+    assertThat(listener.resets).hasValue(0);
+  }
+
+  /**
+   * Tests that a subscriber resuming from a last event ID first receives the journaled changes it missed,
+   * followed by the new ones, each once and in order.
+   */
+  @Test
+  public void resumingSubscriberReceivesMissedChanges() {
+    ChangeFeedServiceImpl feed = feed(true, 16, Duration.ofMinutes(1));
+    for (int i = 1; i <= 3; i++) {
+      journal.append(Subject.HORSE, Operation.UPDATE, -i);
+    }
+    RecordingListener listener = subscribe(feed, 1L);
+
+    journal.append(Subject.HORSE, Operation.DELETE, -4);
+
+    await().until(() -> listener.changes.size() == 3);
+    assertThat(listener.changes).extracting(ChangeDto::sequence).containsExactly(2L, 3L, 4L);
+    assertThat(listener.resets).hasValue(0);
+  }
+
+  /**
+   * Tests that a subscriber resuming from a sequence the journal does not know, as it is disabled or
+   * never reached it, is reset and then receives new changes.
+   */
+  @Test
+  public void unknownLastEventIdResetsSubscriber() {
+    ChangeFeedServiceImpl feed = feed(false, 16, Duration.ofMinutes(1));
+    journal.append(Subject.HORSE, Operation.CREATE, -1);
+    RecordingListener withoutJournal = subscribe(feed, 1L);
+    RecordingListener fromBeforeRestart = subscribe(feed, 42L);
+    await().until(() -> withoutJournal.resets.get() == 1 && fromBeforeRestart.resets.get() == 1);
+
+    journal.append(Subject.HORSE, Operation.UPDATE, -1);
+
+    await().until(() -> fromBeforeRestart.changes.size() == 1);
+    assertThat(fromBeforeRestart.changes).extracting(ChangeDto::sequence).containsExactly(2L);
+  }
+
+  /**
+   * Tests that a subscriber whose buffer overflows is dropped without holding up the mutations.
+   */
+  @Test
+  public void slowSubscriberIsDropped() {
+    ChangeFeedServiceImpl feed = feed(false, 2, Duration.ofMinutes(1));
+    RecordingListener listener = subscribe(feed, null);
+    listener.blocked = new CountDownLatch(1);
+    journal.append(Subject.HORSE, Operation.CREATE, -1);
+    await().until(() -> listener.changes.size() == 1);
+
+    for (int i = 2; i <= 4; i++) {
+      journal.append(Subject.HORSE, Operation.CREATE, -i);
+    }
+
+    await().untilTrue(listener.dropped);
+    assertThat(listener.changes).hasSize(1);
+  }
+
+  /**
+   * Tests that a subscriber without changes is sent heartbeats.
+   */
+  @Test
+  public void idleSubscriberReceivesHeartbeats() {
+    ChangeFeedServiceImpl feed = feed(false, 16, Duration.ofMillis(10));
+    RecordingListener listener = subscribe(feed, null);
+
+    await().until(() -> listener.idles.get() >= 2);
+    assertThat(listener.changes).isEmpty();
+  }
+
+  private ChangeFeedServiceImpl feed(boolean journaled, int bufferSize, Duration heartbeat) {
+    journal = new MutationJournal(journaled, directory, DataSize.ofKilobytes(4), 4, false);
+    return new ChangeFeedServiceImpl(journal, bufferSize, heartbeat);
+  }
+
+  private RecordingListener subscribe(ChangeFeedServiceImpl feed, Long lastEventId) {
+    RecordingListener listener = new RecordingListener();
+    subscriptions.add(feed.subscribe(lastEventId, listener));
+    return listener;
+  }
+
+  /**
+   * Records what a subscriber receives, optionally blocking in the first change until interrupted.
+   */
+  private static final class RecordingListener implements ChangeFeedService.ChangeListener {
+    private final List<ChangeDto> changes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger resets = new AtomicInteger();
+    private final AtomicInteger idles = new AtomicInteger();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+    private volatile CountDownLatch blocked;
+
+    @Override
+    public void onChange(ChangeDto change) throws IOException {
+      changes.add(change);
+      CountDownLatch latch = blocked;
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("subscriber is gone", e);
+        }
+      }
+    }
+
+    @Override
+    public void onReset() {
+      resets.incrementAndGet();
+    }
+
+    @Override
+    public void onIdle() {
+      idles.incrementAndGet();
+    }
+
+    @Override
+    public void onDropped() {
+      dropped.set(true);
+    }
+  }
+}
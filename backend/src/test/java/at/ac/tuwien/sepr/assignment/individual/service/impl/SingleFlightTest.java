@@ -0,0 +1,161 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link SingleFlight}.
+ */
+public class SingleFlightTest {
+
+  private final SingleFlight<Long, String> flights = new SingleFlight<>(Duration.ofSeconds(5));
+  private final AtomicInteger computations = new AtomicInteger();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  /**
+   * Tests that a caller arriving while a computation runs shares its result instead of computing again.
+   */
+  @Test
+  public void concurrentCallersShareComputation() throws Exception {
+    CompletableFuture<String> leader = executeAsync(flights, () -> blockingCompute("result"));
+    await().until(() -> computations.get() == 1);
+    CompletableFuture<String> follower = joinAsync(flights, this::countingCompute);
+
+    release.countDown();
+
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+    assertThat(computations).hasValue(1);
+  }
+
+  /**
+   * Tests that a caller arriving after the key was invalidated by a write does not share the older computation.
+   */
+  @Test
+  public void invalidatedKeyIsComputedAgain() throws Exception {
+    CompletableFuture<String> leader = executeAsync(flights, () -> blockingCompute("before write"));
+    await().until(() -> computations.get() == 1);
+
+    flights.invalidate(1L);
+    assertThat(flights.execute(1L, () -> {
+      computations.incrementAndGet();
+      return "after write";
+    })).isEqualTo("after write");
+
+    release.countDown();
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("before write");
+    assertThat(computations).hasValue(2);
+  }
+
+  /**
+   * Tests that a caller whose shared computation failed computes the result itself instead of failing as well.
+   */
+  @Test
+  public void failedComputationIsNotShared() throws Exception {
+    CompletableFuture<String> leader = executeAsync(flights, () -> {
+      blockingCompute(null);
+      throw new IllegalStateException("deadline of the leader passed");
+    });
+    await().until(() -> computations.get() == 1);
+    CompletableFuture<String> follower = joinAsync(flights, this::countingCompute);
+
+    release.countDown();
+
+    ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+    assertThat(leaderFailure).hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("counted");
+    assertThat(computations).hasValue(2);
+  }
+
+  /**
+   * Tests that a missing horse found by the shared computation is reported to every caller.
+   */
+  @Test
+  public void notFoundIsShared() throws Exception {
+    CompletableFuture<String> leader = executeAsync(flights, () -> {
+      blockingCompute(null);
+      throw new NotFoundException("Horse not found");
+    });
+    await().until(() -> computations.get() == 1);
+    CompletableFuture<String> follower = joinAsync(flights, this::countingCompute);
+
+    release.countDown();
+
+    assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+    ExecutionException failure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+    assertThat(failure).hasCauseInstanceOf(NotFoundException.class);
+    assertThat(computations).hasValue(1);
+  }
+
+  /**
+   * Tests that a caller stops waiting after the maximum wait and computes the result itself.
+   */
+  @Test
+  public void slowComputationIsComputedAgainAfterMaxWait() throws Exception {
+    SingleFlight<Long, String> impatient = new SingleFlight<>(Duration.ofMillis(50));
+    CompletableFuture<String> leader = executeAsync(impatient, () -> blockingCompute("slow"));
+    await().until(() -> computations.get() == 1);
+
+    assertThat(impatient.execute(1L, this::countingCompute)).isEqualTo("counted");
+
+    release.countDown();
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+  }
+
+  private String blockingCompute(String result) throws NotFoundException {
+    computations.incrementAndGet();
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return result;
+  }
+
+  private String countingCompute() {
+    computations.incrementAndGet();
+    return "counted";
+  }
+
+  private static CompletableFuture<String> executeAsync(SingleFlight<Long, String> flight,
+                                                        SingleFlight.Computation<String> computation) {
+    return start(flight, computation).result;
+  }
+
+  /**
+   * Executes a computation on another thread and returns once that thread waits for the computation in flight.
+   */
+  private static CompletableFuture<String> joinAsync(SingleFlight<Long, String> flight,
+                                                     SingleFlight.Computation<String> computation) {
+    Execution execution = start(flight, computation);
+    await().until(() -> execution.thread.getState() == Thread.State.TIMED_WAITING);
+    return execution.result;
+  }
+
+  private static Execution start(SingleFlight<Long, String> flight, SingleFlight.Computation<String> computation) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    Thread thread = Thread.ofPlatform().start(() -> {
+      try {
+        result.complete(flight.execute(1L, computation));
+      } catch (NotFoundException | RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return new Execution(thread, result);
+  }
+
+  private record Execution(Thread thread, CompletableFuture<String> result) {
+  }
+}
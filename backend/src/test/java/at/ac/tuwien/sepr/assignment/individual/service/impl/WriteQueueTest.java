@@ -0,0 +1,160 @@
+package at.ac.tuwien.sepr.assignment.individual.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.WriteQueueStatsDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.ConflictException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Unit tests for the {@link WriteQueue}.
+ */
+public class WriteQueueTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicInteger runs = new AtomicInteger();
+  private PlatformTransactionManager transactionManager;
+  private WriteQueue queue;
+
+  /**
+   * Creates an enabled queue committing into a mocked transaction manager.
+   */
+  @BeforeEach
+  public void setUp() {
+    transactionManager = mock(PlatformTransactionManager.class);
+    queue = new WriteQueue(transactionManager, true, 16, 64);
+  }
+
+  @AfterEach
+  public void tearDown() throws InterruptedException {
+    release.countDown();
+    queue.shutdown();
+  }
+
+  /**
+   * Tests that commands queued while the writer is busy are committed together in one transaction.
+   */
+  @Test
+  public void waitingCommandsShareOneCommit() throws Exception {
+    Execution blocking = executeAsync(this::blockingCommand);
+    await().until(() -> runs.get() == 1);
+    List<Execution> waiting = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      int result = i;
+      waiting.add(executeAsync(() -> {
+        runs.incrementAndGet();
+        return "command " + result;
+      }));
+    }
+    awaitQueued(waiting);
+
+    release.countDown();
+
+    assertThat(blocking.result.get(5, TimeUnit.SECONDS)).isEqualTo("blocking");
+    for (int i = 0; i < waiting.size(); i++) {
+      assertThat(waiting.get(i).result.get(5, TimeUnit.SECONDS)).isEqualTo("command " + i);
+    }
+    assertThat(queue.stats()).isEqualTo(new WriteQueueStatsDto(4, 2, 3));
+    verify(transactionManager, times(2)).commit(any());
+  }
+
+  /**
+   * Tests that a batch with a failing command is rolled back and written again one command per transaction,
+   * so only the failing command reports its failure.
+   */
+  @Test
+  public void failedBatchIsWrittenOneByOne() throws Exception {
+    Execution blocking = executeAsync(this::blockingCommand);
+    await().until(() -> runs.get() == 1);
+    AtomicInteger successfulRuns = new AtomicInteger();
+    // queued one after the other, so the batch runs them in this order
+    Execution first = executeAsync(() -> {
+      successfulRuns.incrementAndGet();
+      return "first";
+    });
+    awaitQueued(List.of(first));
+    Execution conflicting = executeAsync(() -> {
+      throw new ConflictException("Pedigree of horse would contain a cycle", List.of("Parent is a descendant"));
+    });
+    awaitQueued(List.of(conflicting));
+    Execution last = executeAsync(() -> {
+      successfulRuns.incrementAndGet();
+      return "last";
+    });
+    awaitQueued(List.of(last));
+
+    release.countDown();
+
+    assertThat(blocking.result.get(5, TimeUnit.SECONDS)).isEqualTo("blocking");
+    assertThat(first.result.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+    assertThat(last.result.get(5, TimeUnit.SECONDS)).isEqualTo("last");
+    ExecutionException failure = assertThrows(ExecutionException.class,
+            () -> conflicting.result.get(5, TimeUnit.SECONDS));
+    assertThat(failure).hasCauseInstanceOf(ConflictException.class);
+    // the first command ran in the shared transaction and again alone, the last one only alone
+    assertThat(successfulRuns).hasValue(3);
+    assertThat(queue.stats()).isEqualTo(new WriteQueueStatsDto(3, 3, 1));
+    verify(transactionManager, times(2)).rollback(any());
+  }
+
+  /**
+   * Tests that a disabled queue runs the command on the calling thread without a transaction of its own.
+   */
+  @Test
+  public void disabledQueueRunsOnCallingThread() throws Exception {
+    WriteQueue direct = new WriteQueue(transactionManager, false, 16, 64);
+    Thread caller = Thread.currentThread();
+
+    assertThat(direct.execute(() -> Thread.currentThread() == caller)).isTrue();
+    assertThat(direct.stats()).isEqualTo(new WriteQueueStatsDto(0, 0, 0));
+    direct.shutdown();
+  }
+
+  private String blockingCommand() throws InterruptedException {
+    runs.incrementAndGet();
+    release.await(5, TimeUnit.SECONDS);
+    return "blocking";
+  }
+
+  /**
+   * Waits until the callers wait for their queued commands.
+   */
+  private static void awaitQueued(List<Execution> executions) {
+    for (Execution execution : executions) {
+      await().until(() -> execution.thread.getState() == Thread.State.WAITING);
+    }
+  }
+
+  private Execution executeAsync(WriteQueue.Command<String, ?> command) {
+    CompletableFuture<String> result = new CompletableFuture<>();
+    Thread thread = Thread.ofPlatform().start(() -> {
+      try {
+        result.complete(queue.execute(command));
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return new Execution(thread, result);
+  }
+
+  private record Execution(Thread thread, CompletableFuture<String> result) {
+  }
+}
@@ -0,0 +1,64 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.exception.NotFoundException;
+import at.ac.tuwien.sepr.assignment.individual.persistence.MutationJournal;
+import at.ac.tuwien.sepr.assignment.individual.persistence.impl.HorseColumnarSnapshot;
+import at.ac.tuwien.sepr.assignment.individual.persistence.impl.HorseJdbcDao;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Benchmarks of reading a single horse through {@link HorseJdbcDao}, which maps its row with {@code mapRow},
+ * against an in-memory H2 database with the schema and test data of the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HorseJdbcDaoBenchmark {
+  private EmbeddedDatabase database;
+  private HorseJdbcDao dao;
+
+  @Setup
+  public void setUp() {
+    database = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScripts("sql/createSchema.sql", "sql/insertData.sql")
+            .build();
+    // without a snapshot the DAO always reads from the database, the benchmark only reads so nothing is journaled
+    dao = new HorseJdbcDao(JdbcClient.create(database),
+            new StaticListableBeanFactory().getBeanProvider(HorseColumnarSnapshot.class),
+            new MutationJournal(false, Path.of("journal"), DataSize.ofMegabytes(4), 4, false));
+  }
+
+  @TearDown
+  public void tearDown() {
+    database.shutdown();
+  }
+
+  @Benchmark
+  public Horse getById() throws NotFoundException {
+    return dao.getById(-1);
+  }
+}
@@ -0,0 +1,66 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.entity.Horse;
+import at.ac.tuwien.sepr.assignment.individual.mapper.HorseMapper;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the {@link HorseMapper} conversions used by the search and family tree endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HorseMapperBenchmark {
+  @Param({"3", "10"})
+  private int generations;
+
+  private final HorseMapper mapper = new HorseMapper();
+  private Horse horse;
+  private Map<Long, OwnerDto> owners;
+
+  @Setup
+  public void setUp() {
+    horse = new Horse(1L, "Wendy", "The famous one!", LocalDate.of(2012, 12, 12), Sex.FEMALE, null, 1L, 2L, 3L, 1L);
+    owners = Map.of(1L, new OwnerDto(1L, "Jane", "Doe", "Owns Wendy"));
+  }
+
+  @Benchmark
+  public HorseListDto entityToListDto() {
+    return mapper.entityToListDto(horse, owners);
+  }
+
+  /**
+   * Maps a complete tree of the given number of generations, bottom up like the family tree builder does.
+   */
+  @Benchmark
+  public HorseTreeNodeDto entityToTreeNodeDto() {
+    return tree(generations);
+  }
+
+  private HorseTreeNodeDto tree(int depth) {
+    if (depth == 0) {
+      return null;
+    }
+    return mapper.entityToTreeNodeDto(horse, tree(depth - 1), tree(depth - 1));
+  }
+}
@@ -0,0 +1,55 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the JSON serialization of family trees as returned by {@code GET /horses/{id}/familytree}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HorseTreeSerializationBenchmark {
+  @Param({"3", "10"})
+  private int generations;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+  private HorseTreeNodeDto tree;
+
+  @Setup
+  public void setUp() {
+    tree = tree(generations, 1);
+  }
+
+  @Benchmark
+  public byte[] writeTree() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(tree);
+  }
+
+  private static HorseTreeNodeDto tree(int depth, long id) {
+    if (depth == 0) {
+      return null;
+    }
+    return new HorseTreeNodeDto(id, "Horse " + id, LocalDate.of(2012, 12, 12).minusYears(depth),
+            id % 2 == 0 ? Sex.MALE : Sex.FEMALE, tree(depth - 1, 2 * id), tree(depth - 1, 2 * id + 1), 1L);
+  }
+}
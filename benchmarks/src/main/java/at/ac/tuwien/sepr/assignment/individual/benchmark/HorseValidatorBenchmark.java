@@ -0,0 +1,49 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.exception.ValidationException;
+import at.ac.tuwien.sepr.assignment.individual.service.impl.HorseValidator;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of {@link HorseValidator#validateForCreate}, for a valid horse and for one failing every check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HorseValidatorBenchmark {
+  private final HorseValidator validator = new HorseValidator();
+  private final HorseCreateDto valid =
+          new HorseCreateDto("Wendy", "The famous one!", LocalDate.of(2012, 12, 12), Sex.FEMALE, 1L, null, null);
+  private final HorseCreateDto invalid =
+          new HorseCreateDto(null, " ", null, null, null, null, null);
+
+  @Benchmark
+  public void validateForCreateValid() throws ValidationException {
+    validator.validateForCreate(valid);
+  }
+
+  @Benchmark
+  public ValidationException validateForCreateInvalid() {
+    try {
+      validator.validateForCreate(invalid);
+      throw new IllegalStateException("The invalid horse passed the validation");
+    } catch (ValidationException e) {
+      return e;
+    }
+  }
+}
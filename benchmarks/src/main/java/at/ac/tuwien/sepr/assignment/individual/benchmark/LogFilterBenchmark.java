@@ -0,0 +1,73 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.config.LatencyMetrics;
+import at.ac.tuwien.sepr.assignment.individual.config.LogFilter;
+import at.ac.tuwien.sepr.assignment.individual.config.RequestLogWriter;
+import at.ac.tuwien.sepr.assignment.individual.config.StatementProfiler;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Benchmarks of the overhead the {@link LogFilter} adds to every request, measured around an empty filter chain.
+ * Every invocation filters a batch of requests and waits until the {@link RequestLogWriter} appended their lines,
+ * so the formatting on the writer thread is measured as well and the buffer never overflows into dropped lines.
+ * The lines go to {@code target/benchmarks.log}, see {@code logback.xml}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogFilterBenchmark {
+  private static final FilterChain EMPTY_CHAIN = (request, response) -> { };
+  private static final int BATCH_SIZE = 1024;
+
+  private RequestLogWriter writer;
+  private LogFilter filter;
+
+  @Setup
+  public void setUp() {
+    LatencyMetrics metrics = new LatencyMetrics();
+    writer = new RequestLogWriter(2 * BATCH_SIZE);
+    filter = new LogFilter(metrics, writer, new StatementProfiler(metrics, Duration.ofMillis(100), 10), 1.0);
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    writer.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void doFilter(Blackhole blackhole) throws ServletException, IOException {
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      MockHttpServletRequest request = new MockHttpServletRequest("GET", "/horses");
+      request.setQueryString("name=Wendy&limit=10");
+      request.addHeader("User-Agent", "jmh");
+      request.setRemoteAddr("127.0.0.1");
+      MockHttpServletResponse response = new MockHttpServletResponse();
+      filter.doFilter(request, response, EMPTY_CHAIN);
+      blackhole.consume(response);
+    }
+    writer.flush();
+  }
+}
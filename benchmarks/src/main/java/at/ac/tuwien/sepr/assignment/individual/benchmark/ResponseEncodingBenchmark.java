@@ -0,0 +1,105 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseListDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseTreeNodeDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.OwnerDto;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of encoding family trees and search results in the formats the endpoints negotiate,
+ * JSON, JSON compressed like {@code server.compression} does, Smile and CBOR.
+ * Besides the encoding time, the size of the encoded payload is reported as {@code payloadBytes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+  @Param({"json", "json-gzip", "smile", "cbor"})
+  private String format;
+
+  @Param({"tree", "list"})
+  private String payload;
+
+  private ObjectMapper objectMapper;
+  private Object value;
+
+  /**
+   * The size of the last encoded payload, reported next to the encoding time.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Size {
+    public long payloadBytes;
+  }
+
+  @Setup
+  public void setUp() {
+    objectMapper = switch (format) {
+      case "smile" -> new ObjectMapper(new SmileFactory());
+      case "cbor" -> new ObjectMapper(new CBORFactory());
+      default -> new ObjectMapper();
+    };
+    objectMapper.registerModule(new JavaTimeModule());
+    // a family tree of 10 generations and a search result of 1000 horses
+    value = "tree".equals(payload) ? tree(10, 1) : list(1000);
+  }
+
+  @Benchmark
+  public byte[] encode(Size size) throws IOException {
+    byte[] encoded = objectMapper.writeValueAsBytes(value);
+    if ("json-gzip".equals(format)) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(encoded.length / 4);
+      try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+        gzip.write(encoded);
+      }
+      encoded = compressed.toByteArray();
+    }
+    size.payloadBytes = encoded.length;
+    return encoded;
+  }
+
+  private static HorseTreeNodeDto tree(int depth, long id) {
+    if (depth == 0) {
+      return null;
+    }
+    return new HorseTreeNodeDto(id, "Horse " + id, LocalDate.of(2012, 12, 12).minusYears(depth),
+            id % 2 == 0 ? Sex.MALE : Sex.FEMALE, tree(depth - 1, 2 * id), tree(depth - 1, 2 * id + 1), id);
+  }
+
+  private static List<HorseListDto> list(int size) {
+    List<HorseListDto> horses = new ArrayList<>(size);
+    for (long id = 1; id <= size; id++) {
+      OwnerDto owner = new OwnerDto(id % 50, "Owner", "Number " + id % 50, "Breeds horses");
+      horses.add(new HorseListDto(id, "Horse " + id, "A horse of the synthetic pedigree",
+              LocalDate.of(2012, 12, 12).minusDays(id), id % 2 == 0 ? Sex.MALE : Sex.FEMALE, owner,
+              id > 2 ? id / 2 : null, id > 2 ? id / 2 + 1 : null));
+    }
+    return horses;
+  }
+}
@@ -0,0 +1,151 @@
+package at.ac.tuwien.sepr.assignment.individual.benchmark;
+
+import at.ac.tuwien.sepr.assignment.individual.SeprIndividualAssignmentApplication;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Benchmark of request handling on platform threads against virtual threads, over HTTP against the whole application.
+ * Searches share the server with image downloads by slow clients, which read the image in small chunks.
+ * Once an image does no longer fit into the socket buffers, the thread serving it waits for the client.
+ * With platform threads, slow clients can occupy the whole Tomcat pool of {@code tomcatThreads} and the searches queue
+ * behind them; with virtual threads a waiting download only parks its virtual thread.
+ * That only holds as long as the download does not pin its carrier thread, so compare on a machine with
+ * several processors and check for pinning with {@code -jvmArgs -Djdk.tracePinnedThreads=short}.
+ * Run both modes to compare the throughput and, from the sample time mode, the p99 latency of both request types:
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar ThreadModelBenchmark -p threads=platform,virtual
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+  private static final int READ_CHUNK_BYTES = 16 * 1024;
+  private static final long READ_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Param({"platform", "virtual"})
+  public String threads;
+
+  @Param("32")
+  public int tomcatThreads;
+
+  // larger than the default maximum of the kernel socket buffers, so the server has to wait for the client
+  @Param("8192")
+  public int imageKilobytes;
+
+  private ConfigurableApplicationContext context;
+  private HttpClient client;
+  private HttpRequest search;
+  private int port;
+  private byte[] imageRequest;
+
+  @Setup
+  public void setUp() throws IOException {
+    context = new SpringApplicationBuilder(SeprIndividualAssignmentApplication.class)
+            .profiles("datagen")
+            // arguments, because default properties would lose against application.yml
+            .run(
+                    "--server.port=0",
+                    "--server.tomcat.threads.max=" + tomcatThreads,
+                    "--spring.threads.virtual.enabled=" + threads.equals("virtual"),
+                    "--spring.datasource.url=jdbc:h2:mem:threads;INIT=RUNSCRIPT FROM 'classpath:sql/createSchema.sql'",
+                    // only the threads are compared, nothing else may limit or cut the requests
+                    "--app.admission-control.enabled=false",
+                    "--app.deadlines.enabled=false",
+                    "--app.mutation-journal.enabled=false",
+                    "--logging.file.name=");
+    port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+
+    byte[] image = new byte[imageKilobytes * 1024];
+    new Random(42).nextBytes(image);
+    long horseId = context.getBean(HorseDao.class).create(
+            new HorseCreateDto("Slow Image", null, LocalDate.of(2010, 1, 1), Sex.FEMALE, null, null, null),
+            new ByteArrayInputStream(image)).id();
+    imageRequest = ("GET /horses/" + horseId + "/image HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    client = HttpClient.newHttpClient();
+    search = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/horses?name=W&limit=20")).build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    context.close();
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(16)
+  public int search() throws IOException, InterruptedException {
+    HttpResponse<byte[]> response = client.send(search, HttpResponse.BodyHandlers.ofByteArray());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Search failed with " + response.statusCode());
+    }
+    return response.body().length;
+  }
+
+  @Benchmark
+  @Group("mixed")
+  @GroupThreads(48)
+  public long slowImage() throws IOException {
+    try (Socket socket = new Socket()) {
+      // a small receive window keeps the server from pushing the whole image at once
+      socket.setReceiveBufferSize(READ_CHUNK_BYTES);
+      socket.connect(new InetSocketAddress("localhost", port));
+      OutputStream out = socket.getOutputStream();
+      out.write(imageRequest);
+      out.flush();
+      InputStream in = socket.getInputStream();
+      byte[] chunk = new byte[READ_CHUNK_BYTES];
+      int read = in.read(chunk);
+      String head = read < 0 ? "" : new String(chunk, 0, read, StandardCharsets.US_ASCII);
+      long received = 0;
+      for (; read >= 0; read = in.read(chunk)) {
+        received += read;
+        LockSupport.parkNanos(READ_PAUSE_NANOS);
+      }
+      if (received < imageKilobytes * 1024L) {
+        throw new IllegalStateException("Image download ended after " + received + " bytes: " + head);
+      }
+      return received;
+    }
+  }
+}
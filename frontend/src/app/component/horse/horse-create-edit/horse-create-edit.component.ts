@@ -45,6 +45,8 @@ export class HorseCreateEditComponent implements OnInit {
   imageFile: File | null = null;
   imagePreview: string | ArrayBuffer | null = null;
   horseId : number | undefined;
+  // the version the edited data is based on, sent with the update to not overwrite changes made meanwhile
+  horseTag: string | null = null;
   remainingCharacters : number = 4095;
 
 
@@ -134,7 +136,7 @@ export class HorseCreateEditComponent implements OnInit {
 
   ownerSuggestions = (input: string) => (input === '')
     ? of([])
-    : this.ownerService.searchByName(input, 5);
+    : this.ownerService.suggest(input, 5);
 
   parentSuggestions = (parent: Sex) => {
     return (input: string) => this.parentSuggestionsByGender(input,parent)
@@ -193,9 +195,10 @@ export class HorseCreateEditComponent implements OnInit {
 
   fetchHorseData(){
     this.horseId = Number(this.route.snapshot.paramMap.get('id'));
-    this.service.getById(this.horseId).subscribe({
-      next: data =>{
+    this.service.getByIdWithTag(this.horseId).subscribe({
+      next: ({horse: data, tag}) =>{
         console.log(data)
+        this.horseTag = tag;
         this.horse.name = data.name;
         if(data.description){
           this.horse.description = data.description;
@@ -301,8 +304,8 @@ export class HorseCreateEditComponent implements OnInit {
     this.imageAvailable = false;
     this.imagePreview = null
     this.imageFile = null;
-    this.service.removeImageById(this.horseId).subscribe({next: data =>
-    console.log(data)
+    this.service.removeImageById(this.horseId).subscribe({next: tag =>
+      this.horseTag = tag
     })
     const fileInput = document.getElementById("image") as HTMLInputElement;
     if(fileInput){
@@ -325,7 +328,8 @@ export class HorseCreateEditComponent implements OnInit {
           break;
            case HorseCreateEditMode.edit:
              observable = this.service.update(
-               convertFromHorseToCreate(this.horse), this.imageFile, Number(this.route.snapshot.paramMap.get('id'))
+               convertFromHorseToCreate(this.horse), this.imageFile, Number(this.route.snapshot.paramMap.get('id')),
+               this.horseTag
              );
           break;
         default:
@@ -349,6 +353,10 @@ export class HorseCreateEditComponent implements OnInit {
             enableHtml: true,
             timeOut: 10000,
           });
+          } else if (error.status === 412) {
+            console.error('Horse was changed meanwhile', error);
+            this.notification.error('The horse was changed by someone else meanwhile, reload it before saving.',
+              'Could Not Update Horse');
           } else {
             console.error('Error updating horse', error);
             this.notification.error(this.errorFormatter.format(error), 'Could Not Update Horse', {
@@ -1,4 +1,4 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { FormsModule } from '@angular/forms';
 import { RouterLink } from '@angular/router';
 import { ToastrService } from 'ngx-toastr';
@@ -10,6 +10,8 @@ import { ConfirmDeleteDialogComponent } from 'src/app/component/confirm-delete-d
 import {formatIsoDate} from "../../utils/date-helper";
 import {CommonModule} from "@angular/common";
 import {OwnerService} from "../../service/owner.service";
+import {bufferTime, filter, Subscription} from "rxjs";
+import {Change, RESET} from "../../dto/change";
 
 
 @Component({
@@ -25,11 +27,12 @@ import {OwnerService} from "../../service/owner.service";
   standalone: true,
   styleUrls: ['./horse.component.scss']
 })
-export class HorseComponent implements OnInit {
+export class HorseComponent implements OnInit, OnDestroy {
   horses: Horse[] = [];
   owners: Owner[] = [];
   bannerError: string | null = null;
   horseForDeletion: Horse | undefined;
+  private changes: Subscription | undefined;
   searchParameters: HorseSearch = {
     name: "",
     description:"",
@@ -46,6 +49,14 @@ export class HorseComponent implements OnInit {
 
   ngOnInit(): void {
     this.reloadHorses();
+    // a burst of changes is applied at once, fetching every changed horse only once
+    this.changes = this.service.changes()
+      .pipe(bufferTime(300), filter(changes => changes.length > 0))
+      .subscribe(changes => this.applyChanges(changes));
+  }
+
+  ngOnDestroy(): void {
+    this.changes?.unsubscribe();
   }
 
   reloadHorses() {
@@ -65,6 +76,69 @@ export class HorseComponent implements OnInit {
     });
 
   }
+
+  private applyChanges(changes: (Change | typeof RESET)[]) {
+    if (changes.includes(RESET)) {
+      this.reloadHorses();
+      return;
+    }
+    const changedHorses = new Set<number>();
+    for (const change of changes as Change[]) {
+      if (change.subject === 'HORSE') {
+        changedHorses.add(change.id);
+      } else {
+        // only the owners of listed horses are shown
+        this.horses
+          .filter(horse => horse.owner?.id === change.id)
+          .forEach(horse => changedHorses.add(horse.id!));
+      }
+    }
+    changedHorses.forEach(id => this.refreshHorse(id));
+  }
+
+  /**
+   * Fetches a changed horse and shows, replaces or removes it depending on whether it still matches the search.
+   */
+  private refreshHorse(id: number) {
+    this.service.getById(id).subscribe({
+      next: horse => this.patchHorses(id, this.matchesSearch(horse) ? horse : undefined),
+      error: error => {
+        if (error.status === 404) {
+          this.patchHorses(id, undefined);
+        } else {
+          console.error('Error fetching changed horse', error);
+        }
+      }
+    });
+  }
+
+  private patchHorses(id: number, horse: Horse | undefined) {
+    const listed = this.horses.some(other => other.id === id);
+    if (horse && listed) {
+      this.horses = this.horses.map(other => other.id === id ? horse : other);
+    } else if (horse) {
+      this.horses = [...this.horses, horse];
+    } else if (listed) {
+      this.horses = this.horses.filter(other => other.id !== id);
+    }
+  }
+
+  /**
+   * Applies the search parameters the way the backend does.
+   */
+  private matchesSearch(horse: Horse): boolean {
+    const search = this.searchParameters;
+    const contains = (value: string | undefined, part: string | undefined) =>
+      !part?.trim() || (value ?? '').toUpperCase().includes(part.trim().toUpperCase());
+    const ownerName = search.ownerName ? search.ownerName.split(' ') : [];
+    return contains(horse.name, search.name)
+      && contains(horse.description, search.description)
+      && (!search.sex || horse.sex === search.sex)
+      && (!search.dateOfBirth || formatIsoDate(horse.dateOfBirth) === formatIsoDate(search.dateOfBirth))
+      && (!search.ownerName || (contains(horse.owner?.firstName, ownerName[0])
+        && contains(horse.owner?.lastName, ownerName[1])));
+  }
+
   validateOwnerSuggestion(){
 
     const validOptions = this.owners
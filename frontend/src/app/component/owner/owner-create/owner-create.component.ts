@@ -81,7 +81,7 @@ export class OwnerCreateComponent implements OnInit {
 
   ownerSuggestions = (input: string) => (input === '')
     ? of([])
-    : this.service.searchByName(input, 5);
+    : this.service.suggest(input, 5);
 
 
   ngOnInit(): void {
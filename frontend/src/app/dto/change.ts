@@ -0,0 +1,13 @@
+export interface Change {
+  sequence: number;
+  subject: 'HORSE' | 'OWNER';
+  operation: 'CREATE' | 'UPDATE' | 'DELETE' | 'IMAGE';
+  id: number;
+  timestampMillis: number;
+}
+
+/**
+ * Emitted instead of the missed changes when the server can not tell what changed since the last event,
+ * everything shown has to be reloaded.
+ */
+export const RESET = 'reset';
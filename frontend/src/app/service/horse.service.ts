@@ -1,8 +1,9 @@
-import {HttpClient, HttpParams} from '@angular/common/http';
+import {HttpClient, HttpHeaders, HttpParams} from '@angular/common/http';
 import {Injectable} from '@angular/core';
 import {map, Observable} from 'rxjs';
 import {environment} from 'src/environments/environment';
 import {Horse, HorseCreate, HorseNode, HorseSearch} from '../dto/horse';
+import {Change, RESET} from '../dto/change';
 import {formatIsoDate} from "../utils/date-helper";
 
 
@@ -24,6 +25,19 @@ export class HorseService {
     );
   }
 
+  /**
+   * Get a horse together with the entity tag of its version, which an update sends back as If-Match,
+   * so it fails instead of overwriting changes made since the horse was fetched.
+   *
+   * @param id the ID of the horse
+   * @return an Observable for the horse and its tag
+   */
+  getByIdWithTag(id: number): Observable<{ horse: Horse, tag: string | null }> {
+    return this.http.get<Horse>(`${baseUri}/${id}`, {observe: 'response'}).pipe(
+      map(response => ({horse: this.fixHorseDate(response.body!), tag: response.headers.get('ETag')}))
+    );
+  }
+
   getHorseImage(id: number): Observable<string> {
     return this.http.get(`${baseUri}/${id}/image`, { responseType: 'blob' }).pipe(
       map(blob => URL.createObjectURL(blob))
@@ -36,8 +50,16 @@ export class HorseService {
     );
   }
 
-  removeImageById(id: number | undefined){
-    return this.http.put<Horse>(`${baseUri}/${id}/image`, null)
+  /**
+   * Remove the image of a horse, which gives the horse a new version.
+   *
+   * @param id the ID of the horse
+   * @return an Observable for the entity tag of the new version
+   */
+  removeImageById(id: number | undefined): Observable<string | null> {
+    return this.http.put(`${baseUri}/${id}/image`, null, {observe: 'response'}).pipe(
+      map(response => response.headers.get('ETag'))
+    );
   }
 
 
@@ -70,7 +92,16 @@ export class HorseService {
     )
   }
 
-  update(horse: HorseCreate, image: File | null, id: number): Observable<Horse> {
+  /**
+   * Update an existing horse.
+   *
+   * @param horse the new data of the horse
+   * @param image the new image, if it changes
+   * @param id the ID of the horse
+   * @param tag the entity tag of the version the changes are based on, the update fails with 412 if it is outdated
+   * @return an Observable for the updated horse
+   */
+  update(horse: HorseCreate, image: File | null, id: number, tag: string | null): Observable<Horse> {
     console.log(horse);
     // Cast the object to any, so that we can circumvent the type checker.
     // We _need_ the date to be a string here, and just passing the object with the
@@ -84,7 +115,8 @@ export class HorseService {
 
     return this.http.put<Horse>(
       `${baseUri}/${id}`,
-      formData
+      formData,
+      {headers: tag ? new HttpHeaders({'If-Match': tag}) : undefined}
     ).pipe(
       map(this.fixHorseDate)
     );
@@ -122,6 +154,23 @@ export class HorseService {
     return this.http.get<Horse[]>(baseUri, { params });
   }
 
+  /**
+   * Follow the committed changes of horses and owners.
+   * After a lost connection the browser reconnects on its own and receives the changes it missed,
+   * or {@link RESET} if the server no longer knows them, for example after it restarted.
+   *
+   * @return an Observable emitting every change, until unsubscribed
+   */
+  changes(): Observable<Change | typeof RESET> {
+    return new Observable<Change | typeof RESET>(subscriber => {
+      const source = new EventSource(`${baseUri}/changes`);
+      const forward = (event: MessageEvent) => subscriber.next(JSON.parse(event.data));
+      source.addEventListener('horse', forward);
+      source.addEventListener('owner', forward);
+      source.addEventListener(RESET, () => subscriber.next(RESET));
+      return () => source.close();
+    });
+  }
 
   private fixHorseDate(horse: Horse): Horse {
     // Parse the string to a Date
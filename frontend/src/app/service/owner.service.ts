@@ -29,6 +29,22 @@ export class OwnerService {
     return this.http.get<Owner[]>(baseUri, { params });
   }
 
+  /**
+   * Suggest owners whose name, or one of its words, starts with the typed prefix.
+   * Unlike {@link searchByName}, a prefix in the middle of a word does not match.
+   * Answered from an in-memory index in the backend, so it is cheap enough for every keystroke.
+   *
+   * @param prefix the typed beginning of the name
+   * @param limitTo the maximum number of suggestions
+   * @return an Observable for the suggested owners
+   */
+  public suggest(prefix: string, limitTo: number): Observable<Owner[]> {
+    const params = new HttpParams()
+      .set('prefix', prefix)
+      .set('limit', limitTo);
+    return this.http.get<Owner[]>(`${baseUri}/suggest`, { params });
+  }
+
   create(owner: Owner): Observable<Owner>{
     return this.http.post<Owner>(baseUri,owner)
   }
@@ -0,0 +1,99 @@
+package at.ac.tuwien.sepr.assignment.individual.loadtest;
+
+import at.ac.tuwien.sepr.assignment.individual.dto.LatencyDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency report of a load test or replay, written as JSON for later comparison and as a text table to read.
+ * The JSON holds the summary values and, under {@code latencies}, one {@link LatencyDto} per request type.
+ */
+final class LatencyReport {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private LatencyReport() {
+  }
+
+  /**
+   * Writes the report as {@code <name>-<timestamp>.json} and {@code .txt}.
+   *
+   * @param output    the directory to write to
+   * @param name      the first part of the file names
+   * @param summary   the values describing the whole run
+   * @param latencies the latencies by request type
+   * @return the text table
+   * @throws IOException if the files can not be written
+   */
+  static String write(Path output, String name, Map<String, Object> summary, Map<String, LatencyDto> latencies)
+          throws IOException {
+    Files.createDirectories(output);
+    String file = name + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    Map<String, Object> report = new LinkedHashMap<>(summary);
+    report.put("latencies", latencies);
+    OBJECT_MAPPER.writeValue(output.resolve(file + ".json").toFile(), report);
+
+    StringBuilder text = new StringBuilder();
+    summary.forEach((key, value) -> text.append(key).append('=').append(value).append(' '));
+    text.append(System.lineSeparator());
+    text.append(String.format("%-40s %8s %7s %9s %9s %9s %9s %9s%n",
+            "request", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms"));
+    latencies.forEach((request, latency) -> text.append(String.format("%-40s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+            request, latency.count(), latency.errors(),
+            latency.p50(), latency.p90(), latency.p99(), latency.p999(), latency.max())));
+    Files.writeString(output.resolve(file + ".txt"), text);
+    return text.toString();
+  }
+
+  /**
+   * Reads the latencies of a report written before.
+   *
+   * @param json the JSON file of the report
+   * @return the latencies by request type
+   * @throws IOException if the file can not be read
+   */
+  static Map<String, LatencyDto> readLatencies(Path json) throws IOException {
+    Map<String, LatencyDto> latencies = new LinkedHashMap<>();
+    JsonNode node = OBJECT_MAPPER.readTree(json.toFile()).path("latencies");
+    for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+      Map.Entry<String, JsonNode> entry = it.next();
+      latencies.put(entry.getKey(), OBJECT_MAPPER.treeToValue(entry.getValue(), LatencyDto.class));
+    }
+    return latencies;
+  }
+
+  /**
+   * Compares the latencies of two runs, for example of the same load against two builds or two thread models.
+   *
+   * @param before the latencies of the earlier run by request type
+   * @param after  the latencies of the later run by request type
+   * @return a text table of the counts and the change of the percentiles
+   */
+  static String compare(Map<String, LatencyDto> before, Map<String, LatencyDto> after) {
+    StringBuilder text = new StringBuilder(String.format("%-40s %8s %8s %18s %18s %18s%n",
+            "request", "before", "after", "p50 ms", "p99 ms", "p999 ms"));
+    after.forEach((request, latency) -> {
+      LatencyDto was = before.get(request);
+      if (was == null) {
+        text.append(String.format("%-40s %8s %8d %18s %18s %18s%n", request, "-", latency.count(), "new", "", ""));
+        return;
+      }
+      text.append(String.format("%-40s %8d %8d %18s %18s %18s%n", request, was.count(), latency.count(),
+              change(was.p50(), latency.p50()), change(was.p99(), latency.p99()), change(was.p999(), latency.p999())));
+    });
+    return text.toString();
+  }
+
+  private static String change(double before, double after) {
+    double percent = before == 0 ? 0 : (after - before) / before * 100;
+    return String.format("%.2f→%.2f %+.0f%%", before, after, percent);
+  }
+}
@@ -0,0 +1,459 @@
+package at.ac.tuwien.sepr.assignment.individual.loadtest;
+
+import at.ac.tuwien.sepr.assignment.individual.SeprIndividualAssignmentApplication;
+import at.ac.tuwien.sepr.assignment.individual.config.LatencyHistogram;
+import at.ac.tuwien.sepr.assignment.individual.dto.HorseCreateDto;
+import at.ac.tuwien.sepr.assignment.individual.dto.LatencyDto;
+import at.ac.tuwien.sepr.assignment.individual.persistence.HorseDao;
+import at.ac.tuwien.sepr.assignment.individual.type.Sex;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * End-to-end load test of the horse and owner endpoints.
+ * Boots the application on an in-memory H2 database, seeds it with the {@code datagen-pedigree} profile and
+ * sends a weighted mix of requests at a constant arrival rate.
+ *
+ * <p>The load is open-loop: request {@code i} is due at {@code start + i / rate}, whether the previous requests
+ * have been answered or not, and its latency is measured from that due time.
+ * A slow server therefore shows up in the percentiles instead of lowering the sending rate,
+ * which would hide the queueing delay (coordinated omission).
+ * Requests that can not be sent because {@code load.max-in-flight} requests are still unanswered count as failed,
+ * with the request timeout as their latency.
+ *
+ * <p>{@code load.threads=platform,virtual} runs the test once with requests handled on the Tomcat thread pool and
+ * once on virtual threads, each on a freshly booted application, and prints how the percentiles changed.
+ * {@code load.slow-clients} clients download a large image in small chunks during the whole run, next to the mix.
+ * Their downloads keep request threads waiting for the network and are reported as {@code SLOW_IMAGE},
+ * which shows what slow clients do to the latencies of everyone else, especially on platform threads.
+ *
+ * <p>Configured by system properties, with their defaults:
+ * {@code load.rate=200} requests per second, {@code load.duration=60s}, {@code load.warmup=10s},
+ * {@code load.horses=100000}, {@code load.max-in-flight=10000}, {@code load.threads=platform},
+ * {@code load.slow-clients=0}, {@code load.slow-image-kilobytes=8192}, {@code load.seed=42} and
+ * {@code load.output=target/load-test}, the directory the JSON and text reports are written to.
+ */
+public final class LoadTest {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final long FIRST_GENERATED_ID = 1000;
+  private static final int UPDATE_TARGETS = 100;
+  private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+  private static final int SLOW_READ_CHUNK_BYTES = 16 * 1024;
+  private static final long SLOW_READ_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final String[] NAME_PREFIXES = {"Silver", "Midnight", "Golden", "Storm", "Wild", "Royal", "Shadow"};
+  private static final String[] OWNER_NAMES = {"Anna", "Lukas", "Gruber", "Huber", "Bauer", "Mayer"};
+
+  /**
+   * The requests of the mix, with their share of all requests.
+   */
+  enum Operation {
+    SEARCH(26),
+    SUGGEST(10),
+    FACETS(5),
+    DETAIL(20),
+    FAMILY_TREE(12),
+    IMAGE(5),
+    OWNER_SEARCH(6),
+    OWNER_CREATE(2),
+    CREATE(7),
+    UPDATE(4),
+    DELETE(3);
+
+    private final int weight;
+
+    Operation(int weight) {
+      this.weight = weight;
+    }
+  }
+
+  private final HttpClient client = HttpClient.newBuilder()
+          .executor(Executors.newVirtualThreadPerTaskExecutor())
+          .connectTimeout(Duration.ofSeconds(5))
+          .build();
+  private final Map<Operation, LatencyHistogram> histograms = new EnumMap<>(Operation.class);
+  private final LatencyHistogram total = new LatencyHistogram();
+  private final LatencyHistogram slowImages = new LatencyHistogram();
+  private final LongAdder dropped = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final List<Long> updateTargets = new ArrayList<>();
+  private final Queue<Long> deleteTargets = new ConcurrentLinkedQueue<>();
+  private final int port;
+  private final String baseUrl;
+  private final int horses;
+  private final SplittableRandom random;
+
+  private LoadTest(int port, int horses, long seed) {
+    this.port = port;
+    this.baseUrl = "http://localhost:" + port;
+    this.horses = horses;
+    this.random = new SplittableRandom(seed);
+    for (Operation operation : Operation.values()) {
+      histograms.put(operation, new LatencyHistogram());
+    }
+  }
+
+  /**
+   * Runs the load test with the configuration of the system properties.
+   */
+  public static void main(String[] args) throws Exception {
+    Settings settings = new Settings(
+            Integer.getInteger("load.rate", 200),
+            Duration.parse("PT" + System.getProperty("load.warmup", "10s")),
+            Duration.parse("PT" + System.getProperty("load.duration", "60s")),
+            Integer.getInteger("load.horses", 100_000),
+            Integer.getInteger("load.max-in-flight", 10_000),
+            Integer.getInteger("load.slow-clients", 0),
+            Integer.getInteger("load.slow-image-kilobytes", 8192),
+            Long.getLong("load.seed", 42),
+            Path.of(System.getProperty("load.output", "target/load-test")));
+    List<String> threadModels = Stream.of(System.getProperty("load.threads", "platform").split(","))
+            .map(String::trim)
+            .toList();
+
+    Map<String, Map<String, LatencyDto>> results = new LinkedHashMap<>();
+    for (String threads : threadModels) {
+      if (!threads.equals("platform") && !threads.equals("virtual")) {
+        throw new IllegalArgumentException("load.threads must list platform and/or virtual, not " + threads);
+      }
+      results.put(threads, runApplication(settings, threads));
+    }
+    if (results.size() > 1) {
+      String first = threadModels.getFirst();
+      results.forEach((threads, latencies) -> {
+        if (!threads.equals(first)) {
+          LOG.info("Latencies on {} threads compared to {} threads:\n{}",
+                  threads, first, LatencyReport.compare(results.get(first), latencies));
+        }
+      });
+    }
+  }
+
+  /**
+   * Boots the application on the given thread model, runs the load against it and writes the report.
+   *
+   * @return the latencies of the run by request type
+   */
+  private static Map<String, LatencyDto> runApplication(Settings settings, String threads) throws Exception {
+    try (ConfigurableApplicationContext context = SpringApplication.run(SeprIndividualAssignmentApplication.class,
+            "--server.port=0",
+            "--spring.profiles.active=datagen-pedigree",
+            "--spring.threads.virtual.enabled=" + threads.equals("virtual"),
+            "--spring.datasource.url=jdbc:h2:mem:loadtest-" + threads + ";DB_CLOSE_DELAY=-1;"
+                    + "INIT=RUNSCRIPT FROM 'classpath:sql/createSchema.sql'",
+            // the in-memory database starts empty on every run, so must the journal of its mutations
+            "--app.mutation-journal.enabled=false",
+            "--app.pedigree-generator.horses=" + settings.horses(),
+            "--app.pedigree-generator.owners=" + Math.max(1, settings.horses() / 100),
+            "--app.pedigree-generator.image-rate=0.2",
+            "--app.pedigree-generator.seed=" + settings.seed())) {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      LoadTest test = new LoadTest(port, settings.horses(), settings.seed());
+      HorseDao horseDao = context.getBean(HorseDao.class);
+      test.prepareTargets(horseDao, settings);
+      List<Thread> slowClients = settings.slowClients() > 0
+              ? test.startSlowClients(horseDao, settings)
+              : List.of();
+      Map<String, Object> summary = test.run(settings);
+      summary.put("threads", threads);
+      for (Thread slowClient : slowClients) {
+        slowClient.join(REQUEST_TIMEOUT.toMillis());
+      }
+      return test.writeReport(settings.output(), "load-test-" + threads, summary, settings.slowClients() > 0);
+    }
+  }
+
+  /**
+   * Creates the horses the updates and deletes of the mix change, so that the generated pedigrees stay untouched.
+   * Every delete gets a horse of its own, enough for the whole run.
+   */
+  private void prepareTargets(HorseDao horseDao, Settings settings) throws IOException {
+    int totalWeight = Stream.of(Operation.values()).mapToInt(operation -> operation.weight).sum();
+    long requests = (long) settings.rate() * (settings.warmup().toSeconds() + settings.duration().toSeconds());
+    long deletes = requests * Operation.DELETE.weight / totalWeight * 6 / 5 + 10;
+    for (int i = 0; i < UPDATE_TARGETS; i++) {
+      updateTargets.add(horseDao.create(targetHorse("Loadtest update " + i), null).id());
+    }
+    for (long i = 0; i < deletes; i++) {
+      deleteTargets.add(horseDao.create(targetHorse("Loadtest delete " + i), null).id());
+    }
+    LOG.info("Prepared {} horses to update and {} to delete", updateTargets.size(), deleteTargets.size());
+  }
+
+  private static HorseCreateDto targetHorse(String name) {
+    return new HorseCreateDto(name, "Created by the load test", LocalDate.of(2020, 5, 1), Sex.FEMALE,
+            null, null, null);
+  }
+
+  private Map<String, Object> run(Settings settings) throws InterruptedException {
+    int rate = settings.rate();
+    Duration warmup = settings.warmup();
+    Duration duration = settings.duration();
+    int maxInFlight = settings.maxInFlight();
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    long measureFrom = start + warmup.toNanos();
+    long end = measureFrom + duration.toNanos();
+    int totalWeight = 0;
+    for (Operation operation : Operation.values()) {
+      totalWeight += operation.weight;
+    }
+
+    LOG.info("Sending {} requests per second for {} after a warmup of {}", rate, duration, warmup);
+    long sent = 0;
+    for (long i = 0; ; i++) {
+      long due = start + i * intervalNanos;
+      if (due >= end) {
+        break;
+      }
+      long wait = due - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      Operation operation = choose(totalWeight);
+      boolean measured = due >= measureFrom;
+      if (inFlight.get() >= maxInFlight) {
+        if (measured) {
+          // the request is not sent at all, which is no better for its client than a timeout
+          dropped.increment();
+          record(operation, REQUEST_TIMEOUT.toNanos(), true);
+        }
+        continue;
+      }
+      inFlight.incrementAndGet();
+      sent++;
+      send(operation, due, measured);
+    }
+
+    // wait for the answers of the last requests
+    long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+      Thread.sleep(10);
+    }
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("startedAt", LocalDateTime.now().minusNanos(System.nanoTime() - start).toString());
+    summary.put("targetRate", rate);
+    summary.put("durationSeconds", duration.toSeconds());
+    summary.put("horses", horses);
+    summary.put("sent", sent);
+    summary.put("dropped", dropped.sum());
+    summary.put("unanswered", inFlight.get());
+    LatencyDto all = total.snapshot();
+    summary.put("failed", all.errors());
+    summary.put("throughput", (all.count() - dropped.sum()) / (double) duration.toSeconds());
+    return summary;
+  }
+
+  private Operation choose(int totalWeight) {
+    int target = random.nextInt(totalWeight);
+    for (Operation operation : Operation.values()) {
+      target -= operation.weight;
+      if (target < 0) {
+        return operation;
+      }
+    }
+    throw new IllegalStateException("No operation for weight " + target);
+  }
+
+  private void send(Operation operation, long due, boolean measured) {
+    HttpRequest request = request(operation);
+    client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+      long latency = System.nanoTime() - due;
+      inFlight.decrementAndGet();
+      if (!measured) {
+        return;
+      }
+      // most generated horses have no image, a missing one is an expected answer
+      boolean error = failure != null || response.statusCode() >= 400
+              && !(operation == Operation.IMAGE && response.statusCode() == 404);
+      record(operation, latency, error);
+    });
+  }
+
+  private void record(Operation operation, long latencyNanos, boolean error) {
+    histograms.get(operation).record(latencyNanos, 0, error);
+    total.record(latencyNanos, 0, error);
+  }
+
+  private HttpRequest request(Operation operation) {
+    return switch (operation) {
+      case SEARCH -> get("/horses?name=" + encode(pick(NAME_PREFIXES)) + "&limit=20"
+              + (random.nextBoolean() ? "&sex=" + (random.nextBoolean() ? "MALE" : "FEMALE") : ""));
+      case SUGGEST -> get("/horses/suggest?prefix=" + encode(pick(NAME_PREFIXES).substring(0, 3)));
+      case FACETS -> get("/horses?facets=true&name=" + encode(pick(NAME_PREFIXES)) + "&limit=20");
+      case DETAIL -> get("/horses/" + randomHorseId());
+      case FAMILY_TREE -> get("/horses/" + randomHorseId() + "/familytree?generations=5");
+      case IMAGE -> get("/horses/" + randomHorseId() + "/image");
+      case OWNER_SEARCH -> get("/owners?name=" + encode(pick(OWNER_NAMES)) + "&maxAmount=10");
+      case OWNER_CREATE -> HttpRequest.newBuilder(URI.create(baseUrl + "/owners"))
+              .timeout(REQUEST_TIMEOUT)
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString("{\"firstName\":\"" + pick(OWNER_NAMES)
+                      + "\",\"lastName\":\"Loadtest " + random.nextInt(1_000_000) + "\"}"))
+              .build();
+      case CREATE -> horseForm("POST", "/horses", "Loadtest foal " + random.nextInt(1_000_000));
+      case UPDATE -> updateTargets.isEmpty()
+              ? get("/horses/" + randomHorseId())
+              : horseForm("PUT", "/horses/" + updateTargets.get(random.nextInt(updateTargets.size())),
+                      "Loadtest updated " + random.nextInt(1_000_000));
+      case DELETE -> {
+        Long target = deleteTargets.poll();
+        yield target == null
+                ? get("/horses/" + randomHorseId())
+                : HttpRequest.newBuilder(URI.create(baseUrl + "/horses/" + target))
+                        .timeout(REQUEST_TIMEOUT).DELETE().build();
+      }
+    };
+  }
+
+  private long randomHorseId() {
+    return -(FIRST_GENERATED_ID + random.nextInt(horses));
+  }
+
+  private String pick(String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private HttpRequest get(String path) {
+    return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT).GET().build();
+  }
+
+  /**
+   * Builds the multipart request the frontend sends to create or update a horse, without an image.
+   */
+  private HttpRequest horseForm(String method, String path, String name) {
+    String boundary = "loadtest" + UUID.randomUUID().toString().replace("-", "");
+    String horse = "{\"name\":\"" + name + "\",\"description\":\"Created by the load test\","
+            + "\"dateOfBirth\":\"2020-05-01\",\"sex\":\"" + (random.nextBoolean() ? "MALE" : "FEMALE") + "\"}";
+    String body = "--" + boundary + "\r\n"
+            + "Content-Disposition: form-data; name=\"horse\"\r\n"
+            + "Content-Type: application/json\r\n\r\n"
+            + horse + "\r\n"
+            + "--" + boundary + "--\r\n";
+    return HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+            .method(method, HttpRequest.BodyPublishers.ofString(body))
+            .build();
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Creates a horse with a large image and starts the clients downloading it slowly until the run ends.
+   */
+  private List<Thread> startSlowClients(HorseDao horseDao, Settings settings) throws IOException {
+    byte[] image = new byte[settings.slowImageKilobytes() * 1024];
+    new Random(settings.seed()).nextBytes(image);
+    long horseId = horseDao.create(targetHorse("Loadtest slow image"), new ByteArrayInputStream(image)).id();
+    byte[] request = ("GET /horses/" + horseId + "/image HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+    long measureFrom = System.nanoTime() + settings.warmup().toNanos();
+    long end = measureFrom + settings.duration().toNanos();
+
+    LOG.info("Starting {} clients downloading an image of {} KB slowly",
+            settings.slowClients(), settings.slowImageKilobytes());
+    List<Thread> clients = new ArrayList<>();
+    for (int i = 0; i < settings.slowClients(); i++) {
+      clients.add(Thread.ofVirtual().name("slow-client-" + i).start(() -> {
+        while (System.nanoTime() < end) {
+          long start = System.nanoTime();
+          boolean complete;
+          try {
+            complete = downloadSlowly(request) >= image.length;
+          } catch (IOException e) {
+            complete = false;
+          }
+          if (start >= measureFrom) {
+            slowImages.record(System.nanoTime() - start, 0, !complete);
+          }
+        }
+      }));
+    }
+    return clients;
+  }
+
+  /**
+   * Downloads the image like a client on a slow network, which reads a small chunk at a time.
+   *
+   * @return the number of bytes received, including the response head
+   */
+  private long downloadSlowly(byte[] request) throws IOException {
+    try (Socket socket = new Socket()) {
+      // a small receive window keeps the server from pushing the whole image at once
+      socket.setReceiveBufferSize(SLOW_READ_CHUNK_BYTES);
+      socket.setSoTimeout((int) REQUEST_TIMEOUT.toMillis());
+      socket.connect(new InetSocketAddress("localhost", port));
+      OutputStream out = socket.getOutputStream();
+      out.write(request);
+      out.flush();
+      InputStream in = socket.getInputStream();
+      byte[] chunk = new byte[SLOW_READ_CHUNK_BYTES];
+      long received = 0;
+      for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+        received += read;
+        LockSupport.parkNanos(SLOW_READ_PAUSE_NANOS);
+      }
+      return received;
+    }
+  }
+
+  private Map<String, LatencyDto> writeReport(Path output, String name, Map<String, Object> summary,
+                                              boolean withSlowImages) throws IOException {
+    Map<String, LatencyDto> latencies = new LinkedHashMap<>();
+    histograms.forEach((operation, histogram) -> latencies.put(operation.name(), histogram.snapshot()));
+    latencies.put("TOTAL", total.snapshot());
+    if (withSlowImages) {
+      // closed-loop downloads next to the mix, not part of the total
+      latencies.put("SLOW_IMAGE", slowImages.snapshot());
+    }
+    String text = LatencyReport.write(output, name, summary, latencies);
+    LOG.info("Load test report written to {}\n{}", output, text);
+    return latencies;
+  }
+
+  /**
+   * Configuration of a load test run, from the system properties described in the class documentation.
+   */
+  private record Settings(int rate, Duration warmup, Duration duration, int horses, int maxInFlight,
+                          int slowClients, int slowImageKilobytes, long seed, Path output) {
+  }
+}
@@ -0,0 +1,152 @@
+package at.ac.tuwien.sepr.assignment.individual.loadtest;
+
+import at.ac.tuwien.sepr.assignment.individual.config.LatencyHistogram;
+import at.ac.tuwien.sepr.assignment.individual.config.TrafficJournal;
+import at.ac.tuwien.sepr.assignment.individual.dto.LatencyDto;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a traffic journal captured with {@code app.traffic-capture.enabled=true} against a running build.
+ * Every request is sent at its captured arrival time divided by {@code replay.speed}, whether earlier requests have
+ * been answered or not, and its latency is measured from that time, like in the {@link LoadTest}.
+ * Requests whose body was too large to capture are skipped.
+ * The captured content negotiation and conditional headers are sent again, so cached answers stay cached.
+ *
+ * <p>Usage: {@code TrafficReplay <journal> [base URL]}, the base URL defaults to {@code http://localhost:8080}.
+ * Writes a report of the replayed latencies and one of the server side durations at capture time
+ * to {@code replay.output}, by default {@code target/replay}, both grouped by method and path with IDs replaced.
+ *
+ * <p>{@code TrafficReplay --compare <before.json> <after.json>} prints the change of the percentiles between two
+ * replay reports, for example of the same journal replayed against two builds.
+ */
+public final class TrafficReplay {
+  private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Pattern ID_SEGMENT = Pattern.compile("/-?\\d+(?=/|$)");
+
+  private final HttpClient client = HttpClient.newBuilder()
+          .executor(Executors.newVirtualThreadPerTaskExecutor())
+          .connectTimeout(Duration.ofSeconds(5))
+          .build();
+  private final ConcurrentMap<String, LatencyHistogram> replayed = new ConcurrentHashMap<>();
+  private final Map<String, LatencyHistogram> captured = new TreeMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final String baseUrl;
+
+  private TrafficReplay(String baseUrl) {
+    this.baseUrl = baseUrl;
+  }
+
+  /**
+   * Replays a journal or compares two reports, see the class description for the arguments.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 3 && "--compare".equals(args[0])) {
+      System.out.print(LatencyReport.compare(
+              LatencyReport.readLatencies(Path.of(args[1])), LatencyReport.readLatencies(Path.of(args[2]))));
+      return;
+    }
+    if (args.length < 1 || args.length > 2) {
+      System.err.println("Usage: TrafficReplay <journal> [base URL] | --compare <before.json> <after.json>");
+      System.exit(2);
+    }
+    double speed = Double.parseDouble(System.getProperty("replay.speed", "1.0"));
+    Path output = Path.of(System.getProperty("replay.output", "target/replay"));
+    TrafficJournal.Capture capture = TrafficJournal.read(Path.of(args[0]));
+    new TrafficReplay(args.length == 2 ? args[1] : "http://localhost:8080").replay(capture, speed, output);
+  }
+
+  private void replay(TrafficJournal.Capture capture, double speed, Path output)
+          throws IOException, InterruptedException {
+    LOG.info("Replaying {} requests captured at {} with {}x speed against {}",
+            capture.entries().size(), Instant.ofEpochMilli(capture.startedAtEpochMillis()), speed, baseUrl);
+    long start = System.nanoTime();
+    int sent = 0;
+    int skipped = 0;
+    for (TrafficJournal.Entry entry : capture.entries()) {
+      String route = route(entry);
+      captured.computeIfAbsent(route, r -> new LatencyHistogram())
+              .record(TimeUnit.MICROSECONDS.toNanos(entry.durationMicros()), 0, entry.status() >= 500);
+      if (entry.body() == null) {
+        skipped++;
+        continue;
+      }
+      long due = start + (long) (TimeUnit.MICROSECONDS.toNanos(entry.arrivalMicros()) / speed);
+      long wait = due - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      inFlight.incrementAndGet();
+      sent++;
+      send(entry, route, due);
+    }
+
+    long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+      Thread.sleep(10);
+    }
+
+    Map<String, Object> summary = new TreeMap<>();
+    summary.put("capturedAt", Instant.ofEpochMilli(capture.startedAtEpochMillis()).toString());
+    summary.put("baseUrl", baseUrl);
+    summary.put("speed", speed);
+    summary.put("sent", sent);
+    summary.put("skipped", skipped);
+    summary.put("unanswered", inFlight.get());
+    LOG.info("Replay report:\n{}", LatencyReport.write(output, "replay", summary, snapshot(replayed)));
+    LOG.info("Captured durations:\n{}", LatencyReport.write(output, "captured", summary, snapshot(captured)));
+  }
+
+  private void send(TrafficJournal.Entry entry, String route, long due) {
+    String query = entry.query().isEmpty() ? "" : "?" + entry.query();
+    HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + entry.uri() + query))
+            .timeout(Duration.ofSeconds(60))
+            .method(entry.method(), entry.body().length == 0
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(entry.body()));
+    header(request, "Content-Type", entry.contentType());
+    header(request, "Accept", entry.accept());
+    header(request, "Accept-Encoding", entry.acceptEncoding());
+    header(request, "If-None-Match", entry.ifNoneMatch());
+    header(request, "If-Match", entry.ifMatch());
+    LatencyHistogram histogram = replayed.computeIfAbsent(route, r -> new LatencyHistogram());
+    client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+      histogram.record(System.nanoTime() - due, 0, failure != null || response.statusCode() >= 500);
+      inFlight.decrementAndGet();
+    });
+  }
+
+  private static void header(HttpRequest.Builder request, String name, String value) {
+    if (!value.isEmpty()) {
+      request.header(name, value);
+    }
+  }
+
+  private static String route(TrafficJournal.Entry entry) {
+    return entry.method() + " " + ID_SEGMENT.matcher(entry.uri()).replaceAll("/{id}");
+  }
+
+  private static Map<String, LatencyDto> snapshot(Map<String, LatencyHistogram> histograms) {
+    Map<String, LatencyDto> latencies = new TreeMap<>();
+    histograms.forEach((route, histogram) -> latencies.put(route, histogram.snapshot()));
+    return latencies;
+  }
+}